@@ -15,8 +15,10 @@ import org.h2.engine.Session;
 import org.h2.expression.ParameterInterface;
 import org.h2.message.DbException;
 import org.h2.message.Trace;
+import org.h2.result.LazyResult;
 import org.h2.result.ResultInterface;
 import org.h2.util.MathUtils;
+import org.h2.value.Value;
 
 /**
  * Represents a SQL statement. This object is only used on the server side.
@@ -47,6 +49,12 @@ public abstract class Command implements CommandInterface {
 
     private boolean canReuse;
 
+    /**
+     * The lazy result that is still open, if any. The statement is only
+     * stopped when this result is closed.
+     */
+    private LazyResult lazyResult;
+
     Command(Parser parser, String sql) {
         this.session = parser.getSession();
         this.sql = sql;
@@ -113,6 +121,18 @@ public abstract class Command implements CommandInterface {
         throw DbException.get(ErrorCode.METHOD_ONLY_ALLOWED_FOR_QUERY);
     }
 
+    /**
+     * Execute a query statement, if this is possible. If the query supports
+     * it, the rows are only computed while the result is read.
+     *
+     * @param maxrows the maximum number of rows returned
+     * @return the result set (possibly a lazy result)
+     * @throws DbException if the command is not a query
+     */
+    protected ResultInterface queryLazy(int maxrows) {
+        return query(maxrows);
+    }
+
     @Override
     public final ResultInterface getMetaData() {
         return queryMeta();
@@ -171,7 +191,8 @@ public abstract class Command implements CommandInterface {
      * This method prepares everything and calls {@link #query(int)} finally.
      *
      * @param maxrows the maximum number of rows to return
-     * @param scrollable if the result set must be scrollable (ignored)
+     * @param scrollable if the result set must be scrollable (lazy execution
+     *            is only used for results that are not scrollable)
      * @return the result set
      */
     @Override
@@ -188,13 +209,26 @@ public abstract class Command implements CommandInterface {
                 // wait
             }
         }
+        boolean lazy = !scrollable && session.isLazyQueryExecution();
         synchronized (sync) {
+            if (lazyResult != null) {
+                lazyResult.close();
+            }
             session.setCurrentCommand(this);
             try {
                 while (true) {
                     database.checkPowerOff();
                     try {
-                        return query(maxrows);
+                        ResultInterface result = lazy ?
+                                queryLazy(maxrows) : query(maxrows);
+                        if (result instanceof LazyResult) {
+                            // the statement is stopped when the result is
+                            // closed
+                            lazyResult = (LazyResult) result;
+                            lazyResult.setCommand(this);
+                            callStop = false;
+                        }
+                        return result;
                     } catch (DbException e) {
                         start = filterConcurrentUpdate(e, start);
                     } catch (OutOfMemoryError e) {
@@ -254,6 +288,8 @@ public abstract class Command implements CommandInterface {
                         return update();
                     } catch (DbException e) {
                         start = filterConcurrentUpdate(e, start);
+                        // undo the partial changes before trying again
+                        session.rollbackTo(rollback, false);
                     } catch (OutOfMemoryError e) {
                         callStop = false;
                         database.shutdownImmediately();
@@ -292,6 +328,21 @@ public abstract class Command implements CommandInterface {
         }
     }
 
+    /**
+     * Stop the statement after a lazy result was closed.
+     *
+     * @param result the result that was closed
+     */
+    public void lazyResultClosed(LazyResult result) {
+        if (result != lazyResult) {
+            return;
+        }
+        lazyResult = null;
+        if (!session.isClosed()) {
+            stop();
+        }
+    }
+
     private long filterConcurrentUpdate(DbException e, long start) {
         if (e.getErrorCode() != ErrorCode.CONCURRENT_UPDATE_1) {
             throw e;
@@ -300,23 +351,10 @@ public abstract class Command implements CommandInterface {
         if (start != 0 && now - start > session.getLockTimeout()) {
             throw DbException.get(ErrorCode.LOCK_TIMEOUT_1, e.getCause(), "");
         }
-        Database database = session.getDatabase();
+        // the row is locked by another transaction: retry as soon as
+        // a transaction ends, but at least after a short random time
         int sleep = 1 + MathUtils.randomInt(10);
-        while (true) {
-            try {
-                if (database.isMultiThreaded()) {
-                    Thread.sleep(sleep);
-                } else {
-                    database.wait(sleep);
-                }
-            } catch (InterruptedException e1) {
-                // ignore
-            }
-            long slept = System.nanoTime() / 1000000 - now;
-            if (slept >= sleep) {
-                break;
-            }
-        }
+        session.getDatabase().waitForTransactionEnd(sleep);
         return start == 0 ? now : start;
     }
 
@@ -339,13 +377,34 @@ public abstract class Command implements CommandInterface {
         return false;
     }
 
+    /**
+     * Use the given values for the parameters that replace the literals of
+     * the original statement. Afterwards, the parameters are no longer
+     * visible to the application.
+     *
+     * @param values the values of the literals
+     * @return true if the values could be set
+     */
+    public boolean setLiteralValues(ArrayList<Value> values) {
+        return false;
+    }
+
+    /**
+     * Whether the parameters of this command replace literals.
+     *
+     * @return true if they do
+     */
+    public boolean hasLiteralValues() {
+        return false;
+    }
+
     /**
      * Whether the command is already closed (in which case it can be re-used).
      *
      * @return true if it can be re-used
      */
     public boolean canReuse() {
-        return canReuse;
+        return canReuse && lazyResult == null;
     }
 
     /**
@@ -10,6 +10,7 @@ import org.h2.api.DatabaseEventListener;
 import org.h2.expression.Parameter;
 import org.h2.expression.ParameterInterface;
 import org.h2.result.ResultInterface;
+import org.h2.util.New;
 import org.h2.value.Value;
 import org.h2.value.ValueNull;
 
@@ -22,6 +23,7 @@ class CommandContainer extends Command {
     private Prepared prepared;
     private boolean readOnlyKnown;
     private boolean readOnly;
+    private boolean literalValues;
 
     CommandContainer(Parser parser, String sql, Prepared prepared) {
         super(parser, sql);
@@ -31,9 +33,30 @@ class CommandContainer extends Command {
 
     @Override
     public ArrayList<? extends ParameterInterface> getParameters() {
+        if (literalValues) {
+            return New.arrayList();
+        }
         return prepared.getParameters();
     }
 
+    @Override
+    public boolean setLiteralValues(ArrayList<Value> values) {
+        ArrayList<Parameter> params = prepared.getParameters();
+        if (params.size() != values.size()) {
+            return false;
+        }
+        for (int i = 0, size = params.size(); i < size; i++) {
+            params.get(i).setValue(values.get(i));
+        }
+        literalValues = true;
+        return true;
+    }
+
+    @Override
+    public boolean hasLiteralValues() {
+        return literalValues;
+    }
+
     @Override
     public boolean isTransactional() {
         return prepared.isTransactional();
@@ -83,12 +106,27 @@ class CommandContainer extends Command {
 
     @Override
     public ResultInterface query(int maxrows) {
+        return query(maxrows, false);
+    }
+
+    @Override
+    protected ResultInterface queryLazy(int maxrows) {
+        return query(maxrows, true);
+    }
+
+    private ResultInterface query(int maxrows, boolean lazy) {
         recompileIfRequired();
         setProgress(DatabaseEventListener.STATE_STATEMENT_START);
         start();
         prepared.checkParameters();
-        ResultInterface result = prepared.query(maxrows);
-        prepared.trace(startTime, result.getRowCount());
+        ResultInterface result = null;
+        if (lazy) {
+            result = prepared.queryLazy(maxrows);
+        }
+        if (result == null) {
+            result = prepared.query(maxrows);
+            prepared.trace(startTime, result.getRowCount());
+        }
         setProgress(DatabaseEventListener.STATE_STATEMENT_END);
         return result;
     }
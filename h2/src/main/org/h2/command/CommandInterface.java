@@ -451,6 +451,11 @@ public interface CommandInterface {
      */
     int SHUTDOWN_DEFRAG = 84;
 
+    /**
+     * The type of a REFRESH MATERIALIZED VIEW statement.
+     */
+    int REFRESH_MATERIALIZED_VIEW = 85;
+
     /**
      * Get command type.
      *
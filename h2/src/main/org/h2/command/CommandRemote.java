@@ -7,6 +7,7 @@ package org.h2.command;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import org.h2.engine.Constants;
 import org.h2.engine.SessionRemote;
 import org.h2.engine.SysProperties;
 import org.h2.expression.ParameterInterface;
@@ -154,6 +155,10 @@ public class CommandRemote implements CommandInterface {
                         fetch = fetchSize;
                     }
                     transfer.writeInt(fetch);
+                    if (session.getClientVersion() >=
+                            Constants.TCP_PROTOCOL_VERSION_16) {
+                        transfer.writeBoolean(scrollable);
+                    }
                     sendParameters(transfer);
                     session.done(transfer);
                     int columnCount = transfer.readInt();
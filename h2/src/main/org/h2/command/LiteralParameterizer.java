@@ -0,0 +1,235 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.command;
+
+import java.util.ArrayList;
+import org.h2.value.Value;
+import org.h2.value.ValueInt;
+import org.h2.value.ValueString;
+
+/**
+ * Replaces literals in the conditions of simple statements with parameters,
+ * so that statements that only differ in these literals can use the same
+ * cached command. Only integer and character string literals that are
+ * compared with something (as in WHERE ID = 42) after the WHERE keyword of
+ * the outer statement are replaced. Literals elsewhere (for example in the
+ * select list, in LIMIT, or in LIKE patterns) can change the result column
+ * names or the plan, and are kept.
+ */
+public class LiteralParameterizer {
+
+    private static final int OTHER = 0, COMPARISON = 1, LITERAL = 2;
+
+    private final String sql;
+    private final StringBuilder buff;
+    private final ArrayList<Value> values;
+    private int pos;
+    private int last = OTHER;
+    private int beforeComparison = OTHER;
+    private boolean where;
+    private int depth;
+
+    private LiteralParameterizer(String sql, ArrayList<Value> values) {
+        this.sql = sql;
+        this.values = values;
+        buff = new StringBuilder(sql.length());
+    }
+
+    /**
+     * Replace the literals of the statement with parameters.
+     *
+     * @param sql the SQL statement
+     * @param values the list where the values of the replaced literals are
+     *            added
+     * @return the statement with parameters, or null if no literals were
+     *         replaced
+     */
+    public static String parameterize(String sql, ArrayList<Value> values) {
+        LiteralParameterizer p = new LiteralParameterizer(sql, values);
+        if (!p.replace() || values.size() == 0) {
+            values.clear();
+            return null;
+        }
+        return p.buff.toString();
+    }
+
+    private boolean replace() {
+        boolean first = true;
+        int len = sql.length();
+        while (pos < len) {
+            char c = sql.charAt(pos);
+            if (Character.isWhitespace(c)) {
+                buff.append(c);
+                pos++;
+            } else if (c == '-' && sql.startsWith("--", pos) ||
+                    c == '/' && sql.startsWith("//", pos)) {
+                int end = sql.indexOf('\n', pos);
+                end = end < 0 ? len : end;
+                buff.append(sql, pos, end);
+                pos = end;
+            } else if (c == '/' && sql.startsWith("/*", pos)) {
+                int end = sql.indexOf("*/", pos + 2);
+                if (end < 0) {
+                    return false;
+                }
+                buff.append(sql, pos, end + 2);
+                pos = end + 2;
+            } else if (first && !Character.isLetter(c)) {
+                // the statement needs to start with a keyword
+                return false;
+            } else if (c == '"') {
+                if (!copyQuoted('"')) {
+                    return false;
+                }
+                last = OTHER;
+            } else if (c == '\'') {
+                if (!readString()) {
+                    return false;
+                }
+            } else if (c == '?' || c == '$' || c == ';') {
+                // explicit parameters, or more than one statement
+                return false;
+            } else if (c >= '0' && c <= '9') {
+                readNumber();
+            } else if (Character.isLetter(c) || c == '_') {
+                int start = pos;
+                while (pos < len && (Character.isLetterOrDigit(sql.charAt(pos)) ||
+                        sql.charAt(pos) == '_')) {
+                    pos++;
+                }
+                String word = sql.substring(start, pos);
+                buff.append(word);
+                if (first) {
+                    if (!"SELECT".equalsIgnoreCase(word) &&
+                            !"UPDATE".equalsIgnoreCase(word) &&
+                            !"DELETE".equalsIgnoreCase(word)) {
+                        return false;
+                    }
+                    first = false;
+                } else if (depth == 0 && "WHERE".equalsIgnoreCase(word)) {
+                    where = true;
+                }
+                if (pos < len && sql.charAt(pos) == '\'') {
+                    // typed literal such as X'01'
+                    if (!copyQuoted('\'')) {
+                        return false;
+                    }
+                    last = LITERAL;
+                } else {
+                    last = OTHER;
+                }
+            } else if (c == '=' || c == '<' || c == '>' || c == '!') {
+                int start = pos;
+                while (pos < len && "=<>!".indexOf(sql.charAt(pos)) >= 0) {
+                    pos++;
+                }
+                String op = sql.substring(start, pos);
+                buff.append(op);
+                if (op.equals("=") || op.equals("<>") || op.equals("!=") ||
+                        op.equals("<") || op.equals(">") ||
+                        op.equals("<=") || op.equals(">=")) {
+                    beforeComparison = last;
+                    last = COMPARISON;
+                } else {
+                    last = OTHER;
+                }
+            } else {
+                if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth--;
+                }
+                buff.append(c);
+                pos++;
+                last = OTHER;
+            }
+        }
+        return true;
+    }
+
+    private boolean isReplaceable() {
+        // don't replace the literals of conditions such as 1=0
+        return where && last == COMPARISON && beforeComparison != LITERAL;
+    }
+
+    private void addParameter(Value v) {
+        values.add(v);
+        buff.append('?');
+        last = LITERAL;
+    }
+
+    private boolean copyQuoted(char quote) {
+        int end = findEndQuote(quote);
+        if (end < 0) {
+            return false;
+        }
+        buff.append(sql, pos, end + 1);
+        pos = end + 1;
+        return true;
+    }
+
+    private int findEndQuote(char quote) {
+        int len = sql.length();
+        for (int i = pos + 1; i < len; i++) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < len && sql.charAt(i + 1) == quote) {
+                    i++;
+                } else {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private boolean readString() {
+        if (!isReplaceable()) {
+            last = LITERAL;
+            return copyQuoted('\'');
+        }
+        int end = findEndQuote('\'');
+        if (end < 0) {
+            return false;
+        }
+        String s = sql.substring(pos + 1, end);
+        if (s.indexOf('\'') >= 0) {
+            s = s.replace("''", "'");
+        }
+        pos = end + 1;
+        addParameter(ValueString.get(s));
+        return true;
+    }
+
+    private void readNumber() {
+        int len = sql.length();
+        int start = pos;
+        while (pos < len && sql.charAt(pos) >= '0' && sql.charAt(pos) <= '9') {
+            pos++;
+        }
+        if (pos < len) {
+            char c = sql.charAt(pos);
+            if (c == '.' || c == '_' || Character.isLetterOrDigit(c)) {
+                // decimal or floating point number, or something else
+                while (pos < len && (sql.charAt(pos) == '.' ||
+                        sql.charAt(pos) == '_' ||
+                        Character.isLetterOrDigit(sql.charAt(pos)))) {
+                    pos++;
+                }
+                buff.append(sql, start, pos);
+                last = LITERAL;
+                return;
+            }
+        }
+        String s = sql.substring(start, pos);
+        if (isReplaceable() && pos - start < 10) {
+            addParameter(ValueInt.get(Integer.parseInt(s)));
+        } else {
+            buff.append(s);
+            last = LITERAL;
+        }
+    }
+
+}
@@ -58,6 +58,7 @@ import org.h2.command.ddl.DropUserDataType;
 import org.h2.command.ddl.DropView;
 import org.h2.command.ddl.GrantRevoke;
 import org.h2.command.ddl.PrepareProcedure;
+import org.h2.command.ddl.RefreshMaterializedView;
 import org.h2.command.ddl.SetComment;
 import org.h2.command.ddl.TruncateTable;
 import org.h2.command.dml.AlterSequence;
@@ -425,6 +426,8 @@ public class Parser {
                     c = parseReleaseSavepoint();
                 } else if (readIf("REPLACE")) {
                     c = parseReplace();
+                } else if (readIf("REFRESH")) {
+                    c = parseRefresh();
                 }
                 break;
             case 's':
@@ -800,10 +803,18 @@ public class Parser {
     }
 
     private IndexColumn[] parseIndexColumnList() {
+        return parseIndexColumnList(false);
+    }
+
+    private IndexColumn[] parseIndexColumnList(boolean allowExpressions) {
         ArrayList<IndexColumn> columns = New.arrayList();
         do {
             IndexColumn column = new IndexColumn();
-            column.columnName = readColumnIdentifier();
+            if (allowExpressions && !isIndexColumnName()) {
+                column.expression = readExpression();
+            } else {
+                column.columnName = readColumnIdentifier();
+            }
             columns.add(column);
             if (readIf("ASC")) {
                 // ignore
@@ -823,6 +834,20 @@ public class Parser {
         return columns.toArray(new IndexColumn[columns.size()]);
     }
 
+    private boolean isIndexColumnName() {
+        if (currentTokenType != IDENTIFIER) {
+            return false;
+        }
+        // need to read ahead, it could be a function such as UPPER(NAME)
+        int start = lastParseIndex;
+        read();
+        boolean name = isToken(",") || isToken(")") || isToken("ASC") ||
+                isToken("DESC") || isToken("NULLS");
+        parseIndex = start;
+        read();
+        return name;
+    }
+
     private String[] parseColumnList() {
         ArrayList<String> columns = New.arrayList();
         do {
@@ -968,6 +993,11 @@ public class Parser {
                 p.setValue(paramValues.get(i));
             }
         }
+        if (prep instanceof Query) {
+            // the parameters are replaced with the (empty) list of the
+            // outer statement, so results can't be compared by parameter
+            ((Query) prep).disableCache();
+        }
         return prep;
     }
 
@@ -1342,7 +1372,11 @@ public class Parser {
     }
 
     private Prepared parseDrop() {
-        if (readIf("TABLE")) {
+        boolean materialized = readIf("MATERIALIZED");
+        if (materialized) {
+            read("VIEW");
+        }
+        if (materialized || readIf("TABLE")) {
             boolean ifExists = readIfExists(false);
             String tableName = readIdentifierWithSchema();
             DropTable command = new DropTable(session, getSchema());
@@ -1964,6 +1998,10 @@ public class Parser {
         Select command = new Select(session);
         int start = lastParseIndex;
         Select oldSelect = currentSelect;
+        if (oldSelect != null) {
+            oldSelect.setNestedQuery();
+            command.setNestedQuery();
+        }
         currentSelect = command;
         currentPrepared = command;
         if (fromFirst) {
@@ -2320,6 +2358,7 @@ public class Parser {
                     distinct);
         }
         read(")");
+        currentSelect.addAggregate(r);
         return r;
     }
 
@@ -2375,6 +2414,7 @@ public class Parser {
         params.toArray(list);
         JavaAggregate agg = new JavaAggregate(aggregate, list, currentSelect);
         currentSelect.setGroupQuery();
+        currentSelect.addAggregate(agg);
         return agg;
     }
 
@@ -4098,7 +4138,10 @@ public class Parser {
             orReplace = true;
         }
         boolean force = readIf("FORCE");
-        if (readIf("VIEW")) {
+        if (readIf("MATERIALIZED")) {
+            read("VIEW");
+            return parseCreateMaterializedView();
+        } else if (readIf("VIEW")) {
             return parseCreateView(force, orReplace);
         } else if (readIf("ALIAS")) {
             return parseCreateFunctionAlias(force);
@@ -4207,7 +4250,14 @@ public class Parser {
             command.setIndexName(indexName);
             command.setComment(readCommentIf());
             read("(");
-            command.setIndexColumns(parseIndexColumnList());
+            command.setIndexColumns(parseIndexColumnList(true));
+            if (readIf("INCLUDE")) {
+                read("(");
+                command.setIncludeColumnNames(parseColumnList());
+            }
+            if (readIf("WHERE")) {
+                command.setCondition(readExpression());
+            }
             return command;
         }
     }
@@ -5741,6 +5791,34 @@ public class Parser {
         return command;
     }
 
+    private CreateTable parseCreateMaterializedView() {
+        boolean ifNotExists = readIfNoExists();
+        String tableName = readIdentifierWithSchema();
+        CreateTable command = new CreateTable(session, getSchema());
+        command.setPersistIndexes(
+                database.getDefaultTableType() == Table.TYPE_CACHED);
+        command.setIfNotExists(ifNotExists);
+        command.setTableName(tableName);
+        command.setComment(readCommentIf());
+        if (readIf("(")) {
+            do {
+                String columnName = readColumnIdentifier();
+                command.addColumn(parseColumnForTable(columnName, true));
+            } while (readIfMore());
+        }
+        command.setMaterializedView(readIf("INCREMENTAL"));
+        read("AS");
+        command.setQuery(parseSelect());
+        return command;
+    }
+
+    private RefreshMaterializedView parseRefresh() {
+        read("MATERIALIZED");
+        read("VIEW");
+        Table table = readTableOrView();
+        return new RefreshMaterializedView(session, table);
+    }
+
     private CreateTable parseCreateTable(boolean temp, boolean globalTemp,
             boolean persistIndexes) {
         boolean ifNotExists = readIfNoExists();
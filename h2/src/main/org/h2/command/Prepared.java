@@ -212,6 +212,17 @@ public abstract class Prepared {
         throw DbException.get(ErrorCode.METHOD_ONLY_ALLOWED_FOR_QUERY);
     }
 
+    /**
+     * Execute the query lazily, if this is possible. A lazy result computes
+     * the rows while they are read.
+     *
+     * @param maxrows the maximum number of rows to return
+     * @return the lazy result, or null if the query can not be run lazily
+     */
+    public ResultInterface queryLazy(int maxrows) {
+        return null;
+    }
+
     /**
      * Set the SQL statement.
      *
@@ -25,6 +25,7 @@ import org.h2.message.DbException;
 import org.h2.schema.Schema;
 import org.h2.table.Column;
 import org.h2.table.IndexColumn;
+import org.h2.table.IndexExpressionColumn;
 import org.h2.table.Table;
 import org.h2.table.TableFilter;
 import org.h2.util.New;
@@ -321,7 +322,8 @@ public class AlterTableAddConstraint extends SchemaCommand {
 
     private static boolean canUseUniqueIndex(Index idx, Table table,
             IndexColumn[] cols) {
-        if (idx.getTable() != table || !idx.getIndexType().isUnique()) {
+        if (idx.getTable() != table || !idx.getIndexType().isUnique() ||
+                idx.getIndexType().getCondition() != null) {
             return false;
         }
         Column[] indexCols = idx.getColumns();
@@ -348,7 +350,17 @@ public class AlterTableAddConstraint extends SchemaCommand {
             // can't use the scan index or index of another table
             return false;
         }
+        if (existingIndex.getIndexType().getCondition() != null) {
+            // a partial index doesn't contain all rows
+            return false;
+        }
         Column[] indexCols = existingIndex.getColumns();
+        for (Column c : indexCols) {
+            if (c instanceof IndexExpressionColumn) {
+                // the rows that are searched don't contain the expression
+                return false;
+            }
+        }
 
         if (moreColumnsOk) {
             if (indexCols.length < cols.length) {
@@ -29,6 +29,7 @@ import org.h2.schema.SchemaObject;
 import org.h2.schema.Sequence;
 import org.h2.schema.TriggerObject;
 import org.h2.table.Column;
+import org.h2.table.MaterializedView;
 import org.h2.table.Table;
 import org.h2.table.TableView;
 import org.h2.util.New;
@@ -221,6 +222,16 @@ public class AlterTableAlterColumn extends SchemaCommand {
         if (table.isTemporary()) {
             throw DbException.getUnsupportedException("TEMP TABLE");
         }
+        if (table.getMaterializedView() != null) {
+            throw DbException.getUnsupportedException("MATERIALIZED VIEW");
+        }
+        ArrayList<MaterializedView> materializedViews =
+                table.getMaterializedViews();
+        if (materializedViews != null && materializedViews.size() > 0) {
+            throw DbException.getUnsupportedException(
+                    "TABLE WITH MATERIALIZED VIEW " +
+                    materializedViews.get(0).getTable().getSQL());
+        }
         Database db = session.getDatabase();
         String baseName = table.getName();
         String tempName = db.getTempTableName(baseName, session);
@@ -14,6 +14,7 @@ import org.h2.engine.Session;
 import org.h2.expression.Parameter;
 import org.h2.result.ResultInterface;
 import org.h2.table.Column;
+import org.h2.table.Histogram;
 import org.h2.table.Table;
 import org.h2.util.StatementBuilder;
 import org.h2.value.Value;
@@ -88,6 +89,7 @@ public class Analyze extends DefineCommand {
             return;
         }
         Database db = session.getDatabase();
+        int buckets = db.getSettings().analyzeHistogram;
         StatementBuilder buff = new StatementBuilder("SELECT ");
         for (Column col : columns) {
             buff.appendExceptFirst(", ");
@@ -100,6 +102,19 @@ public class Analyze extends DefineCommand {
                 buff.append("SELECTIVITY(").append(col.getSQL()).append(')');
             }
         }
+        if (buckets > 0) {
+            // the histograms are built from the same sample
+            buff.append(", COUNT(*)");
+            for (Column col : columns) {
+                int type = col.getType();
+                if (type == Value.BLOB || type == Value.CLOB) {
+                    buff.append(", MAX(NULL)");
+                } else {
+                    buff.append(", HISTOGRAM(").append(col.getSQL()).
+                            append(')');
+                }
+            }
+        }
         buff.append(" FROM ").append(table.getSQL());
         if (sample > 0) {
             buff.append(" LIMIT ? SAMPLE_SIZE ? ");
@@ -113,13 +128,25 @@ public class Analyze extends DefineCommand {
         }
         ResultInterface result = command.query(0);
         result.next();
+        Value[] row = result.currentRow();
         for (int j = 0; j < columns.length; j++) {
-            Value v = result.currentRow()[j];
+            Value v = row[j];
             if (v != ValueNull.INSTANCE) {
                 int selectivity = v.getInt();
                 columns[j].setSelectivity(selectivity);
             }
         }
+        int rowCount = buckets > 0 ? row[columns.length].getInt() : 0;
+        for (int j = 0; j < columns.length; j++) {
+            Histogram histogram = null;
+            if (rowCount > 0) {
+                Value v = row[columns.length + 1 + j];
+                if (v != ValueNull.INSTANCE) {
+                    histogram = Histogram.build(db, v, rowCount, buckets);
+                }
+            }
+            columns[j].setHistogram(histogram);
+        }
         if (manual) {
             db.updateMeta(session, table);
         } else {
@@ -130,6 +157,7 @@ public class Analyze extends DefineCommand {
                 // then we can't update the statistics because
                 // that would unlock all locked objects
                 synchronized (sysSession) {
+                    db.lockMeta(sysSession);
                     synchronized (db) {
                         db.updateMeta(sysSession, table);
                         sysSession.commit(true);
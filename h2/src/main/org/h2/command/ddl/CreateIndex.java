@@ -5,17 +5,23 @@
  */
 package org.h2.command.ddl;
 
+import java.util.HashSet;
 import org.h2.api.ErrorCode;
 import org.h2.command.CommandInterface;
 import org.h2.engine.Constants;
 import org.h2.engine.Database;
+import org.h2.engine.DbObject;
 import org.h2.engine.Right;
 import org.h2.engine.Session;
+import org.h2.expression.Expression;
+import org.h2.expression.ExpressionVisitor;
 import org.h2.index.IndexType;
 import org.h2.message.DbException;
 import org.h2.schema.Schema;
 import org.h2.table.IndexColumn;
 import org.h2.table.Table;
+import org.h2.table.TableFilter;
+import org.h2.util.New;
 
 /**
  * This class represents the statement
@@ -26,6 +32,8 @@ public class CreateIndex extends SchemaCommand {
     private String tableName;
     private String indexName;
     private IndexColumn[] indexColumns;
+    private String[] includeColumnNames;
+    private Expression condition;
     private boolean primaryKey, unique, hash, spatial;
     private boolean ifNotExists;
     private String comment;
@@ -50,6 +58,14 @@ public class CreateIndex extends SchemaCommand {
         this.indexColumns = columns;
     }
 
+    public void setIncludeColumnNames(String[] columnNames) {
+        this.includeColumnNames = columnNames;
+    }
+
+    public void setCondition(Expression condition) {
+        this.condition = condition;
+    }
+
     @Override
     public int update() {
         if (!transactional) {
@@ -91,11 +107,77 @@ public class CreateIndex extends SchemaCommand {
             indexType = IndexType.createNonUnique(persistent, hash, spatial);
         }
         IndexColumn.mapColumns(indexColumns, table);
+        for (IndexColumn c : indexColumns) {
+            if (c.expression != null) {
+                if (primaryKey || hash || spatial) {
+                    throw DbException.getUnsupportedException(
+                            c.expression.getSQL());
+                }
+                if (!table.isMVStore()) {
+                    throw DbException.getUnsupportedException(
+                            "expression index with MV_STORE=FALSE");
+                }
+                TableFilter filter = new TableFilter(session, table, null,
+                        false, null);
+                Expression expr = mapExpression(c.expression, table, filter);
+                c.column = table.addIndexExpressionColumn(expr, filter);
+                c.columnName = c.column.getName();
+            }
+        }
+        if (includeColumnNames != null) {
+            if (primaryKey || hash || spatial) {
+                throw DbException.getUnsupportedException("INCLUDE");
+            }
+            IndexColumn[] includeColumns =
+                    new IndexColumn[includeColumnNames.length];
+            for (int i = 0; i < includeColumns.length; i++) {
+                IndexColumn col = new IndexColumn();
+                col.columnName = includeColumnNames[i];
+                includeColumns[i] = col;
+            }
+            IndexColumn.mapColumns(includeColumns, table);
+            indexType.setIncludeColumns(includeColumns);
+        }
+        if (condition != null) {
+            if (primaryKey || hash || spatial) {
+                throw DbException.getUnsupportedException("WHERE");
+            }
+            TableFilter filter = new TableFilter(session, table, null, false,
+                    null);
+            condition = mapExpression(condition, table, filter);
+            // used to check if a query implies the condition
+            condition.createIndexConditions(session, filter);
+            indexType.setCondition(condition, filter);
+        }
         table.addIndex(session, indexName, id, indexColumns, indexType, create,
                 comment);
         return 0;
     }
 
+    /**
+     * Map and optimize an expression of the index. The expression may only
+     * depend on the columns of the table, and needs to be deterministic.
+     *
+     * @param expr the expression
+     * @param table the table
+     * @param filter the table filter to map the columns to
+     * @return the optimized expression
+     */
+    private Expression mapExpression(Expression expr, Table table,
+            TableFilter filter) {
+        expr.mapColumns(filter, 0);
+        expr = expr.optimize(session);
+        HashSet<DbObject> dependencies = New.hashSet();
+        expr.isEverything(
+                ExpressionVisitor.getDependenciesVisitor(dependencies));
+        dependencies.remove(table);
+        if (!expr.isEverything(ExpressionVisitor.DETERMINISTIC_VISITOR) ||
+                dependencies.size() > 0) {
+            throw DbException.getUnsupportedException(expr.getSQL());
+        }
+        return expr;
+    }
+
     public void setPrimaryKey(boolean b) {
         this.primaryKey = b;
     }
@@ -21,6 +21,7 @@ import org.h2.schema.Schema;
 import org.h2.schema.Sequence;
 import org.h2.table.Column;
 import org.h2.table.IndexColumn;
+import org.h2.table.MaterializedView;
 import org.h2.table.Table;
 import org.h2.util.New;
 import org.h2.value.DataType;
@@ -40,6 +41,8 @@ public class CreateTable extends SchemaCommand {
     private Query asQuery;
     private String comment;
     private boolean sortedInsertMode;
+    private boolean materialized;
+    private boolean incremental;
 
     public CreateTable(Session session, Schema schema) {
         super(session, schema);
@@ -51,6 +54,17 @@ public class CreateTable extends SchemaCommand {
         this.asQuery = query;
     }
 
+    /**
+     * Create a materialized view that contains the rows of the query.
+     *
+     * @param incremental whether the rows should be updated when the base
+     *            table is changed
+     */
+    public void setMaterializedView(boolean incremental) {
+        this.materialized = true;
+        this.incremental = incremental;
+    }
+
     public void setTemporary(boolean temporary) {
         data.temporary = temporary;
     }
@@ -135,6 +149,12 @@ public class CreateTable extends SchemaCommand {
         data.create = create;
         data.session = session;
         Table table = getSchema().createTable(data);
+        MaterializedView view = null;
+        if (materialized) {
+            view = new MaterializedView(table, asQuery.getPlanSQL(),
+                    incremental);
+            table.setMaterializedView(view);
+        }
         ArrayList<Sequence> sequences = New.arrayList();
         for (Column c : data.columns) {
             if (c.isAutoIncrement()) {
@@ -170,7 +190,13 @@ public class CreateTable extends SchemaCommand {
                 command.setTransactional(transactional);
                 command.update();
             }
-            if (asQuery != null) {
+            if (view != null) {
+                view.init(session);
+                if (!db.isStarting()) {
+                    view.createGroupIndex(session, transactional);
+                    view.refresh(session);
+                }
+            } else if (asQuery != null) {
                 boolean old = session.isUndoLogEnabled();
                 try {
                     session.setUndoLogEnabled(false);
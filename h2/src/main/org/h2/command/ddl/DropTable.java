@@ -15,6 +15,7 @@ import org.h2.engine.Right;
 import org.h2.engine.Session;
 import org.h2.message.DbException;
 import org.h2.schema.Schema;
+import org.h2.table.MaterializedView;
 import org.h2.table.Table;
 import org.h2.table.TableView;
 import org.h2.util.StatementBuilder;
@@ -75,11 +76,23 @@ public class DropTable extends SchemaCommand {
             }
             if (dropAction == ConstraintReferential.RESTRICT) {
                 ArrayList<TableView> views = table.getViews();
-                if (views != null && views.size() > 0) {
+                ArrayList<MaterializedView> materializedViews =
+                        table.getMaterializedViews();
+                if (views != null && views.size() > 0 ||
+                        materializedViews != null &&
+                        materializedViews.size() > 0) {
                     StatementBuilder buff = new StatementBuilder();
-                    for (TableView v : views) {
-                        buff.appendExceptFirst(", ");
-                        buff.append(v.getName());
+                    if (views != null) {
+                        for (TableView v : views) {
+                            buff.appendExceptFirst(", ");
+                            buff.append(v.getName());
+                        }
+                    }
+                    if (materializedViews != null) {
+                        for (MaterializedView v : materializedViews) {
+                            buff.appendExceptFirst(", ");
+                            buff.append(v.getTable().getName());
+                        }
                     }
                     throw DbException.get(ErrorCode.CANNOT_DROP_2, tableName, buff.toString());
                 }
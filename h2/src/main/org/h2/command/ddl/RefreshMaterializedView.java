@@ -0,0 +1,46 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.command.ddl;
+
+import org.h2.api.ErrorCode;
+import org.h2.command.CommandInterface;
+import org.h2.engine.Right;
+import org.h2.engine.Session;
+import org.h2.message.DbException;
+import org.h2.table.MaterializedView;
+import org.h2.table.Table;
+
+/**
+ * This class represents the statement
+ * REFRESH MATERIALIZED VIEW
+ */
+public class RefreshMaterializedView extends DefineCommand {
+
+    private final Table table;
+
+    public RefreshMaterializedView(Session session, Table table) {
+        super(session);
+        this.table = table;
+    }
+
+    @Override
+    public int update() {
+        session.commit(true);
+        MaterializedView view = table.getMaterializedView();
+        if (view == null) {
+            throw DbException.get(ErrorCode.VIEW_NOT_FOUND_1, table.getSQL());
+        }
+        session.getUser().checkRight(table, Right.INSERT | Right.DELETE);
+        view.refresh(session);
+        return 0;
+    }
+
+    @Override
+    public int getType() {
+        return CommandInterface.REFRESH_MATERIALIZED_VIEW;
+    }
+
+}
@@ -5,11 +5,14 @@
  */
 package org.h2.command.ddl;
 
+import java.util.ArrayList;
+
 import org.h2.api.ErrorCode;
 import org.h2.command.CommandInterface;
 import org.h2.engine.Right;
 import org.h2.engine.Session;
 import org.h2.message.DbException;
+import org.h2.table.MaterializedView;
 import org.h2.table.Table;
 
 /**
@@ -35,8 +38,17 @@ public class TruncateTable extends DefineCommand {
             throw DbException.get(ErrorCode.CANNOT_TRUNCATE_1, table.getSQL());
         }
         session.getUser().checkRight(table, Right.DELETE);
+        table.checkRowChangesAllowed();
         table.lock(session, true, true);
         table.truncate(session);
+        ArrayList<MaterializedView> views = table.getMaterializedViews();
+        if (views != null) {
+            for (MaterializedView view : views) {
+                if (view.isIncremental()) {
+                    view.refresh(session);
+                }
+            }
+        }
         return 0;
     }
 
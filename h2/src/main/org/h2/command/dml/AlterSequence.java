@@ -104,6 +104,7 @@ public class AlterSequence extends SchemaCommand {
         // would keep other transactions from using the sequence
         Session sysSession = db.getSystemSession();
         synchronized (sysSession) {
+            db.lockMeta(sysSession);
             synchronized (db) {
                 db.updateMeta(sysSession, sequence);
                 sysSession.commit(true);
@@ -54,6 +54,7 @@ public class Delete extends Prepared {
         tableFilter.reset();
         Table table = tableFilter.getTable();
         session.getUser().checkRight(table, Right.DELETE);
+        table.checkRowChangesAllowed();
         table.fire(session, Trigger.DELETE, true);
         table.lock(session, true, false);
         RowList rows = new RowList(session);
@@ -76,6 +76,10 @@ public class Explain extends Prepared {
                         mvStore.statisticsStart();
                     }
                 }
+                if (command instanceof Query) {
+                    // a cached result would not read any rows
+                    ((Query) command).disableCache();
+                }
                 if (command.isQuery()) {
                     command.query(maxrows);
                 } else {
@@ -121,6 +121,7 @@ public class Insert extends Prepared implements ResultTarget {
 
     private int insertRows() {
         session.getUser().checkRight(table, Right.INSERT);
+        table.checkRowChangesAllowed();
         setCurrentRowNumber(0);
         table.fire(session, Trigger.INSERT, true);
         rowNumber = 0;
@@ -361,6 +362,9 @@ public class Insert extends Prepared implements ResultTarget {
     private Index searchForUpdateIndex() {
         Index foundIndex = null;
         for (Index index : table.getIndexes()) {
+            if (index.getIndexType().getCondition() != null) {
+                continue;
+            }
             if (index.getIndexType().isPrimaryKey() || index.getIndexType().isUnique()) {
                 for (Column indexColumn : index.getColumns()) {
                     for (Column insertColumn : columns) {
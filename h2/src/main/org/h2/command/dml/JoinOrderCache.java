@@ -0,0 +1,101 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.command.dml;
+
+import org.h2.engine.Database;
+import org.h2.util.SmallLRUCache;
+
+/**
+ * A cache of the join orders the optimizer found, shared by all sessions of a
+ * database. The key is the list of table filters (with the join conditions)
+ * and the condition of the query, so that the same query in another session
+ * does not need to evaluate all possible join orders again. The cache is
+ * cleared when the database meta data changes, and a join order is not used
+ * any longer if the number of rows of one of the tables changed a lot.
+ */
+public class JoinOrderCache {
+
+    private final Database database;
+    private final SmallLRUCache<String, Entry> cache;
+    private long modificationMetaId;
+
+    /**
+     * Create a new cache.
+     *
+     * @param database the database
+     * @param size the maximum number of entries
+     */
+    public JoinOrderCache(Database database, int size) {
+        this.database = database;
+        cache = SmallLRUCache.newInstance(size);
+        modificationMetaId = database.getModificationMetaId();
+    }
+
+    /**
+     * Get the join order for this query.
+     *
+     * @param key the key
+     * @param rowCounts the current estimated number of rows of the tables
+     * @return the positions of the filters in the join order, or null
+     */
+    synchronized int[] get(String key, long[] rowCounts) {
+        checkMetaId();
+        Entry e = cache.get(key);
+        if (e == null) {
+            return null;
+        }
+        for (int i = 0; i < rowCounts.length; i++) {
+            long a = e.rowCounts[i], b = rowCounts[i];
+            if (a > 2 * b + 10 || b > 2 * a + 10) {
+                cache.remove(key);
+                return null;
+            }
+        }
+        return e.order;
+    }
+
+    /**
+     * Remember the join order for this query.
+     *
+     * @param key the key
+     * @param order the positions of the filters in the join order
+     * @param rowCounts the estimated number of rows of the tables
+     */
+    synchronized void put(String key, int[] order, long[] rowCounts) {
+        checkMetaId();
+        Entry e = new Entry();
+        e.order = order;
+        e.rowCounts = rowCounts;
+        cache.put(key, e);
+    }
+
+    private void checkMetaId() {
+        long id = database.getModificationMetaId();
+        if (id != modificationMetaId) {
+            cache.clear();
+            modificationMetaId = id;
+        }
+    }
+
+    /**
+     * A cached join order.
+     */
+    private static class Entry {
+
+        /**
+         * The positions of the filters in the join order.
+         */
+        int[] order;
+
+        /**
+         * The estimated number of rows of the tables at the time the join
+         * order was calculated.
+         */
+        long[] rowCounts;
+
+    }
+
+}
@@ -5,13 +5,16 @@
  */
 package org.h2.command.dml;
 
+import java.util.ArrayList;
 import java.util.Random;
 import org.h2.engine.Session;
 import org.h2.expression.Expression;
 import org.h2.table.Plan;
 import org.h2.table.PlanItem;
 import org.h2.table.TableFilter;
+import org.h2.table.TableFilter.TableFilterVisitor;
 import org.h2.util.BitField;
+import org.h2.util.New;
 import org.h2.util.Permutations;
 
 /**
@@ -23,6 +26,21 @@ class Optimizer {
     private static final int MAX_BRUTE_FORCE_FILTERS = 7;
     private static final int MAX_BRUTE_FORCE = 2000;
     private static final int MAX_GENETIC = 500;
+
+    /**
+     * The maximum number of partial plans to calculate using dynamic
+     * programming. For n filters, n * 2^(n-1) partial plans are calculated,
+     * so that joins of up to 12 tables are supported.
+     */
+    private static final int MAX_DYNAMIC_PROGRAMMING = 30000;
+
+    /**
+     * The minimum number of filters for the join order cache to be used. For
+     * fewer filters, calculating the cache key takes longer than trying all
+     * join orders.
+     */
+    private static final int MIN_JOIN_ORDER_CACHE_FILTERS = 3;
+
     private long start;
     private BitField switched;
 
@@ -80,6 +98,9 @@ class Optimizer {
             testPlan(filters);
         } else if (filters.length <= MAX_BRUTE_FORCE_FILTERS) {
             calculateBruteForceAll();
+        } else if (filters.length * (1L << (filters.length - 1)) <=
+                MAX_DYNAMIC_PROGRAMMING) {
+            calculateDynamicProgramming();
         } else {
             calculateBruteForceSome();
             random = new Random(0);
@@ -118,32 +139,106 @@ class Optimizer {
             for (int i = 0; i < bruteForce; i++) {
                 list[i].setUsed(true);
             }
-            // fill the remaining elements with the unused elements (greedy)
-            for (int i = bruteForce; i < filters.length; i++) {
-                double costPart = -1.0;
-                int bestPart = -1;
-                for (int j = 0; j < filters.length; j++) {
-                    if (!filters[j].isUsed()) {
-                        if (i == filters.length - 1) {
-                            bestPart = j;
-                            break;
-                        }
-                        list[i] = filters[j];
-                        Plan part = new Plan(list, i+1, condition);
-                        double costNow = part.calculateCost(session);
-                        if (costPart < 0 || costNow < costPart) {
-                            costPart = costNow;
-                            bestPart = j;
-                        }
+            fillGreedy(list, bruteForce);
+            testPlan(list);
+        }
+    }
+
+    /**
+     * Fill the remaining elements of the list with the filters that are not
+     * used yet, each time selecting the filter with the lowest cost.
+     *
+     * @param list the list of filters
+     * @param from the index of the first element to fill
+     */
+    private void fillGreedy(TableFilter[] list, int from) {
+        for (int i = from; i < filters.length; i++) {
+            double costPart = -1.0;
+            int bestPart = -1;
+            for (int j = 0; j < filters.length; j++) {
+                if (!filters[j].isUsed()) {
+                    if (i == filters.length - 1) {
+                        bestPart = j;
+                        break;
+                    }
+                    list[i] = filters[j];
+                    Plan part = new Plan(list, i+1, condition);
+                    double costNow = part.calculateCost(session);
+                    if (costPart < 0 || costNow < costPart) {
+                        costPart = costNow;
+                        bestPart = j;
                     }
                 }
-                filters[bestPart].setUsed(true);
-                list[i] = filters[bestPart];
             }
+            filters[bestPart].setUsed(true);
+            list[i] = filters[bestPart];
+        }
+    }
+
+    /**
+     * Calculate the best join order using dynamic programming over the sets
+     * of filters. The cost of a plan only depends on the cost of the plan for
+     * the filters joined before the last filter, and on the set of these
+     * filters, so the best plan for a set is the best plan for a smaller set
+     * plus one filter. The greedy plan is calculated first; it is used if
+     * calculating all sets takes too long compared to the cost of the query.
+     */
+    private void calculateDynamicProgramming() {
+        int n = filters.length;
+        TableFilter[] list = new TableFilter[n];
+        for (TableFilter f : filters) {
+            f.setUsed(false);
+        }
+        fillGreedy(list, 0);
+        testPlan(list);
+        int setCount = 1 << n;
+        // the best cost of each set, and the filter that is joined last
+        double[] setCost = new double[setCount];
+        int[] lastFilter = new int[setCount];
+        for (int set = 1; set < setCount; set++) {
+            if (canStop(set)) {
+                return;
+            }
+            int size = Integer.bitCount(set);
+            setCost[set] = Double.POSITIVE_INFINITY;
+            lastFilter[set] = -1;
+            for (int last = 0; last < n; last++) {
+                int before = set & ~(1 << last);
+                if (before == set || before != 0 &&
+                        lastFilter[before] < 0) {
+                    continue;
+                }
+                getJoinOrder(before, lastFilter, list);
+                list[size - 1] = filters[last];
+                Plan part = new Plan(list, size, condition);
+                double costNow = part.calculateCost(session);
+                if (costNow < setCost[set]) {
+                    setCost[set] = costNow;
+                    lastFilter[set] = last;
+                }
+            }
+        }
+        if (lastFilter[setCount - 1] >= 0) {
+            getJoinOrder(setCount - 1, lastFilter, list);
             testPlan(list);
         }
     }
 
+    /**
+     * Get the best join order of the given set of filters.
+     *
+     * @param set the set of filters
+     * @param lastFilter the filter that is joined last, for each set
+     * @param list the list where the filters are stored
+     */
+    private void getJoinOrder(int set, int[] lastFilter, TableFilter[] list) {
+        for (int i = Integer.bitCount(set) - 1; i >= 0; i--) {
+            int last = lastFilter[set];
+            list[i] = filters[last];
+            set &= ~(1 << last);
+        }
+    }
+
     private void calculateGenetic() {
         TableFilter[] best = new TableFilter[filters.length];
         TableFilter[] list = new TableFilter[filters.length];
@@ -226,7 +321,27 @@ class Optimizer {
      * Calculate the best query plan to use.
      */
     void optimize() {
-        calculateBestPlan();
+        JoinOrderCache joinOrderCache =
+                filters.length >= MIN_JOIN_ORDER_CACHE_FILTERS ?
+                session.getDatabase().getJoinOrderCache() : null;
+        if (joinOrderCache == null) {
+            calculateBestPlan();
+        } else {
+            String key = getJoinOrderKey();
+            long[] rowCounts = getRowCounts();
+            int[] order = joinOrderCache.get(key, rowCounts);
+            if (order != null) {
+                TableFilter[] list = new TableFilter[filters.length];
+                for (int i = 0; i < list.length; i++) {
+                    list[i] = filters[order[i]];
+                }
+                cost = -1;
+                testPlan(list);
+            } else {
+                calculateBestPlan();
+                joinOrderCache.put(key, getJoinOrder(), rowCounts);
+            }
+        }
         bestPlan.removeUnusableIndexConditions();
         TableFilter[] f2 = bestPlan.getFilters();
         topFilter = f2[0];
@@ -239,6 +354,51 @@ class Optimizer {
         }
     }
 
+    private String getJoinOrderKey() {
+        StringBuilder buff = new StringBuilder();
+        for (TableFilter f : filters) {
+            for (TableFilter j = f; j != null; j = j.getJoin()) {
+                buff.append(j.getPlanSQL(j != f)).append('\n');
+            }
+            buff.append(";\n");
+        }
+        if (condition != null) {
+            buff.append(condition.getSQL());
+        }
+        return buff.toString();
+    }
+
+    private long[] getRowCounts() {
+        final ArrayList<TableFilter> all = New.arrayList();
+        for (TableFilter f : filters) {
+            f.visit(new TableFilterVisitor() {
+                @Override
+                public void accept(TableFilter f) {
+                    all.add(f);
+                }
+            });
+        }
+        long[] rowCounts = new long[all.size()];
+        for (int i = 0; i < rowCounts.length; i++) {
+            rowCounts[i] = all.get(i).getTable().getRowCountApproximation();
+        }
+        return rowCounts;
+    }
+
+    private int[] getJoinOrder() {
+        TableFilter[] list = bestPlan.getFilters();
+        int[] order = new int[list.length];
+        for (int i = 0; i < list.length; i++) {
+            for (int j = 0; j < filters.length; j++) {
+                if (list[i] == filters[j]) {
+                    order[i] = j;
+                    break;
+                }
+            }
+        }
+        return order;
+    }
+
     public TableFilter getTopFilter() {
         return topFilter;
     }
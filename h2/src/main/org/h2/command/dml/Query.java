@@ -27,6 +27,7 @@ import org.h2.table.Table;
 import org.h2.table.TableFilter;
 import org.h2.util.New;
 import org.h2.value.Value;
+import org.h2.value.ValueArray;
 import org.h2.value.ValueInt;
 import org.h2.value.ValueNull;
 
@@ -245,12 +246,7 @@ public abstract class Query extends Prepared {
 
     private boolean sameResultAsLast(Session s, Value[] params,
             Value[] lastParams, long lastEval) {
-        if (!cacheableChecked) {
-            long max = getMaxDataModificationId();
-            noCache = max == Long.MAX_VALUE;
-            cacheableChecked = true;
-        }
-        if (noCache) {
+        if (!isResultCacheable()) {
             return false;
         }
         Database db = s.getDatabase();
@@ -299,11 +295,16 @@ public abstract class Query extends Prepared {
      */
     LocalResult query(int limit, ResultTarget target) {
         fireBeforeSelectTriggers();
-        if (noCache || !session.getDatabase().getOptimizeReuseResults()) {
+        if (noCache || !session.getDatabase().getOptimizeReuseResults() ||
+                target != null) {
+            // a cached result can not be written to the target
             return queryWithoutCache(limit, target);
         }
         Value[] params = getParameterValues();
-        long now = session.getDatabase().getModificationDataId();
+        Database db = session.getDatabase();
+        long now = db.getModificationDataId();
+        long metaId = db.getModificationMetaId();
+        ValueArray sharedKey = null;
         if (isEverything(ExpressionVisitor.DETERMINISTIC_VISITOR)) {
             if (lastResult != null && !lastResult.isClosed() &&
                     limit == lastLimit) {
@@ -316,6 +317,21 @@ public abstract class Query extends Prepared {
                     }
                 }
             }
+            QueryResultCache sharedCache = db.getQueryResultCache();
+            if (sharedCache != null && isSharedResultCacheable()) {
+                sharedKey = QueryResultCache.getKey(session, getPlanSQL(),
+                        params, limit);
+                LocalResult r = sharedCache.get(session, sharedKey,
+                        getMaxDataModificationId());
+                if (r != null) {
+                    lastParameters = params;
+                    closeLastResult();
+                    lastResult = r;
+                    this.lastEvaluated = now;
+                    lastLimit = limit;
+                    return r;
+                }
+            }
         }
         lastParameters = params;
         closeLastResult();
@@ -323,9 +339,26 @@ public abstract class Query extends Prepared {
         lastResult = r;
         this.lastEvaluated = now;
         lastLimit = limit;
+        if (sharedKey != null) {
+            db.getQueryResultCache().put(session, sharedKey, now, metaId, r);
+        }
         return r;
     }
 
+    private boolean isResultCacheable() {
+        if (!cacheableChecked) {
+            long max = getMaxDataModificationId();
+            noCache = max == Long.MAX_VALUE;
+            cacheableChecked = true;
+        }
+        return !noCache;
+    }
+
+    private boolean isSharedResultCacheable() {
+        return isResultCacheable() && QueryResultCache.canUse(session) &&
+                isEverything(ExpressionVisitor.INDEPENDENT_VISITOR);
+    }
+
     private void closeLastResult() {
         if (lastResult != null) {
             lastResult.close();
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.command.dml;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import org.h2.engine.Constants;
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.result.LocalResult;
+import org.h2.value.Value;
+import org.h2.value.ValueArray;
+import org.h2.value.ValueInt;
+import org.h2.value.ValueString;
+
+/**
+ * A query result cache that is shared by all sessions of a database. The
+ * results of deterministic queries are kept in memory, keyed by the query
+ * plan, the parameter values and the row limit. A result is only re-used as
+ * long as none of the tables the query reads from was modified since it was
+ * computed. If the cache is full, the least recently used results are
+ * removed.
+ */
+public class QueryResultCache {
+
+    private final long maxMemory;
+    private final LinkedHashMap<ValueArray, CachedResult> map =
+            new LinkedHashMap<ValueArray, CachedResult>(16, 0.75f, true);
+    private long memory;
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxMemoryKb the maximum memory to use, in KB
+     */
+    public QueryResultCache(int maxMemoryKb) {
+        this.maxMemory = maxMemoryKb * 1024L;
+    }
+
+    /**
+     * Check whether the session may use the shared cache. Sessions with
+     * uncommitted changes see different data than other sessions, and the
+     * local temporary tables of a session could be confused with tables of
+     * the same name of other sessions.
+     *
+     * @param session the session
+     * @return true if the session may use the cache
+     */
+    static boolean canUse(Session session) {
+        Database db = session.getDatabase();
+        if (db.isMultiVersion() && db.getMvStore() == null) {
+            // committing does not change the modification id of the tables
+            return false;
+        }
+        return !session.hasUncommittedChanges() &&
+                session.getLocalTempTables().size() == 0;
+    }
+
+    /**
+     * Create the key for the given query. The user is part of the key, as
+     * the rows of the system tables depend on the access rights of the user.
+     *
+     * @param session the session
+     * @param planSQL the plan of the query
+     * @param params the parameter values
+     * @param limit the row limit
+     * @return the key
+     */
+    static ValueArray getKey(Session session, String planSQL, Value[] params,
+            int limit) {
+        Value[] list = new Value[params.length + 3];
+        list[0] = ValueString.get(planSQL);
+        list[1] = ValueInt.get(limit);
+        list[2] = ValueString.get(session.getUser().getName());
+        System.arraycopy(params, 0, list, 3, params.length);
+        return ValueArray.get(list);
+    }
+
+    /**
+     * Get a copy of a cached result, if it is still up to date.
+     *
+     * @param session the session that reads the result
+     * @param key the key
+     * @param maxDataModificationId the last modification id of the tables the
+     *            query reads from
+     * @return the result, or null if not found
+     */
+    synchronized LocalResult get(Session session, ValueArray key,
+            long maxDataModificationId) {
+        CachedResult c = map.get(key);
+        if (c == null) {
+            return null;
+        }
+        Database db = session.getDatabase();
+        if (maxDataModificationId > c.evaluated ||
+                db.getModificationMetaId() != c.metaId) {
+            remove(key);
+            return null;
+        }
+        LocalResult r = c.result.createShallowCopy(session);
+        if (r != null) {
+            r.reset();
+        }
+        return r;
+    }
+
+    /**
+     * Add a result to the cache. Results that do not fit in memory, or that
+     * can not be shared, are not added.
+     *
+     * @param session the session that computed the result
+     * @param key the key
+     * @param evaluated the modification id of the database at the time the
+     *            query was started
+     * @param metaId the meta data modification id at that time
+     * @param result the result
+     */
+    void put(Session session, ValueArray key, long evaluated, long metaId,
+            LocalResult result) {
+        if (result.getRowCount() > session.getDatabase().getMaxMemoryRows()) {
+            return;
+        }
+        LocalResult copy = result.createShallowCopy(session);
+        if (copy == null) {
+            return;
+        }
+        long mem = key.getMemory();
+        while (copy.next()) {
+            Value[] row = copy.currentRow();
+            mem += Constants.MEMORY_ROW + row.length * Constants.MEMORY_POINTER;
+            for (Value v : row) {
+                mem += v.getMemory();
+            }
+            if (mem > maxMemory) {
+                return;
+            }
+        }
+        copy.reset();
+        synchronized (this) {
+            remove(key);
+            CachedResult c = new CachedResult();
+            c.result = copy;
+            c.evaluated = evaluated;
+            c.metaId = metaId;
+            c.memory = mem;
+            map.put(key, c);
+            memory += mem;
+            Iterator<CachedResult> it = map.values().iterator();
+            while (memory > maxMemory && it.hasNext()) {
+                memory -= it.next().memory;
+                it.remove();
+            }
+        }
+    }
+
+    private void remove(ValueArray key) {
+        CachedResult c = map.remove(key);
+        if (c != null) {
+            memory -= c.memory;
+        }
+    }
+
+    /**
+     * A cached result.
+     */
+    private static class CachedResult {
+
+        /**
+         * The result, used as the template for the copies.
+         */
+        LocalResult result;
+
+        /**
+         * The modification id of the database when the query was started.
+         */
+        long evaluated;
+
+        /**
+         * The meta data modification id of the database when the query was
+         * started.
+         */
+        long metaId;
+
+        /**
+         * The estimated memory used.
+         */
+        long memory;
+
+    }
+
+}
@@ -81,6 +81,7 @@ public class Replace extends Prepared {
         int count;
         session.getUser().checkRight(table, Right.INSERT);
         session.getUser().checkRight(table, Right.UPDATE);
+        table.checkRowChangesAllowed();
         setCurrentRowNumber(0);
         if (list.size() > 0) {
             count = 0;
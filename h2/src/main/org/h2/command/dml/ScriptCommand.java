@@ -289,7 +289,9 @@ public class ScriptCommand extends ScriptBase {
                         }
                     }
                 }
-                if (Table.TABLE.equals(tableType)) {
+                if (Table.TABLE.equals(tableType) &&
+                        table.getMaterializedView() == null) {
+                    // materialized views are re-computed when created
                     if (table.canGetRowCount()) {
                         String rowcount = "-- " +
                                 table.getRowCountApproximation() +
@@ -9,25 +9,33 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 
 import org.h2.api.ErrorCode;
 import org.h2.api.Trigger;
 import org.h2.command.CommandInterface;
+import org.h2.command.Prepared;
 import org.h2.engine.Constants;
 import org.h2.engine.Database;
+import org.h2.engine.DbObject;
 import org.h2.engine.Session;
 import org.h2.engine.SysProperties;
+import org.h2.expression.Aggregate;
 import org.h2.expression.Comparison;
 import org.h2.expression.ConditionAndOr;
 import org.h2.expression.Expression;
 import org.h2.expression.ExpressionColumn;
+import org.h2.expression.ExpressionCompiler;
 import org.h2.expression.ExpressionVisitor;
 import org.h2.expression.Parameter;
+import org.h2.expression.ValueExpression;
+import org.h2.index.BatchCursor;
 import org.h2.index.Cursor;
 import org.h2.index.Index;
 import org.h2.index.IndexCondition;
 import org.h2.index.IndexType;
 import org.h2.message.DbException;
+import org.h2.result.LazyResult;
 import org.h2.result.LocalResult;
 import org.h2.result.ResultInterface;
 import org.h2.result.ResultTarget;
@@ -39,12 +47,16 @@ import org.h2.table.ColumnResolver;
 import org.h2.table.IndexColumn;
 import org.h2.table.Table;
 import org.h2.table.TableFilter;
+import org.h2.util.IntArray;
 import org.h2.util.New;
 import org.h2.util.StatementBuilder;
 import org.h2.util.StringUtils;
+import org.h2.util.Task;
 import org.h2.util.ValueHashMap;
 import org.h2.value.Value;
 import org.h2.value.ValueArray;
+import org.h2.value.ValueInt;
+import org.h2.value.ValueLong;
 import org.h2.value.ValueNull;
 
 /**
@@ -83,6 +95,14 @@ public class Select extends Query {
     private boolean sortUsingIndex;
     private SortOrder sort;
     private int currentGroupRowId;
+    private HashSet<Column> referencedColumns;
+    private int distinctPrefix;
+    private Column distinctMinColumn;
+    private boolean isIndexRangeQuery, isRangeCountQuery;
+    private boolean isNestedQuery, isParallelQuery;
+    private Aggregate[] batchAggregates;
+    private int executeCount;
+    private final ArrayList<Expression> aggregates = New.arrayList();
 
     public Select(Session session) {
         super(session);
@@ -123,6 +143,22 @@ public class Select extends Query {
         isGroupQuery = true;
     }
 
+    /**
+     * Called for each aggregate function of this query.
+     *
+     * @param aggregate the aggregate function
+     */
+    public void addAggregate(Expression aggregate) {
+        aggregates.add(aggregate);
+    }
+
+    /**
+     * Called if this query is a subquery, or contains a subquery.
+     */
+    public void setNestedQuery() {
+        isNestedQuery = true;
+    }
+
     public void setGroupBy(ArrayList<Expression> group) {
         this.group = group;
     }
@@ -256,6 +292,9 @@ public class Select extends Query {
                     // does not allow scanning entries
                     continue;
                 }
+                if (isPartialIndex(index)) {
+                    continue;
+                }
                 if (isGroupSortedIndex(topTableFilter, index)) {
                     return index;
                 }
@@ -316,6 +355,15 @@ public class Select extends Query {
     }
 
     private void queryGroup(int columnCount, LocalResult result) {
+        if (isRangeCountQuery && queryRangeCount(columnCount, result)) {
+            return;
+        }
+        if (isParallelQuery && queryGroupParallel(columnCount, result)) {
+            return;
+        }
+        if (batchAggregates != null && queryGroupBatch(columnCount, result)) {
+            return;
+        }
         ValueHashMap<HashMap<Expression, Object>> groups =
                 ValueHashMap.newInstance();
         int rowNumber = 0;
@@ -323,37 +371,21 @@ public class Select extends Query {
         currentGroup = null;
         ValueArray defaultGroup = ValueArray.get(new Value[0]);
         int sampleSize = getSampleSizeValue(session);
+        int maxGroups = getMaxMemoryGroups();
+        LocalResult[] partitions = null;
         while (topTableFilter.next()) {
             setCurrentRowNumber(rowNumber + 1);
             if (condition == null ||
                     Boolean.TRUE.equals(condition.getBooleanValue(session))) {
-                Value key;
                 rowNumber++;
-                if (groupIndex == null) {
-                    key = defaultGroup;
-                } else {
-                    Value[] keyValues = new Value[groupIndex.length];
-                    // update group
-                    for (int i = 0; i < groupIndex.length; i++) {
-                        int idx = groupIndex[i];
-                        Expression expr = expressions.get(idx);
-                        keyValues[i] = expr.getValue(session);
-                    }
-                    key = ValueArray.get(keyValues);
-                }
-                HashMap<Expression, Object> values = groups.get(key);
-                if (values == null) {
-                    values = new HashMap<Expression, Object>();
-                    groups.put(key, values);
-                }
-                currentGroup = values;
-                currentGroupRowId++;
-                int len = columnCount;
-                for (int i = 0; i < len; i++) {
-                    if (groupByExpression == null || !groupByExpression[i]) {
-                        Expression expr = expressions.get(i);
-                        expr.updateAggregate(session);
+                Value key = getGroupKey(defaultGroup);
+                if (!updateGroup(groups, key, columnCount, maxGroups)) {
+                    // too many groups: process this row later
+                    if (partitions == null) {
+                        partitions =
+                                new LocalResult[Constants.GROUP_BY_PARTITIONS];
                     }
+                    spill(partitions, 0, key, getFilterRows(rowNumber));
                 }
                 if (sampleSize > 0 && rowNumber >= sampleSize) {
                     break;
@@ -363,6 +395,142 @@ public class Select extends Query {
         if (groupIndex == null && groups.size() == 0) {
             groups.put(defaultGroup, new HashMap<Expression, Object>());
         }
+        addGroupRows(groups, columnCount, result);
+        if (partitions != null) {
+            queryGroupPartitions(partitions, columnCount, result);
+        }
+    }
+
+    /**
+     * Aggregate the rows that were buffered because there were too many
+     * groups. The rows of each partition belong to a subset of the groups,
+     * and the partitions are aggregated one after the other. If a partition
+     * still contains too many groups, its remaining rows are split again,
+     * using other bits of the hash code of the group.
+     *
+     * @param partitions the buffered rows
+     * @param columnCount the number of columns
+     * @param result the result
+     */
+    private void queryGroupPartitions(LocalResult[] partitions,
+            int columnCount, LocalResult result) {
+        ValueArray defaultGroup = ValueArray.get(new Value[0]);
+        int maxGroups = getMaxMemoryGroups();
+        ArrayList<LocalResult[]> pending = New.arrayList();
+        IntArray levels = new IntArray();
+        pending.add(partitions);
+        levels.add(0);
+        while (pending.size() > 0) {
+            int last = pending.size() - 1;
+            partitions = pending.remove(last);
+            int level = levels.get(last) + 1;
+            levels.remove(last);
+            for (LocalResult p : partitions) {
+                if (p == null) {
+                    continue;
+                }
+                ValueHashMap<HashMap<Expression, Object>> groups =
+                        ValueHashMap.newInstance();
+                LocalResult[] remaining = null;
+                p.done();
+                while (p.next()) {
+                    Value[] filterRows = p.currentRow();
+                    setFilterRows(filterRows);
+                    Value key = getGroupKey(defaultGroup);
+                    if (!updateGroup(groups, key, columnCount, maxGroups)) {
+                        if (remaining == null) {
+                            remaining = new LocalResult[
+                                    Constants.GROUP_BY_PARTITIONS];
+                        }
+                        spill(remaining, level, key, filterRows);
+                    }
+                }
+                p.close();
+                addGroupRows(groups, columnCount, result);
+                if (remaining != null) {
+                    pending.add(remaining);
+                    levels.add(level);
+                }
+            }
+        }
+    }
+
+    /**
+     * Buffer the current rows of the tables in the partition of the group.
+     *
+     * @param partitions the partitions
+     * @param level the number of times the rows were already partitioned
+     * @param key the key of the group
+     * @param filterRows the current rows of the tables
+     */
+    private void spill(LocalResult[] partitions, int level, Value key,
+            Value[] filterRows) {
+        int bits = Integer.numberOfTrailingZeros(partitions.length);
+        int shift = 32 - bits * (level + 1);
+        int i = 0;
+        if (shift >= 0) {
+            // spread the hash code, and then use the next bits
+            int hash = key.hashCode() * 0x9e3779b9;
+            i = (hash >>> shift) & (partitions.length - 1);
+        }
+        if (partitions[i] == null) {
+            partitions[i] = createFilterRowsResult();
+        }
+        partitions[i].addRow(filterRows);
+    }
+
+    /**
+     * Get the key of the group of the current row.
+     *
+     * @param defaultGroup the key of the group if there is no GROUP BY
+     * @return the key
+     */
+    private Value getGroupKey(ValueArray defaultGroup) {
+        if (groupIndex == null) {
+            return defaultGroup;
+        }
+        Value[] keyValues = new Value[groupIndex.length];
+        for (int i = 0; i < groupIndex.length; i++) {
+            int idx = groupIndex[i];
+            Expression expr = expressions.get(idx);
+            keyValues[i] = expr.getValue(session);
+        }
+        return ValueArray.get(keyValues);
+    }
+
+    /**
+     * Update the aggregates of the group of the current row.
+     *
+     * @param groups the groups
+     * @param key the key of the group of the current row
+     * @param columnCount the number of columns
+     * @param maxGroups the maximum number of groups
+     * @return false if the row belongs to a new group, and there are already
+     *         too many groups
+     */
+    private boolean updateGroup(ValueHashMap<HashMap<Expression, Object>> groups,
+            Value key, int columnCount, int maxGroups) {
+        HashMap<Expression, Object> values = groups.get(key);
+        if (values == null) {
+            if (groups.size() >= maxGroups) {
+                return false;
+            }
+            values = new HashMap<Expression, Object>();
+            groups.put(key, values);
+        }
+        currentGroup = values;
+        currentGroupRowId++;
+        for (int i = 0; i < columnCount; i++) {
+            if (groupByExpression == null || !groupByExpression[i]) {
+                Expression expr = expressions.get(i);
+                expr.updateAggregate(session);
+            }
+        }
+        return true;
+    }
+
+    private void addGroupRows(ValueHashMap<HashMap<Expression, Object>> groups,
+            int columnCount, LocalResult result) {
         ArrayList<Value> keys = groups.keys();
         for (Value v : keys) {
             ValueArray key = (ValueArray) v;
@@ -387,6 +555,403 @@ public class Select extends Query {
         }
     }
 
+    /**
+     * Calculate the groups using multiple threads. The rows of the table are
+     * split into ranges of the row key, and each range is read by a copy of
+     * this query in a separate thread. The groups of the copies are then
+     * merged into the groups of this query.
+     *
+     * @param columnCount the number of columns
+     * @param result the result
+     * @return true if the query was run in parallel
+     */
+    private boolean queryGroupParallel(int columnCount, LocalResult result) {
+        if (sqlStatement == null || getSampleSizeValue(session) > 0) {
+            return false;
+        }
+        Index index = topTableFilter.getIndex();
+        ArrayList<IndexCondition> conditions =
+                topTableFilter.getIndexConditions();
+        long rowCount = index.getRowCount(session, conditions);
+        int threads = (int) Math.min(
+                session.getDatabase().getSettings().queryThreads,
+                rowCount / Constants.PARALLEL_QUERY_MIN_ROWS);
+        if (threads < 2) {
+            return false;
+        }
+        // the first key of each range
+        long[] keys = new long[threads];
+        for (int i = 1; i < threads; i++) {
+            Cursor c = index.findWithOffset(session, conditions,
+                    rowCount * i / threads);
+            if (c == null || !c.next()) {
+                // not supported, or there are uncommitted changes
+                return false;
+            }
+            keys[i] = c.getSearchRow().getKey();
+        }
+        Select[] copies = new Select[threads];
+        copies[0] = this;
+        String plan = getPlanSQL();
+        for (int i = 1; i < threads; i++) {
+            Prepared p = session.prepare(sqlStatement, true);
+            if (!(p instanceof Select) || !plan.equals(p.getPlanSQL())) {
+                return false;
+            }
+            for (Parameter param : p.getParameters()) {
+                Parameter original = parameters.get(param.getIndex());
+                param.setValue(original.getParamValue());
+            }
+            copies[i] = (Select) p;
+        }
+        Table table = topTableFilter.getTable();
+        Cursor[] cursors = new Cursor[threads];
+        for (int i = 0; i < threads; i++) {
+            SearchRow first = null, last = null;
+            if (i > 0) {
+                first = table.getTemplateSimpleRow(false);
+                first.setKey(keys[i]);
+            }
+            if (i < threads - 1) {
+                last = table.getTemplateSimpleRow(false);
+                last.setKey(keys[i + 1] - 1);
+            }
+            cursors[i] = index.find(session, first, last);
+        }
+        int maxGroups = getMaxMemoryGroups();
+        ArrayList<ValueHashMap<HashMap<Expression, Object>>> groups =
+                New.arrayList();
+        ArrayList<ValueHashMap<Row>> groupRows = New.arrayList();
+        for (int i = 0; i < threads; i++) {
+            groups.add(ValueHashMap.<HashMap<Expression, Object>>newInstance());
+            groupRows.add(ValueHashMap.<Row>newInstance());
+        }
+        ArrayList<Task> tasks = New.arrayList();
+        boolean ok;
+        try {
+            for (int i = 1; i < threads; i++) {
+                tasks.add(queryGroupRange(copies[i], cursors[i], groups.get(i),
+                        groupRows.get(i), columnCount, maxGroups));
+            }
+            ok = queryGroupRange(cursors[0], groups.get(0), groupRows.get(0),
+                    columnCount, maxGroups);
+            for (Task task : tasks) {
+                Exception e = task.getException();
+                if (e != null) {
+                    throw DbException.convert(e);
+                }
+                ok &= (Boolean) task.get();
+            }
+        } finally {
+            for (Task task : tasks) {
+                task.getException();
+            }
+        }
+        if (!ok) {
+            // too many groups
+            return false;
+        }
+        ValueHashMap<HashMap<Expression, Object>> merged = groups.get(0);
+        for (int i = 1; i < threads; i++) {
+            if (!mergeGroups(merged, copies[i], groups.get(i),
+                    groupRows.get(i), columnCount, maxGroups)) {
+                return false;
+            }
+        }
+        if (groupIndex == null && merged.size() == 0) {
+            merged.put(ValueArray.get(new Value[0]),
+                    new HashMap<Expression, Object>());
+        }
+        addGroupRows(merged, columnCount, result);
+        return true;
+    }
+
+    /**
+     * Calculate the groups of the rows of the given cursor in a new thread.
+     *
+     * @param copy the copy of the query
+     * @param cursor the cursor
+     * @param groups the groups
+     * @param groupRows receives the first row of each group
+     * @param columnCount the number of columns
+     * @param maxGroups the maximum number of groups
+     * @return the task
+     */
+    private static Task queryGroupRange(final Select copy, final Cursor cursor,
+            final ValueHashMap<HashMap<Expression, Object>> groups,
+            final ValueHashMap<Row> groupRows, final int columnCount,
+            final int maxGroups) {
+        Task task = new Task() {
+            @Override
+            public void call() {
+                result = copy.queryGroupRange(cursor, groups, groupRows,
+                        columnCount, maxGroups);
+            }
+        };
+        task.execute("H2 parallel query");
+        return task;
+    }
+
+    /**
+     * Calculate the groups of the rows of the given cursor.
+     *
+     * @param cursor the cursor
+     * @param groups the groups
+     * @param groupRows receives the first row of each group
+     * @param columnCount the number of columns
+     * @param maxGroups the maximum number of groups
+     * @return false if there are too many groups
+     */
+    private boolean queryGroupRange(Cursor cursor,
+            ValueHashMap<HashMap<Expression, Object>> groups,
+            ValueHashMap<Row> groupRows, int columnCount, int maxGroups) {
+        if (batchAggregates != null && cursor instanceof BatchCursor) {
+            HashMap<Expression, Object> values =
+                    new HashMap<Expression, Object>();
+            Row first = updateAggregates((BatchCursor) cursor, values);
+            if (first != null) {
+                ValueArray key = ValueArray.get(new Value[0]);
+                groups.put(key, values);
+                groupRows.put(key, first);
+            }
+            return true;
+        }
+        int rowNumber = 0;
+        setCurrentRowNumber(0);
+        currentGroup = null;
+        ValueArray defaultGroup = ValueArray.get(new Value[0]);
+        while (cursor.next()) {
+            Row row = cursor.get();
+            topTableFilter.set(row);
+            setCurrentRowNumber(rowNumber + 1);
+            if (condition == null ||
+                    Boolean.TRUE.equals(condition.getBooleanValue(session))) {
+                rowNumber++;
+                Value key = getGroupKey(defaultGroup);
+                if (!updateGroup(groups, key, columnCount, maxGroups)) {
+                    return false;
+                }
+                if (groupRows.get(key) == null) {
+                    groupRows.put(key, row);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calculate the aggregates using blocks of rows that are read directly
+     * from the index, if the index supports it.
+     *
+     * @param columnCount the number of columns
+     * @param result the result
+     * @return true if the rows were read in blocks
+     */
+    private boolean queryGroupBatch(int columnCount, LocalResult result) {
+        if (getSampleSizeValue(session) > 0) {
+            return false;
+        }
+        Cursor cursor = topTableFilter.getIndex().find(session, null, null);
+        if (!(cursor instanceof BatchCursor)) {
+            return false;
+        }
+        HashMap<Expression, Object> values = new HashMap<Expression, Object>();
+        updateAggregates((BatchCursor) cursor, values);
+        ValueHashMap<HashMap<Expression, Object>> groups =
+                ValueHashMap.newInstance();
+        groups.put(ValueArray.get(new Value[0]), values);
+        addGroupRows(groups, columnCount, result);
+        return true;
+    }
+
+    /**
+     * Read the rows of the cursor in blocks, evaluate the condition for each
+     * block, and update the aggregates with the rows that match.
+     *
+     * @param cursor the cursor
+     * @param values the aggregate data
+     * @return the first row that matches, or null if none
+     */
+    private Row updateAggregates(BatchCursor cursor,
+            HashMap<Expression, Object> values) {
+        Row[] rows = new Row[Constants.QUERY_BATCH_SIZE];
+        Value[] match = condition == null ? null : new Value[rows.length];
+        Row first = null;
+        int rowNumber = 0;
+        setCurrentRowNumber(0);
+        currentGroup = values;
+        while (true) {
+            int count = cursor.nextBatch(rows);
+            if (count == 0) {
+                break;
+            }
+            checkCanceled();
+            if (condition != null) {
+                condition.getValues(session, topTableFilter, rows, count,
+                        match);
+                int n = 0;
+                for (int i = 0; i < count; i++) {
+                    if (Boolean.TRUE.equals(match[i].getBoolean())) {
+                        rows[n++] = rows[i];
+                    }
+                }
+                count = n;
+            }
+            if (count > 0) {
+                if (first == null) {
+                    first = rows[0];
+                }
+                rowNumber += count;
+                setCurrentRowNumber(rowNumber);
+                for (Aggregate a : batchAggregates) {
+                    a.updateAggregate(session, topTableFilter, rows, count);
+                }
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Merge the groups calculated by a copy of this query into the given
+     * groups.
+     *
+     * @param groups the groups of this query
+     * @param copy the copy of the query
+     * @param copyGroups the groups of the copy
+     * @param copyRows the first row of each group of the copy
+     * @param columnCount the number of columns
+     * @param maxGroups the maximum number of groups
+     * @return false if there are too many groups
+     */
+    private boolean mergeGroups(
+            ValueHashMap<HashMap<Expression, Object>> groups, Select copy,
+            ValueHashMap<HashMap<Expression, Object>> copyGroups,
+            ValueHashMap<Row> copyRows, int columnCount, int maxGroups) {
+        Database db = session.getDatabase();
+        for (Value key : copyGroups.keys()) {
+            HashMap<Expression, Object> values = groups.get(key);
+            if (values == null) {
+                if (groups.size() >= maxGroups) {
+                    return false;
+                }
+                values = new HashMap<Expression, Object>();
+                groups.put(key, values);
+            }
+            HashMap<Expression, Object> other = copyGroups.get(key);
+            for (int i = 0, size = aggregates.size(); i < size; i++) {
+                Aggregate a = (Aggregate) aggregates.get(i);
+                Object data = a.merge(db, values.get(a),
+                        other.get(copy.aggregates.get(i)));
+                if (data != null) {
+                    values.put(a, data);
+                }
+            }
+            // the values of the columns that are not aggregated are read
+            // from the first row of the group of the copy; they need to be
+            // the same for all rows of the group
+            topTableFilter.set(copyRows.get(key));
+            currentGroup = new HashMap<Expression, Object>();
+            currentGroupRowId++;
+            for (int i = 0; i < columnCount; i++) {
+                if (groupByExpression == null || !groupByExpression[i]) {
+                    expressions.get(i).updateAggregate(session);
+                }
+            }
+            for (Map.Entry<Expression, Object> e : currentGroup.entrySet()) {
+                if (!(e.getValue() instanceof Value)) {
+                    continue;
+                }
+                Value v = (Value) e.getValue();
+                Value old = (Value) values.get(e.getKey());
+                if (old == null) {
+                    values.put(e.getKey(), v);
+                } else if (!db.areEqual(old, v)) {
+                    throw DbException.get(ErrorCode.MUST_GROUP_BY_COLUMN_1,
+                            e.getKey().getSQL());
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the maximum number of groups to keep in memory. If there are more
+     * groups, the rows of the other groups are buffered in a temporary result
+     * and processed afterwards.
+     *
+     * @return the maximum number of groups
+     */
+    private int getMaxMemoryGroups() {
+        Database db = session.getDatabase();
+        if (db.isPersistent() && !db.isReadOnly()) {
+            return db.getMaxMemoryRows();
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Create a temporary result that can store the row number and the current
+     * rows of all tables (including the row keys).
+     *
+     * @return the result
+     */
+    private LocalResult createFilterRowsResult() {
+        ArrayList<Expression> list = New.arrayList();
+        Database db = session.getDatabase();
+        list.add(ValueExpression.get(ValueInt.get(0)));
+        for (TableFilter f : filters) {
+            list.add(ValueExpression.get(ValueLong.get(0)));
+            for (Column c : f.getTable().getColumns()) {
+                list.add(new ExpressionColumn(db, c));
+            }
+        }
+        Expression[] array = new Expression[list.size()];
+        list.toArray(array);
+        return new LocalResult(session, array, array.length);
+    }
+
+    private Value[] getFilterRows(int rowNumber) {
+        ArrayList<Value> list = New.arrayList();
+        list.add(ValueInt.get(rowNumber));
+        for (TableFilter f : filters) {
+            Row row = f.get();
+            list.add(ValueLong.get(row.getKey()));
+            for (int i = 0, len = row.getColumnCount(); i < len; i++) {
+                list.add(row.getValue(i));
+            }
+        }
+        Value[] array = new Value[list.size()];
+        list.toArray(array);
+        return array;
+    }
+
+    private void setFilterRows(Value[] filterRows) {
+        setCurrentRowNumber(filterRows[0].getInt());
+        int offset = 1;
+        for (TableFilter f : filters) {
+            long key = filterRows[offset++].getLong();
+            int len = f.getTable().getColumns().length;
+            Value[] data = new Value[len];
+            System.arraycopy(filterRows, offset, data, 0, len);
+            offset += len;
+            Row row = new Row(data, Row.MEMORY_CALCULATE);
+            row.setKey(key);
+            f.set(row);
+        }
+    }
+
+    /**
+     * Check if the index is a partial index that may not contain all rows
+     * of the query. The index chosen by the optimizer contains all rows.
+     *
+     * @param index the index
+     * @return true if the index can not be used
+     */
+    private boolean isPartialIndex(Index index) {
+        return index.getIndexType().getCondition() != null &&
+                index != topTableFilter.getIndex();
+    }
+
     /**
      * Get the index that matches the ORDER BY list, if one exists. This is to
      * avoid running a separate ORDER BY if an index can be used. This is
@@ -432,7 +997,7 @@ public class Select extends Query {
                     // can't use the scan index
                     continue;
                 }
-                if (index.getIndexType().isHash()) {
+                if (index.getIndexType().isHash() || isPartialIndex(index)) {
                     continue;
                 }
                 IndexColumn[] indexCols = index.getIndexColumns();
@@ -525,9 +1090,10 @@ public class Select extends Query {
         int rowNumber = 0;
         setCurrentRowNumber(0);
         Index index = topTableFilter.getIndex();
+        Column[] indexColumns = index.getColumns();
         SearchRow first = null;
-        int columnIndex = index.getColumns()[0].getColumnId();
         int sampleSize = getSampleSizeValue(session);
+        int columnCount = expressions.size();
         while (true) {
             setCurrentRowNumber(rowNumber + 1);
             Cursor cursor = index.findNext(session, first, null);
@@ -535,12 +1101,27 @@ public class Select extends Query {
                 break;
             }
             SearchRow found = cursor.getSearchRow();
-            Value value = found.getValue(columnIndex);
             if (first == null) {
-                first = topTableFilter.getTable().getTemplateSimpleRow(true);
+                first = topTableFilter.getTable().getTemplateSimpleRow(false);
+            }
+            for (int i = 0; i < distinctPrefix; i++) {
+                int columnId = indexColumns[i].getColumnId();
+                first.setValue(columnId, found.getValue(columnId));
+            }
+            Value min = null;
+            if (distinctMinColumn != null) {
+                min = getDistinctMinimum(cursor, first, indexColumns);
+            }
+            Value[] row = new Value[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                Expression expr = expressions.get(i).getNonAliasExpression();
+                if (expr instanceof ExpressionColumn) {
+                    Column column = ((ExpressionColumn) expr).getColumn();
+                    row[i] = first.getValue(column.getColumnId());
+                } else {
+                    row[i] = min;
+                }
             }
-            first.setValue(columnIndex, value);
-            Value[] row = { value };
             result.addRow(row);
             rowNumber++;
             if ((sort == null || sortUsingIndex) && limitRows > 0 &&
@@ -553,18 +1134,20 @@ public class Select extends Query {
         }
     }
 
-    private void queryFlat(int columnCount, ResultTarget result, long limitRows) {
+    private void queryFlat(int columnCount, ResultTarget result, long limitRows,
+            int skipped) {
         // limitRows must be long, otherwise we get an int overflow
         // if limitRows is at or near Integer.MAX_VALUE
         // limitRows is never 0 here
-        if (limitRows > 0 && offsetExpr != null) {
+        if (limitRows > 0 && offsetExpr != null && skipped == 0) {
             int offset = offsetExpr.getValue(session).getInt();
             if (offset > 0) {
                 limitRows += offset;
             }
         }
-        int rowNumber = 0;
-        setCurrentRowNumber(0);
+        // the skipped rows are counted, so that ROWNUM() is the same
+        int rowNumber = skipped;
+        setCurrentRowNumber(skipped);
         ArrayList<Row> forUpdateRows = null;
         if (isForUpdateMvcc) {
             forUpdateRows = New.arrayList();
@@ -615,8 +1198,7 @@ public class Select extends Query {
         return result;
     }
 
-    @Override
-    protected LocalResult queryWithoutCache(int maxRows, ResultTarget target) {
+    private int getLimitRows(int maxRows) {
         int limitRows = maxRows == 0 ? -1 : maxRows;
         if (limitExpr != null) {
             Value v = limitExpr.getValue(session);
@@ -627,6 +1209,104 @@ public class Select extends Query {
                 limitRows = Math.min(l, limitRows);
             }
         }
+        return limitRows;
+    }
+
+    /**
+     * Get the smallest value of the index column after the distinct prefix,
+     * ignoring NULL, for the group the cursor is positioned at.
+     *
+     * @param cursor the cursor, positioned at the first row of the group
+     * @param group the row that contains the values of the prefix
+     * @param indexColumns the columns of the index
+     * @return the smallest value, or NULL
+     */
+    private Value getDistinctMinimum(Cursor cursor, SearchRow group,
+            Column[] indexColumns) {
+        Database db = session.getDatabase();
+        int columnId = distinctMinColumn.getColumnId();
+        SearchRow r = cursor.getSearchRow();
+        while (true) {
+            Value v = r.getValue(columnId);
+            if (v != ValueNull.INSTANCE) {
+                return v;
+            }
+            if (!cursor.next()) {
+                return ValueNull.INSTANCE;
+            }
+            r = cursor.getSearchRow();
+            for (int i = 0; i < distinctPrefix; i++) {
+                int id = indexColumns[i].getColumnId();
+                if (!db.areEqual(r.getValue(id), group.getValue(id))) {
+                    return ValueNull.INSTANCE;
+                }
+            }
+        }
+    }
+
+    /**
+     * Count the executions of this query, and compile the condition and the
+     * arithmetic expressions of the select list to a Java class once the
+     * query was executed often enough. Expressions that can not be compiled
+     * are evaluated as before.
+     */
+    private void checkCompile() {
+        int threshold = session.getDatabase().getSettings().compileExpressions;
+        if (threshold <= 0 || executeCount >= threshold) {
+            return;
+        }
+        if (++executeCount < threshold) {
+            return;
+        }
+        if (condition != null) {
+            condition = ExpressionCompiler.compileCondition(session, condition);
+        }
+        if (!isGroupQuery) {
+            for (int i = 0; i < expressionArray.length; i++) {
+                Expression e = ExpressionCompiler.compileExpression(session,
+                        expressionArray[i]);
+                expressionArray[i] = e;
+                expressions.set(i, e);
+            }
+        }
+    }
+
+    @Override
+    public ResultInterface queryLazy(int maxRows) {
+        if (isQuickAggregateQuery || isGroupQuery || isDistinctQuery ||
+                distinct || (sort != null && !sortUsingIndex) ||
+                randomAccessResult || isForUpdate ||
+                getSampleSizeValue(session) > 0) {
+            return null;
+        }
+        if (session.getDatabase().getMvStore() == null) {
+            // the cursors of the page store may not be used
+            // after the table lock was released
+            return null;
+        }
+        fireBeforeSelectTriggers();
+        checkCompile();
+        int limitRows = getLimitRows(maxRows);
+        int offset = 0;
+        if (offsetExpr != null) {
+            offset = Math.max(0, offsetExpr.getValue(session).getInt());
+        }
+        topTableFilter.startQuery(session);
+        topTableFilter.reset();
+        topTableFilter.lock(session, false, false);
+        int skipped = 0;
+        if (limitRows != 0 && skipOffsetRows(offset)) {
+            skipped = offset;
+        }
+        setCurrentRowNumber(skipped);
+        return new LazyResultQueryFlat(expressions.size(), limitRows, offset,
+                skipped);
+    }
+
+    @Override
+    protected LocalResult queryWithoutCache(int maxRows, ResultTarget target) {
+        checkCompile();
+        int limitRows = getLimitRows(maxRows);
         int columnCount = expressions.size();
         LocalResult result = null;
         if (target == null ||
@@ -670,27 +1350,37 @@ public class Select extends Query {
         }
         topTableFilter.lock(session, exclusive, exclusive);
         ResultTarget to = result != null ? result : target;
-        if (limitRows != 0) {
-            if (isQuickAggregateQuery) {
-                queryQuick(columnCount, to);
-            } else if (isGroupQuery) {
-                if (isGroupSortedQuery) {
-                    queryGroupSorted(columnCount, to);
-                } else {
-                    queryGroup(columnCount, result);
-                }
-            } else if (isDistinctQuery) {
-                queryDistinct(to, limitRows);
-            } else {
-                queryFlat(columnCount, to, limitRows);
-            }
-        }
+        int skipped = 0;
         if (offsetExpr != null) {
-            result.setOffset(offsetExpr.getValue(session).getInt());
+            int offset = offsetExpr.getValue(session).getInt();
+            if (limitRows != 0 && skipOffsetRows(offset)) {
+                skipped = offset;
+                offset = 0;
+            }
+            result.setOffset(offset);
         }
         if (limitRows >= 0) {
             result.setLimit(limitRows);
         }
+        if (limitRows != 0) {
+            try {
+                if (isQuickAggregateQuery) {
+                    queryQuick(columnCount, to);
+                } else if (isDistinctQuery) {
+                    queryDistinct(to, limitRows);
+                } else if (isGroupQuery) {
+                    if (isGroupSortedQuery) {
+                        queryGroupSorted(columnCount, to);
+                    } else {
+                        queryGroup(columnCount, result);
+                    }
+                } else {
+                    queryFlat(columnCount, to, limitRows, skipped);
+                }
+            } finally {
+                topTableFilter.endQuery();
+            }
+        }
         if (result != null) {
             result.done();
             if (target != null) {
@@ -901,39 +1591,11 @@ public class Select extends Query {
             }
         }
         cost = preparePlan();
-        if (distinct && session.getDatabase().getSettings().optimizeDistinct &&
-                !isGroupQuery && filters.size() == 1 &&
-                expressions.size() == 1 && condition == null) {
-            Expression expr = expressions.get(0);
-            expr = expr.getNonAliasExpression();
-            if (expr instanceof ExpressionColumn) {
-                Column column = ((ExpressionColumn) expr).getColumn();
-                int selectivity = column.getSelectivity();
-                Index columnIndex = topTableFilter.getTable().
-                        getIndexForColumn(column);
-                if (columnIndex != null &&
-                        selectivity != Constants.SELECTIVITY_DEFAULT &&
-                        selectivity < 20) {
-                    // the first column must be ascending
-                    boolean ascending = columnIndex.
-                            getIndexColumns()[0].sortType == SortOrder.ASCENDING;
-                    Index current = topTableFilter.getIndex();
-                    // if another index is faster
-                    if (columnIndex.canFindNext() && ascending &&
-                            (current == null ||
-                            current.getIndexType().isScan() ||
-                            columnIndex == current)) {
-                        IndexType type = columnIndex.getIndexType();
-                        // hash indexes don't work, and unique single column
-                        // indexes don't work
-                        if (!type.isHash() && (!type.isUnique() ||
-                                columnIndex.getColumns().length > 1)) {
-                            topTableFilter.setIndex(columnIndex);
-                            isDistinctQuery = true;
-                        }
-                    }
-                }
-            }
+        if ((distinct || isGroupQuery) &&
+                session.getDatabase().getSettings().optimizeDistinct &&
+                filters.size() == 1 && condition == null &&
+                havingIndex < 0 && !isQuickAggregateQuery && !isForUpdate) {
+            prepareDistinctQuery();
         }
         if (sort != null && !isQuickAggregateQuery && !isGroupQuery) {
             Index index = getSortIndex();
@@ -977,11 +1639,183 @@ public class Select extends Query {
                 isGroupSortedQuery = true;
             }
         }
+        isIndexRangeQuery = filters.size() == 1 &&
+                topTableFilter.getJoin() == null &&
+                topTableFilter.getNestedJoin() == null && !isForUpdate &&
+                getComparisonCount(condition) ==
+                topTableFilter.getIndexConditions().size();
+        isRangeCountQuery = isIndexRangeQuery && isGroupQuery &&
+                groupIndex == null && havingIndex < 0 && !distinct &&
+                !isQuickAggregateQuery && isCountAllQuery();
+        isParallelQuery = isParallelQueryPossible();
+        batchAggregates = getBatchAggregates();
         expressionArray = new Expression[expressions.size()];
         expressions.toArray(expressionArray);
         isPrepared = true;
     }
 
+    /**
+     * Get the number of comparisons of the given condition, if the condition
+     * only consists of comparisons combined with AND.
+     *
+     * @param condition the condition, or null
+     * @return the number of comparisons, or -1 if there are other conditions
+     */
+    private static int getComparisonCount(Expression condition) {
+        if (condition == null) {
+            return 0;
+        } else if (condition instanceof Comparison) {
+            return 1;
+        } else if (condition instanceof ConditionAndOr &&
+                !condition.isDisjunctive()) {
+            ConditionAndOr and = (ConditionAndOr) condition;
+            int left = getComparisonCount(and.getExpression(true));
+            int right = getComparisonCount(and.getExpression(false));
+            return left < 0 || right < 0 ? -1 : left + right;
+        }
+        return -1;
+    }
+
+    /**
+     * Check if the groups can be calculated by multiple threads, each reading
+     * a range of the rows of the table. This is possible for aggregate queries
+     * on a single table without index conditions, if all aggregate functions
+     * can be merged, and if the query is deterministic.
+     *
+     * @return true if yes
+     */
+    private boolean isParallelQueryPossible() {
+        if (!isGroupQuery || isGroupSortedQuery || isQuickAggregateQuery ||
+                isDistinctQuery || isForUpdate || isNestedQuery ||
+                filters.size() != 1 ||
+                session.getDatabase().getSettings().queryThreads < 2) {
+            return false;
+        }
+        if (topTableFilter.getJoin() != null ||
+                topTableFilter.getNestedJoin() != null ||
+                topTableFilter.getIndexConditions().size() > 0 ||
+                !topTableFilter.getIndex().getIndexType().isScan() ||
+                !Table.TABLE.equals(topTableFilter.getTable().getTableType())) {
+            return false;
+        }
+        for (Expression e : aggregates) {
+            if (!(e instanceof Aggregate) || !((Aggregate) e).isMergeable()) {
+                return false;
+            }
+        }
+        if (!isEverything(ExpressionVisitor.DETERMINISTIC_VISITOR)) {
+            return false;
+        }
+        // user defined functions are not necessarily thread safe
+        HashSet<DbObject> dependencies = New.hashSet();
+        ExpressionVisitor visitor = ExpressionVisitor.
+                getDependenciesVisitor(dependencies);
+        for (Expression e : expressions) {
+            e.isEverything(visitor);
+        }
+        if (condition != null) {
+            condition.isEverything(visitor);
+        }
+        for (DbObject obj : dependencies) {
+            if (obj.getType() == DbObject.FUNCTION_ALIAS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the aggregates to update with blocks of rows, if this is possible.
+     * This is the case for aggregate queries without GROUP BY on a single
+     * table without index conditions, if each expression is an aggregate.
+     *
+     * @return the distinct aggregates, or null
+     */
+    private Aggregate[] getBatchAggregates() {
+        if (!isGroupQuery || groupIndex != null || havingIndex >= 0 ||
+                isQuickAggregateQuery || isDistinctQuery || isForUpdate ||
+                isNestedQuery || filters.size() != 1) {
+            return null;
+        }
+        if (topTableFilter.getJoin() != null ||
+                topTableFilter.getNestedJoin() != null ||
+                topTableFilter.getIndexConditions().size() > 0 ||
+                !topTableFilter.getIndex().getIndexType().isScan()) {
+            return null;
+        }
+        // the row number is only updated once per block
+        if (!isEverything(ExpressionVisitor.DETERMINISTIC_VISITOR)) {
+            return null;
+        }
+        ArrayList<Aggregate> list = New.arrayList();
+        for (Expression e : expressions) {
+            e = e.getNonAliasExpression();
+            if (!(e instanceof Aggregate) ||
+                    !((Aggregate) e).isBatchSupported()) {
+                return null;
+            }
+            if (!list.contains(e)) {
+                list.add((Aggregate) e);
+            }
+        }
+        return list.toArray(new Aggregate[list.size()]);
+    }
+
+    private boolean isCountAllQuery() {
+        for (Expression e : expressions) {
+            e = e.getNonAliasExpression();
+            if (!(e instanceof Aggregate) || !((Aggregate) e).isCountAll()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Count the rows of the index range without reading them. This is
+     * possible if each comparison of the condition is an index condition, and
+     * the index supports it.
+     *
+     * @param columnCount the number of columns
+     * @param result the result
+     * @return true if the rows were counted
+     */
+    private boolean queryRangeCount(int columnCount, LocalResult result) {
+        if (getSampleSizeValue(session) > 0) {
+            return false;
+        }
+        long count = topTableFilter.getIndex().getRowCount(session,
+                topTableFilter.getIndexConditions());
+        if (count < 0) {
+            return false;
+        }
+        Value[] row = new Value[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            row[i] = ValueLong.get(count);
+        }
+        result.addRow(row);
+        return true;
+    }
+
+    /**
+     * Skip the rows before the offset using the index, without reading them.
+     * This is possible for flat queries that read the rows in the order of the
+     * index, if each comparison of the condition is an index condition, and
+     * the index supports it.
+     *
+     * @param offset the offset
+     * @return true if the rows were skipped
+     */
+    private boolean skipOffsetRows(int offset) {
+        if (offset <= 0 || !isIndexRangeQuery || isQuickAggregateQuery ||
+                isGroupQuery || isDistinctQuery || distinct ||
+                (sort != null && !sortUsingIndex) ||
+                getSampleSizeValue(session) > 0) {
+            return false;
+        }
+        return topTableFilter.skipRows(offset);
+    }
+
     @Override
     public double getCost() {
         return cost;
@@ -1005,6 +1839,7 @@ public class Select extends Query {
     }
 
     private double preparePlan() {
+        referencedColumns = null;
         TableFilter[] topArray = topFilters.toArray(
                 new TableFilter[topFilters.size()]);
         for (TableFilter t : topArray) {
@@ -1022,6 +1857,110 @@ public class Select extends Query {
         return planCost;
     }
 
+    /**
+     * Check if the distinct values (or groups) can be read by skipping over
+     * the entries of an index that starts with the selected columns, and if
+     * yes, use that index. Each expression needs to be one of these columns,
+     * or for group queries MIN of the next column of the index.
+     */
+    private void prepareDistinctQuery() {
+        Table table = topTableFilter.getTable();
+        HashSet<Column> columns = New.hashSet();
+        Column minColumn = null;
+        for (Expression e : expressions) {
+            Expression expr = e.getNonAliasExpression();
+            if (expr instanceof ExpressionColumn) {
+                columns.add(((ExpressionColumn) expr).getColumn());
+            } else if (!isGroupQuery || !(expr instanceof Aggregate)) {
+                return;
+            }
+        }
+        if (isGroupQuery) {
+            HashSet<Column> groupColumns = New.hashSet();
+            if (groupIndex == null) {
+                return;
+            }
+            for (int gi : groupIndex) {
+                Expression expr = expressions.get(gi).getNonAliasExpression();
+                if (!(expr instanceof ExpressionColumn)) {
+                    return;
+                }
+                groupColumns.add(((ExpressionColumn) expr).getColumn());
+            }
+            if (!groupColumns.equals(columns)) {
+                return;
+            }
+        }
+        ArrayList<Index> indexes = table.getIndexes();
+        if (indexes == null) {
+            return;
+        }
+        Index index = null;
+        int prefix = columns.size();
+        for (Index idx : indexes) {
+            IndexType type = idx.getIndexType();
+            IndexColumn[] cols = idx.getIndexColumns();
+            if (!idx.canFindNext() || type.isScan() || type.isHash() ||
+                    type.getCondition() != null || cols == null ||
+                    cols.length < prefix ||
+                    // all rows are distinct
+                    type.isUnique() && cols.length == prefix) {
+                continue;
+            }
+            boolean match = true;
+            for (int i = 0; i < prefix && match; i++) {
+                // the index needs to start with the selected columns
+                match = columns.contains(cols[i].column) &&
+                        cols[i].sortType == SortOrder.ASCENDING;
+            }
+            if (match) {
+                index = idx;
+                break;
+            }
+        }
+        if (index == null) {
+            return;
+        }
+        Column[] indexColumns = index.getColumns();
+        if (isGroupQuery) {
+            // only MIN of the next column of the index can be computed
+            for (Expression e : expressions) {
+                Expression expr = e.getNonAliasExpression();
+                if (expr instanceof Aggregate) {
+                    if (prefix >= indexColumns.length || index.
+                            getIndexColumns()[prefix].sortType != SortOrder.ASCENDING ||
+                            !((Aggregate) expr).isMinimumOf(indexColumns[prefix])) {
+                        return;
+                    }
+                    minColumn = indexColumns[prefix];
+                }
+            }
+        }
+        // only worth it if there are few distinct values
+        int totalSelectivity = 0;
+        for (int i = 0; i < prefix; i++) {
+            int selectivity = indexColumns[i].getSelectivity();
+            if (selectivity == Constants.SELECTIVITY_DEFAULT) {
+                return;
+            }
+            totalSelectivity = 100 - ((100 - totalSelectivity) *
+                    (100 - selectivity) / 100);
+        }
+        if (totalSelectivity >= 20) {
+            return;
+        }
+        Index current = topTableFilter.getIndex();
+        // if another index is faster
+        if (current != null && !current.getIndexType().isScan() &&
+                current != index) {
+            return;
+        }
+        topTableFilter.setIndex(index);
+        isDistinctQuery = true;
+        distinctPrefix = prefix;
+        distinctMinColumn = minColumn;
+    }
+
     private void setEvaluatableRecursive(TableFilter f) {
         for (; f != null; f = f.getJoin()) {
             f.setEvaluatable(f, true);
@@ -1181,7 +2120,7 @@ public class Select extends Query {
         if (sortUsingIndex) {
             buff.append("\n/* index sorted */");
         }
-        if (isGroupQuery) {
+        if (isGroupQuery && !isDistinctQuery) {
             if (isGroupSortedQuery) {
                 buff.append("\n/* group sorted */");
             }
@@ -1198,6 +2137,19 @@ public class Select extends Query {
         return having;
     }
 
+    public Expression getCondition() {
+        return condition;
+    }
+
+    /**
+     * Get the positions of the GROUP BY expressions in the expression list.
+     *
+     * @return the positions, or null if there is no GROUP BY
+     */
+    public int[] getGroupIndex() {
+        return groupIndex;
+    }
+
     @Override
     public int getColumnCount() {
         return visibleColumnCount;
@@ -1372,6 +2324,33 @@ public class Select extends Query {
         return isEverything(ExpressionVisitor.READONLY_VISITOR);
     }
 
+    /**
+     * Get the columns this query reads, including the columns of subqueries
+     * and join conditions. An index that contains all columns of a table
+     * that are read can be used without reading the rows. For FOR UPDATE
+     * queries, the rows are always read, so null is returned.
+     *
+     * @return the set of columns, or null
+     */
+    public HashSet<Column> getReferencedColumns() {
+        if (isForUpdate) {
+            return null;
+        }
+        if (referencedColumns == null) {
+            HashSet<Column> set = New.hashSet();
+            ExpressionVisitor visitor = ExpressionVisitor.getColumnsVisitor(set);
+            isEverything(visitor);
+            for (int i = 0, size = filters.size(); i < size; i++) {
+                Expression on = filters.get(i).getJoinCondition();
+                if (on != null) {
+                    on.isEverything(visitor);
+                }
+            }
+            referencedColumns = set;
+        }
+        return referencedColumns;
+    }
+
 
     @Override
     public boolean isCacheable() {
@@ -1395,4 +2374,56 @@ public class Select extends Query {
         return sort;
     }
 
+    /**
+     * Lazy execution of a flat query: the rows are read from the table
+     * filters while the result is read.
+     */
+    private final class LazyResultQueryFlat extends LazyResult {
+
+        private final int columnCount;
+        private final long limitRows;
+        private final int offset;
+        private int rowNumber;
+
+        LazyResultQueryFlat(int columnCount, int limitRows, int offset,
+                int skipped) {
+            super(session, expressionArray, visibleColumnCount);
+            this.columnCount = columnCount;
+            this.limitRows = limitRows;
+            this.offset = offset;
+            // the skipped rows are already behind the cursor
+            this.rowNumber = skipped;
+        }
+
+        @Override
+        protected Value[] fetchNextRow() {
+            // limitRows must be long, otherwise we get an int overflow
+            // if limitRows is at or near Integer.MAX_VALUE
+            while ((limitRows < 0 || rowNumber < limitRows + offset) &&
+                    topTableFilter.next()) {
+                setCurrentRowNumber(rowNumber + 1);
+                if (condition == null ||
+                        Boolean.TRUE.equals(condition.getBooleanValue(session))) {
+                    rowNumber++;
+                    if (rowNumber <= offset) {
+                        continue;
+                    }
+                    Value[] row = new Value[columnCount];
+                    for (int i = 0; i < columnCount; i++) {
+                        Expression expr = expressions.get(i);
+                        row[i] = expr.getValue(session);
+                    }
+                    return row;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        protected void endFetch() {
+            topTableFilter.endQuery();
+        }
+
+    }
+
 }
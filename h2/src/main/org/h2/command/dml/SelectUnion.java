@@ -18,6 +18,7 @@ import org.h2.expression.ExpressionVisitor;
 import org.h2.expression.Parameter;
 import org.h2.expression.ValueExpression;
 import org.h2.message.DbException;
+import org.h2.result.LazyResult;
 import org.h2.result.LocalResult;
 import org.h2.result.ResultInterface;
 import org.h2.result.ResultTarget;
@@ -190,21 +191,25 @@ public class SelectUnion extends Query {
         default:
             DbException.throwInternalError("type=" + unionType);
         }
+        if (unionType == UNION_ALL || unionType == UNION) {
+            // the rows of both queries are added to the result directly,
+            // without buffering them in a separate result first
+            ResultTarget to = new ConvertingResultTarget(result, columnCount);
+            int limitRows = getBranchLimit();
+            if (limitRows >= 0) {
+                left.query(limitRows, to);
+                int remaining = limitRows - result.getRowCount();
+                if (limitRows == 0 || remaining > 0) {
+                    right.query(limitRows == 0 ? 0 : remaining, to);
+                }
+            }
+            return done(result, target);
+        }
         LocalResult l = left.query(0);
         LocalResult r = right.query(0);
         l.reset();
         r.reset();
         switch (unionType) {
-        case UNION_ALL:
-        case UNION: {
-            while (l.next()) {
-                result.addRow(convert(l.currentRow(), columnCount));
-            }
-            while (r.next()) {
-                result.addRow(convert(r.currentRow(), columnCount));
-            }
-            break;
-        }
         case EXCEPT: {
             while (l.next()) {
                 result.addRow(convert(l.currentRow(), columnCount));
@@ -232,6 +237,12 @@ public class SelectUnion extends Query {
         default:
             DbException.throwInternalError("type=" + unionType);
         }
+        l.close();
+        r.close();
+        return done(result, target);
+    }
+
+    private LocalResult done(LocalResult result, ResultTarget target) {
         if (offsetExpr != null) {
             result.setOffset(offsetExpr.getValue(session).getInt());
         }
@@ -241,8 +252,6 @@ public class SelectUnion extends Query {
                 result.setLimit(v.getInt());
             }
         }
-        l.close();
-        r.close();
         result.done();
         if (target != null) {
             while (result.next()) {
@@ -254,6 +263,58 @@ public class SelectUnion extends Query {
         return result;
     }
 
+    /**
+     * Get the maximum number of rows each query of a UNION ALL needs to
+     * return. The result is only limited if the rows are not sorted.
+     *
+     * @return the maximum number of rows (offset plus limit), 0 for no
+     *         limit, or -1 if no rows are needed
+     */
+    private int getBranchLimit() {
+        if (unionType != UNION_ALL || sort != null || distinct ||
+                limitExpr == null) {
+            return 0;
+        }
+        Value v = limitExpr.getValue(session);
+        if (v == ValueNull.INSTANCE || v.getInt() < 0) {
+            return 0;
+        }
+        long limit = v.getInt();
+        if (limit == 0) {
+            return -1;
+        }
+        if (offsetExpr != null) {
+            limit += Math.max(0, offsetExpr.getValue(session).getInt());
+        }
+        return (int) Math.min(limit, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public ResultInterface queryLazy(int maxRows) {
+        if (unionType != UNION_ALL || sort != null || distinct ||
+                randomAccessResult || isForUpdate) {
+            return null;
+        }
+        if (session.getDatabase().getMvStore() == null) {
+            return null;
+        }
+        int limitRows = maxRows == 0 ? -1 : maxRows;
+        if (limitExpr != null) {
+            Value v = limitExpr.getValue(session);
+            int l = v == ValueNull.INSTANCE ? -1 : v.getInt();
+            if (limitRows < 0) {
+                limitRows = l;
+            } else if (l >= 0) {
+                limitRows = Math.min(l, limitRows);
+            }
+        }
+        int offset = 0;
+        if (offsetExpr != null) {
+            offset = Math.max(0, offsetExpr.getValue(session).getInt());
+        }
+        return new LazyResultUnionAll(left.getColumnCount(), limitRows, offset);
+    }
+
     @Override
     public void init() {
         if (SysProperties.CHECK && checkInit) {
@@ -457,4 +518,90 @@ public class SelectUnion extends Query {
         return left.allowGlobalConditions() && right.allowGlobalConditions();
     }
 
+    /**
+     * Converts the rows of the left and right query to the column types of
+     * the union, and adds them to the result.
+     */
+    private final class ConvertingResultTarget implements ResultTarget {
+
+        private final ResultTarget target;
+        private final int columnCount;
+
+        ConvertingResultTarget(ResultTarget target, int columnCount) {
+            this.target = target;
+            this.columnCount = columnCount;
+        }
+
+        @Override
+        public void addRow(Value[] values) {
+            target.addRow(convert(values, columnCount));
+        }
+
+        @Override
+        public int getRowCount() {
+            return target.getRowCount();
+        }
+
+    }
+
+    /**
+     * Lazy execution of a UNION ALL: the rows of the left query are read
+     * first, and then the rows of the right query.
+     */
+    private final class LazyResultUnionAll extends LazyResult {
+
+        private final int columnCount;
+        private final long limitRows;
+        private final int offset;
+        private int rowNumber;
+        private int queryIndex;
+        private ResultInterface current;
+
+        LazyResultUnionAll(int columnCount, int limitRows, int offset) {
+            super(session, expressionArray, columnCount);
+            this.columnCount = columnCount;
+            this.limitRows = limitRows;
+            this.offset = offset;
+        }
+
+        @Override
+        protected Value[] fetchNextRow() {
+            // limitRows must be long, otherwise we get an int overflow
+            // if limitRows is at or near Integer.MAX_VALUE
+            while (limitRows < 0 || rowNumber < limitRows + offset) {
+                if (current == null) {
+                    if (queryIndex > 1) {
+                        return null;
+                    }
+                    Query query = queryIndex++ == 0 ? left : right;
+                    current = query.queryLazy(0);
+                    if (current == null) {
+                        current = query.query(0);
+                        current.reset();
+                    }
+                }
+                if (!current.next()) {
+                    current.close();
+                    current = null;
+                    continue;
+                }
+                rowNumber++;
+                if (rowNumber > offset) {
+                    return convert(current.currentRow(), columnCount);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        }
+
+    }
+
 }
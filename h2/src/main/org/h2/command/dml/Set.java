@@ -60,6 +60,7 @@ public class Set extends Prepared {
         case SetTypes.SCHEMA:
         case SetTypes.SCHEMA_SEARCH_PATH:
         case SetTypes.RETENTION_TIME:
+        case SetTypes.LAZY_QUERY_EXECUTION:
             return true;
         default:
         }
@@ -109,6 +110,7 @@ public class Set extends Prepared {
                 // (if any) is not committed
                 Session sysSession = database.getSystemSession();
                 synchronized (sysSession) {
+                    database.lockMeta(sysSession);
                     synchronized (database) {
                         addOrUpdateSetting(sysSession, name, value, 0);
                         sysSession.commit(true);
@@ -263,6 +265,15 @@ public class Set extends Prepared {
             database.setIgnoreCase(getIntValue() == 1);
             addOrUpdateSetting(name, null, getIntValue());
             break;
+        case SetTypes.LAZY_QUERY_EXECUTION: {
+            int value = getIntValue();
+            if (value < 0 || value > 1) {
+                throw DbException.getInvalidValueException(
+                        "LAZY_QUERY_EXECUTION", getIntValue());
+            }
+            session.setLazyQueryExecution(value == 1);
+            break;
+        }
         case SetTypes.LOCK_MODE:
             session.getUser().checkAdmin();
             database.setLockMode(getIntValue());
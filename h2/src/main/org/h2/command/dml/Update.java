@@ -85,6 +85,7 @@ public class Update extends Prepared {
         try {
             Table table = tableFilter.getTable();
             session.getUser().checkRight(table, Right.UPDATE);
+            table.checkRowChangesAllowed();
             table.fire(session, Trigger.UPDATE, true);
             table.lock(session, true, false);
             int columnCount = table.getColumns().length;
@@ -96,6 +96,11 @@ public class Constants {
      */
     public static final int TCP_PROTOCOL_VERSION_15 = 15;
 
+    /**
+     * The TCP protocol version number 16.
+     */
+    public static final int TCP_PROTOCOL_VERSION_16 = 16;
+
     /**
      * The major version of this database.
      */
@@ -268,6 +273,13 @@ public class Constants {
      */
     public static final int FILE_BLOCK_SIZE = 16;
 
+    /**
+     * The number of partitions the rows of a GROUP BY query are split into if
+     * there are too many groups to keep in memory. This must be a power of
+     * two.
+     */
+    public static final int GROUP_BY_PARTITIONS = 16;
+
     /**
      * For testing, the lock timeout is smaller than for interactive use cases.
      * This value could be increased to about 5 or 10 seconds.
@@ -346,6 +358,12 @@ public class Constants {
      */
     public static final int MIN_WRITE_DELAY = 5;
 
+    /**
+     * The minimum number of rows per thread if a query is executed by
+     * multiple threads.
+     */
+    public static final int PARALLEL_QUERY_MIN_ROWS = 10000;
+
     /**
      * The name prefix used for indexes that are not explicitly named.
      */
@@ -367,6 +385,12 @@ public class Constants {
      */
     public static final String PUBLIC_ROLE_NAME = "PUBLIC";
 
+    /**
+     * The number of rows that are read and processed at once if a query reads
+     * the rows in blocks.
+     */
+    public static final int QUERY_BATCH_SIZE = 1024;
+
     /**
      * The number of bytes in random salt that is used to hash passwords.
      */
@@ -14,11 +14,14 @@ import java.util.HashSet;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicLong;
 import org.h2.api.DatabaseEventListener;
 import org.h2.api.ErrorCode;
 import org.h2.api.JavaObjectSerializer;
 import org.h2.command.CommandInterface;
 import org.h2.command.ddl.CreateTableData;
+import org.h2.command.dml.JoinOrderCache;
+import org.h2.command.dml.QueryResultCache;
 import org.h2.command.dml.SetTypes;
 import org.h2.constraint.Constraint;
 import org.h2.index.Cursor;
@@ -109,6 +112,7 @@ public class Database implements DataHandler {
     private Session exclusiveSession;
     private final BitField objectIds = new BitField();
     private final Object lobSyncObject = new Object();
+    private final Object transactionEndSync = new Object();
 
     private Schema mainSchema;
     private Schema infoSchema;
@@ -126,8 +130,8 @@ public class Database implements DataHandler {
     private Trace trace;
     private final int fileLockMethod;
     private Role publicRole;
-    private long modificationDataId;
-    private long modificationMetaId;
+    private final AtomicLong modificationDataId = new AtomicLong();
+    private final AtomicLong modificationMetaId = new AtomicLong();
     private CompareMode compareMode;
     private String cluster = Constants.CLUSTERING_DISABLED;
     private boolean readOnly;
@@ -154,6 +158,7 @@ public class Database implements DataHandler {
     private DatabaseCloser closeOnExit;
     private Mode mode = Mode.getInstance(Mode.REGULAR);
     private boolean multiThreaded;
+    private boolean multiThreadedDefault;
     private int maxOperationMemory =
             Constants.DEFAULT_MAX_OPERATION_MEMORY;
     private SmallLRUCache<String, String[]> lobFileListCache;
@@ -188,11 +193,17 @@ public class Database implements DataHandler {
     private volatile boolean javaObjectSerializerInitialized;
     private boolean queryStatistics;
     private QueryStatisticsData queryStatisticsData;
+    private final QueryResultCache queryResultCache;
+    private final JoinOrderCache joinOrderCache;
 
     public Database(ConnectionInfo ci, String cipher) {
         String name = ci.getName();
         this.dbSettings = ci.getDbSettings();
         this.reconnectCheckDelay = dbSettings.reconnectCheckDelay;
+        this.queryResultCache = dbSettings.sharedResultCacheSize > 0 ?
+                new QueryResultCache(dbSettings.sharedResultCacheSize) : null;
+        this.joinOrderCache = dbSettings.joinOrderCacheSize > 0 ?
+                new JoinOrderCache(this, dbSettings.joinOrderCacheSize) : null;
         this.compareMode = CompareMode.getInstance(null, 0);
         this.persistent = ci.isPersistent();
         this.filePasswordHash = ci.getFilePasswordHash();
@@ -246,6 +257,8 @@ public class Database implements DataHandler {
                 ci.getProperty("JAVA_OBJECT_SERIALIZER", null);
         this.multiThreaded =
                 ci.getProperty("MULTI_THREADED", false);
+        this.multiThreadedDefault =
+                ci.getProperty("MULTI_THREADED", null) == null;
 
         boolean closeAtVmShutdown =
                 dbSettings.dbCloseOnExit;
@@ -357,7 +370,7 @@ public class Database implements DataHandler {
     }
 
     public long getModificationDataId() {
-        return modificationDataId;
+        return modificationDataId.get();
     }
 
     /**
@@ -435,18 +448,18 @@ public class Database implements DataHandler {
     }
 
     public long getNextModificationDataId() {
-        return ++modificationDataId;
+        return modificationDataId.incrementAndGet();
     }
 
     public long getModificationMetaId() {
-        return modificationMetaId;
+        return modificationMetaId.get();
     }
 
     public long getNextModificationMetaId() {
         // if the meta data has been modified, the data is modified as well
         // (because MetaTable returns modificationDataId)
-        modificationDataId++;
-        return modificationMetaId++;
+        modificationDataId.incrementAndGet();
+        return modificationMetaId.getAndIncrement();
     }
 
     public int getPowerOffCount() {
@@ -685,6 +698,10 @@ public class Database implements DataHandler {
                 getPageStore();
             }
         }
+        if (multiThreadedDefault && mvStore != null && multiVersion) {
+            // statements don't need to be serialized when using the MVStore
+            multiThreaded = true;
+        }
         systemUser = new User(this, 0, SYSTEM_USER_NAME, true);
         mainSchema = new Schema(this, 0, Constants.SCHEMA_MAIN, systemUser, true);
         infoSchema = new Schema(this, -1, "INFORMATION_SCHEMA", systemUser, true);
@@ -886,7 +903,8 @@ public class Database implements DataHandler {
         // this method can not be synchronized on the database object,
         // as unlocking is also synchronized on the database object -
         // so if locking starts just before unlocking, locking could
-        // never be successful
+        // never be successful; for the same reason, callers must lock the
+        // metadata table before they synchronize on the database object
         if (meta == null) {
             return true;
         }
@@ -894,40 +912,54 @@ public class Database implements DataHandler {
         return wasLocked;
     }
 
+    /**
+     * Unlock the metadata table.
+     *
+     * @param session the session
+     */
+    public void unlockMeta(Session session) {
+        if (meta != null) {
+            meta.unlock(session);
+            session.unlock(meta);
+        }
+    }
+
     /**
      * Remove the given object from the meta data.
      *
      * @param session the session
      * @param id the id of the object to remove
      */
-    public synchronized void removeMeta(Session session, int id) {
+    public void removeMeta(Session session, int id) {
         if (id > 0 && !starting) {
-            SearchRow r = meta.getTemplateSimpleRow(false);
-            r.setValue(0, ValueInt.get(id));
             boolean wasLocked = lockMeta(session);
-            Cursor cursor = metaIdIndex.find(session, r, r);
-            if (cursor.next()) {
-                if (SysProperties.CHECK) {
-                    if (lockMode != Constants.LOCK_MODE_OFF && !wasLocked) {
-                        throw DbException.throwInternalError();
+            synchronized (this) {
+                SearchRow r = meta.getTemplateSimpleRow(false);
+                r.setValue(0, ValueInt.get(id));
+                Cursor cursor = metaIdIndex.find(session, r, r);
+                if (cursor.next()) {
+                    if (SysProperties.CHECK) {
+                        if (lockMode != Constants.LOCK_MODE_OFF && !wasLocked) {
+                            throw DbException.throwInternalError();
+                        }
                     }
+                    Row found = cursor.get();
+                    meta.removeRow(session, found);
+                    if (isMultiVersion()) {
+                        // TODO this should work without MVCC,
+                        // but avoid risks at the moment
+                        session.log(meta, UndoLogRecord.DELETE, found);
+                    }
+                    objectIds.clear(id);
+                    if (SysProperties.CHECK) {
+                        checkMetaFree(session, id);
+                    }
+                } else if (!wasLocked) {
+                    // must not keep the lock if it was not locked
+                    // otherwise updating sequences may cause a deadlock
+                    meta.unlock(session);
+                    session.unlock(meta);
                 }
-                Row found = cursor.get();
-                meta.removeRow(session, found);
-                if (isMultiVersion()) {
-                    // TODO this should work without MVCC, but avoid risks at
-                    // the moment
-                    session.log(meta, UndoLogRecord.DELETE, found);
-                }
-                objectIds.clear(id);
-                if (SysProperties.CHECK) {
-                    checkMetaFree(session, id);
-                }
-            } else if (!wasLocked) {
-                // must not keep the lock if it was not locked
-                // otherwise updating sequences may cause a deadlock
-                meta.unlock(session);
-                session.unlock(meta);
             }
         }
     }
@@ -972,14 +1004,16 @@ public class Database implements DataHandler {
      * @param session the session
      * @param obj the object to add
      */
-    public synchronized void addSchemaObject(Session session, SchemaObject obj) {
+    public void addSchemaObject(Session session, SchemaObject obj) {
         int id = obj.getId();
         if (id > 0 && !starting) {
             checkWritingAllowed();
         }
         lockMeta(session);
-        obj.getSchema().add(obj);
-        addMeta(session, obj);
+        synchronized (this) {
+            obj.getSchema().add(obj);
+            addMeta(session, obj);
+        }
     }
 
     /**
@@ -988,25 +1022,28 @@ public class Database implements DataHandler {
      * @param session the session
      * @param obj the object to add
      */
-    public synchronized void addDatabaseObject(Session session, DbObject obj) {
+    public void addDatabaseObject(Session session, DbObject obj) {
         int id = obj.getId();
         if (id > 0 && !starting) {
             checkWritingAllowed();
         }
-        HashMap<String, DbObject> map = getMap(obj.getType());
-        if (obj.getType() == DbObject.USER) {
-            User user = (User) obj;
-            if (user.isAdmin() && systemUser.getName().equals(SYSTEM_USER_NAME)) {
-                systemUser.rename(user.getName());
+        lockMeta(session);
+        synchronized (this) {
+            HashMap<String, DbObject> map = getMap(obj.getType());
+            if (obj.getType() == DbObject.USER) {
+                User user = (User) obj;
+                if (user.isAdmin() &&
+                        systemUser.getName().equals(SYSTEM_USER_NAME)) {
+                    systemUser.rename(user.getName());
+                }
             }
+            String name = obj.getName();
+            if (SysProperties.CHECK && map.get(name) != null) {
+                DbException.throwInternalError("object already exists");
+            }
+            addMeta(session, obj);
+            map.put(name, obj);
         }
-        String name = obj.getName();
-        if (SysProperties.CHECK && map.get(name) != null) {
-            DbException.throwInternalError("object already exists");
-        }
-        lockMeta(session);
-        addMeta(session, obj);
-        map.put(name, obj);
     }
 
     /**
@@ -1584,11 +1621,13 @@ public class Database implements DataHandler {
      * @param session the session
      * @param obj the database object
      */
-    public synchronized void updateMeta(Session session, DbObject obj) {
+    public void updateMeta(Session session, DbObject obj) {
         lockMeta(session);
-        int id = obj.getId();
-        removeMeta(session, id);
-        addMeta(session, obj);
+        synchronized (this) {
+            int id = obj.getId();
+            removeMeta(session, id);
+            addMeta(session, obj);
+        }
     }
 
     /**
@@ -1598,11 +1637,14 @@ public class Database implements DataHandler {
      * @param obj the object
      * @param newName the new name
      */
-    public synchronized void renameSchemaObject(Session session,
+    public void renameSchemaObject(Session session,
             SchemaObject obj, String newName) {
         checkWritingAllowed();
-        obj.getSchema().rename(obj, newName);
-        updateMetaAndFirstLevelChildren(session, obj);
+        lockMeta(session);
+        synchronized (this) {
+            obj.getSchema().rename(obj, newName);
+            updateMetaAndFirstLevelChildren(session, obj);
+        }
     }
 
     private synchronized void updateMetaAndFirstLevelChildren(Session session, DbObject obj) {
@@ -1629,27 +1671,31 @@ public class Database implements DataHandler {
      * @param obj the object
      * @param newName the new name
      */
-    public synchronized void renameDatabaseObject(Session session,
+    public void renameDatabaseObject(Session session,
             DbObject obj, String newName) {
         checkWritingAllowed();
-        int type = obj.getType();
-        HashMap<String, DbObject> map = getMap(type);
-        if (SysProperties.CHECK) {
-            if (!map.containsKey(obj.getName())) {
-                DbException.throwInternalError("not found: " + obj.getName());
-            }
-            if (obj.getName().equals(newName) || map.containsKey(newName)) {
-                DbException.throwInternalError("object already exists: " + newName);
+        lockMeta(session);
+        synchronized (this) {
+            int type = obj.getType();
+            HashMap<String, DbObject> map = getMap(type);
+            if (SysProperties.CHECK) {
+                if (!map.containsKey(obj.getName())) {
+                    DbException.throwInternalError(
+                            "not found: " + obj.getName());
+                }
+                if (obj.getName().equals(newName) || map.containsKey(newName)) {
+                    DbException.throwInternalError(
+                            "object already exists: " + newName);
+                }
             }
+            obj.checkRename();
+            int id = obj.getId();
+            removeMeta(session, id);
+            map.remove(obj.getName());
+            obj.rename(newName);
+            map.put(newName, obj);
+            updateMetaAndFirstLevelChildren(session, obj);
         }
-        obj.checkRename();
-        int id = obj.getId();
-        lockMeta(session);
-        removeMeta(session, id);
-        map.remove(obj.getName());
-        obj.rename(newName);
-        map.put(newName, obj);
-        updateMetaAndFirstLevelChildren(session, obj);
     }
 
     /**
@@ -1703,23 +1749,25 @@ public class Database implements DataHandler {
      * @param session the session
      * @param obj the object to remove
      */
-    public synchronized void removeDatabaseObject(Session session, DbObject obj) {
+    public void removeDatabaseObject(Session session, DbObject obj) {
         checkWritingAllowed();
-        String objName = obj.getName();
-        int type = obj.getType();
-        HashMap<String, DbObject> map = getMap(type);
-        if (SysProperties.CHECK && !map.containsKey(objName)) {
-            DbException.throwInternalError("not found: " + objName);
-        }
-        Comment comment = findComment(obj);
         lockMeta(session);
-        if (comment != null) {
-            removeDatabaseObject(session, comment);
+        synchronized (this) {
+            String objName = obj.getName();
+            int type = obj.getType();
+            HashMap<String, DbObject> map = getMap(type);
+            if (SysProperties.CHECK && !map.containsKey(objName)) {
+                DbException.throwInternalError("not found: " + objName);
+            }
+            Comment comment = findComment(obj);
+            if (comment != null) {
+                removeDatabaseObject(session, comment);
+            }
+            int id = obj.getId();
+            obj.removeChildrenAndResources(session);
+            map.remove(objName);
+            removeMeta(session, id);
         }
-        int id = obj.getId();
-        obj.removeChildrenAndResources(session);
-        map.remove(objName);
-        removeMeta(session, id);
     }
 
     /**
@@ -1762,7 +1810,7 @@ public class Database implements DataHandler {
      * @param session the session
      * @param obj the object to be removed
      */
-    public synchronized void removeSchemaObject(Session session,
+    public void removeSchemaObject(Session session,
             SchemaObject obj) {
         int type = obj.getType();
         if (type == DbObject.TABLE_OR_VIEW) {
@@ -1788,22 +1836,24 @@ public class Database implements DataHandler {
         }
         checkWritingAllowed();
         lockMeta(session);
-        Comment comment = findComment(obj);
-        if (comment != null) {
-            removeDatabaseObject(session, comment);
-        }
-        obj.getSchema().remove(obj);
-        int id = obj.getId();
-        if (!starting) {
-            Table t = getDependentTable(obj, null);
-            if (t != null) {
-                obj.getSchema().add(obj);
-                throw DbException.get(ErrorCode.CANNOT_DROP_2, obj.getSQL(),
-                        t.getSQL());
+        synchronized (this) {
+            Comment comment = findComment(obj);
+            if (comment != null) {
+                removeDatabaseObject(session, comment);
+            }
+            obj.getSchema().remove(obj);
+            int id = obj.getId();
+            if (!starting) {
+                Table t = getDependentTable(obj, null);
+                if (t != null) {
+                    obj.getSchema().add(obj);
+                    throw DbException.get(ErrorCode.CANNOT_DROP_2, obj.getSQL(),
+                            t.getSQL());
+                }
+                obj.removeChildrenAndResources(session);
             }
-            obj.removeChildrenAndResources(session);
+            removeMeta(session, id);
         }
-        removeMeta(session, id);
     }
 
     /**
@@ -1833,10 +1883,12 @@ public class Database implements DataHandler {
         }
     }
 
-    public synchronized void setMasterUser(User user) {
+    public void setMasterUser(User user) {
         lockMeta(systemSession);
-        addDatabaseObject(systemSession, user);
-        systemSession.commit(true);
+        synchronized (this) {
+            addDatabaseObject(systemSession, user);
+            systemSession.commit(true);
+        }
     }
 
     public Role getPublicRole() {
@@ -2102,7 +2154,10 @@ public class Database implements DataHandler {
     public void setLockMode(int lockMode) {
         switch (lockMode) {
         case Constants.LOCK_MODE_OFF:
-            if (multiThreaded) {
+            if (multiThreaded && multiThreadedDefault) {
+                // multi-threading was not explicitly enabled
+                multiThreaded = false;
+            } else if (multiThreaded) {
                 // currently the combination of LOCK_MODE=0 and MULTI_THREADED
                 // is not supported. also see code in
                 // JdbcDatabaseMetaData#supportsTransactionIsolationLevel(int)
@@ -2199,6 +2254,35 @@ public class Database implements DataHandler {
         return lobSyncObject;
     }
 
+    /**
+     * Wait until a session commits or rolls back a transaction, or until the
+     * timeout expires. This is used to wait for a row that was concurrently
+     * modified by another transaction. If the database is not multi-threaded,
+     * the caller must be synchronized on the database object.
+     *
+     * @param millis the maximum number of milliseconds to wait
+     */
+    public void waitForTransactionEnd(long millis) {
+        Object sync = multiThreaded ? transactionEndSync : this;
+        try {
+            synchronized (sync) {
+                sync.wait(millis);
+            }
+        } catch (InterruptedException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * Wake up the sessions that wait for a concurrently modified row.
+     */
+    public void notifyTransactionEnd() {
+        Object sync = multiThreaded ? transactionEndSync : this;
+        synchronized (sync) {
+            sync.notifyAll();
+        }
+    }
+
     public int getSessionCount() {
         return userSessions.size();
     }
@@ -2236,6 +2320,24 @@ public class Database implements DataHandler {
         return queryStatisticsData;
     }
 
+    /**
+     * Get the query result cache that is shared by all sessions.
+     *
+     * @return the cache, or null if disabled
+     */
+    public QueryResultCache getQueryResultCache() {
+        return queryResultCache;
+    }
+
+    /**
+     * Get the cache of join orders that is shared by all sessions.
+     *
+     * @return the cache, or null if disabled
+     */
+    public JoinOrderCache getJoinOrderCache() {
+        return joinOrderCache;
+    }
+
     /**
      * Check if the database is currently opening. This is true until all stored
      * SQL statements have been executed.
@@ -2280,6 +2382,16 @@ public class Database implements DataHandler {
         return multiThreaded;
     }
 
+    /**
+     * Check whether multi-threading is only enabled because it is the default
+     * when using the MVStore. In this case, LOCK_MODE 0 disables it.
+     *
+     * @return true if multi-threading was enabled by default
+     */
+    public boolean isMultiThreadedDefault() {
+        return multiThreaded && multiThreadedDefault;
+    }
+
     public void setMultiThreaded(boolean multiThreaded) {
         if (multiThreaded && this.multiThreaded != multiThreaded) {
             if (multiVersion && mvStore == null) {
@@ -2298,6 +2410,7 @@ public class Database implements DataHandler {
             }
         }
         this.multiThreaded = multiThreaded;
+        multiThreadedDefault = false;
     }
 
     public void setMaxOperationMemory(int maxOperationMemory) {
@@ -47,12 +47,39 @@ public class DbSettings extends SettingsBase {
      */
     public final int analyzeAuto = get("ANALYZE_AUTO", 2000);
 
+    /**
+     * Database setting <code>ANALYZE_HISTOGRAM</code> (default: 20).<br />
+     * The number of buckets of the histograms that ANALYZE computes for each
+     * column, and the maximum number of most common values that are kept. The
+     * histograms are used to estimate the number of rows that match a
+     * condition. Computing histograms is disabled if set to 0.
+     */
+    public final int analyzeHistogram = get("ANALYZE_HISTOGRAM", 20);
+
     /**
      * Database setting <code>ANALYZE_SAMPLE</code> (default: 10000).<br />
      * The default sample size when analyzing a table.
      */
     public final int analyzeSample = get("ANALYZE_SAMPLE", 10000);
 
+    /**
+     * Database setting <code>COMPILE_EXPRESSIONS</code> (default: 0).<br />
+     * The number of times a query is executed before its condition and its
+     * arithmetic expressions are compiled to a Java class. Compiling
+     * expressions requires a Java compiler; if compiling fails, the
+     * expressions are interpreted as usual. Set to 0 to disable.
+     */
+    public final int compileExpressions = get("COMPILE_EXPRESSIONS", 0);
+
+    /**
+     * Database setting <code>CREATE_INDEX_THREADS</code> (default: 1).<br />
+     * The number of threads used to sort the rows when creating an index on a
+     * large table (MVStore only). The rows are still read and merged by one
+     * thread, and each thread uses a smaller block, so this is not always
+     * faster.
+     */
+    public final int createIndexThreads = get("CREATE_INDEX_THREADS", 1);
+
     /**
      * Database setting <code>DATABASE_TO_UPPER</code> (default: true).<br />
      * Database short names are converted to uppercase for the DATABASE()
@@ -127,6 +154,17 @@ public class DbSettings extends SettingsBase {
      */
     public final boolean functionsInSchema = get("FUNCTIONS_IN_SCHEMA", true);
 
+    /**
+     * Database setting <code>JOIN_ORDER_CACHE_SIZE</code>
+     * (default: 0).<br />
+     * The number of join orders found by the optimizer to keep for all
+     * sessions, so that the same query does not need to be optimized again in
+     * another session. Only queries that join at least three tables are
+     * cached. The cache is cleared when the meta data changes. Set to 0 to
+     * disable.
+     */
+    public final int joinOrderCacheSize = get("JOIN_ORDER_CACHE_SIZE", 0);
+
     /**
      * Database setting <code>LARGE_TRANSACTIONS</code> (default: true).<br />
      * Support very large transactions
@@ -192,6 +230,15 @@ public class DbSettings extends SettingsBase {
     public final boolean optimizeEvaluatableSubqueries = get(
             "OPTIMIZE_EVALUATABLE_SUBQUERIES", true);
 
+    /**
+     * Database setting <code>OPTIMIZE_HASH_JOIN</code> (default: true).<br />
+     * Join a table that has no usable index on the join column by building an
+     * in-memory hash table over the rows of the table once, instead of
+     * scanning the table for each row of the outer table. This is only done if
+     * the table has at most MAX_MEMORY_ROWS rows.
+     */
+    public final boolean optimizeHashJoin = get("OPTIMIZE_HASH_JOIN", true);
+
     /**
      * Database setting <code>OPTIMIZE_INSERT_FROM_SELECT</code>
      * (default: true).<br />
@@ -221,6 +268,14 @@ public class DbSettings extends SettingsBase {
      */
     public final boolean optimizeIsNull = get("OPTIMIZE_IS_NULL", true);
 
+    /**
+     * Database setting <code>OPTIMIZE_MERGE_JOIN</code> (default: true).<br />
+     * Join a table using an index on the join column by reading the index
+     * sequentially, instead of searching it for each row of the outer table,
+     * if the outer table is also read in the order of the join column.
+     */
+    public final boolean optimizeMergeJoin = get("OPTIMIZE_MERGE_JOIN", true);
+
     /**
      * Database setting <code>OPTIMIZE_OR</code> (default: true).<br />
      * Convert (C=? OR C=?) to (C IN(?, ?)).
@@ -263,6 +318,17 @@ public class DbSettings extends SettingsBase {
      */
     public final boolean pageStoreTrim = get("PAGE_STORE_TRIM", true);
 
+    /**
+     * Database setting <code>PARAMETERIZE_LITERALS</code> (default:
+     * false).<br />
+     * Replace the integer and string literals of simple conditions in the
+     * WHERE clause (as in ID = 42) with parameters before a statement is
+     * looked up in the query cache, so that statements that only differ in
+     * these values re-use the same prepared statement and plan.
+     */
+    public final boolean parameterizeLiterals = get("PARAMETERIZE_LITERALS",
+            false);
+
     /**
      * Database setting <code>QUERY_CACHE_SIZE</code> (default: 8).<br />
      * The size of the query cache, in number of cached statements. Each session
@@ -276,6 +342,14 @@ public class DbSettings extends SettingsBase {
      */
     public final int queryCacheSize = get("QUERY_CACHE_SIZE", 8);
 
+    /**
+     * Database setting <code>QUERY_THREADS</code> (default: 1).<br />
+     * The maximum number of threads used to execute an aggregate query on a
+     * single large table (MVStore only). The rows are split into ranges of
+     * the primary key that are read and aggregated in parallel.
+     */
+    public final int queryThreads = get("QUERY_THREADS", 1);
+
     /**
      * Database setting <code>RECOMPILE_ALWAYS</code> (default: false).<br />
      * Always recompile prepared statements.
@@ -323,6 +397,24 @@ public class DbSettings extends SettingsBase {
     public final boolean shareLinkedConnections = get(
             "SHARE_LINKED_CONNECTIONS", true);
 
+    /**
+     * Database setting <code>SHARED_RESULT_CACHE_SIZE</code>
+     * (default: 0).<br />
+     * The size of the query result cache that is shared by all sessions, in
+     * KB. Results of deterministic queries are re-used by other sessions as
+     * long as the tables they read from are not modified. Set to 0 to disable.
+     */
+    public final int sharedResultCacheSize = get("SHARED_RESULT_CACHE_SIZE", 0);
+
+    /**
+     * Database setting <code>SUBQUERY_CACHE_SIZE</code>
+     * (default: 1000).<br />
+     * The maximum number of results of a correlated subquery to keep, per
+     * subquery and statement. The results are keyed by the values of the
+     * referenced columns of the outer query. Set to 0 to disable.
+     */
+    public final int subqueryCacheSize = get("SUBQUERY_CACHE_SIZE", 1000);
+
     /**
      * Database setting <code>DEFAULT_TABLE_ENGINE</code>
      * (default: null).<br />
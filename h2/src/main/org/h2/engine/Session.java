@@ -15,6 +15,7 @@ import java.util.Random;
 import org.h2.api.ErrorCode;
 import org.h2.command.Command;
 import org.h2.command.CommandInterface;
+import org.h2.command.LiteralParameterizer;
 import org.h2.command.Parser;
 import org.h2.command.Prepared;
 import org.h2.command.dml.SetTypes;
@@ -81,7 +82,7 @@ public class Session extends SessionWithState {
     private HashMap<String, Constraint> localTempTableConstraints;
     private int throttle;
     private long lastThrottle;
-    private Command currentCommand;
+    private volatile Command currentCommand;
     private boolean allowLiterals;
     private String currentSchemaName;
     private String[] schemaSearchPath;
@@ -97,10 +98,11 @@ public class Session extends SessionWithState {
     private boolean closed;
     private final long sessionStart = System.currentTimeMillis();
     private long transactionStart;
-    private long currentCommandStart;
+    private volatile long currentCommandStart;
     private HashMap<String, Value> variables;
     private HashSet<LocalResult> temporaryResults;
     private int queryTimeout;
+    private boolean lazyQueryExecution;
     private boolean commitOrRollbackDisabled;
     private Table waitForLock;
     private Thread waitForLockThread;
@@ -127,6 +129,7 @@ public class Session extends SessionWithState {
 
     private Transaction transaction;
     private long startStatement = -1;
+    private int statementId;
 
     public Session(Database database, User user, int id) {
         this.database = database;
@@ -310,8 +313,17 @@ public class Session extends SessionWithState {
     public void removeLocalTempTableIndex(Index index) {
         if (localTempTableIndexes != null) {
             localTempTableIndexes.remove(index.getName());
-            synchronized (database) {
-                index.removeChildrenAndResources(this);
+            // lock before synchronizing, see Database.lockMeta
+            boolean wasLocked = database.lockMeta(this);
+            try {
+                synchronized (database) {
+                    index.removeChildrenAndResources(this);
+                }
+            } finally {
+                if (!wasLocked) {
+                    // temporary objects are not stored in the metadata table
+                    database.unlockMeta(this);
+                }
             }
         }
     }
@@ -369,8 +381,17 @@ public class Session extends SessionWithState {
     void removeLocalTempTableConstraint(Constraint constraint) {
         if (localTempTableConstraints != null) {
             localTempTableConstraints.remove(constraint.getName());
-            synchronized (database) {
-                constraint.removeChildrenAndResources(this);
+            // lock before synchronizing, see Database.lockMeta
+            boolean wasLocked = database.lockMeta(this);
+            try {
+                synchronized (database) {
+                    constraint.removeChildrenAndResources(this);
+                }
+            } finally {
+                if (!wasLocked) {
+                    // temporary objects are not stored in the metadata table
+                    database.unlockMeta(this);
+                }
             }
         }
     }
@@ -440,6 +461,17 @@ public class Session extends SessionWithState {
                     "session closed");
         }
         Command command;
+        String key = sql;
+        ArrayList<Value> literals = null;
+        if (queryCacheSize > 0 && database.getSettings().parameterizeLiterals) {
+            literals = New.arrayList();
+            String normalized = LiteralParameterizer.parameterize(sql, literals);
+            if (normalized == null) {
+                literals = null;
+            } else {
+                key = normalized;
+            }
+        }
         if (queryCacheSize > 0) {
             if (queryCache == null) {
                 queryCache = SmallLRUCache.newInstance(queryCacheSize);
@@ -450,14 +482,24 @@ public class Session extends SessionWithState {
                     queryCache.clear();
                     modificationMetaID = newModificationMetaID;
                 }
-                command = queryCache.get(sql);
-                if (command != null && command.canReuse()) {
+                command = queryCache.get(key);
+                if (command != null && command.canReuse() &&
+                        command.hasLiteralValues() == (literals != null)) {
                     command.reuse();
-                    return command;
+                    if (literals == null || command.setLiteralValues(literals)) {
+                        return command;
+                    }
                 }
             }
         }
         Parser parser = new Parser(this);
+        if (literals != null) {
+            command = prepareWithLiterals(parser, key, literals);
+            if (command != null) {
+                return command;
+            }
+            parser = new Parser(this);
+        }
         command = parser.prepareCommand(sql);
         if (queryCache != null) {
             if (command.isCacheable()) {
@@ -467,6 +509,25 @@ public class Session extends SessionWithState {
         return command;
     }
 
+    private Command prepareWithLiterals(Parser parser, String sql,
+            ArrayList<Value> literals) {
+        Command command;
+        try {
+            command = parser.prepareCommand(sql);
+        } catch (DbException e) {
+            // a parameter is not allowed where the literal was
+            return null;
+        }
+        if (!command.setLiteralValues(literals)) {
+            command.close();
+            return null;
+        }
+        if (command.isCacheable()) {
+            queryCache.put(sql, command);
+        }
+        return command;
+    }
+
     public Database getDatabase() {
         return database;
     }
@@ -506,6 +567,7 @@ public class Session extends SessionWithState {
             }
             transaction.commit();
             transaction = null;
+            database.notifyTransactionEnd();
         }
         if (containsUncommitted()) {
             // need to commit even if rollback is not possible
@@ -609,6 +671,7 @@ public class Session extends SessionWithState {
             // committing will end the transaction
             transaction.commit();
             transaction = null;
+            database.notifyTransactionEnd();
         }
         if (locks.size() > 0 || needCommit) {
             database.commit(this);
@@ -678,6 +741,19 @@ public class Session extends SessionWithState {
         return undoLog.size() > 0;
     }
 
+    /**
+     * Check whether this session changed data that is not committed yet.
+     * Such changes are not visible to other sessions.
+     *
+     * @return true if there are uncommitted changes
+     */
+    public boolean hasUncommittedChanges() {
+        if (transaction != null && transaction.setSavepoint() > 0) {
+            return true;
+        }
+        return undoLog.size() > 0;
+    }
+
     /**
      * Create a savepoint to allow rolling back to this state.
      *
@@ -1344,6 +1420,14 @@ public class Session extends SessionWithState {
         return queryTimeout;
     }
 
+    public void setLazyQueryExecution(boolean lazyQueryExecution) {
+        this.lazyQueryExecution = lazyQueryExecution;
+    }
+
+    public boolean isLazyQueryExecution() {
+        return lazyQueryExecution;
+    }
+
     /**
      * Set the table this session is waiting for, and the thread that is
      * waiting.
@@ -1476,9 +1560,21 @@ public class Session extends SessionWithState {
      */
     public void endStatement() {
         startStatement = -1;
+        statementId++;
         closeTemporaryResults();
     }
 
+    /**
+     * Get the id of the current statement. The id changes whenever a
+     * statement ends, so that results cached for the duration of one
+     * statement can be detected as outdated.
+     *
+     * @return the statement id
+     */
+    public int getStatementId() {
+        return statementId;
+    }
+
     @Override
     public void addTemporaryLob(Value v) {
         if (v.getTableId() == LobStorageFrontend.TABLE_RESULT) {
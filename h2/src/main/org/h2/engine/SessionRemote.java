@@ -116,7 +116,7 @@ public class SessionRemote extends SessionWithState implements DataHandler {
         trans.setSSL(ci.isSSL());
         trans.init();
         trans.writeInt(Constants.TCP_PROTOCOL_VERSION_6);
-        trans.writeInt(Constants.TCP_PROTOCOL_VERSION_15);
+        trans.writeInt(Constants.TCP_PROTOCOL_VERSION_16);
         trans.writeString(db);
         trans.writeString(ci.getOriginalURL());
         trans.writeString(ci.getUserName());
@@ -600,6 +600,10 @@ public class SessionRemote extends SessionWithState implements DataHandler {
         return nextId;
     }
 
+    public int getClientVersion() {
+        return clientVersion;
+    }
+
     /**
      * Called to flush the output after data has been sent to the server and
      * just before receiving data. This method also reads the status code from
@@ -13,10 +13,12 @@ import java.util.HashMap;
 import org.h2.api.ErrorCode;
 import org.h2.command.dml.Select;
 import org.h2.command.dml.SelectOrderBy;
+import org.h2.engine.Database;
 import org.h2.engine.Session;
 import org.h2.index.Cursor;
 import org.h2.index.Index;
 import org.h2.message.DbException;
+import org.h2.result.Row;
 import org.h2.result.SearchRow;
 import org.h2.result.SortOrder;
 import org.h2.table.Column;
@@ -59,7 +61,7 @@ public class Aggregate extends Expression {
     /**
      * The aggregate type for SUM(expression).
      */
-    static final int SUM = 3;
+    public static final int SUM = 3;
 
     /**
      * The aggregate type for MIN(expression).
@@ -276,6 +278,32 @@ public class Aggregate extends Expression {
         data.add(session.getDatabase(), dataType, distinct, v);
     }
 
+    /**
+     * Update the aggregate with a block of rows of the given table filter.
+     * This is only supported if there is no GROUP BY, and not for
+     * GROUP_CONCAT.
+     *
+     * @param session the session
+     * @param filter the table filter
+     * @param rows the rows
+     * @param count the number of rows
+     */
+    public void updateAggregate(Session session, TableFilter filter,
+            Row[] rows, int count) {
+        HashMap<Expression, Object> group = select.getCurrentGroup();
+        AggregateData data = (AggregateData) group.get(this);
+        if (data == null) {
+            data = AggregateData.create(type);
+            group.put(this, data);
+        }
+        Value[] values = null;
+        if (on != null) {
+            values = new Value[count];
+            on.getValues(session, filter, rows, count, values);
+        }
+        data.add(session.getDatabase(), dataType, distinct, values, count);
+    }
+
     @Override
     public Value getValue(Session session) {
         if (select.isQuickAggregateQuery()) {
@@ -575,6 +603,103 @@ public class Aggregate extends Expression {
         return text + StringUtils.enclose(on.getSQL());
     }
 
+    /**
+     * Check whether this is the aggregate MIN(column) for the given column.
+     *
+     * @param column the column
+     * @return true if it is
+     */
+    public boolean isMinimumOf(Column column) {
+        return type == MIN && on instanceof ExpressionColumn &&
+                ((ExpressionColumn) on).getColumn() == column;
+    }
+
+    /**
+     * Check whether this is the aggregate COUNT(*).
+     *
+     * @return true if it is
+     */
+    public boolean isCountAll() {
+        return type == COUNT_ALL;
+    }
+
+    /**
+     * Get the aggregate type if the value can be maintained incrementally when
+     * rows are added and removed.
+     *
+     * @return COUNT_ALL, COUNT, or SUM, or -1 for other aggregates and
+     *         DISTINCT aggregates
+     */
+    public int getIncrementalType() {
+        if (distinct) {
+            return -1;
+        }
+        switch (type) {
+        case COUNT_ALL:
+        case COUNT:
+        case SUM:
+            return type;
+        default:
+            return -1;
+        }
+    }
+
+    /**
+     * Check whether this aggregate can be calculated in parts, on different
+     * rows, that are then merged.
+     *
+     * @return true if yes
+     */
+    public boolean isMergeable() {
+        if (distinct) {
+            return false;
+        }
+        switch (type) {
+        case GROUP_CONCAT:
+        case SELECTIVITY:
+        case HISTOGRAM:
+            return false;
+        default:
+            return true;
+        }
+    }
+
+    /**
+     * Check whether this aggregate can be updated with blocks of rows.
+     *
+     * @return true if yes
+     */
+    public boolean isBatchSupported() {
+        return type != GROUP_CONCAT;
+    }
+
+    /**
+     * Merge the data of this aggregate that was calculated on different rows.
+     *
+     * @param database the database
+     * @param data the data, or null
+     * @param other the data calculated on other rows, or null
+     * @return the merged data
+     */
+    public Object merge(Database database, Object data, Object other) {
+        if (data == null) {
+            return other;
+        } else if (other != null) {
+            ((AggregateData) data).merge(database, dataType,
+                    (AggregateData) other);
+        }
+        return data;
+    }
+
+    /**
+     * Get the expression the aggregate is computed on.
+     *
+     * @return the expression, or null for COUNT(*)
+     */
+    public Expression getOn() {
+        return on;
+    }
+
     private Index getColumnIndex() {
         if (on instanceof ExpressionColumn) {
             ExpressionColumn col = (ExpressionColumn) on;
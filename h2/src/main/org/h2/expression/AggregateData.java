@@ -6,6 +6,7 @@
 package org.h2.expression;
 
 import org.h2.engine.Database;
+import org.h2.message.DbException;
 import org.h2.value.Value;
 
 /**
@@ -45,6 +46,23 @@ abstract class AggregateData {
      */
     abstract void add(Database database, int dataType, boolean distinct, Value v);
 
+    /**
+     * Add a block of values to this aggregate.
+     *
+     * @param database the database
+     * @param dataType the datatype of the computed result
+     * @param distinct if the calculation should be distinct
+     * @param values the values, or null for COUNT(*)
+     * @param count the number of values
+     */
+    void add(Database database, int dataType, boolean distinct,
+            Value[] values, int count) {
+        for (int i = 0; i < count; i++) {
+            add(database, dataType, distinct,
+                    values == null ? null : values[i]);
+        }
+    }
+
     /**
      * Get the aggregate result.
      *
@@ -54,4 +72,17 @@ abstract class AggregateData {
      * @return the value
      */
     abstract Value getValue(Database database, int dataType, boolean distinct);
+
+    /**
+     * Add the values of another aggregate of the same type, that was
+     * calculated on different rows. This is only supported for non-distinct
+     * aggregates of the types where Aggregate.isMergeable returns true.
+     *
+     * @param database the database
+     * @param dataType the datatype of the computed result
+     * @param other the other aggregate
+     */
+    void merge(Database database, int dataType, AggregateData other) {
+        throw DbException.throwInternalError();
+    }
 }
@@ -46,4 +46,9 @@ class AggregateDataCount extends AggregateData {
         return v.convertTo(dataType);
     }
 
+    @Override
+    void merge(Database database, int dataType, AggregateData other) {
+        count += ((AggregateDataCount) other).count;
+    }
+
 }
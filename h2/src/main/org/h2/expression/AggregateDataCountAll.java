@@ -25,6 +25,15 @@ class AggregateDataCountAll extends AggregateData {
         count++;
     }
 
+    @Override
+    void add(Database database, int dataType, boolean distinct,
+            Value[] values, int count) {
+        if (distinct) {
+            throw DbException.throwInternalError();
+        }
+        this.count += count;
+    }
+
     @Override
     Value getValue(Database database, int dataType, boolean distinct) {
         if (distinct) {
@@ -34,4 +43,9 @@ class AggregateDataCountAll extends AggregateData {
         return v == null ? ValueNull.INSTANCE : v.convertTo(dataType);
     }
 
+    @Override
+    void merge(Database database, int dataType, AggregateData other) {
+        count += ((AggregateDataCountAll) other).count;
+    }
+
 }
@@ -183,6 +183,67 @@ class AggregateDataDefault extends AggregateData {
         return v == null ? ValueNull.INSTANCE : v.convertTo(dataType);
     }
 
+    @Override
+    void merge(Database database, int dataType, AggregateData other) {
+        AggregateDataDefault o = (AggregateDataDefault) other;
+        if (o.count == 0) {
+            return;
+        } else if (count == 0) {
+            count = o.count;
+            value = o.value;
+            mean = o.mean;
+            m2 = o.m2;
+            return;
+        }
+        switch (aggregateType) {
+        case Aggregate.SUM:
+        case Aggregate.AVG:
+            value = value.add(o.value.convertTo(value.getType()));
+            break;
+        case Aggregate.MIN:
+            if (database.compare(o.value, value) < 0) {
+                value = o.value;
+            }
+            break;
+        case Aggregate.MAX:
+            if (database.compare(o.value, value) > 0) {
+                value = o.value;
+            }
+            break;
+        case Aggregate.STDDEV_POP:
+        case Aggregate.STDDEV_SAMP:
+        case Aggregate.VAR_POP:
+        case Aggregate.VAR_SAMP: {
+            // see the parallel algorithm at
+            // http://en.wikipedia.org/wiki/Algorithms_for_calculating_variance
+            double n = count + o.count;
+            double delta = o.mean - mean;
+            mean += delta * o.count / n;
+            m2 += o.m2 + delta * delta * count * o.count / n;
+            break;
+        }
+        case Aggregate.BOOL_AND:
+            value = ValueBoolean.get(value.getBoolean().booleanValue() &&
+                    o.value.getBoolean().booleanValue());
+            break;
+        case Aggregate.BOOL_OR:
+            value = ValueBoolean.get(value.getBoolean().booleanValue() ||
+                    o.value.getBoolean().booleanValue());
+            break;
+        case Aggregate.BIT_AND:
+            value = ValueLong.get(value.getLong() & o.value.getLong()).
+                    convertTo(dataType);
+            break;
+        case Aggregate.BIT_OR:
+            value = ValueLong.get(value.getLong() | o.value.getLong()).
+                    convertTo(dataType);
+            break;
+        default:
+            DbException.throwInternalError("type=" + aggregateType);
+        }
+        count += o.count;
+    }
+
     private static Value divide(Value a, long by) {
         if (by == 0) {
             return ValueNull.INSTANCE;
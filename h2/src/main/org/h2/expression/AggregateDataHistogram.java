@@ -45,6 +45,10 @@ class AggregateDataHistogram extends AggregateData {
             count = 0;
             groupDistinct(database, dataType);
         }
+        if (distinctValues == null) {
+            // no rows
+            return ValueArray.get(new Value[0]).convertTo(dataType);
+        }
         ValueArray[] values = new ValueArray[distinctValues.size()];
         int i = 0;
         for (Value dv : distinctValues.keys()) {
@@ -11,7 +11,10 @@ import org.h2.engine.Session;
 import org.h2.engine.SysProperties;
 import org.h2.index.IndexCondition;
 import org.h2.message.DbException;
+import org.h2.result.Row;
 import org.h2.table.ColumnResolver;
+import org.h2.table.IndexExpressionColumn;
+import org.h2.table.Table;
 import org.h2.table.TableFilter;
 import org.h2.util.New;
 import org.h2.value.Value;
@@ -258,6 +261,44 @@ public class Comparison extends Condition {
         return ValueBoolean.get(result);
     }
 
+    @Override
+    public void getValues(Session session, TableFilter filter, Row[] rows,
+            int count, Value[] values) {
+        if (right == null) {
+            super.getValues(session, filter, rows, count, values);
+            return;
+        }
+        Value[] l = new Value[count];
+        left.getValues(session, filter, rows, count, l);
+        // like in getValue, the right side is only evaluated if needed
+        boolean nullSafe = (compareType & NULL_SAFE) != 0;
+        Row[] needed = new Row[count];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (nullSafe || l[i] != ValueNull.INSTANCE) {
+                needed[n++] = rows[i];
+            }
+        }
+        Value[] r = new Value[n];
+        right.getValues(session, filter, needed, n, r);
+        int dataType = Value.getHigherOrder(left.getType(), right.getType());
+        for (int i = 0, j = 0; i < count; i++) {
+            if (!nullSafe && l[i] == ValueNull.INSTANCE) {
+                values[i] = ValueNull.INSTANCE;
+                continue;
+            }
+            Value v = r[j++];
+            if (!nullSafe && v == ValueNull.INSTANCE) {
+                values[i] = ValueNull.INSTANCE;
+                continue;
+            }
+            boolean result = compareNotNull(database,
+                    l[i].convertTo(dataType), v.convertTo(dataType),
+                    compareType);
+            values[i] = ValueBoolean.get(result);
+        }
+    }
+
     /**
      * Compare two values, given the values are not NULL.
      *
@@ -396,6 +437,7 @@ public class Comparison extends Condition {
         }
         // one side must be from the current filter
         if (l == null && r == null) {
+            createIndexExpressionCondition(filter);
             return;
         }
         if (l != null && r != null) {
@@ -448,6 +490,43 @@ public class Comparison extends Condition {
         }
     }
 
+    /**
+     * Create an index condition if one side of the comparison is an
+     * expression of an expression index, and the other side does not depend
+     * on the table filter.
+     *
+     * @param filter the table filter
+     */
+    private void createIndexExpressionCondition(TableFilter filter) {
+        switch (compareType) {
+        case EQUAL:
+        case EQUAL_NULL_SAFE:
+        case BIGGER:
+        case BIGGER_EQUAL:
+        case SMALLER_EQUAL:
+        case SMALLER:
+            break;
+        default:
+            return;
+        }
+        ExpressionVisitor visitor =
+                ExpressionVisitor.getNotFromResolverVisitor(filter);
+        Table table = filter.getTable();
+        IndexExpressionColumn column = table.findIndexExpressionColumn(left);
+        if (column != null && !left.isEverything(visitor) &&
+                right.isEverything(visitor)) {
+            filter.addIndexCondition(IndexCondition.getForIndexExpression(
+                    compareType, column, right));
+            return;
+        }
+        column = table.findIndexExpressionColumn(right);
+        if (column != null && !right.isEverything(visitor) &&
+                left.isEverything(visitor)) {
+            filter.addIndexCondition(IndexCondition.getForIndexExpression(
+                    getReversedCompareType(compareType), column, left));
+        }
+    }
+
     @Override
     public void setEvaluatable(TableFilter tableFilter, boolean b) {
         left.setEvaluatable(tableFilter, b);
@@ -569,6 +648,15 @@ public class Comparison extends Condition {
         return null;
     }
 
+    /**
+     * Get the comparison type.
+     *
+     * @return the comparison type, for example EQUAL
+     */
+    public int getCompareType() {
+        return compareType;
+    }
+
     /**
      * Get the left or the right sub-expression of this condition.
      *
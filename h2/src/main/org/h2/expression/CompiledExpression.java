@@ -0,0 +1,149 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression;
+
+import org.h2.engine.Session;
+import org.h2.result.Row;
+import org.h2.table.ColumnResolver;
+import org.h2.table.TableFilter;
+import org.h2.value.Value;
+
+/**
+ * An expression that was compiled to a Java class. Everything except the
+ * evaluation is delegated to the original expression.
+ */
+class CompiledExpression extends Expression {
+
+    private final Expression expr;
+    private final ExpressionCompiler.Evaluator evaluator;
+    private final Expression[] leaves;
+    private final int[] leafTypes;
+
+    CompiledExpression(Expression expr, ExpressionCompiler.Evaluator evaluator,
+            Expression[] leaves) {
+        this.expr = expr;
+        this.evaluator = evaluator;
+        this.leaves = leaves;
+        leafTypes = new int[leaves.length];
+        for (int i = 0; i < leaves.length; i++) {
+            leafTypes[i] = leaves[i].getType();
+        }
+    }
+
+    @Override
+    public Value getValue(Session session) {
+        for (int i = 0; i < leaves.length; i++) {
+            if (leaves[i].getType() != leafTypes[i]) {
+                // the data type of a parameter changed:
+                // the generated code does not apply
+                return expr.getValue(session);
+            }
+        }
+        return evaluator.getValue(session);
+    }
+
+    @Override
+    public void getValues(Session session, TableFilter filter, Row[] rows,
+            int count, Value[] values) {
+        expr.getValues(session, filter, rows, count, values);
+    }
+
+    @Override
+    public int getType() {
+        return expr.getType();
+    }
+
+    @Override
+    public void mapColumns(ColumnResolver resolver, int level) {
+        expr.mapColumns(resolver, level);
+    }
+
+    @Override
+    public Expression optimize(Session session) {
+        return this;
+    }
+
+    @Override
+    public void setEvaluatable(TableFilter tableFilter, boolean b) {
+        expr.setEvaluatable(tableFilter, b);
+    }
+
+    @Override
+    public int getScale() {
+        return expr.getScale();
+    }
+
+    @Override
+    public long getPrecision() {
+        return expr.getPrecision();
+    }
+
+    @Override
+    public int getDisplaySize() {
+        return expr.getDisplaySize();
+    }
+
+    @Override
+    public boolean isAutoIncrement() {
+        return expr.isAutoIncrement();
+    }
+
+    @Override
+    public String getSQL() {
+        return expr.getSQL();
+    }
+
+    @Override
+    public void updateAggregate(Session session) {
+        expr.updateAggregate(session);
+    }
+
+    @Override
+    public String getAlias() {
+        return expr.getAlias();
+    }
+
+    @Override
+    public String getColumnName() {
+        return expr.getColumnName();
+    }
+
+    @Override
+    public String getSchemaName() {
+        return expr.getSchemaName();
+    }
+
+    @Override
+    public String getTableName() {
+        return expr.getTableName();
+    }
+
+    @Override
+    public String getTableAlias() {
+        return expr.getTableAlias();
+    }
+
+    @Override
+    public int getNullable() {
+        return expr.getNullable();
+    }
+
+    @Override
+    public Expression getNonAliasExpression() {
+        return expr.getNonAliasExpression();
+    }
+
+    @Override
+    public boolean isEverything(ExpressionVisitor visitor) {
+        return expr.isEverything(visitor);
+    }
+
+    @Override
+    public int getCost() {
+        return expr.getCost();
+    }
+
+}
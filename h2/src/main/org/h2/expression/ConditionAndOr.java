@@ -8,6 +8,7 @@ package org.h2.expression;
 import org.h2.engine.Session;
 import org.h2.engine.SysProperties;
 import org.h2.message.DbException;
+import org.h2.result.Row;
 import org.h2.table.ColumnResolver;
 import org.h2.table.TableFilter;
 import org.h2.value.Value;
@@ -123,6 +124,43 @@ public class ConditionAndOr extends Condition {
         }
     }
 
+    @Override
+    public void getValues(Session session, TableFilter filter, Row[] rows,
+            int count, Value[] values) {
+        left.getValues(session, filter, rows, count, values);
+        // like in getValue, the right side is only evaluated for the rows
+        // where the left side does not determine the result
+        Boolean done = andOrType == AND ? Boolean.FALSE : Boolean.TRUE;
+        Row[] needed = new Row[count];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (!done.equals(values[i].getBoolean())) {
+                needed[n++] = rows[i];
+            }
+        }
+        if (n == 0) {
+            return;
+        }
+        Value[] r = new Value[n];
+        right.getValues(session, filter, needed, n, r);
+        for (int i = 0, j = 0; i < count; i++) {
+            Value l = values[i];
+            if (done.equals(l.getBoolean())) {
+                continue;
+            }
+            Value v = r[j++];
+            if (done.equals(v.getBoolean())) {
+                values[i] = v;
+            } else if (l == ValueNull.INSTANCE) {
+                values[i] = l;
+            } else if (v == ValueNull.INSTANCE) {
+                values[i] = v;
+            } else {
+                values[i] = ValueBoolean.get(andOrType == AND);
+            }
+        }
+    }
+
     @Override
     public Expression optimize(Session session) {
         // NULL handling: see wikipedia,
@@ -289,6 +327,15 @@ public class ConditionAndOr extends Condition {
         return andOrType == OR || left.isDisjunctive() || right.isDisjunctive();
     }
 
+    /**
+     * Get the type of this condition.
+     *
+     * @return AND or OR
+     */
+    public int getAndOrType() {
+        return andOrType;
+    }
+
     /**
      * Get the left or the right sub-expression of this condition.
      *
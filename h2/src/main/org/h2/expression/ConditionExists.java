@@ -12,6 +12,7 @@ import org.h2.table.ColumnResolver;
 import org.h2.table.TableFilter;
 import org.h2.util.StringUtils;
 import org.h2.value.Value;
+import org.h2.value.ValueArray;
 import org.h2.value.ValueBoolean;
 
 /**
@@ -20,6 +21,8 @@ import org.h2.value.ValueBoolean;
 public class ConditionExists extends Condition {
 
     private final Query query;
+    private SubqueryResultCache resultCache;
+    private boolean resultCacheChecked;
 
     public ConditionExists(Query query) {
         this.query = query;
@@ -27,11 +30,29 @@ public class ConditionExists extends Condition {
 
     @Override
     public Value getValue(Session session) {
+        if (!resultCacheChecked) {
+            resultCache = SubqueryResultCache.create(session, query);
+            resultCacheChecked = true;
+        }
+        ValueArray key = null;
+        if (resultCache != null) {
+            key = resultCache.getKey(session);
+            if (key != null) {
+                Value v = resultCache.get(key);
+                if (v != null) {
+                    return v;
+                }
+            }
+        }
         query.setSession(session);
         LocalResult result = query.query(1);
         session.addTemporaryResult(result);
         boolean r = result.getRowCount() > 0;
-        return ValueBoolean.get(r);
+        Value v = ValueBoolean.get(r);
+        if (key != null) {
+            resultCache.put(key, v);
+        }
+        return v;
     }
 
     @Override
@@ -12,6 +12,7 @@ import org.h2.engine.Session;
 import org.h2.index.IndexCondition;
 import org.h2.message.DbException;
 import org.h2.result.LocalResult;
+import org.h2.result.ResultInterface;
 import org.h2.table.ColumnResolver;
 import org.h2.table.TableFilter;
 import org.h2.util.StringUtils;
@@ -31,6 +32,15 @@ public class ConditionInSelect extends Condition {
     private final int compareType;
     private int queryLevel;
 
+    /**
+     * Whether the subquery does not depend on the outer query, so that its
+     * result can be re-used within the same statement.
+     */
+    private Boolean independent;
+    private LocalResult cachedRows;
+    private Session cachedSession;
+    private int cachedStatementId;
+
     public ConditionInSelect(Database database, Expression left, Query query,
             boolean all, int compareType) {
         this.database = database;
@@ -43,8 +53,7 @@ public class ConditionInSelect extends Condition {
     @Override
     public Value getValue(Session session) {
         query.setSession(session);
-        query.setDistinct(true);
-        LocalResult rows = query.query(0);
+        LocalResult rows = getRows(session);
         try {
             Value l = left.getValue(session);
             if (rows.getRowCount() == 0) {
@@ -72,8 +81,79 @@ public class ConditionInSelect extends Condition {
             }
             return ValueBoolean.get(false);
         } finally {
-            rows.close();
+            if (rows != cachedRows) {
+                rows.close();
+            }
+        }
+    }
+
+    private LocalResult getRows(Session session) {
+        if (cachedRows != null && cachedSession == session &&
+                cachedStatementId == session.getStatementId() &&
+                !cachedRows.isClosed()) {
+            cachedRows.reset();
+            return cachedRows;
+        }
+        if (cachedRows != null) {
+            cachedRows.close();
+            cachedRows = null;
+            cachedSession = null;
+        }
+        if (query.getExpressions().size() == query.getColumnCount()) {
+            // with invisible columns, such as ORDER BY expressions, the rows
+            // would not be distinct by the visible column
+            query.setDistinct(true);
+        }
+        LocalResult rows = query.query(0);
+        if (!session.getDatabase().getSettings().optimizeInSelect) {
+            return rows;
         }
+        if (independent == null) {
+            independent = query.isEverything(
+                    ExpressionVisitor.INDEPENDENT_VISITOR) &&
+                    query.isEverything(ExpressionVisitor.DETERMINISTIC_VISITOR);
+        }
+        if (independent) {
+            // the result of an uncorrelated subquery does not change
+            // within the statement: keep it until the statement ends
+            cachedRows = rows;
+            cachedSession = session;
+            cachedStatementId = session.getStatementId();
+            session.addTemporaryResult(rows);
+        }
+        return rows;
+    }
+
+    /**
+     * Get the rows of the subquery, to look them up in an index. The result
+     * of an uncorrelated subquery is shared with the condition, so that the
+     * subquery is only run once per statement.
+     *
+     * @param session the session
+     * @return the result
+     */
+    public ResultInterface getIndexResult(Session session) {
+        query.setSession(session);
+        LocalResult rows = getRows(session);
+        if (rows != cachedRows) {
+            return rows;
+        }
+        // the index lookup reads the rows while the condition is evaluated
+        LocalResult copy = rows.createShallowCopy(session);
+        if (copy == null) {
+            return query.query(0);
+        }
+        session.addTemporaryResult(copy);
+        return copy;
+    }
+
+    /**
+     * Get the subquery.
+     *
+     * @return the subquery
+     */
+    public Query getQuery() {
+        return query;
     }
 
     private Value getValueSlow(LocalResult rows, Value l) {
@@ -181,7 +261,7 @@ public class ConditionInSelect extends Condition {
         if (!query.isEverything(visitor)) {
             return;
         }
-        filter.addIndexCondition(IndexCondition.getInQuery(l, query));
+        filter.addIndexCondition(IndexCondition.getInQuery(l, this));
     }
 
     @Override
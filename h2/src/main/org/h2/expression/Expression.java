@@ -11,6 +11,7 @@ import java.sql.SQLException;
 import org.h2.engine.Database;
 import org.h2.engine.Session;
 import org.h2.message.DbException;
+import org.h2.result.Row;
 import org.h2.table.Column;
 import org.h2.table.ColumnResolver;
 import org.h2.table.TableFilter;
@@ -34,6 +35,25 @@ public abstract class Expression {
      */
     public abstract Value getValue(Session session);
 
+    /**
+     * Return the resulting values for a block of rows of the given table
+     * filter. The default implementation sets the current row of the table
+     * filter and evaluates the rows one by one.
+     *
+     * @param session the session
+     * @param filter the table filter the rows belong to
+     * @param rows the rows
+     * @param count the number of rows
+     * @param values receives the results
+     */
+    public void getValues(Session session, TableFilter filter, Row[] rows,
+            int count, Value[] values) {
+        for (int i = 0; i < count; i++) {
+            filter.set(rows[i]);
+            values[i] = getValue(session);
+        }
+    }
+
     /**
      * Return the data type. The data type may not be known before the
      * optimization phase.
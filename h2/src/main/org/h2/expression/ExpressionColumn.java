@@ -15,6 +15,7 @@ import org.h2.engine.Database;
 import org.h2.engine.Session;
 import org.h2.index.IndexCondition;
 import org.h2.message.DbException;
+import org.h2.result.Row;
 import org.h2.schema.Constant;
 import org.h2.schema.Schema;
 import org.h2.table.Column;
@@ -191,6 +192,19 @@ public class ExpressionColumn extends Expression {
         return value;
     }
 
+    @Override
+    public void getValues(Session session, TableFilter filter, Row[] rows,
+            int count, Value[] values) {
+        int columnId = column.getColumnId();
+        if (columnResolver != filter || columnId < 0) {
+            super.getValues(session, filter, rows, count, values);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            values[i] = rows[i].getValue(columnId);
+        }
+    }
+
     @Override
     public int getType() {
         return column.getType();
@@ -306,6 +320,11 @@ public class ExpressionColumn extends Expression {
         case ExpressionVisitor.GET_COLUMNS:
             visitor.addColumn(column);
             return true;
+        case ExpressionVisitor.GET_OUTER_COLUMNS:
+            if (this.queryLevel >= visitor.getQueryLevel()) {
+                visitor.addOuterColumn(this);
+            }
+            return true;
         default:
             throw DbException.throwInternalError("type=" + visitor.getType());
         }
@@ -0,0 +1,732 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.h2.engine.Constants;
+import org.h2.engine.Session;
+import org.h2.table.Table;
+import org.h2.table.TableBase;
+import org.h2.util.New;
+import org.h2.util.SmallLRUCache;
+import org.h2.util.SourceCompiler;
+import org.h2.value.Value;
+import org.h2.value.ValueDouble;
+import org.h2.value.ValueInt;
+import org.h2.value.ValueLong;
+
+/**
+ * Compiles a condition or an arithmetic expression to a Java class. The
+ * generated code works on primitive values, so that no intermediate value
+ * objects are created, and the expression tree is not walked for each row.
+ * Only comparisons, AND, OR, and arithmetic operations on integer and double
+ * values are compiled. All other sub-expressions are evaluated by the
+ * interpreter as usual.
+ */
+public class ExpressionCompiler {
+
+    private static final int CLASS_CACHE_SIZE = 64;
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    /**
+     * The compiled classes, by the generated code of the method. The code only
+     * depends on the expression, so the class is shared by all statements
+     * that contain the same expression.
+     */
+    private static final SmallLRUCache<String, Class<?>> CLASSES =
+            SmallLRUCache.newInstance(CLASS_CACHE_SIZE);
+
+    private final ArrayList<Expression> leaves = New.arrayList();
+    private final StringBuilder buff = new StringBuilder();
+    private int nextVariable;
+
+    private ExpressionCompiler() {
+        // utility class
+    }
+
+    /**
+     * Compile a condition, if possible.
+     *
+     * @param session the session
+     * @param condition the condition
+     * @return the compiled condition, or the condition itself if it could
+     *         not be compiled
+     */
+    public static Expression compileCondition(Session session,
+            Expression condition) {
+        if (!(condition instanceof ConditionAndOr) &&
+                !isCompiledComparison(condition)) {
+            return condition;
+        }
+        ExpressionCompiler compiler = new ExpressionCompiler();
+        int b = compiler.addCondition(condition);
+        compiler.buff.append("        return b").append(b).
+                append(" < 0 ? ValueNull.INSTANCE : ValueBoolean.get(b").
+                append(b).append(" == 1);\n");
+        return compiler.compile(session, condition);
+    }
+
+    /**
+     * Compile an arithmetic expression, if possible.
+     *
+     * @param session the session
+     * @param expr the expression (possibly an alias)
+     * @return the compiled expression, or the expression itself if it could
+     *         not be compiled
+     */
+    public static Expression compileExpression(Session session,
+            Expression expr) {
+        Expression e = expr.getNonAliasExpression();
+        if (!(e instanceof Operation) || !isNumeric(e)) {
+            return expr;
+        }
+        ExpressionCompiler compiler = new ExpressionCompiler();
+        int x = compiler.addNumeric(e);
+        String valueClass;
+        switch (e.getType()) {
+        case Value.INT:
+            valueClass = "ValueInt";
+            break;
+        case Value.LONG:
+            valueClass = "ValueLong";
+            break;
+        default:
+            valueClass = "ValueDouble";
+        }
+        compiler.buff.append("        return n").append(x).
+                append(" ? ValueNull.INSTANCE : ").append(valueClass).
+                append(".get(x").append(x).append(");\n");
+        return compiler.compile(session, expr);
+    }
+
+    private Expression compile(Session session, Expression expr) {
+        String code = buff.toString();
+        Expression[] list = new Expression[leaves.size()];
+        leaves.toArray(list);
+        Evaluator evaluator;
+        try {
+            Class<?> clazz;
+            synchronized (CLASSES) {
+                clazz = CLASSES.get(code);
+            }
+            if (clazz == null) {
+                clazz = compileClass(code);
+                synchronized (CLASSES) {
+                    CLASSES.put(code, clazz);
+                }
+            }
+            evaluator = (Evaluator) clazz.newInstance();
+        } catch (Throwable e) {
+            // for example, no Java compiler is available
+            session.getTrace().debug(e, "compile " + expr.getSQL());
+            return expr;
+        }
+        session.getTrace().debug("compiled {0}", expr.getSQL());
+        evaluator.e = list;
+        return new CompiledExpression(expr, evaluator, list);
+    }
+
+    /**
+     * Compile an evaluator class. A separate compiler (and therefore class
+     * loader) is used, so that the classes of the database, such as triggers
+     * and user defined functions, are not affected, and the source code is
+     * not kept after the class was loaded.
+     *
+     * @param code the code of the method
+     * @return the class
+     */
+    private static Class<?> compileClass(String code)
+            throws ClassNotFoundException {
+        String className = Constants.USER_PACKAGE + ".expression.Expression" +
+                NEXT_ID.incrementAndGet();
+        int idx = className.lastIndexOf('.');
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(className.substring(0, idx)).
+                append(";\n" +
+                "import org.h2.engine.Session;\n" +
+                "import org.h2.value.*;\n" +
+                "public class ").append(className.substring(idx + 1)).
+                append(" extends ").
+                append(Evaluator.class.getName().replace('$', '.')).
+                append(" {\n" +
+                "    public Value getValue(Session session) {\n").
+                append(code).append("    }\n}\n");
+        SourceCompiler compiler = new SourceCompiler();
+        compiler.setSource(className, source.toString());
+        return compiler.getClass(className);
+    }
+
+    private static boolean isCompiledComparison(Expression e) {
+        if (!(e instanceof Comparison)) {
+            return false;
+        }
+        Comparison c = (Comparison) e;
+        switch (c.getCompareType()) {
+        case Comparison.IS_NULL:
+        case Comparison.IS_NOT_NULL:
+            return true;
+        case Comparison.EQUAL:
+        case Comparison.NOT_EQUAL:
+        case Comparison.BIGGER:
+        case Comparison.BIGGER_EQUAL:
+        case Comparison.SMALLER:
+        case Comparison.SMALLER_EQUAL:
+            break;
+        default:
+            return false;
+        }
+        Expression left = c.getExpression(true);
+        Expression right = c.getExpression(false);
+        int type = Value.getHigherOrder(left.getType(), right.getType());
+        return getJavaType(type) != null && isNumeric(left) &&
+                isNumeric(right);
+    }
+
+    /**
+     * Check whether the value of the expression can be computed as a
+     * primitive value.
+     *
+     * @param e the expression
+     * @return true if yes
+     */
+    private static boolean isNumeric(Expression e) {
+        if (getJavaType(e.getType()) == null) {
+            return false;
+        }
+        if (e instanceof ValueExpression || e instanceof Parameter) {
+            return true;
+        } else if (e instanceof ExpressionColumn) {
+            // only the values of regular tables are guaranteed to be of the
+            // declared data type
+            Table table = ((ExpressionColumn) e).getColumn().getTable();
+            return table instanceof TableBase;
+        } else if (e instanceof Operation) {
+            Operation op = (Operation) e;
+            int type = op.getType();
+            switch (op.getOperationType()) {
+            case Operation.PLUS:
+            case Operation.MINUS:
+            case Operation.MULTIPLY:
+            case Operation.DIVIDE:
+            case Operation.NEGATE:
+                break;
+            case Operation.MODULUS:
+                // not supported for double values
+                if (type == Value.DOUBLE) {
+                    return false;
+                }
+                break;
+            default:
+                return false;
+            }
+            if (type != Value.INT && type != Value.LONG &&
+                    type != Value.DOUBLE) {
+                return false;
+            }
+            Expression left = op.getExpression(true);
+            Expression right = op.getExpression(false);
+            return isNumeric(left) && isWidening(left.getType(), type) &&
+                    (right == null ||
+                    isNumeric(right) && isWidening(right.getType(), type));
+        }
+        return false;
+    }
+
+    private static boolean isWidening(int from, int to) {
+        return getJavaRank(from) <= getJavaRank(to);
+    }
+
+    private static int getJavaRank(int type) {
+        switch (type) {
+        case Value.LONG:
+            return 1;
+        case Value.DOUBLE:
+            return 2;
+        default:
+            return 0;
+        }
+    }
+
+    private static String getJavaType(int type) {
+        switch (type) {
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+            return "int";
+        case Value.LONG:
+            return "long";
+        case Value.DOUBLE:
+            return "double";
+        default:
+            return null;
+        }
+    }
+
+    private int addLeaf(Expression e) {
+        leaves.add(e);
+        return leaves.size() - 1;
+    }
+
+    /**
+     * Add the code to compute a numeric expression. The code defines the
+     * variables nX (true if the result is NULL) and xX (the value).
+     *
+     * @param e the expression
+     * @return the variable id
+     */
+    private int addNumeric(Expression e) {
+        int type = e.getType();
+        String javaType = getJavaType(type);
+        if (e instanceof ValueExpression) {
+            Value v = e.getValue(null);
+            int x = nextVariable++;
+            String literal;
+            switch (type) {
+            case Value.LONG:
+                literal = v.getLong() + "L";
+                break;
+            case Value.DOUBLE:
+                literal = "Double.longBitsToDouble(" +
+                        Double.doubleToRawLongBits(v.getDouble()) + "L)";
+                break;
+            default:
+                literal = Integer.toString(v.getInt());
+            }
+            buff.append("        boolean n").append(x).append(" = false;\n").
+                    append("        ").append(javaType).append(" x").
+                    append(x).append(" = ").append(literal).append(";\n");
+            return x;
+        } else if (e instanceof Operation) {
+            Operation op = (Operation) e;
+            int l = addNumeric(op.getExpression(true));
+            Expression right = op.getExpression(false);
+            int r = right == null ? -1 : addNumeric(right);
+            int x = nextVariable++;
+            String method;
+            switch (op.getOperationType()) {
+            case Operation.PLUS:
+                method = "add";
+                break;
+            case Operation.MINUS:
+                method = "subtract";
+                break;
+            case Operation.MULTIPLY:
+                method = "multiply";
+                break;
+            case Operation.DIVIDE:
+                method = "divide";
+                break;
+            case Operation.MODULUS:
+                method = "modulus";
+                break;
+            default:
+                method = "negate";
+            }
+            buff.append("        boolean n").append(x).append(" = n").
+                    append(l);
+            if (r >= 0) {
+                buff.append(" || n").append(r);
+            }
+            buff.append(";\n        ").append(javaType).append(" x").
+                    append(x).append(" = n").append(x).append(" ? 0 : ").
+                    append(method).append("((").append(javaType).
+                    append(") x").append(l);
+            if (r >= 0) {
+                buff.append(", (").append(javaType).append(") x").append(r);
+            }
+            buff.append(");\n");
+            return x;
+        }
+        String getter;
+        switch (type) {
+        case Value.BYTE:
+            getter = "getByte";
+            break;
+        case Value.SHORT:
+            getter = "getShort";
+            break;
+        case Value.INT:
+            getter = "getInt";
+            break;
+        case Value.LONG:
+            getter = "getLong";
+            break;
+        default:
+            getter = "getDouble";
+        }
+        int leaf = addLeaf(e);
+        int x = nextVariable++;
+        buff.append("        Value v").append(x).append(" = e[").append(leaf).
+                append("].getValue(session);\n" +
+                "        boolean n").append(x).append(" = v").append(x).
+                append(" == ValueNull.INSTANCE;\n        ").append(javaType).
+                append(" x").append(x).append(" = n").append(x).
+                append(" ? 0 : v").append(x).append('.').append(getter).
+                append("();\n");
+        return x;
+    }
+
+    /**
+     * Add the code to compute a condition. The code defines the variable bX,
+     * which is 1 for TRUE, 0 for FALSE, and -1 for NULL.
+     *
+     * @param e the condition
+     * @return the variable id
+     */
+    private int addCondition(Expression e) {
+        if (e instanceof ConditionAndOr) {
+            ConditionAndOr c = (ConditionAndOr) e;
+            boolean and = c.getAndOrType() == ConditionAndOr.AND;
+            int l = addCondition(c.getExpression(true));
+            int b = nextVariable++;
+            // like in ConditionAndOr.getValue, the right side is only
+            // evaluated if the left side does not decide the result
+            int decided = and ? 0 : 1;
+            buff.append("        int b").append(b).append(";\n" +
+                    "        if (b").append(l).append(" == ").
+                    append(decided).append(") {\n" +
+                    "        b").append(b).append(" = ").append(decided).
+                    append(";\n        } else {\n");
+            int r = addCondition(c.getExpression(false));
+            buff.append("        b").append(b).append(" = b").append(r).
+                    append(" == ").append(decided).append(" ? ").
+                    append(decided).append(" : b").append(l).
+                    append(" < 0 || b").append(r).append(" < 0 ? -1 : ").
+                    append(1 - decided).append(";\n        }\n");
+            return b;
+        } else if (isCompiledComparison(e)) {
+            Comparison c = (Comparison) e;
+            int compareType = c.getCompareType();
+            Expression left = c.getExpression(true);
+            if (compareType == Comparison.IS_NULL ||
+                    compareType == Comparison.IS_NOT_NULL) {
+                boolean isNull = compareType == Comparison.IS_NULL;
+                int b = nextVariable++;
+                if (isNumeric(left)) {
+                    int l = addNumeric(left);
+                    buff.append("        int b").append(b).append(" = n").
+                            append(l);
+                } else {
+                    buff.append("        int b").append(b).append(" = e[").
+                            append(addLeaf(left)).
+                            append("].getValue(session) == ValueNull.INSTANCE");
+                }
+                buff.append(" ? ").append(isNull ? 1 : 0).append(" : ").
+                        append(isNull ? 0 : 1).append(";\n");
+                return b;
+            }
+            Expression right = c.getExpression(false);
+            int type = Value.getHigherOrder(left.getType(), right.getType());
+            String javaType = "double".equals(getJavaType(type)) ?
+                    "double" : "long";
+            int l = addNumeric(left);
+            int b = nextVariable++;
+            // like in Comparison.getValue, the right side is only evaluated
+            // if the left side is not NULL
+            buff.append("        int b").append(b).append(";\n" +
+                    "        if (n").append(l).append(") {\n" +
+                    "        b").append(b).append(" = -1;\n" +
+                    "        } else {\n");
+            int r = addNumeric(right);
+            String op;
+            switch (compareType) {
+            case Comparison.EQUAL:
+                op = "==";
+                break;
+            case Comparison.NOT_EQUAL:
+                op = "!=";
+                break;
+            case Comparison.BIGGER:
+                op = ">";
+                break;
+            case Comparison.BIGGER_EQUAL:
+                op = ">=";
+                break;
+            case Comparison.SMALLER:
+                op = "<";
+                break;
+            default:
+                op = "<=";
+            }
+            buff.append("        b").append(b).append(" = n").append(r).
+                    append(" ? -1 : ");
+            if ("double".equals(javaType)) {
+                // the same as ValueDouble.compareSecure
+                buff.append("Double.compare((double) x").append(l).
+                        append(", (double) x").append(r).append(") ").
+                        append(op).append(" 0");
+            } else {
+                buff.append("(long) x").append(l).append(' ').append(op).
+                        append(" (long) x").append(r);
+            }
+            buff.append(" ? 1 : 0;\n        }\n");
+            return b;
+        }
+        int leaf = addLeaf(e);
+        int b = nextVariable++;
+        buff.append("        Value v").append(b).append(" = e[").append(leaf).
+                append("].getValue(session);\n" +
+                "        int b").append(b).append(" = v").append(b).
+                append(" == ValueNull.INSTANCE ? -1 : v").append(b).
+                append(".getBoolean().booleanValue() ? 1 : 0;\n");
+        return b;
+    }
+
+    /**
+     * The base class of the generated classes.
+     */
+    public abstract static class Evaluator {
+
+        /**
+         * The sub-expressions that are evaluated by the interpreter.
+         */
+        protected Expression[] e;
+
+        /**
+         * Evaluate the expression.
+         *
+         * @param session the session
+         * @return the value
+         */
+        public abstract Value getValue(Session session);
+
+        /**
+         * Add two values. In case of an overflow, the operation is
+         * delegated to the value class, so that the same exception is
+         * thrown as when interpreting the expression.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static int add(int a, int b) {
+            long x = (long) a + b;
+            if (x != (int) x) {
+                return ValueInt.get(a).add(ValueInt.get(b)).getInt();
+            }
+            return (int) x;
+        }
+
+        /**
+         * Add two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static long add(long a, long b) {
+            long x = a + b;
+            if (((a ^ x) & (b ^ x)) < 0) {
+                return ValueLong.get(a).add(ValueLong.get(b)).getLong();
+            }
+            return x;
+        }
+
+        /**
+         * Add two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static double add(double a, double b) {
+            return a + b;
+        }
+
+        /**
+         * Subtract two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static int subtract(int a, int b) {
+            long x = (long) a - b;
+            if (x != (int) x) {
+                return ValueInt.get(a).subtract(ValueInt.get(b)).getInt();
+            }
+            return (int) x;
+        }
+
+        /**
+         * Subtract two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static long subtract(long a, long b) {
+            long x = a - b;
+            if (((a ^ b) & (a ^ x)) < 0) {
+                return ValueLong.get(a).subtract(ValueLong.get(b)).getLong();
+            }
+            return x;
+        }
+
+        /**
+         * Subtract two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static double subtract(double a, double b) {
+            return a - b;
+        }
+
+        /**
+         * Multiply two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static int multiply(int a, int b) {
+            long x = (long) a * b;
+            if (x != (int) x) {
+                return ValueInt.get(a).multiply(ValueInt.get(b)).getInt();
+            }
+            return (int) x;
+        }
+
+        /**
+         * Multiply two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static long multiply(long a, long b) {
+            if (a == (int) a && b == (int) b) {
+                return a * b;
+            }
+            return ValueLong.get(a).multiply(ValueLong.get(b)).getLong();
+        }
+
+        /**
+         * Multiply two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static double multiply(double a, double b) {
+            return a * b;
+        }
+
+        /**
+         * Divide two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static int divide(int a, int b) {
+            if (b == 0) {
+                return ValueInt.get(a).divide(ValueInt.get(b)).getInt();
+            }
+            return a / b;
+        }
+
+        /**
+         * Divide two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static long divide(long a, long b) {
+            if (b == 0) {
+                return ValueLong.get(a).divide(ValueLong.get(b)).getLong();
+            }
+            return a / b;
+        }
+
+        /**
+         * Divide two values.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static double divide(double a, double b) {
+            if (b == 0.0) {
+                return ValueDouble.get(a).divide(ValueDouble.get(b)).
+                        getDouble();
+            }
+            return a / b;
+        }
+
+        /**
+         * Calculate the remainder of a division.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static int modulus(int a, int b) {
+            if (b == 0) {
+                return ValueInt.get(a).modulus(ValueInt.get(b)).getInt();
+            }
+            return a % b;
+        }
+
+        /**
+         * Calculate the remainder of a division.
+         *
+         * @param a the first value
+         * @param b the second value
+         * @return the result
+         */
+        protected static long modulus(long a, long b) {
+            if (b == 0) {
+                return ValueLong.get(a).modulus(ValueLong.get(b)).getLong();
+            }
+            return a % b;
+        }
+
+        /**
+         * Negate a value.
+         *
+         * @param a the value
+         * @return the result
+         */
+        protected static int negate(int a) {
+            if (a == Integer.MIN_VALUE) {
+                return ValueInt.get(a).negate().getInt();
+            }
+            return -a;
+        }
+
+        /**
+         * Negate a value.
+         *
+         * @param a the value
+         * @return the result
+         */
+        protected static long negate(long a) {
+            if (a == Long.MIN_VALUE) {
+                return ValueLong.get(a).negate().getLong();
+            }
+            return -a;
+        }
+
+        /**
+         * Negate a value.
+         *
+         * @param a the value
+         * @return the result
+         */
+        protected static double negate(double a) {
+            return -a;
+        }
+
+    }
+
+}
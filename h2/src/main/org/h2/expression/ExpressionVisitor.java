@@ -99,6 +99,11 @@ public class ExpressionVisitor {
      */
     public static final int GET_COLUMNS = 9;
 
+    /**
+     * Get all referenced columns of higher level queries.
+     */
+    public static final int GET_OUTER_COLUMNS = 10;
+
     /**
      * The visitor singleton for the type QUERY_COMPARABLE.
      */
@@ -109,6 +114,7 @@ public class ExpressionVisitor {
     private final int queryLevel;
     private final HashSet<DbObject> dependencies;
     private final HashSet<Column> columns;
+    private final HashSet<ExpressionColumn> outerColumns;
     private final Table table;
     private final long[] maxDataModificationId;
     private final ColumnResolver resolver;
@@ -117,12 +123,14 @@ public class ExpressionVisitor {
             int queryLevel,
             HashSet<DbObject> dependencies,
             HashSet<Column> columns,
+            HashSet<ExpressionColumn> outerColumns,
             Table table, ColumnResolver resolver,
             long[] maxDataModificationId) {
         this.type = type;
         this.queryLevel = queryLevel;
         this.dependencies = dependencies;
         this.columns = columns;
+        this.outerColumns = outerColumns;
         this.table = table;
         this.resolver = resolver;
         this.maxDataModificationId = maxDataModificationId;
@@ -133,6 +141,7 @@ public class ExpressionVisitor {
         this.queryLevel = 0;
         this.dependencies = null;
         this.columns = null;
+        this.outerColumns = null;
         this.table = null;
         this.resolver = null;
         this.maxDataModificationId = null;
@@ -147,7 +156,7 @@ public class ExpressionVisitor {
     public static ExpressionVisitor getDependenciesVisitor(
             HashSet<DbObject> dependencies) {
         return new ExpressionVisitor(GET_DEPENDENCIES, 0, dependencies, null,
-                null, null, null);
+                null, null, null, null);
     }
 
     /**
@@ -158,7 +167,7 @@ public class ExpressionVisitor {
      */
     public static ExpressionVisitor getOptimizableVisitor(Table table) {
         return new ExpressionVisitor(OPTIMIZABLE_MIN_MAX_COUNT_ALL, 0, null,
-                null, table, null, null);
+                null, null, table, null, null);
     }
 
     /**
@@ -170,7 +179,7 @@ public class ExpressionVisitor {
      */
     static ExpressionVisitor getNotFromResolverVisitor(ColumnResolver resolver) {
         return new ExpressionVisitor(NOT_FROM_RESOLVER, 0, null, null, null,
-                resolver, null);
+                null, resolver, null);
     }
 
     /**
@@ -180,12 +189,26 @@ public class ExpressionVisitor {
      * @return the new visitor
      */
     public static ExpressionVisitor getColumnsVisitor(HashSet<Column> columns) {
-        return new ExpressionVisitor(GET_COLUMNS, 0, null, columns, null, null, null);
+        return new ExpressionVisitor(GET_COLUMNS, 0, null, columns, null,
+                null, null, null);
+    }
+
+    /**
+     * Create a new visitor to get all referenced columns of higher level
+     * queries.
+     *
+     * @param outerColumns the set of expression columns
+     * @return the new visitor
+     */
+    static ExpressionVisitor getOuterColumnsVisitor(
+            HashSet<ExpressionColumn> outerColumns) {
+        return new ExpressionVisitor(GET_OUTER_COLUMNS, 0, null, null,
+                outerColumns, null, null, null);
     }
 
     public static ExpressionVisitor getMaxModificationIdVisitor() {
         return new ExpressionVisitor(SET_MAX_DATA_MODIFICATION_ID, 0, null,
-                null, null, null, new long[1]);
+                null, null, null, null, new long[1]);
     }
 
     /**
@@ -208,6 +231,16 @@ public class ExpressionVisitor {
         columns.add(column);
     }
 
+    /**
+     * Add a column of a higher level query.
+     * This is used for GET_OUTER_COLUMNS visitors.
+     *
+     * @param column the column
+     */
+    void addOuterColumn(ExpressionColumn column) {
+        outerColumns.add(column);
+    }
+
     /**
      * Get the dependency set.
      * This is used for GET_DEPENDENCIES visitors.
@@ -226,7 +259,7 @@ public class ExpressionVisitor {
      */
     public ExpressionVisitor incrementQueryLevel(int offset) {
         return new ExpressionVisitor(type, queryLevel + offset, dependencies,
-                columns, table, resolver, maxDataModificationId);
+                columns, outerColumns, table, resolver, maxDataModificationId);
     }
 
     /**
@@ -8,6 +8,7 @@ package org.h2.expression;
 import org.h2.engine.Mode;
 import org.h2.engine.Session;
 import org.h2.message.DbException;
+import org.h2.result.Row;
 import org.h2.table.ColumnResolver;
 import org.h2.table.TableFilter;
 import org.h2.util.MathUtils;
@@ -107,15 +108,37 @@ public class Operation extends Expression {
 
     @Override
     public Value getValue(Session session) {
-        Value l = left.getValue(session).convertTo(dataType);
-        Value r;
-        if (right == null) {
-            r = null;
-        } else {
-            r = right.getValue(session);
-            if (convertRight) {
-                r = r.convertTo(dataType);
-            }
+        Value l = left.getValue(session);
+        Value r = right == null ? null : right.getValue(session);
+        return calculate(session, l, r);
+    }
+
+    @Override
+    public void getValues(Session session, TableFilter filter, Row[] rows,
+            int count, Value[] values) {
+        left.getValues(session, filter, rows, count, values);
+        Value[] r = null;
+        if (right != null) {
+            r = new Value[count];
+            right.getValues(session, filter, rows, count, r);
+        }
+        for (int i = 0; i < count; i++) {
+            values[i] = calculate(session, values[i], r == null ? null : r[i]);
+        }
+    }
+
+    /**
+     * Apply the operation to the given values.
+     *
+     * @param session the session
+     * @param l the value of the left side
+     * @param r the value of the right side, or null for NEGATE
+     * @return the result
+     */
+    private Value calculate(Session session, Value l, Value r) {
+        l = l.convertTo(dataType);
+        if (r != null && convertRight) {
+            r = r.convertTo(dataType);
         }
         switch (opType) {
         case NEGATE:
@@ -401,4 +424,24 @@ public class Operation extends Expression {
         return left.getCost() + 1 + (right == null ? 0 : right.getCost());
     }
 
+    /**
+     * Get the type of this operation.
+     *
+     * @return the operation type, for example PLUS
+     */
+    public int getOperationType() {
+        return opType;
+    }
+
+    /**
+     * Get the left or the right sub-expression of this operation.
+     *
+     * @param getLeft true to get the left sub-expression, false to get the
+     *            right sub-expression.
+     * @return the sub-expression, or null for the right side of NEGATE
+     */
+    public Expression getExpression(boolean getLeft) {
+        return getLeft ? this.left : right;
+    }
+
 }
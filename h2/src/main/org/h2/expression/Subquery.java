@@ -26,6 +26,8 @@ public class Subquery extends Expression {
 
     private final Query query;
     private Expression expression;
+    private SubqueryResultCache resultCache;
+    private boolean resultCacheChecked;
 
     public Subquery(Query query) {
         this.query = query;
@@ -33,6 +35,28 @@ public class Subquery extends Expression {
 
     @Override
     public Value getValue(Session session) {
+        if (!resultCacheChecked) {
+            resultCache = SubqueryResultCache.create(session, query);
+            resultCacheChecked = true;
+        }
+        ValueArray key = null;
+        if (resultCache != null) {
+            key = resultCache.getKey(session);
+            if (key != null) {
+                Value v = resultCache.get(key);
+                if (v != null) {
+                    return v;
+                }
+            }
+        }
+        Value v = queryValue(session);
+        if (key != null) {
+            resultCache.put(key, v);
+        }
+        return v;
+    }
+
+    private Value queryValue(Session session) {
         query.setSession(session);
         ResultInterface result = query.query(2);
         try {
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression;
+
+import java.util.HashSet;
+import org.h2.command.dml.Query;
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.util.SmallLRUCache;
+import org.h2.value.Value;
+import org.h2.value.ValueArray;
+import org.h2.value.ValueString;
+
+/**
+ * Remembers the results of a correlated subquery within a statement. The
+ * results are keyed by the current values of the columns of the outer queries
+ * that the subquery references, so that the subquery is only run once for each
+ * distinct combination. Only deterministic subqueries are cached.
+ */
+class SubqueryResultCache {
+
+    /**
+     * Keys and results that need more memory than this are not cached.
+     */
+    private static final int MAX_ENTRY_MEMORY = 1024;
+
+    private final Query query;
+    private final ExpressionColumn[] outerColumns;
+    private final SmallLRUCache<ValueArray, Value> cache;
+    private Session session;
+    private int statementId;
+    private long lastModificationId;
+    private long maxDataModificationId;
+
+    private SubqueryResultCache(Query query, ExpressionColumn[] outerColumns,
+            int size) {
+        this.query = query;
+        this.outerColumns = outerColumns;
+        cache = SmallLRUCache.newInstance(size);
+    }
+
+    /**
+     * Create a cache for the given subquery, if caching is possible.
+     *
+     * @param session the session
+     * @param query the subquery
+     * @return the cache, or null if the results can not be cached
+     */
+    static SubqueryResultCache create(Session session, Query query) {
+        int size = session.getDatabase().getSettings().subqueryCacheSize;
+        if (size <= 0 ||
+                !query.isEverything(ExpressionVisitor.DETERMINISTIC_VISITOR)) {
+            return null;
+        }
+        HashSet<ExpressionColumn> set = new HashSet<ExpressionColumn>();
+        query.isEverything(ExpressionVisitor.getOuterColumnsVisitor(set));
+        if (set.size() == 0) {
+            // not correlated: the query result cache of the query is used
+            return null;
+        }
+        ExpressionColumn[] columns = new ExpressionColumn[set.size()];
+        set.toArray(columns);
+        return new SubqueryResultCache(query, columns, size);
+    }
+
+    /**
+     * Get the key for the current row of the outer queries. If the current
+     * statement or the data of the referenced tables changed, the cache is
+     * cleared first.
+     *
+     * @param s the session
+     * @return the key, or null if the result should not be cached
+     */
+    ValueArray getKey(Session s) {
+        Database db = s.getDatabase();
+        if (session != s || statementId != s.getStatementId()) {
+            session = s;
+            statementId = s.getStatementId();
+            cache.clear();
+            lastModificationId = db.getModificationDataId();
+            maxDataModificationId = query.getMaxDataModificationId();
+        } else if (db.getModificationDataId() != lastModificationId) {
+            lastModificationId = db.getModificationDataId();
+            long max = query.getMaxDataModificationId();
+            if (max > maxDataModificationId) {
+                cache.clear();
+                maxDataModificationId = max;
+            }
+        }
+        Value[] values = new Value[outerColumns.length];
+        int memory = 0;
+        for (int i = 0; i < values.length; i++) {
+            Value v = outerColumns[i].getValue(s);
+            int type = v.getType();
+            if (type == Value.BLOB || type == Value.CLOB) {
+                return null;
+            }
+            memory += v.getMemory();
+            if (memory > MAX_ENTRY_MEMORY) {
+                return null;
+            }
+            if (type == Value.STRING_IGNORECASE) {
+                // values that are equal ignoring the case are different
+                // keys, as the subquery may return the value itself
+                v = ValueString.get(v.getString());
+            }
+            values[i] = v;
+        }
+        return ValueArray.get(values);
+    }
+
+    /**
+     * Get the cached result.
+     *
+     * @param key the key
+     * @return the result, or null if not cached
+     */
+    Value get(ValueArray key) {
+        return cache.get(key);
+    }
+
+    /**
+     * Remember the result, unless it needs too much memory.
+     *
+     * @param key the key
+     * @param result the result
+     */
+    void put(ValueArray key, Value result) {
+        if (result.getMemory() <= MAX_ENTRY_MEMORY) {
+            cache.put(key, result);
+        }
+    }
+
+}
@@ -5,11 +5,16 @@
  */
 package org.h2.index;
 
+import java.util.ArrayList;
 import org.h2.api.ErrorCode;
 import org.h2.engine.Constants;
+import org.h2.engine.Database;
 import org.h2.engine.DbObject;
 import org.h2.engine.Mode;
 import org.h2.engine.Session;
+import org.h2.expression.Comparison;
+import org.h2.expression.ConditionAndOr;
+import org.h2.expression.Expression;
 import org.h2.message.DbException;
 import org.h2.message.Trace;
 import org.h2.result.Row;
@@ -17,7 +22,9 @@ import org.h2.result.SearchRow;
 import org.h2.result.SortOrder;
 import org.h2.schema.SchemaObjectBase;
 import org.h2.table.Column;
+import org.h2.table.Histogram;
 import org.h2.table.IndexColumn;
+import org.h2.table.IndexExpressionColumn;
 import org.h2.table.Table;
 import org.h2.table.TableFilter;
 import org.h2.util.MathUtils;
@@ -143,6 +150,107 @@ public abstract class BaseIndex extends SchemaObjectBase implements Index {
         throw DbException.throwInternalError();
     }
 
+    /**
+     * Check whether the given row is stored in this index. For partial
+     * indexes, only rows that match the condition are stored.
+     *
+     * @param session the session, or null to use the session that created
+     *            the index
+     * @param row the row
+     * @return true if the row is stored in the index
+     */
+    protected boolean isRowIndexed(Session session, Row row) {
+        Expression condition = indexType.getCondition();
+        if (condition == null) {
+            return true;
+        }
+        TableFilter filter = indexType.getConditionFilter();
+        if (session == null) {
+            session = filter.getSession();
+        }
+        synchronized (filter) {
+            filter.set(row);
+            return Boolean.TRUE.equals(condition.getBooleanValue(session));
+        }
+    }
+
+    /**
+     * Get the row with the values to store in this index. For expression
+     * indexes, this is a search row that also contains the values of the
+     * index expressions.
+     *
+     * @param session the session, or null to use the session that created
+     *            the index
+     * @param row the row of the table
+     * @return the row with the values of the index columns
+     */
+    protected Row getIndexRow(Session session, Row row) {
+        Row r = null;
+        for (Column c : columns) {
+            if (c instanceof IndexExpressionColumn) {
+                if (r == null) {
+                    r = table.getTemplateSearchRow();
+                    r.setKey(row.getKey());
+                    for (int i = 0, len = row.getColumnCount(); i < len; i++) {
+                        r.setValue(i, row.getValue(i));
+                    }
+                }
+                r.setValue(c.getColumnId(),
+                        ((IndexExpressionColumn) c).getValue(session, row));
+            }
+        }
+        return r == null ? row : r;
+    }
+
+    /**
+     * Check whether this index contains all rows the query of the given
+     * filter can return. For partial indexes, this is the case if the
+     * conditions of the query imply the condition of the index. Only
+     * conditions of the form "column op constant" combined with AND are
+     * supported.
+     *
+     * @param session the session
+     * @param filter the table filter of the query, or null
+     * @return true if the index may be used
+     */
+    protected boolean isConditionImplied(Session session, TableFilter filter) {
+        Expression condition = indexType.getCondition();
+        if (condition == null) {
+            return true;
+        }
+        ArrayList<IndexCondition> required =
+                indexType.getConditionFilter().getIndexConditions();
+        if (filter == null || required.size() != getConditionCount(condition)) {
+            return false;
+        }
+        for (IndexCondition r : required) {
+            boolean implied = false;
+            for (IndexCondition c : filter.getIndexConditionsForColumn(
+                    r.getColumn())) {
+                if (r.isImpliedBy(session, c)) {
+                    implied = true;
+                    break;
+                }
+            }
+            if (!implied) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int getConditionCount(Expression condition) {
+        if (condition instanceof ConditionAndOr) {
+            if (condition.isDisjunctive()) {
+                return -1;
+            }
+            ConditionAndOr and = (ConditionAndOr) condition;
+            return getConditionCount(and.getExpression(true)) +
+                    getConditionCount(and.getExpression(false));
+        }
+        return 1;
+    }
+
     /**
      * Calculate the cost for the given mask as if this index was a typical
      * b-tree range index. This is the estimated cost required to search one
@@ -160,6 +268,8 @@ public abstract class BaseIndex extends SchemaObjectBase implements Index {
         long cost = rowCount;
         long rows = rowCount;
         int totalSelectivity = 0;
+        // the fraction of the rows that match, according to the histograms
+        double factor = 1;
         if (masks == null) {
             return cost;
         }
@@ -172,14 +282,24 @@ public abstract class BaseIndex extends SchemaObjectBase implements Index {
                     cost = 3;
                     break;
                 }
-                totalSelectivity = 100 - ((100 - totalSelectivity) *
-                        (100 - column.getSelectivity()) / 100);
+                double f = getHistogramFraction(column, filter, true);
+                if (f >= 0) {
+                    factor *= f;
+                } else {
+                    totalSelectivity = 100 - ((100 - totalSelectivity) *
+                            (100 - column.getSelectivity()) / 100);
+                }
                 long distinctRows = rowCount * totalSelectivity / 100;
                 if (distinctRows <= 0) {
                     distinctRows = 1;
                 }
-                rows = Math.max(rowCount / distinctRows, 1);
+                rows = Math.max((long) (rowCount / distinctRows * factor), 1);
                 cost = 2 + rows;
+            } else if ((mask & (IndexCondition.START | IndexCondition.END)) != 0
+                    && getHistogramFraction(column, filter, false) >= 0) {
+                double f = getHistogramFraction(column, filter, false);
+                cost = 2 + Math.max((long) (rows * f), 1);
+                break;
             } else if ((mask & IndexCondition.RANGE) == IndexCondition.RANGE) {
                 cost = 2 + rows / 4;
                 break;
@@ -193,6 +313,11 @@ public abstract class BaseIndex extends SchemaObjectBase implements Index {
                 break;
             }
         }
+        long rangeRows = getRowCountInRange(masks, filter);
+        if (rangeRows >= 0) {
+            // the exact number of entries is known
+            cost = 2 + rangeRows;
+        }
         // if the ORDER BY clause matches the ordering of this index,
         // it will be cheaper than another index, so adjust the cost accordingly
         if (sortOrder != null) {
@@ -234,6 +359,291 @@ public abstract class BaseIndex extends SchemaObjectBase implements Index {
         return cost;
     }
 
+    /**
+     * Get the exact number of index entries the index would read for the
+     * conditions of the filter, if this can be computed cheaply when planning
+     * the query. The default implementation returns -1.
+     *
+     * @param masks the search masks per column
+     * @param filter the table filter
+     * @return the number of entries, or -1 if not known
+     */
+    protected long getRowCountInRange(int[] masks, TableFilter filter) {
+        return -1;
+    }
+
+    @Override
+    public long getRowCount(Session session,
+            ArrayList<IndexCondition> conditions) {
+        return -1;
+    }
+
+    @Override
+    public Cursor findWithOffset(Session session,
+            ArrayList<IndexCondition> conditions, long offset) {
+        return null;
+    }
+
+    /**
+     * Get the range of this index that contains exactly the rows that match
+     * all the given index conditions. This is only possible if the leading
+     * index columns are compared for equality, and the next column (if any)
+     * with a lower or upper bound, and if all values can be converted to the
+     * column type without changing the result of the comparison.
+     *
+     * @param session the session
+     * @param conditions the index conditions
+     * @return the range, or null if the conditions are not a range
+     */
+    protected IndexRange getExactRange(Session session,
+            ArrayList<IndexCondition> conditions) {
+        IndexRange range = new IndexRange();
+        int used = 0;
+        for (IndexColumn c : indexColumns) {
+            Value equal = null;
+            boolean found = false;
+            for (IndexCondition cond : conditions) {
+                if (cond.getColumn() != c.column) {
+                    continue;
+                }
+                int compareType = cond.getCompareType();
+                switch (compareType) {
+                case Comparison.EQUAL:
+                case Comparison.EQUAL_NULL_SAFE:
+                case Comparison.BIGGER:
+                case Comparison.BIGGER_EQUAL:
+                case Comparison.SMALLER:
+                case Comparison.SMALLER_EQUAL:
+                    break;
+                default:
+                    return null;
+                }
+                found = true;
+                used++;
+                Value v = cond.getCurrentValue(session);
+                if (v == ValueNull.INSTANCE) {
+                    if (compareType != Comparison.EQUAL_NULL_SAFE) {
+                        range.empty = true;
+                        return range;
+                    }
+                } else {
+                    v = convertExact(c.column, v);
+                    if (v == null) {
+                        return null;
+                    }
+                }
+                if (compareType == Comparison.EQUAL ||
+                        compareType == Comparison.EQUAL_NULL_SAFE) {
+                    if (equal != null && !database.areEqual(equal, v)) {
+                        range.empty = true;
+                        return range;
+                    }
+                    equal = v;
+                } else if (v == ValueNull.INSTANCE) {
+                    return null;
+                } else if (compareType == Comparison.BIGGER ||
+                        compareType == Comparison.BIGGER_EQUAL) {
+                    boolean exclusive = compareType == Comparison.BIGGER;
+                    int comp = range.lower == null ? 1 :
+                            database.compare(v, range.lower);
+                    if (comp > 0 || comp == 0 && exclusive) {
+                        range.lower = v;
+                        range.lowerExclusive = exclusive;
+                    }
+                } else {
+                    boolean exclusive = compareType == Comparison.SMALLER;
+                    int comp = range.upper == null ? -1 :
+                            database.compare(v, range.upper);
+                    if (comp < 0 || comp == 0 && exclusive) {
+                        range.upper = v;
+                        range.upperExclusive = exclusive;
+                    }
+                }
+            }
+            if (!found) {
+                break;
+            }
+            if (equal == null) {
+                range.column = c;
+                break;
+            }
+            if (range.lower != null || range.upper != null) {
+                return null;
+            }
+            range.prefix.add(equal);
+        }
+        if (used != conditions.size()) {
+            // some conditions are not on the leading columns
+            return null;
+        }
+        return range;
+    }
+
+    /**
+     * Convert the value to the type of the column, if comparing the converted
+     * value with the column gives the same result as comparing the original
+     * value.
+     *
+     * @param column the column
+     * @param v the value
+     * @return the converted value, or null if this is not possible
+     */
+    private Value convertExact(Column column, Value v) {
+        int type = column.getType();
+        if (v.getType() == type) {
+            return v;
+        }
+        if (Value.getHigherOrder(type, v.getType()) != type) {
+            // the comparison is done using the type of the value
+            return null;
+        }
+        try {
+            Value c = v.convertTo(type);
+            return database.areEqual(c, v) ? c : null;
+        } catch (DbException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the constant bounds of the conditions of the filter on the given
+     * index column. The bounds are in the order of the index, that is, for
+     * descending columns the start is the largest value.
+     *
+     * @param filter the table filter
+     * @param indexColumn the index column
+     * @return an array with the start and the end value (an element is null
+     *         if there is no such bound), or null if a condition does not
+     *         compare the column with a constant
+     */
+    protected Value[] getConstantBounds(TableFilter filter,
+            IndexColumn indexColumn) {
+        Session session = filter.getSession();
+        Column column = indexColumn.column;
+        int sortType = indexColumn.sortType;
+        Value start = null, end = null;
+        for (IndexCondition cond : filter.getIndexConditions()) {
+            if (cond.getColumn() != column || !cond.isEvaluatable()) {
+                continue;
+            }
+            boolean isStart = cond.isStart();
+            boolean isEnd = cond.isEnd();
+            if (!isStart && !isEnd) {
+                return null;
+            }
+            Value[] values = cond.getConstantValues(session);
+            if (values == null) {
+                return null;
+            }
+            Value v = values[0];
+            if (v == ValueNull.INSTANCE &&
+                    cond.getCompareType() != Comparison.EQUAL_NULL_SAFE) {
+                return null;
+            }
+            try {
+                v = v.convertTo(column.getType());
+            } catch (DbException e) {
+                return null;
+            }
+            if ((sortType & SortOrder.DESCENDING) != 0) {
+                boolean temp = isStart;
+                isStart = isEnd;
+                isEnd = temp;
+            }
+            if (isStart && (start == null ||
+                    compareValues(v, start, sortType) > 0)) {
+                start = v;
+            }
+            if (isEnd && (end == null || compareValues(v, end, sortType) < 0)) {
+                end = v;
+            }
+        }
+        return new Value[] { start, end };
+    }
+
+    /**
+     * Estimate the fraction of the rows that match the conditions on the given
+     * column, using the histogram of the column. Only conditions that compare
+     * the column with constants are considered.
+     *
+     * @param column the column
+     * @param filter the table filter
+     * @param equality whether to use the equality conditions (otherwise the
+     *            range conditions are used)
+     * @return the fraction, or -1 if it can not be estimated
+     */
+    private static double getHistogramFraction(Column column,
+            TableFilter filter, boolean equality) {
+        Histogram histogram = column.getHistogram();
+        if (histogram == null || filter == null) {
+            return -1;
+        }
+        Session session = filter.getSession();
+        Database db = session.getDatabase();
+        double fraction = -1;
+        Value min = null, max = null;
+        try {
+            for (IndexCondition cond : filter.getIndexConditions()) {
+                if (cond.getColumn() != column) {
+                    continue;
+                }
+                int compareType = cond.getCompareType();
+                Value[] values = cond.getConstantValues(session);
+                if (values == null) {
+                    continue;
+                }
+                if (equality) {
+                    double f;
+                    if (compareType == Comparison.EQUAL_NULL_SAFE) {
+                        f = histogram.getEqualFraction(db,
+                                column.convert(values[0]));
+                    } else if (compareType == Comparison.EQUAL ||
+                            compareType == Comparison.IN_LIST) {
+                        f = 0;
+                        for (Value v : values) {
+                            if (v != ValueNull.INSTANCE) {
+                                f += histogram.getEqualFraction(db,
+                                        column.convert(v));
+                            }
+                        }
+                    } else {
+                        continue;
+                    }
+                    f = Math.min(f, 1);
+                    fraction = fraction < 0 ? f : Math.min(fraction, f);
+                } else {
+                    Value v = values[0];
+                    if (v == ValueNull.INSTANCE) {
+                        return 0;
+                    }
+                    v = column.convert(v);
+                    switch (compareType) {
+                    case Comparison.BIGGER:
+                    case Comparison.BIGGER_EQUAL:
+                        if (min == null || db.compare(v, min) > 0) {
+                            min = v;
+                        }
+                        break;
+                    case Comparison.SMALLER:
+                    case Comparison.SMALLER_EQUAL:
+                        if (max == null || db.compare(v, max) < 0) {
+                            max = v;
+                        }
+                        break;
+                    default:
+                    }
+                }
+            }
+        } catch (DbException e) {
+            // the value can not be converted to the column type
+            return -1;
+        }
+        if (!equality && (min != null || max != null)) {
+            fraction = histogram.getRangeFraction(db, min, max);
+        }
+        return fraction;
+    }
+
     @Override
     public int compareRows(SearchRow rowData, SearchRow compare) {
         if (rowData == compare) {
@@ -360,6 +770,22 @@ public abstract class BaseIndex extends SchemaObjectBase implements Index {
             buff.append(" COMMENT ").append(StringUtils.quoteStringSQL(comment));
         }
         buff.append('(').append(getColumnListSQL()).append(')');
+        IndexColumn[] includeColumns = indexType.getIncludeColumns();
+        if (includeColumns != null) {
+            buff.append(" INCLUDE(");
+            for (int i = 0; i < includeColumns.length; i++) {
+                if (i > 0) {
+                    buff.append(", ");
+                }
+                buff.append(includeColumns[i].column.getSQL());
+            }
+            buff.append(')');
+        }
+        Expression condition = indexType.getCondition();
+        if (condition != null) {
+            buff.append(" WHERE ").append(
+                    StringUtils.unEnclose(condition.getSQL()));
+        }
         return buff.toString();
     }
 
@@ -0,0 +1,25 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import org.h2.result.Row;
+
+/**
+ * A cursor that can return multiple rows at once. This avoids the overhead
+ * of one call per row when scanning a table.
+ */
+public interface BatchCursor extends Cursor {
+
+    /**
+     * Read the next rows. After calling this method, get() and
+     * getSearchRow() are undefined.
+     *
+     * @param rows the array that receives the rows
+     * @return the number of rows read, or 0 if there are no more rows
+     */
+    int nextBatch(Row[] rows);
+
+}
@@ -5,6 +5,7 @@
  */
 package org.h2.index;
 
+import java.util.ArrayList;
 import org.h2.engine.Session;
 import org.h2.result.Row;
 import org.h2.result.SearchRow;
@@ -155,6 +156,30 @@ public interface Index extends SchemaObject {
      */
     long getRowCount(Session session);
 
+    /**
+     * Get the number of rows that match all the given index conditions, if the
+     * index can count them without reading the rows. This is only possible if
+     * the conditions describe a range of this index.
+     *
+     * @param session the session
+     * @param conditions the index conditions
+     * @return the number of rows, or -1 if not supported
+     */
+    long getRowCount(Session session, ArrayList<IndexCondition> conditions);
+
+    /**
+     * Find the rows that match all the given index conditions, skipping the
+     * given number of rows without reading them. This is only possible if the
+     * conditions describe a range of this index.
+     *
+     * @param session the session
+     * @param conditions the index conditions
+     * @param offset the number of rows to skip
+     * @return the cursor, or null if not supported
+     */
+    Cursor findWithOffset(Session session,
+            ArrayList<IndexCondition> conditions, long offset);
+
     /**
      * Get the approximated row count for this table.
      *
@@ -13,16 +13,20 @@ import java.util.List;
 import org.h2.command.dml.Query;
 import org.h2.engine.Session;
 import org.h2.expression.Comparison;
+import org.h2.expression.ConditionInSelect;
 import org.h2.expression.Expression;
 import org.h2.expression.ExpressionColumn;
 import org.h2.expression.ExpressionVisitor;
 import org.h2.message.DbException;
 import org.h2.result.ResultInterface;
 import org.h2.table.Column;
+import org.h2.table.IndexExpressionColumn;
 import org.h2.table.Table;
+import org.h2.table.TableFilter;
 import org.h2.util.StatementBuilder;
 import org.h2.value.CompareMode;
 import org.h2.value.Value;
+import org.h2.value.ValueNull;
 
 /**
  * A index condition object is made for each condition that can potentially use
@@ -74,15 +78,16 @@ public class IndexCondition {
     private final Expression expression;
     private List<Expression> expressionList;
     private Query expressionQuery;
+    private ConditionInSelect inSelect;
 
     /**
      * @param compareType the comparison type, see constants in
      *            {@link Comparison}
      */
-    private IndexCondition(int compareType, ExpressionColumn column,
+    private IndexCondition(int compareType, Column column,
             Expression expression) {
         this.compareType = compareType;
-        this.column = column == null ? null : column.getColumn();
+        this.column = column;
         this.expression = expression;
     }
 
@@ -97,6 +102,21 @@ public class IndexCondition {
      */
     public static IndexCondition get(int compareType, ExpressionColumn column,
             Expression expression) {
+        return new IndexCondition(compareType,
+                column == null ? null : column.getColumn(), expression);
+    }
+
+    /**
+     * Create an index condition for the expression of an expression index.
+     *
+     * @param compareType the comparison type, see constants in
+     *            {@link Comparison}
+     * @param column the column of the index expression
+     * @param expression the expression to compare with
+     * @return the index condition
+     */
+    public static IndexCondition getForIndexExpression(int compareType,
+            IndexExpressionColumn column, Expression expression) {
         return new IndexCondition(compareType, column, expression);
     }
 
@@ -110,8 +130,8 @@ public class IndexCondition {
      */
     public static IndexCondition getInList(ExpressionColumn column,
             List<Expression> list) {
-        IndexCondition cond = new IndexCondition(Comparison.IN_LIST, column,
-                null);
+        IndexCondition cond = new IndexCondition(Comparison.IN_LIST,
+                column.getColumn(), null);
         cond.expressionList = list;
         return cond;
     }
@@ -121,13 +141,15 @@ public class IndexCondition {
      * given parameters.
      *
      * @param column the column
-     * @param query the select statement
+     * @param condition the condition that contains the select statement
      * @return the index condition
      */
-    public static IndexCondition getInQuery(ExpressionColumn column, Query query) {
-        IndexCondition cond = new IndexCondition(Comparison.IN_QUERY, column,
-                null);
-        cond.expressionQuery = query;
+    public static IndexCondition getInQuery(ExpressionColumn column,
+            ConditionInSelect condition) {
+        IndexCondition cond = new IndexCondition(Comparison.IN_QUERY,
+                column.getColumn(), null);
+        cond.expressionQuery = condition.getQuery();
+        cond.inSelect = condition;
         return cond;
     }
 
@@ -167,14 +189,43 @@ public class IndexCondition {
         return array;
     }
 
+    /**
+     * Get the values the column is compared with, if they are constant. For
+     * IN(...) conditions, this is the list of values.
+     *
+     * @param session the session
+     * @return the values, or null if they are not all constant
+     */
+    public Value[] getConstantValues(Session session) {
+        if (expression != null) {
+            if (!expression.isConstant()) {
+                return null;
+            }
+            return new Value[] { expression.getValue(session) };
+        }
+        if (expressionList == null) {
+            return null;
+        }
+        Value[] values = new Value[expressionList.size()];
+        for (int i = 0; i < values.length; i++) {
+            Expression e = expressionList.get(i);
+            if (!e.isConstant()) {
+                return null;
+            }
+            values[i] = e.getValue(session);
+        }
+        return values;
+    }
+
     /**
      * Get the current result of the expression. The rows may not be of the same
      * type, therefore the rows may not be unique.
      *
+     * @param session the session
      * @return the result
      */
-    public ResultInterface getCurrentResult() {
-        return expressionQuery.query(0);
+    public ResultInterface getCurrentResult(Session session) {
+        return inSelect.getIndexResult(session);
     }
 
     /**
@@ -334,6 +385,64 @@ public class IndexCondition {
         }
     }
 
+    /**
+     * Check if rows can be looked up in a hash table over the column of this
+     * condition. This is only possible for an equality condition where the
+     * expression has the same data type as the column, and where the data type
+     * guarantees that equal values also have the same hash code.
+     *
+     * @param session the session
+     * @return true if the condition can be used for a hash join
+     */
+    public boolean isHashJoinable(Session session) {
+        if (compareType != Comparison.EQUAL || expression == null ||
+                expression.getType() != column.getType() ||
+                column instanceof IndexExpressionColumn) {
+            // the hash table is built from the rows of the table
+            return false;
+        }
+        switch (column.getType()) {
+        case Value.BOOLEAN:
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+        case Value.LONG:
+        case Value.DATE:
+        case Value.TIME:
+        case Value.TIMESTAMP:
+        case Value.UUID:
+            return true;
+        case Value.STRING:
+        case Value.STRING_IGNORECASE:
+            // a collation may consider different strings to be equal
+            return CompareMode.OFF.equals(
+                    session.getDatabase().getCompareMode().getName());
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Get the column of the given table filter that the column of this
+     * condition is compared with, if this is an equality condition and both
+     * columns have the same data type.
+     *
+     * @param filter the table filter
+     * @return the column, or null
+     */
+    public Column getEqualColumn(TableFilter filter) {
+        if (compareType != Comparison.EQUAL ||
+                !(expression instanceof ExpressionColumn)) {
+            return null;
+        }
+        ExpressionColumn c = (ExpressionColumn) expression;
+        if (c.getTableFilter() != filter ||
+                c.getColumn().getType() != column.getType()) {
+            return null;
+        }
+        return c.getColumn();
+    }
+
     /**
      * Check if this index condition is of the type equality.
      *
@@ -354,6 +463,59 @@ public class IndexCondition {
         return compareType;
     }
 
+    /**
+     * Check if all values that match the given condition also match this
+     * condition. Only conditions on the same column that compare with a
+     * constant are supported.
+     *
+     * @param session the session
+     * @param other the other condition
+     * @return true if the other condition implies this condition
+     */
+    public boolean isImpliedBy(Session session, IndexCondition other) {
+        if (other.column != column || expression == null ||
+                other.expression == null || !expression.isConstant() ||
+                !other.expression.isConstant()) {
+            return false;
+        }
+        Value v = expression.getValue(session);
+        Value o = other.expression.getValue(session);
+        boolean otherEqual = other.compareType == Comparison.EQUAL ||
+                other.compareType == Comparison.EQUAL_NULL_SAFE;
+        if (v == ValueNull.INSTANCE || o == ValueNull.INSTANCE) {
+            // IS NULL
+            return compareType == Comparison.EQUAL_NULL_SAFE &&
+                    other.compareType == Comparison.EQUAL_NULL_SAFE &&
+                    v == o;
+        }
+        int comp = session.getDatabase().compare(o, v);
+        switch (compareType) {
+        case Comparison.EQUAL:
+        case Comparison.EQUAL_NULL_SAFE:
+            return otherEqual && comp == 0;
+        case Comparison.BIGGER_EQUAL:
+            return (otherEqual || other.compareType == Comparison.BIGGER ||
+                    other.compareType == Comparison.BIGGER_EQUAL) && comp >= 0;
+        case Comparison.BIGGER:
+            if (other.compareType == Comparison.BIGGER) {
+                return comp >= 0;
+            }
+            return (otherEqual || other.compareType == Comparison.BIGGER_EQUAL) &&
+                    comp > 0;
+        case Comparison.SMALLER_EQUAL:
+            return (otherEqual || other.compareType == Comparison.SMALLER ||
+                    other.compareType == Comparison.SMALLER_EQUAL) && comp <= 0;
+        case Comparison.SMALLER:
+            if (other.compareType == Comparison.SMALLER) {
+                return comp <= 0;
+            }
+            return (otherEqual || other.compareType == Comparison.SMALLER_EQUAL) &&
+                    comp < 0;
+        default:
+            return false;
+        }
+    }
+
     /**
      * Get the referenced column.
      *
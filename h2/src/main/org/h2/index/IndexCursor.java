@@ -18,13 +18,15 @@ import org.h2.table.Column;
 import org.h2.table.IndexColumn;
 import org.h2.table.Table;
 import org.h2.table.TableFilter;
+import org.h2.util.New;
+import org.h2.util.ValueHashMap;
 import org.h2.value.Value;
 import org.h2.value.ValueGeometry;
 import org.h2.value.ValueNull;
 
 /**
  * The filter used to walk through an index. This class supports IN(..)
- * and IN(SELECT ...) optimizations.
+ * and IN(SELECT ...) optimizations, as well as hash joins and merge joins.
  *
  * @author Thomas Mueller
  * @author Noel Grandin
@@ -32,6 +34,18 @@ import org.h2.value.ValueNull;
  */
 public class IndexCursor implements Cursor {
 
+    /**
+     * The maximum number of rows to skip in a merge join before searching the
+     * index again.
+     */
+    private static final int MERGE_JOIN_MAX_SKIP = 32;
+
+    /**
+     * The number of times in a row the merge join may have to search the index
+     * again before it is disabled for the rest of the query.
+     */
+    private static final int MERGE_JOIN_MAX_MISSES = 8;
+
     private Session session;
     private final TableFilter tableFilter;
     private Index index;
@@ -46,6 +60,15 @@ public class IndexCursor implements Cursor {
     private Value[] inList;
     private ResultInterface inResult;
     private HashSet<Value> inResultTested;
+    private IndexCondition hashCondition;
+    private ValueHashMap<ArrayList<Row>> hashTable;
+    private boolean hashTableTooLarge;
+    private IndexCondition mergeCondition;
+    private Cursor mergeCursor;
+    private Value mergeValue;
+    private SearchRow mergeStart;
+    private boolean merging, mergeHasRow, mergeAdvance;
+    private int mergeMisses;
 
     public IndexCursor(TableFilter filter) {
         this.tableFilter = filter;
@@ -54,19 +77,60 @@ public class IndexCursor implements Cursor {
     public void setIndex(Index index) {
         this.index = index;
         this.table = index.getTable();
-        Column[] columns = table.getColumns();
-        indexColumns = new IndexColumn[columns.length];
+        indexColumns = new IndexColumn[table.getSearchColumnCount()];
         IndexColumn[] idxCols = index.getIndexColumns();
         if (idxCols != null) {
-            for (int i = 0, len = columns.length; i < len; i++) {
-                int idx = index.getColumnIndex(columns[i]);
-                if (idx >= 0) {
-                    indexColumns[i] = idxCols[idx];
+            for (IndexColumn c : idxCols) {
+                if (c == null || c.column == null) {
+                    continue;
+                }
+                int id = c.column.getColumnId();
+                if (id >= 0 && indexColumns[id] == null) {
+                    indexColumns[id] = c;
                 }
             }
         }
     }
 
+    /**
+     * Set the equality condition to use for a hash join. If set, the rows of
+     * the index are read once into a hash table, and then each search only
+     * returns the rows with a matching value.
+     *
+     * @param condition the condition, or null to scan the index as usual
+     */
+    public void setHashCondition(IndexCondition condition) {
+        this.hashCondition = condition;
+        reset();
+    }
+
+    /**
+     * Set the equality condition to use for a merge join. If set, and the
+     * values are searched in ascending order, the index is read sequentially
+     * from the position of the previous search, instead of searching the index
+     * for each value.
+     *
+     * @param condition the condition, or null to search the index as usual
+     */
+    public void setMergeCondition(IndexCondition condition) {
+        this.mergeCondition = condition;
+        mergeStart = null;
+        reset();
+    }
+
+    /**
+     * Forget the rows that were read for the hash join, and the position of
+     * the merge join, so that the current data is read again the next time.
+     */
+    public void reset() {
+        hashTable = null;
+        hashTableTooLarge = false;
+        mergeCursor = null;
+        mergeValue = null;
+        merging = false;
+        mergeMisses = 0;
+    }
+
     /**
      * Re-evaluate the start and end values of the index search for rows.
      *
@@ -76,6 +140,7 @@ public class IndexCursor implements Cursor {
     public void find(Session s, ArrayList<IndexCondition> indexConditions) {
         this.session = s;
         alwaysFalse = false;
+        merging = false;
         start = end = null;
         inList = null;
         inColumn = null;
@@ -102,7 +167,7 @@ public class IndexCursor implements Cursor {
                 if (start == null && end == null) {
                     if (canUseIndexForIn(column)) {
                         this.inColumn = column;
-                        inResult = condition.getCurrentResult();
+                        inResult = condition.getCurrentResult(s);
                     }
                 }
             } else {
@@ -151,6 +216,29 @@ public class IndexCursor implements Cursor {
         if (inColumn != null) {
             return;
         }
+        if (!alwaysFalse && hashCondition != null && !hashTableTooLarge) {
+            if (hashTable == null) {
+                hashTable = readHashTable();
+            }
+            if (hashTable != null) {
+                Value v = hashCondition.getCurrentValue(s);
+                ArrayList<Row> rows = null;
+                if (v != ValueNull.INSTANCE) {
+                    rows = hashTable.get(v);
+                }
+                cursor = new MetaCursor(rows == null ?
+                        new ArrayList<Row>(0) : rows);
+                return;
+            }
+        }
+        if (!alwaysFalse && mergeCondition != null &&
+                mergeMisses < MERGE_JOIN_MAX_MISSES) {
+            Value v = mergeCondition.getCurrentValue(s);
+            if (v != ValueNull.INSTANCE) {
+                findMerge(v);
+                return;
+            }
+        }
         if (!alwaysFalse) {
             if (intersects != null && index instanceof SpatialIndex) {
                 cursor = ((SpatialIndex) index).findByGeometry(tableFilter,
@@ -161,6 +249,107 @@ public class IndexCursor implements Cursor {
         }
     }
 
+    /**
+     * Position the cursor before the row at the given offset of the range
+     * described by the index conditions, if the index supports it. This is
+     * only possible if the index conditions describe exactly the rows of the
+     * range.
+     *
+     * @param s the session
+     * @param indexConditions the index conditions
+     * @param offset the number of rows to skip
+     * @return true if the cursor is positioned, false if the index does not
+     *         support it
+     */
+    public boolean findWithOffset(Session s,
+            ArrayList<IndexCondition> indexConditions, long offset) {
+        Cursor c = index.findWithOffset(s, indexConditions, offset);
+        if (c == null) {
+            return false;
+        }
+        this.session = s;
+        alwaysFalse = false;
+        merging = false;
+        start = end = null;
+        inList = null;
+        inColumn = null;
+        inResult = null;
+        inResultTested = null;
+        intersects = null;
+        cursor = c;
+        return true;
+    }
+
+    private void findMerge(Value v) {
+        boolean forward = mergeCursor != null &&
+                v.compareTo(mergeValue, table.getDatabase().getCompareMode()) > 0;
+        mergeValue = v;
+        merging = true;
+        cursor = null;
+        if (forward) {
+            // continue reading from the current position
+            for (int i = 0; i < MERGE_JOIN_MAX_SKIP; i++) {
+                if (!nextMergeRow() || compareMergeRow() >= 0) {
+                    mergeMisses = 0;
+                    return;
+                }
+                mergeAdvance = true;
+            }
+            mergeMisses++;
+        }
+        if (mergeStart == null) {
+            mergeStart = table.getTemplateSearchRow();
+        }
+        mergeStart.setValue(mergeCondition.getColumn().getColumnId(), v);
+        mergeCursor = index.find(tableFilter, mergeStart, null);
+        mergeHasRow = mergeCursor.next();
+        mergeAdvance = false;
+    }
+
+    private boolean nextMergeRow() {
+        if (mergeAdvance) {
+            mergeHasRow = mergeCursor.next();
+            mergeAdvance = false;
+        }
+        return mergeHasRow;
+    }
+
+    private int compareMergeRow() {
+        int columnId = mergeCondition.getColumn().getColumnId();
+        Value v = mergeCursor.getSearchRow().getValue(columnId);
+        return v.compareTo(mergeValue, table.getDatabase().getCompareMode());
+    }
+
+    private ValueHashMap<ArrayList<Row>> readHashTable() {
+        int maxRows = session.getDatabase().getMaxMemoryRows();
+        int columnId = hashCondition.getColumn().getColumnId();
+        ValueHashMap<ArrayList<Row>> map = ValueHashMap.newInstance();
+        Cursor c = index.find(tableFilter, null, null);
+        int count = 0;
+        while (c.next()) {
+            if (++count > maxRows) {
+                // scan the index for each search instead
+                hashTableTooLarge = true;
+                return null;
+            }
+            if ((count & 4095) == 0) {
+                session.checkCanceled();
+            }
+            Row row = c.get();
+            Value v = row.getValue(columnId);
+            if (v == ValueNull.INSTANCE) {
+                continue;
+            }
+            ArrayList<Row> list = map.get(v);
+            if (list == null) {
+                list = New.arrayList();
+                map.put(v, list);
+            }
+            list.add(row);
+        }
+        return map;
+    }
+
     private boolean canUseIndexForIn(Column column) {
         if (inColumn != null) {
             // only one IN(..) condition can be used at the same time
@@ -180,7 +369,7 @@ public class IndexCursor implements Cursor {
 
     private SearchRow getSpatialSearchRow(SearchRow row, int columnId, Value v) {
         if (row == null) {
-            row = table.getTemplateRow();
+            row = table.getTemplateSearchRow();
         } else if (row.getValue(columnId) != null) {
             // if an object needs to overlap with both a and b,
             // then it needs to overlap with the the union of a and b
@@ -201,7 +390,7 @@ public class IndexCursor implements Cursor {
     private SearchRow getSearchRow(SearchRow row, int columnId, Value v,
             boolean max) {
         if (row == null) {
-            row = table.getTemplateRow();
+            row = table.getTemplateSearchRow();
         } else {
             v = getMax(row.getValue(columnId), v, max);
         }
@@ -254,6 +443,9 @@ public class IndexCursor implements Cursor {
 
     @Override
     public Row get() {
+        if (merging) {
+            return mergeCursor.get();
+        }
         if (cursor == null) {
             return null;
         }
@@ -262,11 +454,22 @@ public class IndexCursor implements Cursor {
 
     @Override
     public SearchRow getSearchRow() {
+        if (merging) {
+            return mergeCursor.getSearchRow();
+        }
         return cursor.getSearchRow();
     }
 
     @Override
     public boolean next() {
+        if (merging) {
+            // the row after the last match is kept for the next search
+            if (nextMergeRow() && compareMergeRow() == 0) {
+                mergeAdvance = true;
+                return true;
+            }
+            return false;
+        }
         while (true) {
             if (cursor == null) {
                 nextCursor();
@@ -311,7 +514,7 @@ public class IndexCursor implements Cursor {
         v = inColumn.convert(v);
         int id = inColumn.getColumnId();
         if (start == null) {
-            start = table.getTemplateRow();
+            start = table.getTemplateSearchRow();
         }
         start.setValue(id, v);
         cursor = index.find(tableFilter, start, start);
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.util.ArrayList;
+import org.h2.table.IndexColumn;
+import org.h2.util.New;
+import org.h2.value.Value;
+
+/**
+ * A range of an index that contains exactly the rows that match a list of
+ * index conditions. The leading index columns are compared for equality, and
+ * the next column may have a lower and an upper bound.
+ */
+public class IndexRange {
+
+    /**
+     * Whether no row can match (for example because a column is compared
+     * with NULL).
+     */
+    boolean empty;
+
+    /**
+     * The values of the leading index columns.
+     */
+    final ArrayList<Value> prefix = New.arrayList();
+
+    /**
+     * The index column after the prefix that has a lower or upper bound, or
+     * null if there is none.
+     */
+    IndexColumn column;
+
+    /**
+     * The lower bound of the column, or null.
+     */
+    Value lower;
+
+    /**
+     * Whether the lower bound itself is excluded.
+     */
+    boolean lowerExclusive;
+
+    /**
+     * The upper bound of the column, or null.
+     */
+    Value upper;
+
+    /**
+     * Whether the upper bound itself is excluded.
+     */
+    boolean upperExclusive;
+
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    public ArrayList<Value> getPrefix() {
+        return prefix;
+    }
+
+    public IndexColumn getColumn() {
+        return column;
+    }
+
+    public Value getLower() {
+        return lower;
+    }
+
+    public boolean isLowerExclusive() {
+        return lowerExclusive;
+    }
+
+    public Value getUpper() {
+        return upper;
+    }
+
+    public boolean isUpperExclusive() {
+        return upperExclusive;
+    }
+
+}
@@ -5,6 +5,10 @@
  */
 package org.h2.index;
 
+import org.h2.expression.Expression;
+import org.h2.table.IndexColumn;
+import org.h2.table.TableFilter;
+
 /**
  * Represents information about the properties of an index
  */
@@ -12,6 +16,9 @@ public class IndexType {
 
     private boolean primaryKey, persistent, unique, hash, scan, spatial;
     private boolean belongsToConstraint;
+    private IndexColumn[] includeColumns;
+    private Expression condition;
+    private TableFilter conditionFilter;
 
     /**
      * Create a primary key index.
@@ -103,6 +110,57 @@ public class IndexType {
         return belongsToConstraint;
     }
 
+    /**
+     * Set the columns that are stored in the index in addition to the indexed
+     * columns, so that queries that read them don't need to read the row.
+     *
+     * @param includeColumns the included columns, or null
+     */
+    public void setIncludeColumns(IndexColumn[] includeColumns) {
+        this.includeColumns = includeColumns;
+    }
+
+    /**
+     * Get the columns that are stored in the index in addition to the indexed
+     * columns.
+     *
+     * @return the included columns, or null if there are none
+     */
+    public IndexColumn[] getIncludeColumns() {
+        return includeColumns;
+    }
+
+    /**
+     * Set the condition of a partial index. Only rows that match the
+     * condition are stored in the index.
+     *
+     * @param condition the condition, mapped to the given filter
+     * @param conditionFilter the table filter used to evaluate the condition
+     */
+    public void setCondition(Expression condition, TableFilter conditionFilter) {
+        this.condition = condition;
+        this.conditionFilter = conditionFilter;
+    }
+
+    /**
+     * Get the condition of a partial index.
+     *
+     * @return the condition, or null if all rows are stored in the index
+     */
+    public Expression getCondition() {
+        return condition;
+    }
+
+    /**
+     * Get the table filter used to evaluate the condition of a partial
+     * index.
+     *
+     * @return the table filter, or null
+     */
+    public TableFilter getConditionFilter() {
+        return conditionFilter;
+    }
+
     /**
      * Is this a hash index?
      *
@@ -347,6 +347,18 @@ public class MultiVersionIndex implements Index {
         base.setTemporary(temporary);
     }
 
+    @Override
+    public long getRowCount(Session session,
+            ArrayList<IndexCondition> conditions) {
+        return -1;
+    }
+
+    @Override
+    public Cursor findWithOffset(Session session,
+            ArrayList<IndexCondition> conditions, long offset) {
+        return null;
+    }
+
     @Override
     public long getRowCountApproximation() {
         return base.getRowCountApproximation();
@@ -2210,7 +2210,11 @@ public class JdbcDatabaseMetaData extends TraceObject implements
             prep.setString(1, "MULTI_THREADED");
             ResultSet rs = prep.executeQuery();
             if (rs.next() && rs.getString(1).equals("1")) {
-                return false;
+                // unless multi-threading was only enabled by default,
+                // in which case LOCK_MODE=0 disables it
+                prep.setString(1, "info.MULTI_THREADED_DEFAULT");
+                rs = prep.executeQuery();
+                return rs.next() && rs.getString(1).equals("TRUE");
             }
         }
         return true;
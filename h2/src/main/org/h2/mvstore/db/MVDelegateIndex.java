@@ -5,11 +5,15 @@
  */
 package org.h2.mvstore.db;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import org.h2.api.ErrorCode;
 import org.h2.engine.Session;
 import org.h2.index.BaseIndex;
 import org.h2.index.Cursor;
+import org.h2.index.IndexCondition;
+import org.h2.index.IndexRange;
 import org.h2.index.IndexType;
 import org.h2.message.DbException;
 import org.h2.result.Row;
@@ -18,7 +22,9 @@ import org.h2.result.SortOrder;
 import org.h2.table.Column;
 import org.h2.table.IndexColumn;
 import org.h2.table.TableFilter;
+import org.h2.value.Value;
 import org.h2.value.ValueLong;
+import org.h2.value.ValueNull;
 
 /**
  * An index that delegates indexing to another index.
@@ -95,6 +101,96 @@ public class MVDelegateIndex extends BaseIndex implements MVIndex {
                 mainIndex.getRowCountApproximation(), filter, sortOrder);
     }
 
+    @Override
+    public long getRowCount(Session session,
+            ArrayList<IndexCondition> conditions) {
+        long[] range = getKeyRange(session, conditions);
+        if (range == null) {
+            return -1;
+        }
+        return mainIndex.getRowCount(range[0], range[1]);
+    }
+
+    @Override
+    public Cursor findWithOffset(Session session,
+            ArrayList<IndexCondition> conditions, long offset) {
+        long[] range = getKeyRange(session, conditions);
+        if (range == null) {
+            return null;
+        }
+        return mainIndex.findWithOffset(session, range[0], range[1], offset);
+    }
+
+    /**
+     * Get the smallest and the largest key of the rows that match the index
+     * conditions.
+     *
+     * @param session the session
+     * @param conditions the index conditions
+     * @return the smallest and the largest key, or null if the conditions
+     *         are not a range
+     */
+    private long[] getKeyRange(Session session,
+            ArrayList<IndexCondition> conditions) {
+        IndexRange range = getExactRange(session, conditions);
+        if (range == null) {
+            return null;
+        }
+        long min = Long.MIN_VALUE, max = Long.MAX_VALUE;
+        if (range.isEmpty()) {
+            min = 1;
+            max = 0;
+        } else if (range.getPrefix().size() > 0) {
+            Value v = range.getPrefix().get(0);
+            if (v == ValueNull.INSTANCE) {
+                // the key is never NULL
+                min = 1;
+                max = 0;
+            } else {
+                min = max = v.getLong();
+            }
+        } else if (range.getColumn() != null) {
+            Value lower = range.getLower(), upper = range.getUpper();
+            if (lower != null) {
+                min = lower.getLong();
+                if (range.isLowerExclusive()) {
+                    if (min == Long.MAX_VALUE) {
+                        return new long[] { 1, 0 };
+                    }
+                    min++;
+                }
+            }
+            if (upper != null) {
+                max = upper.getLong();
+                if (range.isUpperExclusive()) {
+                    if (max == Long.MIN_VALUE) {
+                        return new long[] { 1, 0 };
+                    }
+                    max--;
+                }
+            }
+        }
+        return new long[] { min, max };
+    }
+
+    @Override
+    protected long getRowCountInRange(int[] masks, TableFilter filter) {
+        if (filter == null || masks[columns[0].getColumnId()] == 0) {
+            return -1;
+        }
+        Value[] bounds = getConstantBounds(filter, indexColumns[0]);
+        if (bounds == null || bounds[0] == null && bounds[1] == null ||
+                bounds[0] == bounds[1]) {
+            // no range condition
+            return -1;
+        }
+        try {
+            return mainIndex.getRowCountInRange(bounds[0], bounds[1]);
+        } catch (IllegalStateException e) {
+            throw DbException.get(ErrorCode.OBJECT_CLOSED, e);
+        }
+    }
+
     @Override
     public boolean needRebuild() {
         return false;
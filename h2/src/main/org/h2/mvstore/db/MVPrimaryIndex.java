@@ -5,6 +5,7 @@
  */
 package org.h2.mvstore.db;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
@@ -16,10 +17,13 @@ import org.h2.engine.Constants;
 import org.h2.engine.Database;
 import org.h2.engine.Session;
 import org.h2.index.BaseIndex;
+import org.h2.index.BatchCursor;
 import org.h2.index.Cursor;
+import org.h2.index.IndexCondition;
 import org.h2.index.IndexType;
 import org.h2.message.DbException;
 import org.h2.mvstore.DataUtils;
+import org.h2.mvstore.MVMap;
 import org.h2.mvstore.db.TransactionStore.Transaction;
 import org.h2.mvstore.db.TransactionStore.TransactionMap;
 import org.h2.result.Row;
@@ -30,6 +34,7 @@ import org.h2.table.IndexColumn;
 import org.h2.table.TableFilter;
 import org.h2.value.Value;
 import org.h2.value.ValueArray;
+import org.h2.value.ValueInt;
 import org.h2.value.ValueLong;
 import org.h2.value.ValueNull;
 
@@ -160,12 +165,27 @@ public class MVPrimaryIndex extends BaseIndex {
             }
         }
         TransactionMap<Value, Value> map = getMap(session);
+        Value key = ValueLong.get(row.getKey());
         try {
-            Value old = map.remove(ValueLong.get(row.getKey()));
+            // if statements run concurrently, the row could have been changed
+            // and committed by another session after it was read
+            boolean checkUnchanged = database.isMultiThreaded() &&
+                    !map.isSameTransaction(key);
+            long logId = map.getTransaction().setSavepoint();
+            Value old = map.remove(key);
             if (old == null) {
                 throw DbException.get(ErrorCode.ROW_NOT_FOUND_WHEN_DELETING_1,
                         getSQL() + ": " + row.getKey());
             }
+            if (checkUnchanged) {
+                // the row is now locked by this transaction,
+                // get the value it had just before the removal
+                Value replaced = map.get(key, logId);
+                if (!ValueArray.get(row.getValueList()).equals(replaced)) {
+                    throw DbException.get(ErrorCode.CONCURRENT_UPDATE_1,
+                            table.getName());
+                }
+            }
         } catch (IllegalStateException e) {
             throw DbException.get(ErrorCode.CONCURRENT_UPDATE_1,
                     e, table.getName());
@@ -229,6 +249,120 @@ public class MVPrimaryIndex extends BaseIndex {
         }
     }
 
+    /**
+     * Get the number of rows with a key within the given range, using the
+     * position of the keys in the map. This is a O(log(size)) operation.
+     * Uncommitted changes are included.
+     *
+     * @param min the smallest key, or null
+     * @param max the largest key, or null
+     * @return the number of rows
+     */
+    long getRowCountInRange(Value min, Value max) {
+        if (min == ValueNull.INSTANCE || max == ValueNull.INSTANCE) {
+            // the key is never NULL
+            return 0;
+        }
+        Value key = ValueArray.get(new Value[] { ValueInt.get(getId()),
+                min == null ? ValueNull.INSTANCE : min,
+                max == null ? ValueNull.INSTANCE : max });
+        long count = mvTable.getCachedRangeCount(key);
+        if (count < 0) {
+            count = getKeyCount(dataMap.map,
+                    min == null ? Long.MIN_VALUE : min.getLong(),
+                    max == null ? Long.MAX_VALUE : max.getLong());
+            mvTable.cacheRangeCount(key, count);
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of rows with a key within the given range, if there are
+     * no uncommitted changes. This is a O(log(size)) operation.
+     *
+     * @param min the smallest key
+     * @param max the largest key
+     * @return the number of rows, or -1 if there are uncommitted changes
+     */
+    long getRowCount(long min, long max) {
+        MVMap<Value, ?> map = dataMap.openCommittedSnapshot();
+        if (map == null) {
+            return -1;
+        }
+        return getKeyCount(map, min, max);
+    }
+
+    /**
+     * Find the rows with a key within the given range, skipping the given
+     * number of rows without reading them, if there are no uncommitted
+     * changes.
+     *
+     * @param session the session
+     * @param min the smallest key
+     * @param max the largest key
+     * @param offset the number of rows to skip
+     * @return the cursor, or null if there are uncommitted changes
+     */
+    Cursor findWithOffset(Session session, long min, long max, long offset) {
+        MVMap<Value, ?> map = dataMap.openCommittedSnapshot();
+        if (map == null) {
+            return null;
+        }
+        Value key = null;
+        if (offset < getKeyCount(map, min, max)) {
+            key = map.getKey(getKeyPosition(map, min, false) + offset);
+        }
+        if (key == null) {
+            return new MVStoreCursor(Collections.<Entry<Value, Value>>
+                    emptyList().iterator(), null);
+        }
+        return find(session, (ValueLong) key, ValueLong.get(max));
+    }
+
+    @Override
+    public long getRowCount(Session session,
+            ArrayList<IndexCondition> conditions) {
+        if (conditions.size() > 0) {
+            return -1;
+        }
+        return getRowCount(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Override
+    public Cursor findWithOffset(Session session,
+            ArrayList<IndexCondition> conditions, long offset) {
+        if (conditions.size() > 0) {
+            return null;
+        }
+        return findWithOffset(session, Long.MIN_VALUE, Long.MAX_VALUE, offset);
+    }
+
+    private static long getKeyCount(MVMap<Value, ?> map,
+            long min, long max) {
+        if (min > max) {
+            return 0;
+        }
+        return getKeyPosition(map, max, true) -
+                getKeyPosition(map, min, false);
+    }
+
+    /**
+     * Get the number of keys that are smaller than the given key.
+     *
+     * @param map the map
+     * @param key the key
+     * @param inclusive whether to include the key itself
+     * @return the number of keys
+     */
+    private static long getKeyPosition(MVMap<Value, ?> map,
+            long key, boolean inclusive) {
+        long index = map.getKeyIndex(ValueLong.get(key));
+        if (index < 0) {
+            return -index - 1;
+        }
+        return inclusive ? index + 1 : index;
+    }
+
     @Override
     public int getColumnIndex(Column col) {
         // can not use this index - use the delegate index instead
@@ -375,7 +509,7 @@ public class MVPrimaryIndex extends BaseIndex {
     /**
      * A cursor.
      */
-    class MVStoreCursor implements Cursor {
+    class MVStoreCursor implements BatchCursor {
 
         private final Iterator<Entry<Value, Value>> it;
         private final ValueLong last;
@@ -414,6 +548,26 @@ public class MVPrimaryIndex extends BaseIndex {
             return current != null;
         }
 
+        @Override
+        public int nextBatch(Row[] rows) {
+            current = null;
+            row = null;
+            long max = last.getLong();
+            int count = 0;
+            while (count < rows.length && it.hasNext()) {
+                Entry<Value, Value> e = it.next();
+                long key = e.getKey().getLong();
+                if (key > max) {
+                    break;
+                }
+                ValueArray array = (ValueArray) e.getValue();
+                Row r = new Row(array.getList(), 0);
+                r.setKey(key);
+                rows[count++] = r;
+            }
+            return count;
+        }
+
         @Override
         public boolean previous() {
             throw DbException.getUnsupportedException("previous");
@@ -9,7 +9,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.TreeSet;
 
 import org.h2.api.ErrorCode;
@@ -17,8 +19,11 @@ import org.h2.engine.Database;
 import org.h2.engine.Session;
 import org.h2.index.BaseIndex;
 import org.h2.index.Cursor;
+import org.h2.index.IndexCondition;
+import org.h2.index.IndexRange;
 import org.h2.index.IndexType;
 import org.h2.message.DbException;
+import org.h2.mvstore.DataUtils;
 import org.h2.mvstore.MVMap;
 import org.h2.mvstore.db.TransactionStore.Transaction;
 import org.h2.mvstore.db.TransactionStore.TransactionMap;
@@ -32,6 +37,7 @@ import org.h2.util.New;
 import org.h2.value.CompareMode;
 import org.h2.value.Value;
 import org.h2.value.ValueArray;
+import org.h2.value.ValueInt;
 import org.h2.value.ValueLong;
 import org.h2.value.ValueNull;
 
@@ -46,6 +52,7 @@ public class MVSecondaryIndex extends BaseIndex implements MVIndex {
     final MVTable mvTable;
 
     private final int keyColumns;
+    private final IndexColumn[] includeColumns;
     private final String mapName;
     private TransactionMap<Value, Value> dataMap;
 
@@ -59,6 +66,7 @@ public class MVSecondaryIndex extends BaseIndex implements MVIndex {
         // always store the row key in the map key,
         // even for unique indexes, as some of the index columns could be null
         keyColumns = columns.length + 1;
+        includeColumns = indexType.getIncludeColumns();
         mapName = "index." + getId();
         int[] sortTypes = new int[keyColumns];
         for (int i = 0; i < columns.length; i++) {
@@ -80,8 +88,12 @@ public class MVSecondaryIndex extends BaseIndex implements MVIndex {
     public void addRowsToBuffer(List<Row> rows, String bufferName) {
         MVMap<Value, Value> map = openMap(bufferName);
         for (Row row : rows) {
-            ValueArray key = convertToKey(row);
-            map.put(key, ValueNull.INSTANCE);
+            if (!isRowIndexed(null, row)) {
+                continue;
+            }
+            Row r = getIndexRow(null, row);
+            ValueArray key = convertToKey(r);
+            map.put(key, convertToValue(r));
         }
     }
 
@@ -94,7 +106,8 @@ public class MVSecondaryIndex extends BaseIndex implements MVIndex {
          */
         class Source implements Comparable<Source> {
             Value value;
-            Iterator<Value> next;
+            Value data;
+            org.h2.mvstore.Cursor<Value, Value> next;
             int sourceId;
             @Override
             public int compareTo(Source o) {
@@ -108,10 +121,11 @@ public class MVSecondaryIndex extends BaseIndex implements MVIndex {
         TreeSet<Source> sources = new TreeSet<Source>();
         for (int i = 0; i < bufferNames.size(); i++) {
             MVMap<Value, Value> map = openMap(bufferNames.get(i));
-            Iterator<Value> it = map.keyIterator(null);
+            org.h2.mvstore.Cursor<Value, Value> it = map.cursor(null);
             if (it.hasNext()) {
                 Source s = new Source();
                 s.value = it.next();
+                s.data = it.getValue();
                 s.next = it;
                 s.sourceId = i;
                 sources.add(s);
@@ -132,9 +146,9 @@ public class MVSecondaryIndex extends BaseIndex implements MVIndex {
                     checkUnique(row, dataMap, unique);
                 }
 
-                dataMap.putCommitted(v, ValueNull.INSTANCE);
+                dataMap.putCommitted(v, s.data);
 
-                Iterator<Value> it = s.next;
+                org.h2.mvstore.Cursor<Value, Value> it = s.next;
                 if (!it.hasNext()) {
                     sources.remove(s);
                     if (sources.size() == 0) {
@@ -144,6 +158,7 @@ public class MVSecondaryIndex extends BaseIndex implements MVIndex {
                     Value nextValue = it.next();
                     sources.remove(s);
                     s.value = nextValue;
+                    s.data = it.getValue();
                     sources.add(s);
                 }
             }
@@ -181,6 +196,10 @@ public class MVSecondaryIndex extends BaseIndex implements MVIndex {
 
     @Override
     public void add(Session session, Row row) {
+        if (!isRowIndexed(session, row)) {
+            return;
+        }
+        row = getIndexRow(session, row);
         TransactionMap<Value, Value> map = getMap(session);
         ValueArray array = convertToKey(row);
         ValueArray unique = null;
@@ -191,7 +210,7 @@ public class MVSecondaryIndex extends BaseIndex implements MVIndex {
             checkUnique(row, map, unique);
         }
         try {
-            map.put(array, ValueNull.INSTANCE);
+            map.put(array, convertToValue(row));
         } catch (IllegalStateException e) {
             throw DbException.get(ErrorCode.CONCURRENT_UPDATE_1,
                     e, table.getName());
@@ -239,7 +258,10 @@ public class MVSecondaryIndex extends BaseIndex implements MVIndex {
 
     @Override
     public void remove(Session session, Row row) {
-        ValueArray array = convertToKey(row);
+        if (!isRowIndexed(session, row)) {
+            return;
+        }
+        ValueArray array = convertToKey(getIndexRow(session, row));
         TransactionMap<Value, Value> map = getMap(session);
         try {
             Value old = map.remove(array);
@@ -306,11 +328,11 @@ public class MVSecondaryIndex extends BaseIndex implements MVIndex {
                 break;
             }
             if (min == null) {
-                return new MVStoreCursor(session,
-                        Collections.<Value>emptyList().iterator(), null);
+                return new MVStoreCursor(session, Collections.
+                        <Entry<Value, Value>>emptyList().iterator(), null);
             }
         }
-        return new MVStoreCursor(session, map.keyIterator(min), last);
+        return new MVStoreCursor(session, map.entryIterator(min), last);
     }
 
     private ValueArray convertToKey(SearchRow r) {
@@ -330,6 +352,45 @@ public class MVSecondaryIndex extends BaseIndex implements MVIndex {
         return ValueArray.get(array);
     }
 
+    /**
+     * Get the map value for the given row, which contains the values of the
+     * included columns.
+     *
+     * @param r the row
+     * @return the value
+     */
+    private Value convertToValue(SearchRow r) {
+        if (includeColumns == null) {
+            return ValueNull.INSTANCE;
+        }
+        Value[] array = new Value[includeColumns.length];
+        for (int i = 0; i < includeColumns.length; i++) {
+            Column c = includeColumns[i].column;
+            array[i] = r.getValue(c.getColumnId()).convertTo(c.getType());
+        }
+        return ValueArray.get(array);
+    }
+
+    /**
+     * Convert an index entry to a SearchRow, including the values of the
+     * included columns.
+     *
+     * @param key the index key
+     * @param value the map value
+     * @return the row
+     */
+    SearchRow convertToSearchRow(ValueArray key, Value value) {
+        SearchRow searchRow = convertToSearchRow(key);
+        if (includeColumns != null) {
+            Value[] array = ((ValueArray) value).getList();
+            for (int i = 0; i < includeColumns.length; i++) {
+                searchRow.setValue(includeColumns[i].column.getColumnId(),
+                        array[i]);
+            }
+        }
+        return searchRow;
+    }
+
     /**
      * Convert array of values to a SearchRow.
      *
@@ -338,7 +399,7 @@ public class MVSecondaryIndex extends BaseIndex implements MVIndex {
      */
     SearchRow convertToSearchRow(ValueArray key) {
         Value[] array = key.getList();
-        SearchRow searchRow = mvTable.getTemplateRow();
+        SearchRow searchRow = mvTable.getTemplateSearchRow();
         searchRow.setKey((array[array.length - 1]).getLong());
         Column[] cols = getColumns();
         for (int i = 0; i < array.length - 1; i++) {
@@ -358,14 +419,254 @@ public class MVSecondaryIndex extends BaseIndex implements MVIndex {
     @Override
     public double getCost(Session session, int[] masks, TableFilter filter,
             SortOrder sortOrder) {
+        if (!isConditionImplied(session, filter)) {
+            // the index doesn't contain all rows the query needs
+            return Long.MAX_VALUE;
+        }
         try {
-            return 10 * getCostRangeIndex(masks,
+            long cost = 10 * getCostRangeIndex(masks,
                     dataMap.sizeAsLongMax(), filter, sortOrder);
+            if (isCovering(filter)) {
+                // the rows don't need to be read from the primary index
+                cost /= 2;
+            }
+            return cost;
         } catch (IllegalStateException e) {
             throw DbException.get(ErrorCode.OBJECT_CLOSED, e);
         }
     }
 
+    @Override
+    protected long getRowCountInRange(int[] masks, TableFilter filter) {
+        if (filter == null) {
+            return -1;
+        }
+        // the bounds of the leading index columns
+        ArrayList<Value> start = New.arrayList();
+        ArrayList<Value> end = New.arrayList();
+        boolean range = false;
+        for (IndexColumn c : indexColumns) {
+            if (masks[c.column.getColumnId()] == 0) {
+                break;
+            }
+            Value[] bounds = getConstantBounds(filter, c);
+            if (bounds == null) {
+                return -1;
+            }
+            Value s = bounds[0], e = bounds[1];
+            if (s != null && e != null && database.areEqual(s, e)) {
+                start.add(s);
+                end.add(e);
+                continue;
+            }
+            if (s != null) {
+                start.add(s);
+            }
+            if (e != null) {
+                end.add(e);
+            }
+            range = s != null || e != null;
+            break;
+        }
+        if (!range) {
+            // for equality conditions, the estimate based on the
+            // selectivity is used
+            return -1;
+        }
+        Value[] first = new Value[keyColumns];
+        start.toArray(first);
+        // a key that only contains the values of the leading columns is
+        // larger than all entries that start with these values
+        ValueArray last = ValueArray.get(end.toArray(new Value[end.size()]));
+        Value key = ValueArray.get(new Value[] { ValueInt.get(getId()),
+                ValueArray.get(start.toArray(new Value[start.size()])), last });
+        long count = mvTable.getCachedRangeCount(key);
+        if (count < 0) {
+            count = Math.max(0, getPosition(dataMap.map, last) -
+                    getPosition(dataMap.map, ValueArray.get(first)));
+            mvTable.cacheRangeCount(key, count);
+        }
+        return count;
+    }
+
+    @Override
+    public long getRowCount(Session session,
+            ArrayList<IndexCondition> conditions) {
+        ValueArray[] range = getKeyRange(session, conditions);
+        if (range == null) {
+            return -1;
+        }
+        MVMap<Value, ?> map = dataMap.openCommittedSnapshot();
+        if (map == null) {
+            return -1;
+        }
+        return Math.max(0, getPosition(map, range[1]) -
+                getPosition(map, range[0]));
+    }
+
+    @Override
+    public Cursor findWithOffset(Session session,
+            ArrayList<IndexCondition> conditions, long offset) {
+        ValueArray[] range = getKeyRange(session, conditions);
+        if (range == null) {
+            return null;
+        }
+        MVMap<Value, ?> map = dataMap.openCommittedSnapshot();
+        if (map == null) {
+            return null;
+        }
+        long first = getPosition(map, range[0]) + offset;
+        Value key = null;
+        if (first < getPosition(map, range[1])) {
+            key = map.getKey(first);
+        }
+        if (key == null) {
+            return new MVStoreCursor(session, Collections.
+                    <Entry<Value, Value>>emptyList().iterator(), null);
+        }
+        return new MVStoreCursor(session, getMap(session).entryIterator(key),
+                null, range[1]);
+    }
+
+    /**
+     * Get the first key (inclusive) and the last key (exclusive) of the
+     * entries that match the index conditions. The keys are not stored in the
+     * map: they contain a NULL reference after the values, which is smaller
+     * than all entries with these values, or they are shorter than the stored
+     * keys, which makes them larger than all entries with these values.
+     *
+     * @param session the session
+     * @param conditions the index conditions
+     * @return the first and the last key, or null if the conditions are not a
+     *         range
+     */
+    private ValueArray[] getKeyRange(Session session,
+            ArrayList<IndexCondition> conditions) {
+        IndexRange range = getExactRange(session, conditions);
+        if (range == null) {
+            return null;
+        }
+        ArrayList<Value> prefix = range.getPrefix();
+        if (range.isEmpty()) {
+            ValueArray k = ValueArray.get(new Value[0]);
+            return new ValueArray[] { k, k };
+        }
+        IndexColumn c = range.getColumn();
+        if (c == null) {
+            return new ValueArray[] { getKeyBefore(prefix, null),
+                    getKeyAfter(prefix, null) };
+        }
+        boolean descending = (c.sortType & SortOrder.DESCENDING) != 0;
+        boolean nullsFirst = SortOrder.compareNull(true, c.sortType) < 0;
+        Value start = descending ? range.getUpper() : range.getLower();
+        Value end = descending ? range.getLower() : range.getUpper();
+        boolean startExclusive = descending ? range.isUpperExclusive() :
+                range.isLowerExclusive();
+        boolean endExclusive = descending ? range.isLowerExclusive() :
+                range.isUpperExclusive();
+        ValueArray first, last;
+        if (start != null) {
+            first = startExclusive ? getKeyAfter(prefix, start) :
+                    getKeyBefore(prefix, start);
+        } else {
+            // skip the NULL values
+            first = nullsFirst ? getKeyAfter(prefix, ValueNull.INSTANCE) :
+                    getKeyBefore(prefix, null);
+        }
+        if (end != null) {
+            last = endExclusive ? getKeyBefore(prefix, end) :
+                    getKeyAfter(prefix, end);
+        } else {
+            last = nullsFirst ? getKeyAfter(prefix, null) :
+                    getKeyBefore(prefix, ValueNull.INSTANCE);
+        }
+        return new ValueArray[] { first, last };
+    }
+
+    /**
+     * Get a key that is smaller than all entries that start with the given
+     * values.
+     *
+     * @param prefix the values of the leading columns
+     * @param v the value of the next column, or null
+     * @return the key
+     */
+    private ValueArray getKeyBefore(ArrayList<Value> prefix, Value v) {
+        Value[] array = new Value[keyColumns];
+        prefix.toArray(array);
+        array[prefix.size()] = v;
+        return ValueArray.get(array);
+    }
+
+    /**
+     * Get a key that is larger than all entries that start with the given
+     * values.
+     *
+     * @param prefix the values of the leading columns
+     * @param v the value of the next column, or null
+     * @return the key
+     */
+    private static ValueArray getKeyAfter(ArrayList<Value> prefix, Value v) {
+        int len = prefix.size();
+        Value[] array = new Value[v == null ? len : len + 1];
+        prefix.toArray(array);
+        if (v != null) {
+            array[len] = v;
+        }
+        return ValueArray.get(array);
+    }
+
+    /**
+     * Get the number of entries that are smaller than the given key. This is
+     * a O(log(size)) operation.
+     *
+     * @param map the map
+     * @param key the key
+     * @return the number of entries
+     */
+    private static long getPosition(MVMap<Value, ?> map, ValueArray key) {
+        long index = map.getKeyIndex(key);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    /**
+     * Check whether this index contains all columns of the table the query
+     * of the given filter reads.
+     *
+     * @param filter the table filter
+     * @return true if the rows don't need to be read
+     */
+    private boolean isCovering(TableFilter filter) {
+        if (filter == null || filter.getSelect() == null) {
+            return false;
+        }
+        HashSet<Column> set = filter.getSelect().getReferencedColumns();
+        if (set == null) {
+            return false;
+        }
+        for (Column c : set) {
+            if (c.getTable() != table || c.getColumnId() < 0 ||
+                    getColumnIndex(c) >= 0) {
+                continue;
+            }
+            if (!isIncluded(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isIncluded(Column c) {
+        if (includeColumns != null) {
+            for (IndexColumn col : includeColumns) {
+                if (col.column == c) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     @Override
     public void remove(Session session) {
         TransactionMap<Value, Value> map = getMap(session);
@@ -392,16 +693,16 @@ public class MVSecondaryIndex extends BaseIndex implements MVIndex {
         Value key = first ? map.firstKey() : map.lastKey();
         while (true) {
             if (key == null) {
-                return new MVStoreCursor(session,
-                        Collections.<Value>emptyList().iterator(), null);
+                return new MVStoreCursor(session, Collections.
+                        <Entry<Value, Value>>emptyList().iterator(), null);
             }
             if (((ValueArray) key).getList()[0] != ValueNull.INSTANCE) {
                 break;
             }
             key = first ? map.higherKey(key) : map.lowerKey(key);
         }
-        ArrayList<Value> list = New.arrayList();
-        list.add(key);
+        ArrayList<Entry<Value, Value>> list = New.arrayList();
+        list.add(new DataUtils.MapEntry<Value, Value>(key, map.get(key)));
         MVStoreCursor cursor = new MVStoreCursor(session, list.iterator(), null);
         cursor.next();
         return cursor;
@@ -472,16 +773,32 @@ public class MVSecondaryIndex extends BaseIndex implements MVIndex {
     class MVStoreCursor implements Cursor {
 
         private final Session session;
-        private final Iterator<Value> it;
+        private final Iterator<Entry<Value, Value>> it;
         private final SearchRow last;
-        private Value current;
+        private final ValueArray lastKey;
+        private Entry<Value, Value> current;
         private SearchRow searchRow;
         private Row row;
 
-        public MVStoreCursor(Session session, Iterator<Value> it, SearchRow last) {
+        public MVStoreCursor(Session session,
+                Iterator<Entry<Value, Value>> it, SearchRow last) {
+            this(session, it, last, null);
+        }
+
+        /**
+         * Create a cursor.
+         *
+         * @param session the session
+         * @param it the iterator
+         * @param last the last row, or null
+         * @param lastKey the key after the last entry (exclusive), or null
+         */
+        MVStoreCursor(Session session, Iterator<Entry<Value, Value>> it,
+                SearchRow last, ValueArray lastKey) {
             this.session = session;
             this.it = it;
             this.last = last;
+            this.lastKey = lastKey;
         }
 
         @Override
@@ -499,7 +816,8 @@ public class MVSecondaryIndex extends BaseIndex implements MVIndex {
         public SearchRow getSearchRow() {
             if (searchRow == null) {
                 if (current != null) {
-                    searchRow = convertToSearchRow((ValueArray) current);
+                    searchRow = convertToSearchRow(
+                            (ValueArray) current.getKey(), current.getValue());
                 }
             }
             return searchRow;
@@ -510,7 +828,9 @@ public class MVSecondaryIndex extends BaseIndex implements MVIndex {
             current = it.hasNext() ? it.next() : null;
             searchRow = null;
             if (current != null) {
-                if (last != null && compareRows(getSearchRow(), last) > 0) {
+                if (last != null && compareRows(getSearchRow(), last) > 0 ||
+                        lastKey != null && dataMap.map.getKeyType().compare(
+                        current.getKey(), lastKey) >= 0) {
                     searchRow = null;
                     current = null;
                 }
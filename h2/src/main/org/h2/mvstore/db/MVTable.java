@@ -34,10 +34,13 @@ import org.h2.result.SortOrder;
 import org.h2.schema.SchemaObject;
 import org.h2.table.Column;
 import org.h2.table.IndexColumn;
+import org.h2.table.IndexExpressionColumn;
 import org.h2.table.Table;
 import org.h2.table.TableBase;
 import org.h2.util.MathUtils;
 import org.h2.util.New;
+import org.h2.util.SmallLRUCache;
+import org.h2.util.Task;
 import org.h2.value.DataType;
 import org.h2.value.Value;
 
@@ -46,6 +49,11 @@ import org.h2.value.Value;
  */
 public class MVTable extends TableBase {
 
+    /**
+     * The number of recently counted index ranges to keep.
+     */
+    private static final int RANGE_COUNT_CACHE_SIZE = 64;
+
     private MVPrimaryIndex primaryIndex;
     private final ArrayList<Index> indexes = New.arrayList();
     private long lastModificationId;
@@ -65,6 +73,8 @@ public class MVTable extends TableBase {
     private int nextAnalyze;
     private boolean containsLargeObject;
     private Column rowIdColumn;
+    private final SmallLRUCache<Value, long[]> rangeCounts =
+            SmallLRUCache.newInstance(RANGE_COUNT_CACHE_SIZE);
 
     private final TransactionStore store;
 
@@ -155,9 +165,8 @@ public class MVTable extends TableBase {
 
     private void doLock1(Session session, int lockMode, boolean exclusive) {
         traceLock(session, exclusive, "requesting for");
-        // don't get the current time unless necessary
         long max = 0;
-        boolean checkDeadlock = false;
+        long nextDeadlockCheck = 0;
         while (true) {
             // if I'm the next one in the queue
             if (waitingSessions.getFirst() == session) {
@@ -165,17 +174,18 @@ public class MVTable extends TableBase {
                     return;
                 }
             }
-            if (checkDeadlock) {
+            long now = System.currentTimeMillis();
+            // a cycle can only be closed by the session that starts waiting,
+            // so check right away, and then only once in a while (we may be
+            // woken up by each unlock, and the check is not cheap)
+            if (now >= nextDeadlockCheck) {
                 ArrayList<Session> sessions = checkDeadlock(session, null, null);
                 if (sessions != null) {
                     throw DbException.get(ErrorCode.DEADLOCK_1,
                             getDeadlockDetails(sessions, exclusive));
                 }
-            } else {
-                // check for deadlocks from now on
-                checkDeadlock = true;
+                nextDeadlockCheck = now + Constants.DEADLOCK_CHECK;
             }
-            long now = System.currentTimeMillis();
             if (max == 0) {
                 // try at least one more time
                 max = now + session.getLockTimeout();
@@ -490,6 +500,8 @@ public class MVTable extends TableBase {
         // this should use relatively few write operations.
         // A possible optimization is: change the buffer size from "row count"
         // to "amount of memory", and buffer index keys instead of rows.
+        // The blocks are sorted and written by a number of threads, while
+        // the rows are read by the current thread.
         Index scan = getScanIndex(session);
         long remaining = scan.getRowCount(session);
         long total = remaining;
@@ -497,24 +509,55 @@ public class MVTable extends TableBase {
         long i = 0;
         Store store = session.getDatabase().getMvStore();
 
-        int bufferSize = database.getMaxMemoryRows() / 2;
+        int threads = database.getSettings().createIndexThreads;
+        for (Column c : index.getColumns()) {
+            if (c instanceof IndexExpressionColumn) {
+                // the expressions need to be evaluated in this thread
+                threads = 1;
+            }
+        }
+        int bufferSize = Math.max(1, database.getMaxMemoryRows() / 2);
+        if (threads > 1 && total > bufferSize) {
+            // keep the memory usage the same as with one thread
+            bufferSize = Math.max(1, bufferSize / threads);
+        } else {
+            threads = 1;
+        }
         ArrayList<Row> buffer = New.arrayList(bufferSize);
         String n = getName() + ":" + index.getName();
         int t = MathUtils.convertLongToInt(total);
         ArrayList<String> bufferNames = New.arrayList();
-        while (cursor.next()) {
-            Row row = cursor.get();
-            buffer.add(row);
-            database.setProgress(DatabaseEventListener.STATE_CREATE_INDEX, n,
-                    MathUtils.convertLongToInt(i++), t);
-            if (buffer.size() >= bufferSize) {
-                sortRows(buffer, index);
-                String mapName = store.nextTemporaryMapName();
-                index.addRowsToBuffer(buffer, mapName);
-                bufferNames.add(mapName);
-                buffer.clear();
+        ArrayList<Task> tasks = New.arrayList();
+        try {
+            while (cursor.next()) {
+                Row row = cursor.get();
+                buffer.add(row);
+                database.setProgress(DatabaseEventListener.STATE_CREATE_INDEX,
+                        n, MathUtils.convertLongToInt(i++), t);
+                if (buffer.size() >= bufferSize) {
+                    String mapName = store.nextTemporaryMapName();
+                    bufferNames.add(mapName);
+                    if (threads == 1) {
+                        sortRows(buffer, index);
+                        index.addRowsToBuffer(buffer, mapName);
+                        buffer.clear();
+                    } else {
+                        if (tasks.size() >= threads) {
+                            getResult(tasks.remove(0));
+                        }
+                        tasks.add(addRowsToBuffer(buffer, index, mapName));
+                        buffer = New.arrayList(bufferSize);
+                    }
+                }
+                remaining--;
+            }
+            while (tasks.size() > 0) {
+                getResult(tasks.remove(0));
+            }
+        } finally {
+            for (Task task : tasks) {
+                task.getException();
             }
-            remaining--;
         }
         sortRows(buffer, index);
         if (bufferNames.size() > 0) {
@@ -532,6 +575,34 @@ public class MVTable extends TableBase {
         }
     }
 
+    /**
+     * Sort the rows and write them to a temporary map in a new thread.
+     *
+     * @param rows the rows
+     * @param index the index
+     * @param mapName the name of the temporary map
+     * @return the task
+     */
+    private static Task addRowsToBuffer(final ArrayList<Row> rows,
+            final MVIndex index, final String mapName) {
+        Task task = new Task() {
+            @Override
+            public void call() {
+                sortRows(rows, index);
+                index.addRowsToBuffer(rows, mapName);
+            }
+        };
+        task.execute("H2 create index " + mapName);
+        return task;
+    }
+
+    private static void getResult(Task task) {
+        Exception e = task.getException();
+        if (e != null) {
+            throw DbException.convert(e);
+        }
+    }
+
     private void rebuildIndexBuffered(Session session, Index index) {
         Index scan = getScanIndex(session);
         long remaining = scan.getRowCount(session);
@@ -592,6 +663,13 @@ public class MVTable extends TableBase {
     }
 
     private static void sortRows(ArrayList<Row> list, final Index index) {
+        for (Column c : index.getColumns()) {
+            if (c instanceof IndexExpressionColumn) {
+                // the rows don't contain the values of the expressions;
+                // sorting is not required, it only speeds up adding the rows
+                return;
+            }
+        }
         Collections.sort(list, new Comparator<Row>() {
             @Override
             public int compare(Row r1, Row r2) {
@@ -702,6 +780,36 @@ public class MVTable extends TableBase {
         return lastModificationId;
     }
 
+    /**
+     * Get the number of index entries in a range, if it was counted since the
+     * table was last modified.
+     *
+     * @param key the index id and the bounds of the range
+     * @return the number of entries, or -1 if not known
+     */
+    long getCachedRangeCount(Value key) {
+        synchronized (rangeCounts) {
+            long[] c = rangeCounts.get(key);
+            if (c == null || c[0] != lastModificationId) {
+                return -1;
+            }
+            return c[1];
+        }
+    }
+
+    /**
+     * Remember the number of index entries in a range, until the table is
+     * modified.
+     *
+     * @param key the index id and the bounds of the range
+     * @param count the number of entries
+     */
+    void cacheRangeCount(Value key, long count) {
+        synchronized (rangeCounts) {
+            rangeCounts.put(key, new long[] { lastModificationId, count });
+        }
+    }
+
     public boolean getContainsLargeObject() {
         return containsLargeObject;
     }
@@ -17,6 +17,7 @@ import org.h2.mvstore.Cursor;
 import org.h2.mvstore.DataUtils;
 import org.h2.mvstore.MVMap;
 import org.h2.mvstore.MVStore;
+import org.h2.mvstore.Page;
 import org.h2.mvstore.WriteBuffer;
 import org.h2.mvstore.type.DataType;
 import org.h2.mvstore.type.ObjectDataType;
@@ -912,6 +913,35 @@ public class TransactionStore {
             return map.sizeAsLong();
         }
 
+        /**
+         * Open a read-only snapshot of the underlying map, if there are no
+         * uncommitted changes. All entries of the snapshot are committed, and
+         * the snapshot does not change when the map is modified afterwards.
+         *
+         * @return the snapshot, or null if there are uncommitted changes or
+         *         the map was not changed yet
+         */
+        public MVMap<K, ?> openCommittedSnapshot() {
+            MVMap<Long, Object[]> undo = transaction.store.undoLog;
+            Page undoRoot = undo.getRoot();
+            if (undoRoot.getTotalCount() != 0) {
+                return null;
+            }
+            long version = map.getVersion();
+            if (version < map.getCreateVersion()) {
+                // the map was not changed yet, so there is no version to
+                // open; the root of a new map has version -1
+                return null;
+            }
+            MVMap<K, ?> m = map.openVersion(version);
+            // each change is logged before the map is changed, and each
+            // change of the undo log replaces its root page
+            if (undo.getRoot() != undoRoot) {
+                return null;
+            }
+            return m;
+        }
+
         /**
          * Get the size of the map as seen by this transaction.
          *
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.result;
+
+import org.h2.command.Command;
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.expression.Expression;
+import org.h2.message.DbException;
+import org.h2.value.Value;
+
+/**
+ * A result that computes the rows while they are read, instead of keeping
+ * all rows in memory or in a temporary file. Such a result can only be read
+ * once, and the number of rows is only known after the last row was read.
+ * The statement that created the result stays open until the result is
+ * closed.
+ */
+public abstract class LazyResult implements ResultInterface {
+
+    private final Session session;
+    private final Expression[] expressions;
+    private final int visibleColumnCount;
+    private Command command;
+    private Value[] currentRow;
+    private int rowId = -1;
+    private boolean afterLast;
+    private boolean closed;
+
+    protected LazyResult(Session session, Expression[] expressions,
+            int visibleColumnCount) {
+        this.session = session;
+        this.expressions = expressions;
+        this.visibleColumnCount = visibleColumnCount;
+    }
+
+    /**
+     * Set the command that needs to be stopped when this result is closed.
+     *
+     * @param command the command
+     */
+    public void setCommand(Command command) {
+        this.command = command;
+    }
+
+    /**
+     * Compute the next row.
+     *
+     * @return the row, or null if there are no more rows
+     */
+    protected abstract Value[] fetchNextRow();
+
+    /**
+     * Release the resources that were used to compute the rows. This is
+     * called after the last row was read, or when the result is closed.
+     */
+    protected void endFetch() {
+        // nothing to do by default
+    }
+
+    private Object getSync() {
+        Database database = session.getDatabase();
+        return database.isMultiThreaded() ? (Object) session : (Object) database;
+    }
+
+    @Override
+    public void reset() {
+        throw DbException.getUnsupportedException("lazy result reset");
+    }
+
+    @Override
+    public Value[] currentRow() {
+        return currentRow;
+    }
+
+    @Override
+    public boolean next() {
+        if (closed || afterLast) {
+            return false;
+        }
+        Value[] row;
+        synchronized (getSync()) {
+            row = fetchNextRow();
+            if (row == null) {
+                endFetch();
+            }
+        }
+        rowId++;
+        if (row == null) {
+            afterLast = true;
+            currentRow = null;
+            return false;
+        }
+        currentRow = row;
+        return true;
+    }
+
+    @Override
+    public int getRowId() {
+        return rowId;
+    }
+
+    @Override
+    public int getVisibleColumnCount() {
+        return visibleColumnCount;
+    }
+
+    /**
+     * Get the number of rows. Until the last row was read, the number is not
+     * known, and Integer.MAX_VALUE is returned.
+     *
+     * @return the number of rows, or Integer.MAX_VALUE if not yet known
+     */
+    @Override
+    public int getRowCount() {
+        return afterLast ? rowId : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean needToClose() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        synchronized (getSync()) {
+            closed = true;
+            currentRow = null;
+            if (!afterLast) {
+                endFetch();
+            }
+            if (command != null) {
+                command.lazyResultClosed(this);
+                command = null;
+            }
+        }
+    }
+
+    /**
+     * Check if this result set is closed.
+     *
+     * @return true if it is
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public String getAlias(int i) {
+        return expressions[i].getAlias();
+    }
+
+    @Override
+    public String getSchemaName(int i) {
+        return expressions[i].getSchemaName();
+    }
+
+    @Override
+    public String getTableName(int i) {
+        return expressions[i].getTableName();
+    }
+
+    @Override
+    public String getColumnName(int i) {
+        return expressions[i].getColumnName();
+    }
+
+    @Override
+    public int getColumnType(int i) {
+        return expressions[i].getType();
+    }
+
+    @Override
+    public long getColumnPrecision(int i) {
+        return expressions[i].getPrecision();
+    }
+
+    @Override
+    public int getColumnScale(int i) {
+        return expressions[i].getScale();
+    }
+
+    @Override
+    public int getDisplaySize(int i) {
+        return expressions[i].getDisplaySize();
+    }
+
+    @Override
+    public boolean isAutoIncrement(int i) {
+        return expressions[i].isAutoIncrement();
+    }
+
+    @Override
+    public int getNullable(int i) {
+        return expressions[i].getNullable();
+    }
+
+    @Override
+    public int getFetchSize() {
+        return 0;
+    }
+
+    @Override
+    public void setFetchSize(int fetchSize) {
+        // ignore
+    }
+
+}
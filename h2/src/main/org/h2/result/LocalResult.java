@@ -296,6 +296,16 @@ public class LocalResult implements ResultInterface, ResultTarget {
         }
         rows.add(values);
         rowCount++;
+        if (sort != null && limit > 0 && external == null) {
+            // only the first offset + limit rows are needed: sort and
+            // discard the other rows once twice as many rows are buffered
+            long keep = (long) Math.max(offset, 0) + limit;
+            if (rows.size() >= 2 * keep) {
+                sort.sort(rows, 0, (int) keep);
+                rows.subList((int) keep, rows.size()).clear();
+                rowCount = rows.size();
+            }
+        }
         if (rows.size() > maxMemoryRows) {
             if (external == null) {
                 external = new ResultTempTable(session, expressions, false, sort);
@@ -372,7 +382,9 @@ public class LocalResult implements ResultInterface, ResultTarget {
     }
 
     /**
-     * Set the number of rows that this result will return at the maximum.
+     * Set the number of rows that this result will return at the maximum. If
+     * the rows are sorted, and the offset and limit are set before adding the
+     * rows, rows that are not needed are discarded while adding.
      *
      * @param limit the limit (-1 means no limit, 0 means no rows)
      */
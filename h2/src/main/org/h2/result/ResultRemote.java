@@ -28,7 +28,7 @@ public class ResultRemote implements ResultInterface {
     private int id;
     private final ResultColumn[] columns;
     private Value[] currentRow;
-    private final int rowCount;
+    private int rowCount;
     private int rowId, rowOffset;
     private ArrayList<Value[]> result;
     private final Trace trace;
@@ -132,8 +132,10 @@ public class ResultRemote implements ResultInterface {
                 if (rowId - rowOffset >= result.size()) {
                     fetchRows(true);
                 }
-                currentRow = result.get(rowId - rowOffset);
-                return true;
+                if (rowId < rowCount) {
+                    currentRow = result.get(rowId - rowOffset);
+                    return true;
+                }
             }
             currentRow = null;
         }
@@ -215,6 +217,9 @@ public class ResultRemote implements ResultInterface {
                 for (int r = 0; r < fetch; r++) {
                     boolean row = transfer.readBoolean();
                     if (!row) {
+                        // the server does not know the row count in advance
+                        // if the result is computed lazily
+                        rowCount = rowOffset + result.size();
                         break;
                     }
                     int len = columns.length;
@@ -219,7 +219,12 @@ public class ResultTempTable implements ResultExternal {
             // time. (the table is truncated, so this is just one record)
             if (!database.isSysTableLocked()) {
                 Session sysSession = database.getSystemSession();
-                table.removeChildrenAndResources(sysSession);
+                // the system session is shared by all threads
+                synchronized (session) {
+                    synchronized (sysSession) {
+                        table.removeChildrenAndResources(sysSession);
+                    }
+                }
                 if (index != null) {
                     // need to explicitly do this,
                     // as it's not registered in the system session
@@ -562,10 +562,11 @@ public class Schema extends DbObjectBase {
      * @return the created {@link Table} object
      */
     public Table createTable(CreateTableData data) {
+        if (!data.temporary || data.globalTemporary) {
+            // lock before synchronizing, see Database.lockMeta
+            database.lockMeta(data.session);
+        }
         synchronized (database) {
-            if (!data.temporary || data.globalTemporary) {
-                database.lockMeta(data.session);
-            }
             data.schema = this;
             if (data.tableEngine == null) {
                 if (database.getSettings().mvStore) {
@@ -86,13 +86,13 @@ public class TcpServerThread implements Runnable {
                 if (minClientVersion < Constants.TCP_PROTOCOL_VERSION_6) {
                     throw DbException.get(ErrorCode.DRIVER_VERSION_ERROR_2,
                             "" + clientVersion, "" + Constants.TCP_PROTOCOL_VERSION_6);
-                } else if (minClientVersion > Constants.TCP_PROTOCOL_VERSION_15) {
+                } else if (minClientVersion > Constants.TCP_PROTOCOL_VERSION_16) {
                     throw DbException.get(ErrorCode.DRIVER_VERSION_ERROR_2,
-                            "" + clientVersion, "" + Constants.TCP_PROTOCOL_VERSION_15);
+                            "" + clientVersion, "" + Constants.TCP_PROTOCOL_VERSION_16);
                 }
                 int maxClientVersion = transfer.readInt();
-                if (maxClientVersion >= Constants.TCP_PROTOCOL_VERSION_15) {
-                    clientVersion = Constants.TCP_PROTOCOL_VERSION_15;
+                if (maxClientVersion >= Constants.TCP_PROTOCOL_VERSION_16) {
+                    clientVersion = Constants.TCP_PROTOCOL_VERSION_16;
                 } else {
                     clientVersion = minClientVersion;
                 }
@@ -312,12 +312,18 @@ public class TcpServerThread implements Runnable {
             int objectId = transfer.readInt();
             int maxRows = transfer.readInt();
             int fetchSize = transfer.readInt();
+            // older clients need to know the row count in advance,
+            // so the result must not be computed lazily
+            boolean scrollable = true;
+            if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_16) {
+                scrollable = transfer.readBoolean();
+            }
             Command command = (Command) cache.getObject(id, false);
             setParameters(command);
             int old = session.getModificationId();
             ResultInterface result;
             synchronized (session) {
-                result = command.executeQuery(maxRows, false);
+                result = command.executeQuery(maxRows, scrollable);
             }
             cache.addObject(objectId, result);
             int columnCount = result.getVisibleColumnCount();
@@ -330,7 +336,9 @@ public class TcpServerThread implements Runnable {
             }
             int fetch = Math.min(rowCount, fetchSize);
             for (int i = 0; i < fetch; i++) {
-                sendRow(result);
+                if (!sendRow(result)) {
+                    break;
+                }
             }
             transfer.flush();
             break;
@@ -370,7 +378,9 @@ public class TcpServerThread implements Runnable {
             ResultInterface result = (ResultInterface) cache.getObject(id, false);
             transfer.writeInt(SessionRemote.STATUS_OK);
             for (int i = 0; i < count; i++) {
-                sendRow(result);
+                if (!sendRow(result)) {
+                    break;
+                }
             }
             transfer.flush();
             break;
@@ -480,7 +490,7 @@ public class TcpServerThread implements Runnable {
         return SessionRemote.STATUS_OK_STATE_CHANGED;
     }
 
-    private void sendRow(ResultInterface result) throws IOException {
+    private boolean sendRow(ResultInterface result) throws IOException {
         if (result.next()) {
             transfer.writeBoolean(true);
             Value[] v = result.currentRow();
@@ -491,9 +501,10 @@ public class TcpServerThread implements Runnable {
                     writeValue(v[i]);
                 }
             }
-        } else {
-            transfer.writeBoolean(false);
+            return true;
         }
+        transfer.writeBoolean(false);
+        return false;
     }
 
     private void writeValue(Value v) throws IOException {
@@ -82,6 +82,7 @@ public class Column {
     private boolean isComputed;
     private TableFilter computeTableFilter;
     private int selectivity;
+    private Histogram histogram;
     private SingleColumnResolver resolver;
     private String comment;
     private boolean primaryKey;
@@ -540,6 +541,19 @@ public class Column {
         this.selectivity = selectivity;
     }
 
+    /**
+     * Get the histogram of the values of this column, as computed by ANALYZE.
+     *
+     * @return the histogram, or null if not known
+     */
+    public Histogram getHistogram() {
+        return histogram;
+    }
+
+    public void setHistogram(Histogram histogram) {
+        this.histogram = histogram;
+    }
+
     /**
      * Add a check constraint expression to this column. An existing check
      * constraint constraint is added using AND.
@@ -741,6 +755,9 @@ public class Column {
         computeTableFilter = source.computeTableFilter;
         isComputed = source.isComputed;
         selectivity = source.selectivity;
+        if (type == source.type) {
+            histogram = source.histogram;
+        }
         primaryKey = source.primaryKey;
     }
 
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import org.h2.engine.Database;
+import org.h2.util.New;
+import org.h2.value.Value;
+import org.h2.value.ValueArray;
+import org.h2.value.ValueInt;
+import org.h2.value.ValueNull;
+
+/**
+ * The distribution of the values of a column, as computed by ANALYZE. It
+ * consists of an equi-depth histogram (the bucket boundaries, so that each
+ * bucket contains about the same number of values), and the list of the most
+ * common values with their frequencies. It is used to estimate how many rows
+ * match a condition of the form "column op constant".
+ */
+public class Histogram {
+
+    /**
+     * Values with a longer SQL representation are not kept in histograms.
+     */
+    private static final int MAX_VALUE_LENGTH = 100;
+
+    private final int sampleCount;
+    private final int nullCount;
+    private final int distinctCount;
+    private final Value[] bounds;
+    private final Value[] commonValues;
+    private final int[] commonCounts;
+
+    private Histogram(int sampleCount, int nullCount, int distinctCount,
+            Value[] bounds, Value[] commonValues, int[] commonCounts) {
+        this.sampleCount = sampleCount;
+        this.nullCount = nullCount;
+        this.distinctCount = distinctCount;
+        this.bounds = bounds;
+        this.commonValues = commonValues;
+        this.commonCounts = commonCounts;
+    }
+
+    /**
+     * Build the histogram from the result of the HISTOGRAM aggregate over a
+     * sample of rows.
+     *
+     * @param database the database
+     * @param histogram the (value, count) pairs, sorted by value
+     * @param sampleCount the number of rows in the sample
+     * @param buckets the number of buckets, and the maximum number of most
+     *            common values
+     * @return the histogram, or null if the values are not suitable
+     */
+    public static Histogram build(Database database, Value histogram,
+            int sampleCount, int buckets) {
+        int nullCount = 0;
+        long total = 0;
+        // the runs of equal values
+        ArrayList<Value> runValues = New.arrayList();
+        ArrayList<Integer> runCounts = New.arrayList();
+        for (Value pair : ((ValueArray) histogram).getList()) {
+            Value[] list = ((ValueArray) pair).getList();
+            Value v = list[0];
+            int c = list[1].getInt();
+            total += c;
+            if (v == ValueNull.INSTANCE) {
+                nullCount += c;
+                continue;
+            }
+            if (v.getSQL().length() > MAX_VALUE_LENGTH) {
+                return null;
+            }
+            int last = runValues.size() - 1;
+            if (last >= 0 && database.areEqual(v, runValues.get(last))) {
+                runCounts.set(last, runCounts.get(last) + c);
+            } else {
+                runValues.add(v);
+                runCounts.add(c);
+            }
+        }
+        if (total != sampleCount) {
+            // the aggregate only counts a limited number of distinct values
+            return null;
+        }
+        int distinctCount = runValues.size();
+        if (distinctCount == 0) {
+            return new Histogram(sampleCount, nullCount, 0, new Value[0],
+                    new Value[0], new int[0]);
+        }
+        int count = sampleCount - nullCount;
+        // the most common values: values that occur more than once and more
+        // often than the average value, at most one per bucket
+        Integer[] order = new Integer[distinctCount];
+        for (int i = 0; i < distinctCount; i++) {
+            order[i] = i;
+        }
+        final ArrayList<Integer> counts = runCounts;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return counts.get(b) - counts.get(a);
+            }
+        });
+        ArrayList<Value> commonValues = New.arrayList();
+        ArrayList<Integer> commonCounts = New.arrayList();
+        for (int i = 0; i < distinctCount && i < buckets; i++) {
+            int c = runCounts.get(order[i]);
+            if (c <= 1 || (long) c * distinctCount <= count) {
+                break;
+            }
+            commonValues.add(runValues.get(order[i]));
+            commonCounts.add(c);
+        }
+        // the bucket boundaries, including the minimum and the maximum
+        int b = Math.min(buckets, count);
+        Value[] bounds = new Value[b + 1];
+        int run = 0;
+        long runEnd = runCounts.get(0);
+        for (int i = 0; i <= b; i++) {
+            long pos = (long) (count - 1) * i / b;
+            while (pos >= runEnd) {
+                runEnd += runCounts.get(++run);
+            }
+            bounds[i] = runValues.get(run);
+        }
+        int[] c = new int[commonCounts.size()];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = commonCounts.get(i);
+        }
+        return new Histogram(sampleCount, nullCount, distinctCount, bounds,
+                commonValues.toArray(new Value[commonValues.size()]), c);
+    }
+
+    /**
+     * Estimate the fraction of the rows where the column is equal to the
+     * given value.
+     *
+     * @param database the database
+     * @param v the value (converted to the column type), or NULL for IS NULL
+     * @return the fraction, between 0 and 1
+     */
+    public double getEqualFraction(Database database, Value v) {
+        if (sampleCount == 0) {
+            return 0;
+        }
+        if (v == ValueNull.INSTANCE) {
+            return (double) nullCount / sampleCount;
+        }
+        int common = 0;
+        for (int i = 0; i < commonValues.length; i++) {
+            if (database.areEqual(v, commonValues[i])) {
+                return (double) commonCounts[i] / sampleCount;
+            }
+            common += commonCounts[i];
+        }
+        // the remaining values are assumed to be equally distributed
+        int remaining = sampleCount - nullCount - common;
+        int distinct = Math.max(1, distinctCount - commonValues.length);
+        return Math.max(0, (double) remaining / distinct / sampleCount);
+    }
+
+    /**
+     * Estimate the fraction of the rows where the column is within the given
+     * range.
+     *
+     * @param database the database
+     * @param min the lower bound, or null if there is none
+     * @param max the upper bound, or null if there is none
+     * @return the fraction, between 0 and 1
+     */
+    public double getRangeFraction(Database database, Value min, Value max) {
+        if (sampleCount == 0 || bounds.length == 0) {
+            return 0;
+        }
+        double a = min == null ? 0 : getPosition(database, min);
+        double b = max == null ? 1 : getPosition(database, max);
+        double nonNull = (double) (sampleCount - nullCount) / sampleCount;
+        return Math.max(0, b - a) * nonNull;
+    }
+
+    /**
+     * Get the estimated fraction of the non-null values that are smaller than
+     * the given value. Within a bucket, the values are assumed to be equally
+     * distributed.
+     *
+     * @param database the database
+     * @param v the value
+     * @return the fraction, between 0 and 1
+     */
+    private double getPosition(Database database, Value v) {
+        int b = bounds.length - 1;
+        if (database.compare(v, bounds[0]) <= 0) {
+            return 0;
+        } else if (database.compare(v, bounds[b]) > 0) {
+            return 1;
+        }
+        int i = 1;
+        while (i < b && database.compare(v, bounds[i]) > 0) {
+            i++;
+        }
+        // bounds[i - 1] < v <= bounds[i]
+        double offset = 0.5;
+        Value low = bounds[i - 1], high = bounds[i];
+        if (isNumeric(low.getType())) {
+            double l = low.getDouble(), h = high.getDouble();
+            if (h > l) {
+                offset = (v.getDouble() - l) / (h - l);
+            }
+        }
+        return (i - 1 + offset) / b;
+    }
+
+    private static boolean isNumeric(int type) {
+        switch (type) {
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+        case Value.LONG:
+        case Value.DECIMAL:
+        case Value.DOUBLE:
+        case Value.FLOAT:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        Value[] counts = new Value[commonCounts.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = ValueInt.get(commonCounts[i]);
+        }
+        return ValueArray.get(new Value[] {
+                ValueInt.get(sampleCount), ValueInt.get(nullCount),
+                ValueInt.get(distinctCount), ValueArray.get(bounds),
+                ValueArray.get(commonValues), ValueArray.get(counts) })
+                .getTraceSQL();
+    }
+
+}
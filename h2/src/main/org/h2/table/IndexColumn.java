@@ -5,6 +5,7 @@
  */
 package org.h2.table;
 
+import org.h2.expression.Expression;
 import org.h2.result.SortOrder;
 
 /**
@@ -23,6 +24,12 @@ public class IndexColumn {
      */
     public Column column;
 
+    /**
+     * The expression of an expression index as parsed, or null if a column
+     * is indexed.
+     */
+    public Expression expression;
+
     /**
      * The sort type. Ascending (the default) and descending are supported;
      * nulls can be sorted first or last.
@@ -65,13 +72,16 @@ public class IndexColumn {
 
     /**
      * Map the columns using the column names and the specified table.
+     * Expressions are not mapped.
      *
      * @param indexColumns the column list with column names set
      * @param table the table from where to map the column names to columns
      */
     public static void mapColumns(IndexColumn[] indexColumns, Table table) {
         for (IndexColumn col : indexColumns) {
-            col.column = table.getColumn(col.columnName);
+            if (col.expression == null) {
+                col.column = table.getColumn(col.columnName);
+            }
         }
     }
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.table;
+
+import org.h2.engine.Session;
+import org.h2.expression.Expression;
+import org.h2.result.Row;
+import org.h2.value.Value;
+
+/**
+ * A column that represents an expression of an expression index, for example
+ * UPPER(NAME). Such columns are not part of the table: the values are only
+ * stored in the indexes. The column id is larger than the ids of the table
+ * columns, so that search rows can hold the value.
+ */
+public class IndexExpressionColumn extends Column {
+
+    private final Expression expression;
+    private final TableFilter filter;
+
+    /**
+     * Create a new expression column.
+     *
+     * @param table the table
+     * @param columnId the column id
+     * @param expression the expression, mapped to the given filter
+     * @param filter the table filter used to evaluate the expression
+     */
+    IndexExpressionColumn(Table table, int columnId, Expression expression,
+            TableFilter filter) {
+        super(expression.getSQL(), expression.getType(),
+                expression.getPrecision(), expression.getScale(),
+                expression.getDisplaySize());
+        setTable(table, columnId);
+        this.expression = expression;
+        this.filter = filter;
+    }
+
+    public Expression getExpression() {
+        return expression;
+    }
+
+    @Override
+    public String getSQL() {
+        return expression.getSQL();
+    }
+
+    /**
+     * Evaluate the expression for the given row of the table.
+     *
+     * @param session the session, or null to use the session that created
+     *            the index
+     * @param row the row
+     * @return the value
+     */
+    public Value getValue(Session session, Row row) {
+        if (session == null) {
+            session = filter.getSession();
+        }
+        synchronized (filter) {
+            filter.set(row);
+            return convert(expression.getValue(session));
+        }
+    }
+
+}
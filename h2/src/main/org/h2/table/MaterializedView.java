@@ -0,0 +1,527 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.table;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import org.h2.command.ddl.CreateIndex;
+import org.h2.command.dml.Query;
+import org.h2.command.dml.Select;
+import org.h2.engine.DbObject;
+import org.h2.engine.Session;
+import org.h2.engine.UndoLogRecord;
+import org.h2.expression.Aggregate;
+import org.h2.expression.Expression;
+import org.h2.expression.ExpressionVisitor;
+import org.h2.index.Cursor;
+import org.h2.index.Index;
+import org.h2.message.DbException;
+import org.h2.result.ResultInterface;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.util.New;
+import org.h2.util.StatementBuilder;
+import org.h2.util.StringUtils;
+import org.h2.value.Value;
+import org.h2.value.ValueLong;
+import org.h2.value.ValueNull;
+
+/**
+ * The definition of a materialized view. The rows of a materialized view are
+ * stored in a regular table; they are computed when the view is created and
+ * when it is refreshed. The rows of an incremental materialized view are in
+ * addition updated whenever a row of the base table is changed. This is
+ * supported for aggregate queries on a single table that contain COUNT(*), and
+ * otherwise only the grouped expressions and COUNT and SUM aggregates.
+ */
+public class MaterializedView {
+
+    private final Table table;
+    private final String querySQL;
+
+    /**
+     * The compiled query. Its plan SQL uses the current names of the tables
+     * and columns, so that renaming them does not invalidate the definition.
+     */
+    private Query query;
+    private final boolean incremental;
+    private final ArrayList<Table> baseTables = New.arrayList();
+
+    /**
+     * The filter of the base table (only set for incremental views).
+     */
+    private TableFilter filter;
+    private Expression condition;
+
+    /**
+     * The aggregate type of each column, or -1 for grouped expressions.
+     */
+    private int[] types;
+
+    /**
+     * The grouped expression or the aggregated expression of each column.
+     */
+    private Expression[] expressions;
+
+    /**
+     * The column ids of the grouped expressions.
+     */
+    private int[] groupColumns;
+
+    /**
+     * For each SUM column, the column with the COUNT of the same expression,
+     * or -1.
+     */
+    private int[] countColumns;
+    private int countAllColumn;
+
+    public MaterializedView(Table table, String querySQL, boolean incremental) {
+        this.table = table;
+        this.querySQL = querySQL;
+        this.incremental = incremental;
+    }
+
+    /**
+     * Compile the query, and register this view with the base tables.
+     *
+     * @param session the session
+     */
+    public void init(Session session) {
+        query = (Query) session.prepare(querySQL, true);
+        HashSet<DbObject> dependencies = New.hashSet();
+        query.isEverything(
+                ExpressionVisitor.getDependenciesVisitor(dependencies));
+        for (DbObject obj : dependencies) {
+            if (obj instanceof Table && obj != table) {
+                Table t = (Table) obj;
+                baseTables.add(t);
+                t.addMaterializedView(this);
+            }
+        }
+        if (incremental) {
+            initIncremental(query);
+        }
+    }
+
+    private void initIncremental(Query query) {
+        if (!(query instanceof Select)) {
+            throw getIncrementalException();
+        }
+        Select select = (Select) query;
+        ArrayList<TableFilter> filters = select.getTopFilters();
+        if (filters.size() != 1 || filters.get(0).getJoin() != null ||
+                baseTables.size() != 1 || select.isDistinct() ||
+                select.getHaving() != null || select.getLimit() != null ||
+                select.getOffset() != null ||
+                !select.isEverything(ExpressionVisitor.DETERMINISTIC_VISITOR)) {
+            throw getIncrementalException();
+        }
+        Table base = baseTables.get(0);
+        if (!Table.TABLE.equals(base.getTableType()) ||
+                base.getMaterializedView() != null) {
+            throw getIncrementalException();
+        }
+        filter = filters.get(0);
+        condition = select.getCondition();
+        Column[] columns = table.getColumns();
+        int columnCount = columns.length;
+        ArrayList<Expression> list = select.getExpressions();
+        types = new int[columnCount];
+        expressions = new Expression[columnCount];
+        countColumns = new int[columnCount];
+        countAllColumn = -1;
+        int[] groupIndex = select.getGroupIndex();
+        groupColumns = groupIndex == null ? new int[0] : groupIndex;
+        for (int i : groupColumns) {
+            if (i >= columnCount) {
+                // grouped by an expression that is not selected
+                throw getIncrementalException();
+            }
+            types[i] = -1;
+        }
+        for (int i = 0; i < columnCount; i++) {
+            Expression e = list.get(i).getNonAliasExpression();
+            if (types[i] < 0) {
+                expressions[i] = e;
+            } else if (e instanceof Aggregate) {
+                Aggregate a = (Aggregate) e;
+                types[i] = a.getIncrementalType();
+                expressions[i] = a.getOn();
+                if (types[i] == Aggregate.COUNT_ALL) {
+                    countAllColumn = i;
+                } else if (types[i] == Aggregate.SUM) {
+                    int type = columns[i].getType();
+                    if (type == Value.DOUBLE || type == Value.FLOAT) {
+                        // rounding errors would accumulate
+                        throw getIncrementalException();
+                    }
+                } else if (types[i] < 0) {
+                    throw getIncrementalException();
+                }
+            } else {
+                throw getIncrementalException();
+            }
+        }
+        if (countAllColumn < 0) {
+            throw getIncrementalException();
+        }
+        for (int i = 0; i < columnCount; i++) {
+            countColumns[i] = -1;
+            if (types[i] != Aggregate.SUM) {
+                continue;
+            }
+            String sql = expressions[i].getSQL();
+            for (int j = 0; j < columnCount; j++) {
+                if (types[j] == Aggregate.COUNT &&
+                        sql.equals(expressions[j].getSQL())) {
+                    countColumns[i] = j;
+                }
+            }
+        }
+    }
+
+    private DbException getIncrementalException() {
+        return DbException.getUnsupportedException(
+                "INCREMENTAL materialized view with this query: " +
+                getQuerySQL());
+    }
+
+    private String getQuerySQL() {
+        return query == null ? querySQL : query.getPlanSQL();
+    }
+
+    /**
+     * Create a unique index on the grouped columns of an incremental view.
+     * Concurrent transactions that add the same group then conflict, instead
+     * of each adding a row, and the index is used to find the group of a
+     * changed row.
+     *
+     * @param session the session
+     * @param transactional whether the command is part of a transaction
+     */
+    public void createGroupIndex(Session session, boolean transactional) {
+        if (filter == null || groupColumns.length == 0) {
+            return;
+        }
+        IndexColumn[] cols = new IndexColumn[groupColumns.length];
+        for (int i = 0; i < cols.length; i++) {
+            IndexColumn c = new IndexColumn();
+            c.columnName = table.getColumn(groupColumns[i]).getName();
+            cols[i] = c;
+        }
+        CreateIndex command = new CreateIndex(session, table.getSchema());
+        command.setTableName(table.getName());
+        command.setIndexColumns(cols);
+        command.setUnique(true);
+        command.setTransactional(transactional);
+        command.update();
+    }
+
+    /**
+     * Unregister this view from the base tables.
+     */
+    public void removeDependencies() {
+        for (Table t : baseTables) {
+            t.removeMaterializedView(this);
+        }
+        baseTables.clear();
+    }
+
+    /**
+     * Re-compute all rows of the view. The old rows are removed without
+     * writing to the undo log.
+     *
+     * @param session the session
+     */
+    public void refresh(Session session) {
+        table.lock(session, true, true);
+        table.truncate(session);
+        boolean old = session.isUndoLogEnabled();
+        try {
+            session.setUndoLogEnabled(false);
+            addRows(session);
+        } finally {
+            session.setUndoLogEnabled(old);
+        }
+    }
+
+    /**
+     * Update the view after a row of a base table was inserted, updated, or
+     * deleted. Only incremental views are updated.
+     *
+     * @param session the session
+     * @param oldRow the old row, or null for an insert
+     * @param newRow the new row, or null for a delete
+     */
+    public void rowChanged(Session session, Row oldRow, Row newRow) {
+        if (filter == null) {
+            return;
+        }
+        table.lock(session, true, false);
+        synchronized (this) {
+            boolean done = oldRow == null || apply(session, oldRow, false);
+            if (done && newRow != null) {
+                done = apply(session, newRow, true);
+            }
+            if (!done) {
+                recompute(session);
+            }
+        }
+    }
+
+    /**
+     * Add or remove the contribution of a base table row.
+     *
+     * @param session the session
+     * @param baseRow the row of the base table
+     * @param add whether the row was added or removed
+     * @return false if the view needs to be re-computed
+     */
+    private boolean apply(Session session, Row baseRow, boolean add) {
+        filter.set(baseRow);
+        if (condition != null &&
+                !Boolean.TRUE.equals(condition.getBooleanValue(session))) {
+            return true;
+        }
+        Column[] columns = table.getColumns();
+        int columnCount = columns.length;
+        Value[] values = new Value[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            Expression e = expressions[i];
+            if (e != null) {
+                Value v = e.getValue(session);
+                values[i] = types[i] == Aggregate.COUNT ? v : columns[i]
+                        .convert(v);
+            }
+        }
+        Row old = findGroup(session, values);
+        if (old == null && (!add || groupColumns.length == 0)) {
+            return false;
+        }
+        Row row = table.getTemplateRow();
+        for (int i = 0; i < columnCount; i++) {
+            Value v = values[i];
+            Value o = old == null ? null : old.getValue(i);
+            switch (types[i]) {
+            case Aggregate.COUNT_ALL:
+                v = ValueLong.get((o == null ? 0 : o.getLong()) +
+                        (add ? 1 : -1));
+                break;
+            case Aggregate.COUNT: {
+                long count = o == null ? 0 : o.getLong();
+                if (v != ValueNull.INSTANCE) {
+                    count += add ? 1 : -1;
+                }
+                v = ValueLong.get(count);
+                break;
+            }
+            case Aggregate.SUM:
+                if (v == ValueNull.INSTANCE) {
+                    v = o == null ? ValueNull.INSTANCE : o;
+                } else if (o != null && o != ValueNull.INSTANCE) {
+                    v = add ? o.add(v) : o.subtract(v);
+                } else if (!add) {
+                    return false;
+                }
+                break;
+            default:
+            }
+            row.setValue(i, columns[i].convert(v));
+        }
+        if (!add) {
+            long count = row.getValue(countAllColumn).getLong();
+            if (count == 0 && groupColumns.length > 0) {
+                removeRow(session, old);
+                return true;
+            }
+            for (int i = 0; i < columnCount; i++) {
+                if (types[i] != Aggregate.SUM ||
+                        values[i] == ValueNull.INSTANCE ||
+                        row.getValue(i).getSignum() != 0) {
+                    continue;
+                }
+                // the sum is NULL if only NULL values remain
+                int c = countColumns[i];
+                if (count == 0 || c >= 0 && row.getValue(c).getLong() == 0) {
+                    row.setValue(i, ValueNull.INSTANCE);
+                } else if (c < 0) {
+                    return false;
+                }
+            }
+        }
+        if (old != null) {
+            removeRow(session, old);
+        }
+        table.addRow(session, row);
+        session.log(table, UndoLogRecord.INSERT, row);
+        return true;
+    }
+
+    private Row findGroup(Session session, Value[] values) {
+        Index index = getGroupIndex(values);
+        SearchRow first = null;
+        if (index != null) {
+            first = table.getTemplateSimpleRow(false);
+            for (int i : groupColumns) {
+                first.setValue(i, values[i]);
+            }
+        } else if (groupColumns.length > 0) {
+            Column column = table.getColumn(groupColumns[0]);
+            Value v = values[groupColumns[0]];
+            if (v != ValueNull.INSTANCE) {
+                index = table.getIndexForColumn(column);
+            }
+            if (index != null) {
+                first = table.getTemplateSimpleRow(false);
+                first.setValue(column.getColumnId(), v);
+            }
+        }
+        if (index == null) {
+            index = table.getScanIndex(session);
+        }
+        Cursor cursor = index.find(session, first, first);
+        while (cursor.next()) {
+            Row row = cursor.get();
+            if (isSameGroup(session, row, values)) {
+                return row;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the unique index on the grouped columns, if it exists and the group
+     * is not NULL (the index may contain multiple rows with NULL).
+     *
+     * @param values the values of the row
+     * @return the index, or null
+     */
+    private Index getGroupIndex(Value[] values) {
+        if (groupColumns.length == 0) {
+            return null;
+        }
+        for (int i : groupColumns) {
+            if (values[i] == ValueNull.INSTANCE) {
+                return null;
+            }
+        }
+        for (Index index : table.getIndexes()) {
+            if (isGroupIndex(index)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    private boolean isGroupIndex(Index index) {
+        Column[] cols = index.getColumns();
+        if (!index.getIndexType().isUnique() ||
+                cols.length != groupColumns.length) {
+            return false;
+        }
+        for (Column c : cols) {
+            int id = c.getColumnId();
+            // the type of grouped columns is -1
+            if (id >= types.length || types[id] >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isSameGroup(Session session, Row row, Value[] values) {
+        for (int i : groupColumns) {
+            Value a = row.getValue(i);
+            Value b = values[i];
+            if (a == ValueNull.INSTANCE || b == ValueNull.INSTANCE) {
+                if (a != b) {
+                    return false;
+                }
+            } else if (!session.getDatabase().areEqual(a, b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void removeRow(Session session, Row row) {
+        table.removeRow(session, row);
+        session.log(table, UndoLogRecord.DELETE, row);
+    }
+
+    /**
+     * Re-compute all rows of the view within the current transaction.
+     *
+     * @param session the session
+     */
+    private void recompute(Session session) {
+        ArrayList<Row> rows = New.arrayList();
+        Cursor cursor = table.getScanIndex(session).find(session, null, null);
+        while (cursor.next()) {
+            rows.add(cursor.get());
+        }
+        for (Row row : rows) {
+            removeRow(session, row);
+        }
+        addRows(session);
+    }
+
+    private void addRows(Session session) {
+        Query query = (Query) session.prepare(getQuerySQL(), true);
+        ResultInterface result = query.query(0);
+        Column[] columns = table.getColumns();
+        while (result.next()) {
+            Value[] values = result.currentRow();
+            Row row = table.getTemplateRow();
+            for (int i = 0; i < columns.length; i++) {
+                row.setValue(i, columns[i].convert(values[i]));
+            }
+            table.addRow(session, row);
+            session.log(table, UndoLogRecord.INSERT, row);
+        }
+        result.close();
+    }
+
+    /**
+     * Get the SQL statement to re-create the materialized view.
+     *
+     * @return the SQL statement
+     */
+    public String getCreateSQL() {
+        StatementBuilder buff = new StatementBuilder(
+                "CREATE MATERIALIZED VIEW ");
+        buff.append(table.getSQL());
+        if (table.getComment() != null) {
+            buff.append(" COMMENT ").append(
+                    StringUtils.quoteStringSQL(table.getComment()));
+        }
+        buff.append("(\n    ");
+        for (Column column : table.getColumns()) {
+            buff.appendExceptFirst(",\n    ");
+            buff.append(column.getCreateSQL());
+        }
+        buff.append("\n)");
+        if (incremental) {
+            buff.append(" INCREMENTAL");
+        }
+        buff.append(" AS\n").append(getQuerySQL());
+        return buff.toString();
+    }
+
+    public Table getTable() {
+        return table;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public ArrayList<Table> getBaseTables() {
+        return baseTables;
+    }
+
+}
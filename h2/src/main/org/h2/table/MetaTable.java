@@ -929,6 +929,8 @@ public class MetaTable extends Table {
                     "FALSE" : "TRUE");
             add(rows, "MODE", database.getMode().getName());
             add(rows, "MULTI_THREADED", database.isMultiThreaded() ? "1" : "0");
+            add(rows, "info.MULTI_THREADED_DEFAULT",
+                    database.isMultiThreadedDefault() ? "TRUE" : "FALSE");
             add(rows, "MVCC", database.isMultiVersion() ? "TRUE" : "FALSE");
             add(rows, "QUERY_TIMEOUT", "" + session.getQueryTimeout());
             add(rows, "RETENTION_TIME", "" + database.getRetentionTime());
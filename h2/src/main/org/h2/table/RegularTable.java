@@ -198,6 +198,10 @@ public class RegularTable extends TableBase {
     public Index addIndex(Session session, String indexName, int indexId,
             IndexColumn[] cols, IndexType indexType, boolean create,
             String indexComment) {
+        if (indexType.getCondition() != null) {
+            throw DbException.getUnsupportedException(
+                    "partial index with MV_STORE=FALSE");
+        }
         if (indexType.isPrimaryKey()) {
             for (IndexColumn c : cols) {
                 Column column = c.column;
@@ -6,6 +6,7 @@
 package org.h2.table;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
@@ -103,9 +104,12 @@ public abstract class Table extends SchemaObjectBase {
     private ArrayList<Constraint> constraints;
     private ArrayList<Sequence> sequences;
     private ArrayList<TableView> views;
+    private ArrayList<MaterializedView> materializedViews;
+    private MaterializedView materializedView;
     private boolean checkForeignKeyConstraints = true;
     private boolean onCommitDrop, onCommitTruncate;
     private Row nullRow;
+    private IndexExpressionColumn[] indexExpressionColumns = { };
 
     public Table(Schema schema, int id, String name, boolean persistIndexes,
             boolean persistData) {
@@ -383,6 +387,11 @@ public abstract class Table extends SchemaObjectBase {
         if (views != null) {
             children.addAll(views);
         }
+        if (materializedViews != null) {
+            for (MaterializedView view : materializedViews) {
+                children.add(view.getTable());
+            }
+        }
         ArrayList<Right> rights = database.getAllRights();
         for (Right right : rights) {
             if (right.getGrantedTable() == this) {
@@ -492,6 +501,40 @@ public abstract class Table extends SchemaObjectBase {
         return views;
     }
 
+    /**
+     * Get the materialized views that depend on this table.
+     *
+     * @return the list of materialized views, or null
+     */
+    public ArrayList<MaterializedView> getMaterializedViews() {
+        return materializedViews;
+    }
+
+    /**
+     * Get the materialized view definition if this table contains the rows
+     * of a materialized view.
+     *
+     * @return the materialized view, or null for other tables
+     */
+    public MaterializedView getMaterializedView() {
+        return materializedView;
+    }
+
+    public void setMaterializedView(MaterializedView materializedView) {
+        this.materializedView = materializedView;
+    }
+
+    /**
+     * Check that the rows of this table may be changed using data
+     * manipulation statements. This is not allowed for materialized views.
+     */
+    public void checkRowChangesAllowed() {
+        if (materializedView != null) {
+            throw DbException.getUnsupportedException(
+                    "changing the rows of a materialized view: " + getSQL());
+        }
+    }
+
     @Override
     public void removeChildrenAndResources(Session session) {
         while (views != null && views.size() > 0) {
@@ -499,6 +542,14 @@ public abstract class Table extends SchemaObjectBase {
             views.remove(0);
             database.removeSchemaObject(session, view);
         }
+        while (materializedViews != null && materializedViews.size() > 0) {
+            MaterializedView view = materializedViews.get(0);
+            view.removeDependencies();
+            database.removeSchemaObject(session, view.getTable());
+        }
+        if (materializedView != null) {
+            materializedView.removeDependencies();
+        }
         while (triggers != null && triggers.size() > 0) {
             TriggerObject trigger = triggers.get(0);
             triggers.remove(0);
@@ -566,6 +617,27 @@ public abstract class Table extends SchemaObjectBase {
                 if (index.getCreateSQL() == null) {
                     continue;
                 }
+                IndexType indexType = index.getIndexType();
+                HashSet<Column> referenced = New.hashSet();
+                if (indexType.getIncludeColumns() != null) {
+                    for (IndexColumn c : indexType.getIncludeColumns()) {
+                        referenced.add(c.column);
+                    }
+                }
+                if (indexType.getCondition() != null) {
+                    indexType.getCondition().isEverything(
+                            ExpressionVisitor.getColumnsVisitor(referenced));
+                }
+                for (Column c : index.getColumns()) {
+                    if (c instanceof IndexExpressionColumn) {
+                        ((IndexExpressionColumn) c).getExpression().isEverything(
+                                ExpressionVisitor.getColumnsVisitor(referenced));
+                    }
+                }
+                if (referenced.contains(col)) {
+                    throw DbException.get(
+                            ErrorCode.COLUMN_IS_REFERENCED_1, index.getSQL());
+                }
                 if (index.getColumnIndex(col) < 0) {
                     continue;
                 }
@@ -603,7 +675,74 @@ public abstract class Table extends SchemaObjectBase {
         if (singleColumn) {
             return new SimpleRowValue(columns.length);
         }
-        return new SimpleRow(new Value[columns.length]);
+        return new SimpleRow(new Value[getSearchColumnCount()]);
+    }
+
+    /**
+     * Get a new row object to search an index. Unlike the rows of the table,
+     * such a row can also hold the values of index expressions.
+     *
+     * @return the row object
+     */
+    public Row getTemplateSearchRow() {
+        return new Row(new Value[getSearchColumnCount()], Row.MEMORY_CALCULATE);
+    }
+
+    /**
+     * Get the number of values of a search row: the number of columns plus
+     * the number of index expressions.
+     *
+     * @return the number of values
+     */
+    public int getSearchColumnCount() {
+        return columns.length + indexExpressionColumns.length;
+    }
+
+    /**
+     * Get the column for the given index expression. If there is no such
+     * column yet, it is created. The column is kept as long as the table
+     * exists, even if the index is dropped.
+     *
+     * @param expression the expression, mapped to the given filter
+     * @param filter the table filter used to evaluate the expression
+     * @return the column
+     */
+    public synchronized IndexExpressionColumn addIndexExpressionColumn(
+            Expression expression, TableFilter filter) {
+        IndexExpressionColumn column = findIndexExpressionColumn(expression);
+        if (column == null) {
+            column = new IndexExpressionColumn(this,
+                    getSearchColumnCount(), expression, filter);
+            IndexExpressionColumn[] list = Arrays.copyOf(
+                    indexExpressionColumns, indexExpressionColumns.length + 1);
+            list[list.length - 1] = column;
+            indexExpressionColumns = list;
+        }
+        return column;
+    }
+
+    /**
+     * Find the column of an index expression that is equal to the given
+     * expression. Expressions are compared using their SQL representation,
+     * so columns in the expression need to be written without table name,
+     * as in the index.
+     *
+     * @param expression the expression
+     * @return the column, or null if there is none
+     */
+    public IndexExpressionColumn findIndexExpressionColumn(
+            Expression expression) {
+        IndexExpressionColumn[] list = indexExpressionColumns;
+        if (list.length == 0) {
+            return null;
+        }
+        String sql = expression.getSQL();
+        for (IndexExpressionColumn c : list) {
+            if (c.getSQL().equals(sql)) {
+                return c;
+            }
+        }
+        return null;
     }
 
     synchronized Row getNullRow() {
@@ -776,6 +915,17 @@ public abstract class Table extends SchemaObjectBase {
         remove(views, view);
     }
 
+    /**
+     * Remove the given materialized view from the list.
+     *
+     * @param view the materialized view to remove
+     */
+    public void removeMaterializedView(MaterializedView view) {
+        if (materializedViews != null) {
+            materializedViews.remove(view);
+        }
+    }
+
     /**
      * Remove the given constraint from the list.
      *
@@ -812,6 +962,15 @@ public abstract class Table extends SchemaObjectBase {
         views = add(views, view);
     }
 
+    /**
+     * Add a materialized view that depends on this table.
+     *
+     * @param view the materialized view to add
+     */
+    public void addMaterializedView(MaterializedView view) {
+        materializedViews = add(materializedViews, view);
+    }
+
     /**
      * Add a constraint to the table.
      *
@@ -893,7 +1052,19 @@ public abstract class Table extends SchemaObjectBase {
      */
     public boolean fireRow() {
         return (constraints != null && constraints.size() > 0) ||
-                (triggers != null && triggers.size() > 0);
+                (triggers != null && triggers.size() > 0) ||
+                hasIncrementalMaterializedViews();
+    }
+
+    private boolean hasIncrementalMaterializedViews() {
+        if (materializedViews != null) {
+            for (MaterializedView view : materializedViews) {
+                if (view.isIncremental()) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     /**
@@ -936,6 +1107,13 @@ public abstract class Table extends SchemaObjectBase {
         fireRow(session, oldRow, newRow, false, rollback);
         if (!rollback) {
             fireConstraints(session, oldRow, newRow, false);
+            if (materializedViews != null) {
+                for (int i = 0, size = materializedViews.size(); i < size;
+                        i++) {
+                    materializedViews.get(i).rowChanged(
+                            session, oldRow, newRow);
+                }
+            }
         }
     }
 
@@ -1001,7 +1179,8 @@ public abstract class Table extends SchemaObjectBase {
         if (indexes != null) {
             for (int i = 1, size = indexes.size(); i < size; i++) {
                 Index index = indexes.get(i);
-                if (index.canGetFirstOrLast()) {
+                if (index.canGetFirstOrLast() &&
+                        index.getIndexType().getCondition() == null) {
                     int idx = index.getColumnIndex(column);
                     if (idx == 0) {
                         return index;
@@ -57,6 +57,9 @@ public abstract class TableBase extends Table {
             // closed
             return null;
         }
+        if (getMaterializedView() != null) {
+            return getMaterializedView().getCreateSQL();
+        }
         StatementBuilder buff = new StatementBuilder("CREATE ");
         if (isTemporary()) {
             if (isGlobalTemporary()) {
@@ -19,6 +19,7 @@ import org.h2.expression.ExpressionColumn;
 import org.h2.index.Index;
 import org.h2.index.IndexCondition;
 import org.h2.index.IndexCursor;
+import org.h2.index.IndexType;
 import org.h2.message.DbException;
 import org.h2.result.Row;
 import org.h2.result.SearchRow;
@@ -69,6 +70,12 @@ public class TableFilter implements ColumnResolver {
      */
     private final ArrayList<IndexCondition> indexConditions = New.arrayList();
 
+    /**
+     * The equality condition used to look up rows in a hash table (if the
+     * index can't be used for the join).
+     */
+    private IndexCondition hashCondition;
+
     /**
      * Additional conditions that can't be used for index lookup, but for row
      * filter for this table (ID=ID, NAME LIKE '%X%')
@@ -164,7 +171,8 @@ public class TableFilter implements ColumnResolver {
             item.setIndex(table.getScanIndex(s));
             item.cost = item.getIndex().getCost(s, null, null, null);
         } else {
-            int len = table.getColumns().length;
+            // index expressions have column ids after the table columns
+            int len = table.getSearchColumnCount();
             int[] masks = new int[len];
             for (IndexCondition condition : indexConditions) {
                 if (condition.isEvaluatable()) {
@@ -248,11 +256,125 @@ public class TableFilter implements ColumnResolver {
         }
     }
 
+    /**
+     * Get the condition that could be used to join this table using a hash
+     * table, or null if there is none.
+     *
+     * @param conditions the candidate conditions
+     * @return the condition, or null
+     */
+    private IndexCondition getHashCondition(ArrayList<IndexCondition> conditions) {
+        if (!session.getDatabase().getSettings().optimizeHashJoin ||
+                table.getRowCountApproximation() >
+                session.getDatabase().getMaxMemoryRows()) {
+            return null;
+        }
+        for (IndexCondition condition : conditions) {
+            if (condition.isEvaluatable() && condition.isHashJoinable(session)) {
+                return condition;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the equality condition that could be used to merge join this table
+     * with the given outer table, or null if there is none. This is the case
+     * if both tables are read in ascending order of the joined columns.
+     *
+     * @param outer the outer table filter
+     * @return the condition, or null
+     */
+    private IndexCondition getMergeCondition(TableFilter outer) {
+        if (!session.getDatabase().getSettings().optimizeMergeJoin ||
+                indexConditions.size() == 0) {
+            return null;
+        }
+        IndexCondition mergeCondition = null;
+        Column outerColumn = null;
+        Column column = indexConditions.get(0).getColumn();
+        for (IndexCondition condition : indexConditions) {
+            if (condition.getColumn() != column) {
+                // the other conditions would not be used
+                return null;
+            }
+            if (mergeCondition == null) {
+                outerColumn = condition.getEqualColumn(outer);
+                if (outerColumn != null) {
+                    mergeCondition = condition;
+                }
+            }
+        }
+        if (mergeCondition == null || column.getColumnId() < 0) {
+            return null;
+        }
+        if (!isSortedBy(index, column) ||
+                !outer.isSortedBy(outer.index, outerColumn)) {
+            return null;
+        }
+        return mergeCondition;
+    }
+
+    /**
+     * Check if the rows of this table are read in ascending order of the given
+     * column when using the given index without index conditions, or with
+     * conditions that don't change the order.
+     *
+     * @param idx the index
+     * @param column the column
+     * @return true if the rows are sorted by this column
+     */
+    private boolean isSortedBy(Index idx, Column column) {
+        if (!(table instanceof RegularTable) && !table.isMVStore()) {
+            // views, linked tables and so on
+            return false;
+        }
+        IndexType type = idx.getIndexType();
+        if (type.isHash() || type.isSpatial() || hasInComparisons()) {
+            return false;
+        }
+        if (type.isScan()) {
+            // rows are read by key, which is the primary key column if
+            // the primary key is a single ascending integer column
+            if (!idx.isRowIdIndex()) {
+                return false;
+            }
+            if (column.getColumnId() < 0) {
+                return true;
+            }
+            Index pk = table.findPrimaryKey();
+            if (pk == null) {
+                return false;
+            }
+            idx = pk;
+            switch (column.getType()) {
+            case Value.BYTE:
+            case Value.SHORT:
+            case Value.INT:
+            case Value.LONG:
+                break;
+            default:
+                return false;
+            }
+            if (idx.getIndexColumns().length != 1) {
+                return false;
+            }
+        }
+        IndexColumn[] cols = idx.getIndexColumns();
+        return cols != null && cols.length > 0 && cols[0].column == column &&
+                (cols[0].sortType & SortOrder.DESCENDING) == 0;
+    }
+
     /**
      * Prepare reading rows. This method will remove all index conditions that
      * can not be used, and optimize the conditions.
      */
     public void prepare() {
+        prepare(null);
+    }
+
+    private void prepare(TableFilter outer) {
+        ArrayList<IndexCondition> unused = null;
         // forget all unused index conditions
         // the indexConditions list may be modified here
         for (int i = 0; i < indexConditions.size(); i++) {
@@ -263,21 +385,38 @@ public class TableFilter implements ColumnResolver {
                     if (index.getColumnIndex(col) < 0) {
                         indexConditions.remove(i);
                         i--;
+                        if (unused == null) {
+                            unused = New.arrayList();
+                        }
+                        unused.add(condition);
                     }
                 }
             }
         }
+        hashCondition = null;
+        IndexCondition mergeCondition = null;
+        if (outer != null) {
+            if (unused != null && indexConditions.size() == 0 &&
+                    index.getIndexType().isScan()) {
+                // a joined table without usable index: read the rows only once
+                hashCondition = getHashCondition(unused);
+            } else {
+                mergeCondition = getMergeCondition(outer);
+            }
+        }
+        cursor.setHashCondition(hashCondition);
+        cursor.setMergeCondition(mergeCondition);
         if (nestedJoin != null) {
             if (SysProperties.CHECK && nestedJoin == this) {
                 DbException.throwInternalError("self join");
             }
-            nestedJoin.prepare();
+            nestedJoin.prepare(null);
         }
         if (join != null) {
             if (SysProperties.CHECK && join == this) {
                 DbException.throwInternalError("self join");
             }
-            join.prepare();
+            join.prepare(this);
         }
         if (filterCondition != null) {
             filterCondition = filterCondition.optimize(session);
@@ -295,6 +434,7 @@ public class TableFilter implements ColumnResolver {
     public void startQuery(Session s) {
         this.session = s;
         scanCount = 0;
+        cursor.reset();
         if (nestedJoin != null) {
             nestedJoin.startQuery(s);
         }
@@ -303,6 +443,20 @@ public class TableFilter implements ColumnResolver {
         }
     }
 
+    /**
+     * End the query. This will release the rows that were read for a hash
+     * join.
+     */
+    public void endQuery() {
+        cursor.reset();
+        if (nestedJoin != null) {
+            nestedJoin.endQuery();
+        }
+        if (join != null) {
+            join.endQuery();
+        }
+    }
+
     /**
      * Reset to the current position.
      */
@@ -409,6 +563,28 @@ public class TableFilter implements ColumnResolver {
         return false;
     }
 
+    /**
+     * Skip the given number of rows before the first row is read, using the
+     * index. The caller needs to ensure that all rows of the index range match
+     * the conditions of the query. This is only supported for single tables
+     * (not for joins).
+     *
+     * @param rows the number of rows to skip
+     * @return true if the rows were skipped, false if not supported
+     */
+    public boolean skipRows(long rows) {
+        if (state != BEFORE_FIRST || join != null || nestedJoin != null ||
+                joinCondition != null) {
+            return false;
+        }
+        if (!cursor.findWithOffset(session, indexConditions, rows)) {
+            return false;
+        }
+        // the cursor is positioned: continue with the next row
+        state = FOUND;
+        return true;
+    }
+
     /**
      * Set the state of this and all nested tables to the NULL row.
      */
@@ -486,6 +662,10 @@ public class TableFilter implements ColumnResolver {
         indexConditions.add(condition);
     }
 
+    public ArrayList<IndexCondition> getIndexConditions() {
+        return indexConditions;
+    }
+
     /**
      * Return a list of index condition filtered by a specific column.
      *
@@ -696,7 +876,9 @@ public class TableFilter implements ColumnResolver {
             buff.append('\n');
             StatementBuilder planBuff = new StatementBuilder();
             planBuff.append(index.getPlanSQL());
-            if (indexConditions.size() > 0) {
+            if (hashCondition != null) {
+                planBuff.append(": HASH JOIN ON ").append(hashCondition.getSQL());
+            } else if (indexConditions.size() > 0) {
                 planBuff.append(": ");
                 for (IndexCondition condition : indexConditions) {
                     planBuff.appendExceptFirst("\n    AND ");
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.test.bench;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.h2.test.TestBase;
+
+/**
+ * Measures how long it takes to prepare the same statements in many sessions,
+ * with and without the join order cache (JOIN_ORDER_CACHE_SIZE). Parsing and
+ * optimizing a query over one or two tables takes in the order of ten
+ * microseconds, so only the join order of larger joins is worth sharing
+ * between sessions. This benchmark is not part of the test suite, because
+ * the timing depends on the machine.
+ */
+public class TestPrepareBenchmark extends TestBase {
+
+    private static final int SESSIONS = 50;
+    private static final int STATEMENTS = 20;
+
+    /**
+     * Run just this test.
+     *
+     * @param a ignored
+     */
+    public static void main(String... a) throws Exception {
+        TestBase test = TestBase.createCaller().init();
+        test.config.traceTest = true;
+        test.test();
+    }
+
+    @Override
+    public void test() throws SQLException {
+        if (config.networked) {
+            return;
+        }
+        // warm up
+        for (int tables = 1; tables <= 8; tables *= 2) {
+            getPrepareTime(tables, 0, true);
+            getPrepareTime(tables, 100, true);
+            getPrepareTime(tables, 100, false);
+        }
+        for (int tables = 1; tables <= 8; tables *= 2) {
+            long none = getPrepareTime(tables, 0, true);
+            long hit = getPrepareTime(tables, 100, true);
+            long miss = getPrepareTime(tables, 100, false);
+            trace("tables: " + tables + " no cache: " + none / 1000 +
+                    " us cache hit: " + hit / 1000 +
+                    " us cache miss: " + miss / 1000 + " us");
+        }
+        deleteDb("prepareBenchmark");
+    }
+
+    /**
+     * Prepare statements in a number of sessions, and get the average time
+     * per statement.
+     *
+     * @param tables the number of tables to join
+     * @param cacheSize the size of the join order cache
+     * @param shared whether all sessions use the same statements
+     * @return the average time in nanoseconds
+     */
+    private long getPrepareTime(int tables, int cacheSize, boolean shared)
+            throws SQLException {
+        deleteDb("prepareBenchmark");
+        String url = "prepareBenchmark;QUERY_CACHE_SIZE=0;" +
+                "JOIN_ORDER_CACHE_SIZE=" + cacheSize;
+        Connection conn = getConnection(url);
+        Statement stat = conn.createStatement();
+        for (int i = 0; i < tables; i++) {
+            stat.execute("create table t" + i +
+                    "(id int primary key, a int, b int)");
+            stat.execute("create index on t" + i + "(a)");
+            stat.execute("insert into t" + i + " select x, mod(x, 10), x " +
+                    "from system_range(1, " + (100 * (i + 1)) + ")");
+        }
+        stat.execute("analyze");
+        Connection[] list = new Connection[SESSIONS];
+        for (int i = 0; i < SESSIONS; i++) {
+            list[i] = getConnection(url);
+        }
+        long time = System.nanoTime();
+        for (int i = 0; i < SESSIONS; i++) {
+            for (int j = 0; j < STATEMENTS; j++) {
+                StringBuilder buff = new StringBuilder("select * from t0");
+                for (int k = 1; k < tables; k++) {
+                    buff.append(", t").append(k);
+                }
+                buff.append(" where t0.a = ?");
+                for (int k = 1; k < tables; k++) {
+                    buff.append(" and t").append(k).append(".id = t").
+                            append(k - 1).append(".b");
+                }
+                buff.append(" and t0.id > ").
+                        append(shared ? j : i * STATEMENTS + j);
+                list[i].prepareStatement(buff.toString()).close();
+            }
+        }
+        time = System.nanoTime() - time;
+        for (Connection c : list) {
+            c.close();
+        }
+        conn.close();
+        return time / SESSIONS / STATEMENTS;
+    }
+
+}
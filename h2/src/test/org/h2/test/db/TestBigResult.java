@@ -20,6 +20,8 @@ import org.h2.test.TestBase;
  */
 public class TestBigResult extends TestBase {
 
+    private static int callCount;
+
     /**
      * Run just this test.
      *
@@ -38,7 +40,9 @@ public class TestBigResult extends TestBase {
         testLargeUpdateDelete();
         testCloseConnectionDelete();
         testOrderGroup();
+        testLargeGroupBy();
         testLimitBufferedResult();
+        testLazyQueryExecution();
         deleteDb("bigResult");
     }
 
@@ -97,6 +101,60 @@ public class TestBigResult extends TestBase {
         }
     }
 
+    private void testLargeGroupBy() throws SQLException {
+        deleteDb("bigResult");
+        Connection conn = getConnection("bigResult");
+        Statement stat = conn.createStatement();
+        stat.execute("SET MAX_MEMORY_ROWS 100");
+        stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, NAME VARCHAR)");
+        stat.execute("INSERT INTO TEST SELECT X, 'N' || MOD(X, 1000) " +
+                "FROM SYSTEM_RANGE(1, 5000)");
+        stat.execute("CREATE TABLE PARENT(ID INT PRIMARY KEY, NAME VARCHAR)");
+        stat.execute("INSERT INTO PARENT SELECT X, 'P' || X " +
+                "FROM SYSTEM_RANGE(1, 500)");
+        // more groups than MAX_MEMORY_ROWS: processed in a few steps
+        ResultSet rs = stat.executeQuery("SELECT NAME, COUNT(*), SUM(ID), " +
+                "MIN(_ROWID_) FROM TEST GROUP BY NAME ORDER BY NAME");
+        int count = 0;
+        String last = null;
+        while (rs.next()) {
+            int x = Integer.parseInt(rs.getString(1).substring(1));
+            if (last != null) {
+                assertTrue(last.compareTo(rs.getString(1)) < 0);
+            }
+            last = rs.getString(1);
+            assertEquals(5, rs.getInt(2));
+            int first = x == 0 ? 1000 : x;
+            assertEquals(5 * first + 10000, rs.getInt(3));
+            assertEquals(first, rs.getInt(4));
+            count++;
+        }
+        assertEquals(1000, count);
+        rs = stat.executeQuery("SELECT COUNT(*), SUM(C), SUM(S) FROM (" +
+                "SELECT T.NAME TN, P.NAME PN, COUNT(*) C, SUM(P.ID) S " +
+                "FROM TEST T LEFT JOIN PARENT P ON P.ID = MOD(T.ID, 1000) " +
+                "GROUP BY T.NAME, P.NAME HAVING COUNT(*) > 0)");
+        rs.next();
+        assertEquals(1000, rs.getInt(1));
+        assertEquals(5000, rs.getInt(2));
+        assertEquals(5 * 500 * 501 / 2, rs.getInt(3));
+        // the buffered rows are partitioned again, and ROWNUM is kept
+        stat.execute("SET MAX_MEMORY_ROWS 10");
+        rs = stat.executeQuery("SELECT NAME, COUNT(*), MIN(ROWNUM()), " +
+                "MAX(ROWNUM()) FROM TEST GROUP BY NAME ORDER BY NAME");
+        count = 0;
+        while (rs.next()) {
+            int x = Integer.parseInt(rs.getString(1).substring(1));
+            int first = x == 0 ? 1000 : x;
+            assertEquals(5, rs.getInt(2));
+            assertEquals(first, rs.getInt(3));
+            assertEquals(first + 4000, rs.getInt(4));
+            count++;
+        }
+        assertEquals(1000, count);
+        conn.close();
+    }
+
     private void testLimitBufferedResult() throws SQLException {
         deleteDb("bigResult");
         Connection conn = getConnection("bigResult");
@@ -123,6 +181,90 @@ public class TestBigResult extends TestBase {
         conn.close();
     }
 
+    private void testLazyQueryExecution() throws SQLException {
+        if (!config.mvStore) {
+            return;
+        }
+        deleteDb("bigResult");
+        Connection conn = getConnection("bigResult");
+        Statement stat = conn.createStatement();
+        stat.execute("CREATE ALIAS COUNT_CALL FOR \"" +
+                getClass().getName() + ".countCall\"");
+        stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, NAME VARCHAR)");
+        stat.execute("INSERT INTO TEST SELECT X, 'Hello' || X " +
+                "FROM SYSTEM_RANGE(1, 10000)");
+        stat.execute("SET LAZY_QUERY_EXECUTION 1");
+        ResultSet rs;
+
+        // the rows are only computed while they are read
+        callCount = 0;
+        rs = stat.executeQuery("SELECT ID, COUNT_CALL(ID) FROM TEST ORDER BY ID");
+        for (int i = 1; i <= 10; i++) {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getInt(1));
+            assertEquals(i, rs.getInt(2));
+        }
+        assertEquals(10, callCount);
+        rs.close();
+
+        rs = stat.executeQuery("SELECT ID FROM TEST");
+        int count = 0;
+        while (rs.next()) {
+            count++;
+            assertEquals(count, rs.getInt(1));
+        }
+        assertEquals(10000, count);
+
+        rs = stat.executeQuery("SELECT ID FROM TEST " +
+                "WHERE MOD(ID, 2) = 0 LIMIT 5 OFFSET 10");
+        for (int i = 22; i <= 30; i += 2) {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getInt(1));
+        }
+        assertFalse(rs.next());
+
+        // queries that need all rows are still supported
+        rs = stat.executeQuery("SELECT ID FROM TEST ORDER BY NAME DESC LIMIT 1");
+        assertTrue(rs.next());
+        assertEquals(9999, rs.getInt(1));
+        assertFalse(rs.next());
+
+        // two open results of the same statement
+        Statement stat2 = conn.createStatement();
+        ResultSet rs1 = stat.executeQuery("SELECT ID FROM TEST");
+        ResultSet rs2 = stat2.executeQuery("SELECT ID FROM TEST");
+        assertTrue(rs1.next());
+        assertTrue(rs2.next());
+        assertTrue(rs2.next());
+        assertTrue(rs1.next());
+        assertEquals(2, rs1.getInt(1));
+        assertEquals(2, rs2.getInt(1));
+        rs1.close();
+        rs2.close();
+
+        // scrollable results are not computed lazily
+        Statement stat3 = conn.createStatement(
+                ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        rs = stat3.executeQuery("SELECT ID FROM TEST WHERE ID < 3");
+        assertTrue(rs.last());
+        assertEquals(2, rs.getRow());
+        rs.beforeFirst();
+        assertTrue(rs.next());
+        assertEquals(1, rs.getInt(1));
+        conn.close();
+    }
+
+    /**
+     * This method is called via reflection from the database.
+     *
+     * @param x the value
+     * @return the value
+     */
+    public static int countCall(int x) {
+        callCount++;
+        return x;
+    }
+
     private void testOrderGroup() throws SQLException {
         deleteDb("bigResult");
         Connection conn = getConnection("bigResult");
@@ -48,6 +48,8 @@ public class TestIndex extends TestBase {
         testRandomized();
         testDescIndex();
         testHashIndex();
+        testPartialIndex();
+        testExpressionIndex();
 
         if (config.networked && config.big) {
             return;
@@ -354,6 +356,129 @@ public class TestIndex extends TestBase {
         conn.close();
     }
 
+    private void testPartialIndex() throws SQLException {
+        if (!config.mvStore || config.memory) {
+            return;
+        }
+        ResultSet rs;
+        deleteDb("index");
+        reconnect();
+        stat.execute("create table test(id int primary key, " +
+                "status varchar, amount int)");
+        stat.execute("create index idx_open on test(amount) " +
+                "where status = 'OPEN'");
+        stat.execute("insert into test select x, " +
+                "casewhen(mod(x, 10) = 0, 'OPEN', 'DONE'), x " +
+                "from system_range(1, 100)");
+        rs = stat.executeQuery("explain select * from test " +
+                "where status = 'OPEN' and amount > 50");
+        rs.next();
+        assertContains(rs.getString(1), "IDX_OPEN");
+        rs = stat.executeQuery("explain select * from test " +
+                "where status = 'DONE' and amount > 50");
+        rs.next();
+        assertFalse(rs.getString(1).contains("IDX_OPEN"));
+        rs = stat.executeQuery("explain select * from test where amount > 50");
+        rs.next();
+        assertFalse(rs.getString(1).contains("IDX_OPEN"));
+        rs = stat.executeQuery("select count(*) from test " +
+                "where status = 'OPEN' and amount > 50");
+        rs.next();
+        assertEquals(5, rs.getInt(1));
+        stat.execute("update test set status = 'OPEN' where id = 55");
+        stat.execute("update test set status = 'DONE' where id = 60");
+        stat.execute("delete from test where id = 70");
+        rs = stat.executeQuery("select id from test " +
+                "where status = 'OPEN' and amount > 50 order by amount");
+        for (int id : new int[] { 55, 80, 90, 100 }) {
+            assertTrue(rs.next());
+            assertEquals(id, rs.getInt(1));
+        }
+        assertFalse(rs.next());
+        rs = stat.executeQuery("select min(amount), max(amount) from test");
+        rs.next();
+        assertEquals(1, rs.getInt(1));
+        assertEquals(100, rs.getInt(2));
+        rs = stat.executeQuery("select sql from information_schema.indexes " +
+                "where index_name = 'IDX_OPEN'");
+        rs.next();
+        assertContains(rs.getString(1), "WHERE");
+        reconnect();
+        rs = stat.executeQuery("select count(*) from test " +
+                "where status = 'OPEN' and amount > 50");
+        rs.next();
+        assertEquals(4, rs.getInt(1));
+        assertThrows(ErrorCode.COLUMN_IS_REFERENCED_1, stat).
+                execute("alter table test drop column status");
+        assertThrows(ErrorCode.FEATURE_NOT_SUPPORTED_1, stat).
+                execute("create index idx_rand on test(amount) " +
+                "where rand() < 0.5");
+        stat.execute("drop table test");
+        conn.close();
+    }
+
+    private void testExpressionIndex() throws SQLException {
+        if (!config.mvStore || config.memory) {
+            return;
+        }
+        ResultSet rs;
+        deleteDb("index");
+        reconnect();
+        stat.execute("create table test(id int primary key, " +
+                "email varchar, a int, b int)");
+        stat.execute("insert into test select x, 'User' || x || '@X', " +
+                "x, mod(x, 10) from system_range(1, 100)");
+        stat.execute("create index idx_upper on test(upper(email))");
+        stat.execute("create index idx_sum on test(a + b desc)");
+        rs = stat.executeQuery("explain select * from test " +
+                "where upper(email) = 'USER10@X'");
+        rs.next();
+        assertContains(rs.getString(1), "IDX_UPPER: UPPER(EMAIL) = 'USER10@X'");
+        rs = stat.executeQuery("select id from test " +
+                "where upper(email) = 'USER10@X'");
+        assertTrue(rs.next());
+        assertEquals(10, rs.getInt(1));
+        assertFalse(rs.next());
+        stat.execute("update test set email = 'Other@X' where id = 10");
+        stat.execute("insert into test values(101, 'user10@x', 0, 0)");
+        rs = stat.executeQuery("select id from test " +
+                "where upper(email) = 'USER10@X'");
+        assertTrue(rs.next());
+        assertEquals(101, rs.getInt(1));
+        assertFalse(rs.next());
+        rs = stat.executeQuery("explain select * from test " +
+                "where a + b > 105");
+        rs.next();
+        assertContains(rs.getString(1), "IDX_SUM");
+        rs = stat.executeQuery("select count(*) from test " +
+                "where a + b > 105");
+        rs.next();
+        assertEquals(2, rs.getInt(1));
+        rs = stat.executeQuery("select sql from information_schema.indexes " +
+                "where index_name = 'IDX_UPPER'");
+        rs.next();
+        assertContains(rs.getString(1), "(UPPER(EMAIL))");
+        reconnect();
+        rs = stat.executeQuery("explain select * from test " +
+                "where 'USER20@X' = upper(email)");
+        rs.next();
+        assertContains(rs.getString(1), "IDX_UPPER");
+        rs = stat.executeQuery("select id from test " +
+                "where 'USER20@X' = upper(email)");
+        assertTrue(rs.next());
+        assertEquals(20, rs.getInt(1));
+        assertFalse(rs.next());
+        stat.execute("create unique index idx_lower on test(lower(email))");
+        assertThrows(ErrorCode.DUPLICATE_KEY_1, stat).
+                execute("insert into test values(102, 'USER20@x', 0, 0)");
+        assertThrows(ErrorCode.COLUMN_IS_REFERENCED_1, stat).
+                execute("alter table test drop column email");
+        assertThrows(ErrorCode.FEATURE_NOT_SUPPORTED_1, stat).
+                execute("create index idx_rand on test(a + rand())");
+        stat.execute("drop table test");
+        conn.close();
+    }
+
     private String getRandomString(int len) {
         StringBuilder buff = new StringBuilder();
         for (int i = 0; i < len; i++) {
@@ -61,6 +61,11 @@ public class TestMultiThread extends TestBase implements Runnable {
         testConcurrentAnalyze();
         testConcurrentInsertUpdateSelect();
         testLockModeWithMultiThreaded();
+        testMultiThreadedByDefault();
+        testConcurrentIncrement();
+        testConcurrentSequence();
+        testConcurrentMetaData();
+        testConcurrentTempResults();
     }
 
     private void testConcurrentSchemaChange() throws Exception {
@@ -294,4 +299,218 @@ public class TestMultiThread extends TestBase implements Runnable {
         deleteDb("lockMode");
     }
 
+    private void testMultiThreadedByDefault() throws Exception {
+        if (!config.mvStore || !config.mvcc || config.memory) {
+            return;
+        }
+        deleteDb("multiThreadedDefault");
+        Connection conn = getConnection("multiThreadedDefault");
+        assertEquals("1", getMultiThreaded(conn));
+        conn.close();
+        conn = getConnection("multiThreadedDefault;LOCK_MODE=0");
+        assertEquals("0", getMultiThreaded(conn));
+        conn.close();
+        conn = getConnection("multiThreadedDefault;MULTI_THREADED=0");
+        assertEquals("0", getMultiThreaded(conn));
+        conn.close();
+        deleteDb("multiThreadedDefault");
+    }
+
+    private static String getMultiThreaded(Connection conn) throws SQLException {
+        ResultSet rs = conn.createStatement().executeQuery(
+                "select value from information_schema.settings " +
+                "where name = 'MULTI_THREADED'");
+        rs.next();
+        return rs.getString(1);
+    }
+
+    private void testConcurrentIncrement() throws Exception {
+        deleteDb("concurrentIncrement");
+        final String url = getURL("concurrentIncrement;MULTI_THREADED=1", true);
+        Connection conn = getConnection(url);
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, value int)");
+        stat.execute("insert into test values(1, 0)");
+        final int count = getSize(100, 1000);
+        Task[] tasks = new Task[4];
+        for (int i = 0; i < tasks.length; i++) {
+            Task t = new Task() {
+                @Override
+                public void call() throws Exception {
+                    Connection c2 = getConnection(url);
+                    PreparedStatement p2 = c2.prepareStatement(
+                            "update test set value = value + 1 where id = 1");
+                    try {
+                        for (int j = 0; j < count; j++) {
+                            p2.execute();
+                        }
+                    } finally {
+                        c2.close();
+                    }
+                }
+            };
+            tasks[i] = t;
+            t.execute();
+        }
+        for (Task t : tasks) {
+            t.get();
+        }
+        ResultSet rs = stat.executeQuery("select value from test");
+        rs.next();
+        assertEquals(count * tasks.length, rs.getInt(1));
+        conn.close();
+        deleteDb("concurrentIncrement");
+    }
+
+    private void testConcurrentSequence() throws Exception {
+        deleteDb("concurrentSequence");
+        final String url = getURL("concurrentSequence;MULTI_THREADED=1", true);
+        Connection conn = getConnection(url);
+        Statement stat = conn.createStatement();
+        // a small cache, so that the sequence is written often
+        stat.execute("create sequence seq cache 3");
+        stat.execute("create table test(id bigint primary key)");
+        final int count = getSize(200, 2000);
+        Task[] tasks = new Task[4];
+        for (int i = 0; i < tasks.length; i++) {
+            Task t = new Task() {
+                @Override
+                public void call() throws Exception {
+                    Connection c2 = getConnection(url);
+                    PreparedStatement p2 = c2.prepareStatement(
+                            "insert into test values(seq.nextval)");
+                    try {
+                        for (int j = 0; j < count; j++) {
+                            p2.execute();
+                        }
+                    } finally {
+                        c2.close();
+                    }
+                }
+            };
+            tasks[i] = t;
+            t.execute();
+        }
+        for (Task t : tasks) {
+            t.get();
+        }
+        // the primary key guarantees the values are unique
+        ResultSet rs = stat.executeQuery("select count(*), max(id) from test");
+        rs.next();
+        assertEquals(count * tasks.length, rs.getInt(1));
+        assertEquals(count * tasks.length, rs.getInt(2));
+        conn.close();
+        conn = getConnection(url);
+        rs = conn.createStatement().executeQuery("call seq.nextval");
+        rs.next();
+        assertTrue(rs.getInt(1) > count * tasks.length);
+        conn.close();
+        deleteDb("concurrentSequence");
+    }
+
+    private void testConcurrentMetaData() throws Exception {
+        deleteDb("concurrentMetaData");
+        final String url = getURL("concurrentMetaData;MULTI_THREADED=1", true);
+        Connection conn = getConnection(url);
+        Task[] tasks = new Task[4];
+        for (int i = 0; i < tasks.length; i++) {
+            final int x = i;
+            Task t = new Task() {
+                @Override
+                public void call() throws Exception {
+                    Connection c2 = getConnection(url);
+                    Statement s2 = c2.createStatement();
+                    try {
+                        for (int j = 0; !stop; j++) {
+                            if (x % 2 == 0) {
+                                String name = "test" + x + "_" + j;
+                                s2.execute("create table " + name +
+                                        "(id int primary key, name varchar)");
+                                s2.execute("create index idx_" + name +
+                                        " on " + name + "(name)");
+                                s2.execute("create sequence seq_" + name);
+                                s2.execute("drop sequence seq_" + name);
+                                s2.execute("drop table " + name);
+                            } else {
+                                s2.executeQuery("select * from " +
+                                        "information_schema.tables").close();
+                                s2.executeQuery("select * from " +
+                                        "information_schema.indexes").close();
+                                s2.executeQuery("select * from " +
+                                        "information_schema.sequences").close();
+                                s2.executeQuery("select * from " +
+                                        "information_schema.sessions").close();
+                            }
+                        }
+                    } finally {
+                        c2.close();
+                    }
+                }
+            };
+            tasks[i] = t;
+            t.execute();
+        }
+        Thread.sleep(1000);
+        for (Task t : tasks) {
+            t.get();
+        }
+        ResultSet rs = conn.createStatement().executeQuery(
+                "select count(*) from information_schema.tables " +
+                "where table_schema = 'PUBLIC'");
+        rs.next();
+        assertEquals(0, rs.getInt(1));
+        conn.close();
+        deleteDb("concurrentMetaData");
+    }
+
+    private void testConcurrentTempResults() throws Exception {
+        deleteDb("concurrentTempResults");
+        final String url = getURL("concurrentTempResults;" +
+                "MULTI_THREADED=1;MAX_MEMORY_ROWS=100", true);
+        Connection conn = getConnection(url);
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, name varchar) " +
+                "as select x, 'n' || mod(x, 300) from system_range(1, 1000)");
+        final int count = getSize(10, 50);
+        Task[] tasks = new Task[4];
+        for (int i = 0; i < tasks.length; i++) {
+            Task t = new Task() {
+                @Override
+                public void call() throws Exception {
+                    Connection c2 = getConnection(url);
+                    Statement s2 = c2.createStatement();
+                    try {
+                        for (int j = 0; j < count; j++) {
+                            // the sorted and the distinct result are larger
+                            // than MAX_MEMORY_ROWS and are buffered to disk
+                            ResultSet rs = s2.executeQuery(
+                                    "select id from test order by name, id");
+                            int rows = 0;
+                            while (rs.next()) {
+                                rows++;
+                            }
+                            assertEquals(1000, rows);
+                            rs = s2.executeQuery(
+                                    "select distinct name from test");
+                            rows = 0;
+                            while (rs.next()) {
+                                rows++;
+                            }
+                            assertEquals(300, rows);
+                        }
+                    } finally {
+                        c2.close();
+                    }
+                }
+            };
+            tasks[i] = t;
+            t.execute();
+        }
+        for (Task t : tasks) {
+            t.get();
+        }
+        conn.close();
+        deleteDb("concurrentTempResults");
+    }
+
 }
@@ -12,6 +12,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Random;
 import java.util.TreeSet;
@@ -29,6 +30,8 @@ import org.h2.util.Task;
  */
 public class TestOptimizations extends TestBase {
 
+    private static int callCount;
+
     /**
      * Run just this test.
      *
@@ -47,6 +50,15 @@ public class TestOptimizations extends TestBase {
         testOrderByExpression();
         testGroupSubquery();
         testAnalyzeLob();
+        testAnalyzeHistogram();
+        testRangeRowCount();
+        testIndexRangeCountAndOffset();
+        testParallelQuery();
+        testBatchQuery("optimizations");
+        // tables of in-memory PageStore databases use a scan index
+        testBatchQuery("mem:optimizations;MV_STORE=FALSE");
+        testBatchQuery("mem:optimizations;MV_STORE=FALSE;MVCC=TRUE");
+        testCompileExpressions();
         testLike();
         testExistsSubquery();
         testQueryCacheConcurrentUse();
@@ -63,6 +75,9 @@ public class TestOptimizations extends TestBase {
         testInSelectJoin();
         testMinMaxNullOptimization();
         testUseIndexWhenAllColumnsNotInOrderBy();
+        testHashJoin();
+        testMergeJoin();
+        testSortLimit();
         if (config.networked) {
             return;
         }
@@ -79,6 +94,13 @@ public class TestOptimizations extends TestBase {
         testMinMaxCountOptimization(false);
         testOrderedIndexes();
         testConvertOrToIn();
+        testUnionAll();
+        testInSelectReuse();
+        testCorrelatedSubqueryCache();
+        testJoinOrderCache();
+        testLargeJoinOrder();
+        testCoveringIndex();
+        testDistinctPrefixScan();
         deleteDb("optimizations");
     }
 
@@ -189,6 +211,374 @@ public class TestOptimizations extends TestBase {
         conn.close();
     }
 
+    private void testAnalyzeHistogram() throws Exception {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations");
+        Statement stat = conn.createStatement();
+        // empty table
+        stat.execute("create table test(id int, name varchar)");
+        stat.execute("analyze");
+        ResultSet rs = stat.executeQuery("select histogram(id) from test");
+        rs.next();
+        assertEquals(0, ((Object[]) rs.getObject(1)).length);
+        stat.execute("drop table test");
+        stat.execute("create table test(id int primary key, a int, b varchar)");
+        stat.execute("create index idx_a on test(a)");
+        stat.execute("create index idx_b on test(b)");
+        // most rows have a = 1, the other values of a are unique
+        stat.execute("insert into test select x, " +
+                "case when x <= 9000 then 1 else x end, 'v' || mod(x, 10) " +
+                "from system_range(1, 10000)");
+        stat.execute("analyze");
+        rs = stat.executeQuery("script nodata table test");
+        rs.next();
+        rs.next();
+        assertContains(rs.getString(1), "A INT SELECTIVITY 10");
+        // the histograms are not stored with the column definitions
+        assertFalse(rs.getString(1).contains("HISTOGRAM"));
+        // the selectivity of A is higher, but 1 is a very common value
+        rs = stat.executeQuery("explain select * from test " +
+                "where a = 1 and b = 'v3'");
+        rs.next();
+        assertContains(rs.getString(1), "IDX_B");
+        rs = stat.executeQuery("explain select * from test " +
+                "where a = 9999 and b = 'v3'");
+        rs.next();
+        assertContains(rs.getString(1), "IDX_A");
+        rs = stat.executeQuery("explain select * from test " +
+                "where a < 5 and b = 'v3'");
+        rs.next();
+        assertContains(rs.getString(1), "IDX_B");
+        rs = stat.executeQuery("explain select * from test " +
+                "where a > 9990 and b = 'v3'");
+        rs.next();
+        assertContains(rs.getString(1), "IDX_A");
+        conn.close();
+        conn = getConnection("optimizations");
+        stat = conn.createStatement();
+        // after reopening, only the selectivity is known
+        rs = stat.executeQuery("explain select * from test " +
+                "where a in(1, 2) and b = 'v3'");
+        rs.next();
+        assertContains(rs.getString(1), "IDX_A");
+        stat.execute("analyze");
+        rs = stat.executeQuery("explain select * from test " +
+                "where a in(1, 2) and b = 'v3'");
+        rs.next();
+        assertContains(rs.getString(1), "IDX_B");
+        rs = stat.executeQuery("select count(*) from test " +
+                "where a = 1 and b = 'v3'");
+        rs.next();
+        assertEquals(900, rs.getInt(1));
+        stat.execute("drop table test");
+        conn.close();
+    }
+
+    private void testParallelQuery() throws Exception {
+        if (!config.mvStore) {
+            return;
+        }
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations;QUERY_THREADS=4");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, " +
+                "g int, v double, b varchar)");
+        stat.execute("insert into test select x, mod(x, 7), x * 1.5, " +
+                "case when x <= 25000 then 'a' else 'b' end " +
+                "from system_range(1, 50000)");
+        String[] queries = {
+                "select count(*), sum(id), min(b), max(b) from test",
+                "select g, count(v), avg(v), round(stddev_pop(v), 6), " +
+                "round(var_samp(v), 2) " +
+                "from test where v > 20 group by g order by g",
+                "select g + 1, bool_and(v > 10), bit_or(id) " +
+                "from test group by g having sum(v) > 0 order by 1",
+                "select b, count(*) from test group by b order by b",
+                "select count(*) from test where b = 'x'",
+                "select b, max(v) from test group by b " +
+                "order by sum(v) desc limit 1" };
+        String[] results = new String[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            results[i] = getResult(stat.executeQuery(queries[i]));
+        }
+        PreparedStatement prep = conn.prepareStatement(
+                "select g, count(*) from test where v > ? " +
+                "group by g order by g");
+        prep.setInt(1, 45000);
+        String paramResult = getResult(prep.executeQuery());
+        assertThrows(ErrorCode.MUST_GROUP_BY_COLUMN_1, stat).
+                executeQuery("select b, count(*) from test");
+        conn.close();
+        conn = getConnection("optimizations");
+        stat = conn.createStatement();
+        for (int i = 0; i < queries.length; i++) {
+            assertEquals(results[i],
+                    getResult(stat.executeQuery(queries[i])));
+        }
+        prep = conn.prepareStatement(
+                "select g, count(*) from test where v > ? " +
+                "group by g order by g");
+        prep.setInt(1, 45000);
+        assertEquals(paramResult, getResult(prep.executeQuery()));
+        stat.execute("drop table test");
+        conn.close();
+    }
+
+    private void testBatchQuery(String dbName) throws Exception {
+        deleteDb("optimizations");
+        Connection conn = getConnection(dbName);
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, " +
+                "a int, b varchar, c double)");
+        stat.execute("create memory table test2(a int, b varchar, c double)");
+        stat.execute("insert into test select x, " +
+                "case when mod(x, 7) = 0 then null else mod(x, 10) end, " +
+                "'b' || mod(x, 3), x / 4.0 from system_range(1, 5000)");
+        stat.execute("insert into test2 select a, b, c from test");
+        String[] conditions = { "", "where a > 3", "where a is null",
+                "where a > 2 and b = 'b1'", "where a = 1 or b = 'b2'",
+                "where a <> 0 and 10 / a > 2", "where a = 0 or 10 / a > 2",
+                "where a + 1 < c * 2 - 100", "where a is distinct from 3",
+                "where -a > -5 and b || 'x' = 'b0x'", "where 1 = 0" };
+        String select = "select count(*), count(a), sum(a), avg(c), " +
+                "min(b), max(a * 2), bool_and(a > 0), stddev_pop(c) ";
+        for (String table : new String[] { "test", "test2" }) {
+            for (String c : conditions) {
+                String sql = select + "from " + table + " " + c;
+                // a sample size disables reading the rows in blocks
+                String expected = getResult(stat.executeQuery(
+                        sql + " limit 1 sample_size 100000"));
+                assertEquals(sql, expected, getResult(stat.executeQuery(sql)));
+            }
+        }
+        assertThrows(ErrorCode.DIVISION_BY_ZERO_1, stat).
+                executeQuery("select count(*) from test where 10 / a > 2");
+        stat.execute("drop table test, test2");
+        conn.close();
+    }
+
+    private void testCompileExpressions() throws Exception {
+        deleteDb("optimizations");
+        Connection conn = getConnection(
+                "optimizations;COMPILE_EXPRESSIONS=2");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, " +
+                "a int, b bigint, c double)");
+        stat.execute("insert into test select x, " +
+                "case when mod(x, 7) = 0 then null else mod(x, 10) end, " +
+                "x * 1000000000, case when mod(x, 5) = 0 then null " +
+                "else x / 4.0 end from system_range(1, 100)");
+        String[] conditions = { "a > 3", "a is null", "c is not null",
+                "a > 2 and b < 50000000000", "a = 1 or c > 20",
+                "a <> 0 and 10 / a > 2", "a + b * 2 < c * 1000000000",
+                "-a > -5 and mod(a, 2) = 1", "not (a = 3) or b = 1" };
+        String select = "select id, a + b * 2, c * a, -a, b % (a + 1), " +
+                "a / 2 from test where id > ? and (";
+        for (String c : conditions) {
+            PreparedStatement prep = conn.prepareStatement(
+                    select + c + ") order by id");
+            String expected = null;
+            // the expressions are compiled on the second execution
+            for (int i = 0; i < 3; i++) {
+                // use a different parameter value each time,
+                // so that the result is not re-used
+                prep.setInt(1, -i);
+                String result = getResult(prep.executeQuery());
+                if (i == 0) {
+                    expected = result;
+                } else {
+                    assertEquals(c, expected, result);
+                }
+            }
+        }
+        PreparedStatement prep = conn.prepareStatement(
+                "select count(*) from test where id > ? and a > ?");
+        for (int i = 0; i < 3; i++) {
+            prep.setInt(1, -i);
+            prep.setInt(2, 2);
+            assertEquals("60", getResult(prep.executeQuery()).trim());
+        }
+        // the data type of a parameter changes
+        prep.setInt(1, 0);
+        prep.setDouble(2, 2.5);
+        assertEquals("60", getResult(prep.executeQuery()).trim());
+        prep = conn.prepareStatement(
+                "select a * 1000000000 from test where id > ?");
+        for (int i = 0; i < 3; i++) {
+            prep.setInt(1, -i);
+            assertThrows(ErrorCode.NUMERIC_VALUE_OUT_OF_RANGE_1, prep).
+                    executeQuery();
+        }
+        stat.execute("drop table test");
+        conn.close();
+    }
+
+    private static String getResult(ResultSet rs) throws SQLException {
+        StringBuilder buff = new StringBuilder();
+        int columnCount = rs.getMetaData().getColumnCount();
+        while (rs.next()) {
+            for (int i = 0; i < columnCount; i++) {
+                buff.append(rs.getString(i + 1)).append(' ');
+            }
+            buff.append('\n');
+        }
+        return buff.toString();
+    }
+
+    private void testIndexRangeCountAndOffset() throws Exception {
+        if (!config.mvStore) {
+            return;
+        }
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, " +
+                "a int, b varchar, c int)");
+        stat.execute("create index idx_a on test(a)");
+        stat.execute("create index idx_b_c on test(b, c desc)");
+        ResultSet rs;
+        // the maps of the new table were not changed yet
+        assertSingleValue(stat, "select count(*) from test where a = 1", 0);
+        assertSingleValue(stat, "select count(*) from test where id > 1", 0);
+        rs = stat.executeQuery("select * from test " +
+                "order by id limit 1 offset 5");
+        assertFalse(rs.next());
+        rs = stat.executeQuery("select * from test where a > 1 " +
+                "order by a limit 1 offset 5");
+        assertFalse(rs.next());
+        // the rows are committed, but not yet stored
+        stat.execute("create table test2(id int primary key, a int)");
+        stat.execute("create index on test2(a)");
+        stat.execute("insert into test2 select x, mod(x, 3) " +
+                "from system_range(1, 10)");
+        assertSingleValue(stat, "select count(*) from test2 where a = 1", 4);
+        rs = stat.executeQuery("select id from test2 where a = 1 " +
+                "order by a limit 5 offset 3");
+        assertTrue(rs.next());
+        assertEquals(10, rs.getInt(1));
+        assertFalse(rs.next());
+        stat.execute("drop table test2");
+        stat.execute("insert into test select x, " +
+                "case when mod(x, 7) = 0 then null else mod(x, 100) end, " +
+                "'b' || mod(x, 3), " +
+                "case when mod(x, 11) = 0 then null else x end " +
+                "from system_range(1, 1000)");
+        String[] conditions = {
+                "", "where id between 100 and 200", "where id > 995",
+                "where id < 3", "where id > 2000", "where id = 10",
+                "where a between 10 and 20", "where a > 95", "where a >= 95",
+                "where a < 5", "where a is null", "where a = 50",
+                "where a > 50 and a < 40", "where a = 50 and a = 51",
+                "where a = null", "where a < 10.5", "where b = 'b1'",
+                "where b = 'b1' and c > 500", "where b = 'b2' and c <= 10",
+                "where b = 'b0' and c is null", "where b >= 'b1'",
+                "where b < 'b1' and c > 10", "where a > 10 or a < 5" };
+        for (String c : conditions) {
+            rs = stat.executeQuery("select count(id) from test " + c);
+            rs.next();
+            String expected = rs.getString(1);
+            assertResult(expected, stat, "select count(*) from test " + c);
+        }
+        PreparedStatement prep = conn.prepareStatement(
+                "select count(*) from test where a > ? and a <= ?");
+        prep.setInt(1, 20);
+        prep.setInt(2, 30);
+        rs = prep.executeQuery();
+        rs.next();
+        assertEquals(86, rs.getInt(1));
+        String[] orders = { "id", "a", "b, c desc" };
+        for (String c : conditions) {
+            for (String order : orders) {
+                String sql = "select id from test " + c + " order by " + order;
+                rs = stat.executeQuery("explain " + sql);
+                rs.next();
+                if (!rs.getString(1).contains("index sorted")) {
+                    // rows with the same sort key could be in any order
+                    continue;
+                }
+                ArrayList<Integer> list = New.arrayList();
+                rs = stat.executeQuery(sql);
+                while (rs.next()) {
+                    list.add(rs.getInt(1));
+                }
+                for (int offset : new int[] { 1, 5, 100, 2000 }) {
+                    rs = stat.executeQuery(sql + " limit 3 offset " + offset);
+                    for (int i = offset; i < offset + 3 && i < list.size(); i++) {
+                        assertTrue(rs.next());
+                        assertEquals(list.get(i).intValue(), rs.getInt(1));
+                    }
+                    assertFalse(rs.next());
+                }
+            }
+        }
+        // the rows before the offset are not read
+        rs = stat.executeQuery("explain analyze select * from test " +
+                "where a >= 10 order by a limit 5 offset 500");
+        rs.next();
+        assertContains(rs.getString(1), "scanCount: 5 */");
+        rs = stat.executeQuery("explain analyze select count(*) from test " +
+                "where b = 'b1' and c > 500");
+        rs.next();
+        assertFalse(rs.getString(1).contains("scanCount"));
+        // uncommitted changes are seen
+        conn.setAutoCommit(false);
+        stat.execute("insert into test values(1001, 10, 'b1', 1001)");
+        assertSingleValue(stat,
+                "select count(*) from test where b = 'b1' and c > 500", 153);
+        rs = stat.executeQuery("select id from test order by id limit 1 offset 1000");
+        assertTrue(rs.next());
+        assertEquals(1001, rs.getInt(1));
+        conn.rollback();
+        conn.setAutoCommit(true);
+        assertSingleValue(stat,
+                "select count(*) from test where b = 'b1' and c > 500", 152);
+        stat.execute("drop table test");
+        conn.close();
+    }
+
+    private void testRangeRowCount() throws Exception {
+        if (!config.mvStore) {
+            return;
+        }
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, a int, b int)");
+        stat.execute("create index idx_a on test(a)");
+        stat.execute("create index idx_b on test(b desc)");
+        stat.execute("insert into test select x, x, 10001 - x " +
+                "from system_range(1, 10000)");
+        // 1000 rows with a > 9000, 500 rows with b > 9500
+        ResultSet rs = stat.executeQuery("explain select * from test " +
+                "where a > 9000 and b > 9500");
+        rs.next();
+        assertContains(rs.getString(1), "IDX_B");
+        rs = stat.executeQuery("explain select * from test " +
+                "where a between 9000 and 9010 and b > 9500");
+        rs.next();
+        assertContains(rs.getString(1), "IDX_A");
+        rs = stat.executeQuery("explain select * from test " +
+                "where id > 9995 and a > 5000");
+        rs.next();
+        assertContains(rs.getString(1), "PRIMARY_KEY");
+        rs = stat.executeQuery("explain select * from test " +
+                "where id < 5000 and a < 10");
+        rs.next();
+        assertContains(rs.getString(1), "IDX_A");
+        // now only 200 rows with a > 9000
+        stat.execute("delete from test where id between 9001 and 9800");
+        rs = stat.executeQuery("explain select * from test " +
+                "where a > 9000 and b > 9500");
+        rs.next();
+        assertContains(rs.getString(1), "IDX_A");
+        rs = stat.executeQuery("select count(*) from test " +
+                "where a > 9000 and b > 9500");
+        rs.next();
+        assertEquals(0, rs.getInt(1));
+        stat.execute("drop table test");
+        conn.close();
+    }
+
     private void testLike() throws Exception {
         Connection conn = getConnection("optimizations");
         Statement stat = conn.createStatement();
@@ -545,6 +935,222 @@ public class TestOptimizations extends TestBase {
     }
 
 
+    private void testHashJoin() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations");
+        Statement stat = conn.createStatement();
+        stat.execute("create table a(id int primary key, b int)");
+        stat.execute("create table b(x int, name varchar)");
+        stat.execute("insert into a select x, mod(x, 10) from system_range(1, 100)");
+        stat.execute("insert into b select mod(x, 20), 'n' || x " +
+                "from system_range(1, 1000)");
+        stat.execute("insert into b values(null, 'null')");
+        stat.execute("analyze");
+        ResultSet rs = stat.executeQuery("explain select count(*) " +
+                "from a inner join b on a.b = b.x");
+        rs.next();
+        assertContains(rs.getString(1), "HASH JOIN ON");
+        rs = stat.executeQuery("select count(*), sum(a.id), min(b.name) " +
+                "from a inner join b on a.b = b.x");
+        rs.next();
+        assertEquals(5000, rs.getInt(1));
+        assertEquals(252500, rs.getInt(2));
+        assertEquals("n1", rs.getString(3));
+        rs = stat.executeQuery("select count(*) from a " +
+                "left join b on a.b = b.x and b.x < 5");
+        rs.next();
+        assertEquals(2550, rs.getInt(1));
+        // the hash table is built again for each query
+        stat.execute("delete from b where x = 0");
+        rs = stat.executeQuery("select count(*) from a inner join b on a.b = b.x");
+        rs.next();
+        assertEquals(4500, rs.getInt(1));
+        stat.execute("drop table a, b");
+        conn.close();
+    }
+
+    private void testMergeJoin() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations");
+        Statement stat = conn.createStatement();
+        stat.execute("create table parent(id int primary key, name varchar)");
+        stat.execute("create table child(id int primary key, pid int)");
+        stat.execute("create index idx_child_pid on child(pid)");
+        stat.execute("insert into parent select x * 3, 'p' || x " +
+                "from system_range(1, 500)");
+        stat.execute("insert into child select x, mod(x * 7, 1000) " +
+                "from system_range(1, 2000)");
+        stat.execute("insert into child values(3000, null)");
+        // rows read in the wrong order
+        stat.execute("create table other(id int not null, name varchar)");
+        stat.execute("insert into other select 2000 - x * 2, 'o' || x " +
+                "from system_range(1, 500)");
+        stat.execute("alter table other add primary key(id)");
+        stat.execute("analyze");
+        assertMergeJoinResult(stat, "select count(*), sum(c.id), max(p.name) " +
+                "from parent p inner join child c on c.pid = p.id%s");
+        assertMergeJoinResult(stat, "select count(*), sum(c.id), max(p.name) " +
+                "from parent p left join child c on c.pid = p.id%s");
+        assertMergeJoinResult(stat, "select count(*), sum(c.id), max(p.name) " +
+                "from parent p left join child c on c.pid = p.id%s " +
+                "where p.id between 100 and 200");
+        assertMergeJoinResult(stat, "select count(*), sum(c.id), max(o.name) " +
+                "from other o inner join child c on c.pid = o.id%s");
+        stat.execute("drop table parent, child, other");
+        conn.close();
+    }
+
+    private void assertMergeJoinResult(Statement stat, String sql)
+            throws SQLException {
+        // the same query, but the join condition can't use a merge join
+        ResultSet rs = stat.executeQuery(String.format(sql, " + 0"));
+        rs.next();
+        String expected = rs.getString(1) + " " + rs.getString(2) + " " +
+                rs.getString(3);
+        rs = stat.executeQuery(String.format(sql, ""));
+        rs.next();
+        assertEquals(expected, rs.getString(1) + " " + rs.getString(2) +
+                " " + rs.getString(3));
+    }
+
+    private void testSortLimit() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, v int)");
+        stat.execute("insert into test select x, mod(x * 7919, 10007) " +
+                "from system_range(1, 10000)");
+        int[] values = new int[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (int) ((i + 1) * 7919L % 10007);
+        }
+        Arrays.sort(values);
+        ResultSet rs = stat.executeQuery("select v from test " +
+                "order by v limit 10 offset 20");
+        for (int i = 20; i < 30; i++) {
+            assertTrue(rs.next());
+            assertEquals(values[i], rs.getInt(1));
+        }
+        assertFalse(rs.next());
+        rs = stat.executeQuery("select v from test order by v desc limit 3");
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(rs.next());
+            assertEquals(values[values.length - i], rs.getInt(1));
+        }
+        assertFalse(rs.next());
+        int[] counts = new int[100];
+        for (int v : values) {
+            counts[v % 100]++;
+        }
+        rs = stat.executeQuery("select mod(v, 100) m, count(*) c from test " +
+                "group by m order by c, m limit 5 offset 2");
+        int[] sorted = new int[100];
+        for (int m = 0; m < 100; m++) {
+            sorted[m] = counts[m] * 100 + m;
+        }
+        Arrays.sort(sorted);
+        for (int i = 2; i < 7; i++) {
+            assertTrue(rs.next());
+            assertEquals(sorted[i] % 100, rs.getInt(1));
+            assertEquals(sorted[i] / 100, rs.getInt(2));
+        }
+        assertFalse(rs.next());
+        stat.execute("drop table test");
+        conn.close();
+    }
+
+    private void testUnionAll() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations");
+        Statement stat = conn.createStatement();
+        stat.execute("create alias count_call for \"" +
+                getClass().getName() + ".countCall\"");
+        ResultSet rs;
+        rs = stat.executeQuery("select x from system_range(1, 5) " +
+                "union all select x from system_range(11, 15) " +
+                "limit 4 offset 3");
+        for (int x : new int[] { 4, 5, 11, 12 }) {
+            assertTrue(rs.next());
+            assertEquals(x, rs.getInt(1));
+        }
+        assertFalse(rs.next());
+        rs = stat.executeQuery("select x from system_range(1, 2) " +
+                "union all select 1.5 union all select x from system_range(1, 2) " +
+                "limit 0");
+        assertFalse(rs.next());
+        rs = stat.executeQuery("select x from system_range(1, 2) " +
+                "union all select 1.5");
+        assertEquals(Types.DECIMAL, rs.getMetaData().getColumnType(1));
+        for (String x : new String[] { "1", "2", "1.5" }) {
+            assertTrue(rs.next());
+            assertEquals(x, rs.getBigDecimal(1).toString());
+        }
+        assertFalse(rs.next());
+
+        // only the rows within the limit are computed
+        callCount = 0;
+        rs = stat.executeQuery("select count_call(x) from system_range(1, 100) " +
+                "union all select count_call(x) from system_range(1, 100) " +
+                "limit 10");
+        for (int i = 0; i < 10; i++) {
+            assertTrue(rs.next());
+        }
+        assertFalse(rs.next());
+        assertEquals(10, callCount);
+
+        if (config.mvStore) {
+            stat.execute("set lazy_query_execution 1");
+            callCount = 0;
+            rs = stat.executeQuery(
+                    "select count_call(x) from system_range(1, 100) " +
+                    "union all select count_call(x) from system_range(1, 100)");
+            for (int i = 1; i <= 105; i++) {
+                assertTrue(rs.next());
+                assertEquals(i > 100 ? i - 100 : i, rs.getInt(1));
+            }
+            assertEquals(105, callCount);
+            rs.close();
+            stat.execute("set lazy_query_execution 0");
+        }
+        conn.close();
+    }
+
+    private void testInSelectReuse() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations");
+        Statement stat = conn.createStatement();
+        stat.execute("create alias count_call deterministic for \"" +
+                getClass().getName() + ".countCall\"");
+        stat.execute("create table test(id int primary key)");
+        stat.execute("insert into test select x from system_range(1, 10)");
+        stat.execute("set optimize_reuse_results 0");
+        ResultSet rs;
+
+        // the subquery is only evaluated once per statement
+        callCount = 0;
+        rs = stat.executeQuery("select count(*) from system_range(1, 1000) " +
+                "where x in (select count_call(id) from test)");
+        rs.next();
+        assertEquals(10, rs.getInt(1));
+        assertEquals(10, callCount);
+
+        // but again in the next statement
+        stat.execute("insert into test values(11)");
+        rs = stat.executeQuery("select count(*) from system_range(1, 1000) " +
+                "where x in (select count_call(id) from test)");
+        rs.next();
+        assertEquals(11, rs.getInt(1));
+        assertEquals(21, callCount);
+
+        // correlated subqueries are evaluated for each row
+        rs = stat.executeQuery("select count(*) from system_range(1, 10) a " +
+                "where 3 in (select id from test where id <= a.x)");
+        rs.next();
+        assertEquals(8, rs.getInt(1));
+        stat.execute("set optimize_reuse_results 1");
+        conn.close();
+    }
+
     private void testOptimizeInJoinSelect() throws SQLException {
         deleteDb("optimizations");
         Connection conn = getConnection("optimizations");
@@ -575,6 +1181,269 @@ public class TestOptimizations extends TestBase {
         return rs;
     }
 
+    private void testCoveringIndex() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, a int, b int, " +
+                "c varchar) as select x, mod(x, 100), x, space(100) " +
+                "from system_range(1, 1000)");
+        stat.execute("create index idx_a_c on test(a, c)");
+        stat.execute("create index idx_a on test(a) include(b)");
+        ResultSet rs;
+        rs = stat.executeQuery("select sql from information_schema.indexes " +
+                "where index_name = 'IDX_A'");
+        rs.next();
+        assertContains(rs.getString(1), "INCLUDE(B)");
+        if (config.mvStore) {
+            // prefer the index that contains all columns that are read
+            rs = stat.executeQuery("explain select b from test where a = 5");
+            rs.next();
+            assertContains(rs.getString(1), "IDX_A:");
+            rs = stat.executeQuery("explain select c from test where a = 5");
+            rs.next();
+            assertContains(rs.getString(1), "IDX_A_C:");
+        }
+        rs = stat.executeQuery("select sum(b) from test where a = 5");
+        rs.next();
+        assertEquals(5 + 105 + 205 + 305 + 405 + 505 + 605 + 705 + 805 + 905,
+                rs.getInt(1));
+        stat.execute("update test set b = -b where id = 105");
+        rs = stat.executeQuery("select sum(b) from test where a = 5");
+        rs.next();
+        assertEquals(5 - 105 + 205 + 305 + 405 + 505 + 605 + 705 + 805 + 905,
+                rs.getInt(1));
+        assertThrows(ErrorCode.COLUMN_IS_REFERENCED_1, stat).
+                execute("alter table test drop column b");
+        if (!config.memory) {
+            conn.close();
+            conn = getConnection("optimizations");
+            stat = conn.createStatement();
+            rs = stat.executeQuery("select b from test where a = 5 and id < 200");
+            assertTrue(rs.next());
+            assertEquals(5, rs.getInt(1));
+            assertTrue(rs.next());
+            assertEquals(-105, rs.getInt(1));
+            assertFalse(rs.next());
+        }
+        stat.execute("drop table test");
+        conn.close();
+    }
+
+    private void testDistinctPrefixScan() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, a int, b int, " +
+                "c int) as select x, mod(x, 3), mod(x, 2), " +
+                "case when x > 10 then x end from system_range(1, 1000)");
+        stat.execute("create index idx_a_b_c on test(a, b, c)");
+        stat.execute("analyze");
+        ResultSet rs;
+        rs = stat.executeQuery("explain select distinct b, a from test");
+        rs.next();
+        assertContains(rs.getString(1), "/* distinct */");
+        rs = stat.executeQuery("select distinct b, a from test order by a, b");
+        for (int a = 0; a < 3; a++) {
+            for (int b = 0; b < 2; b++) {
+                assertTrue(rs.next());
+                assertEquals(b, rs.getInt(1));
+                assertEquals(a, rs.getInt(2));
+            }
+        }
+        assertFalse(rs.next());
+
+        // MIN of the next column of the index, ignoring NULL
+        String sql = "select a, b, min(c) from test group by a, b order by a, b";
+        rs = stat.executeQuery("explain " + sql);
+        rs.next();
+        assertContains(rs.getString(1), "/* distinct */");
+        rs = stat.executeQuery(sql);
+        int[] expected = { 12, 15, 16, 13, 14, 11 };
+        for (int i = 0; i < expected.length; i++) {
+            assertTrue(rs.next());
+            assertEquals(i / 2, rs.getInt(1));
+            assertEquals(i % 2, rs.getInt(2));
+            assertEquals(expected[i], rs.getInt(3));
+        }
+        assertFalse(rs.next());
+        rs = stat.executeQuery("select a, min(b) from test group by a");
+        assertTrue(rs.next());
+        assertEquals(0, rs.getInt(2));
+
+        // other aggregates and columns are not supported
+        rs = stat.executeQuery("explain select a, max(b) from test group by a");
+        rs.next();
+        assertFalse(rs.getString(1).contains("/* distinct */"));
+        assertThrows(ErrorCode.MUST_GROUP_BY_COLUMN_1, stat).
+                executeQuery("select a, b from test group by a");
+
+        // the HAVING condition is applied
+        stat.execute("create table test2(id int primary key, f boolean) " +
+                "as select x, mod(x, 2) = 0 from system_range(1, 100)");
+        stat.execute("create index idx_f on test2(f)");
+        stat.execute("analyze");
+        rs = stat.executeQuery("select f from test2 group by f having f");
+        assertTrue(rs.next());
+        assertTrue(rs.getBoolean(1));
+        assertFalse(rs.next());
+        conn.close();
+    }
+
+    private void testLargeJoinOrder() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations");
+        Statement stat = conn.createStatement();
+        // a star schema with 9 dimension tables
+        StringBuilder fact = new StringBuilder(
+                "create table f(id int primary key");
+        StringBuilder from = new StringBuilder("select count(*) from f");
+        StringBuilder where = new StringBuilder(" where d5.name = 'n7'");
+        for (int i = 1; i < 10; i++) {
+            stat.execute("create table d" + i +
+                    "(id int primary key, name varchar)");
+            stat.execute("insert into d" + i +
+                    " select x, 'n' || x from system_range(1, 100)");
+            fact.append(", d").append(i).append(" int");
+            from.append(", d").append(i);
+            where.append(" and f.d").append(i).
+                    append(" = d").append(i).append(".id");
+        }
+        stat.execute(fact.append(")").toString());
+        stat.execute("insert into f select x, " +
+                "x, x, x, x, mod(x, 100) + 1, x, x, x, x " +
+                "from system_range(1, 100)");
+        for (int i = 1; i < 10; i++) {
+            stat.execute("create index f_d" + i + " on f(d" + i + ")");
+        }
+        stat.execute("create index d5_name on d5(name)");
+        stat.execute("analyze");
+        String sql = from.append(where).toString();
+        ResultSet rs = stat.executeQuery("explain " + sql);
+        rs.next();
+        String plan = rs.getString(1);
+        assertContains(plan,
+                "FROM PUBLIC.D5\n    /* PUBLIC.D5_NAME: NAME = 'n7' */");
+        assertContains(plan,
+                "INNER JOIN PUBLIC.F\n    /* PUBLIC.F_D5: D5 = D5.ID */");
+        assertSingleValue(stat, sql, 1);
+        conn.close();
+    }
+
+    private void testJoinOrderCache() throws SQLException {
+        deleteDb("optimizations");
+        String url = "optimizations;JOIN_ORDER_CACHE_SIZE=100";
+        Connection conn = getConnection(url);
+        Connection conn2 = getConnection(url);
+        Statement stat = conn.createStatement();
+        Statement stat2 = conn2.createStatement();
+        stat.execute("create table a(id int primary key) " +
+                "as select x from system_range(1, 10)");
+        stat.execute("create table b(id int primary key, a_id int) " +
+                "as select x, mod(x, 10) + 1 from system_range(1, 100)");
+        stat.execute("create table c(id int primary key, b_id int) " +
+                "as select x, mod(x, 100) + 1 from system_range(1, 1000)");
+        String sql = "select count(*) from c, b, a " +
+                "where b.a_id = a.id and c.b_id = b.id";
+        ResultSet rs;
+
+        // the other session uses the same join order
+        rs = stat.executeQuery("explain " + sql);
+        rs.next();
+        String plan = rs.getString(1);
+        rs = stat2.executeQuery("explain " + sql);
+        rs.next();
+        assertEquals(plan, rs.getString(1));
+        rs = stat2.executeQuery(sql);
+        rs.next();
+        assertEquals(1000, rs.getInt(1));
+
+        // but a new plan is calculated after the meta data changed
+        stat.execute("create index idx_c_b on c(b_id)");
+        rs = stat2.executeQuery("explain " + sql);
+        rs.next();
+        assertContains(rs.getString(1), "IDX_C_B");
+        rs = stat2.executeQuery(sql);
+        rs.next();
+        assertEquals(1000, rs.getInt(1));
+        conn2.close();
+        conn.close();
+    }
+
+    private void testCorrelatedSubqueryCache() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations");
+        Statement stat = conn.createStatement();
+        stat.execute("create alias count_call deterministic for \"" +
+                getClass().getName() + ".countCall\"");
+        stat.execute("create table test(id int primary key, grp int)");
+        stat.execute("insert into test select x, mod(x, 3) " +
+                "from system_range(1, 100)");
+        ResultSet rs;
+
+        // the subquery is evaluated once for each distinct outer value
+        callCount = 0;
+        rs = stat.executeQuery("select sum((select count_call(count(*)) " +
+                "from test t where t.grp = o.grp)) from test o");
+        rs.next();
+        assertEquals(3334, rs.getInt(1));
+        assertEquals(3, callCount);
+
+        callCount = 0;
+        rs = stat.executeQuery("select count(*) from test o where exists(" +
+                "select 1 from test t where t.id = o.grp " +
+                "and count_call(t.id) > 0)");
+        rs.next();
+        assertEquals(67, rs.getInt(1));
+        assertEquals(2, callCount);
+
+        // the cached results are not used in the next statement
+        stat.execute("update test set grp = 0 where id <= 2");
+        callCount = 0;
+        rs = stat.executeQuery("select sum((select count_call(count(*)) " +
+                "from test t where t.grp = o.grp)) from test o");
+        rs.next();
+        assertEquals(3338, rs.getInt(1));
+        assertEquals(3, callCount);
+
+        // non-deterministic subqueries are evaluated for each row
+        callCount = 0;
+        rs = stat.executeQuery("select count(*) from test o where exists(" +
+                "select 1 from test t where t.id = o.grp " +
+                "and count_call(t.id) > rand())");
+        rs.next();
+        assertEquals(65, rs.getInt(1));
+        assertEquals(65, callCount);
+
+        // values that are equal when ignoring the case are different keys
+        stat.execute("create table o(id int primary key, " +
+                "name varchar_ignorecase)");
+        stat.execute("insert into o values(1, 'abc'), (2, 'ABC'), " +
+                "(3, 'Abc')");
+        stat.execute("create table d(id int)");
+        stat.execute("insert into d values(1)");
+        rs = stat.executeQuery("select o.id, (select o.name || '!' from d) " +
+                "from o order by o.id");
+        rs.next();
+        assertEquals("abc!", rs.getString(2));
+        rs.next();
+        assertEquals("ABC!", rs.getString(2));
+        rs.next();
+        assertEquals("Abc!", rs.getString(2));
+        conn.close();
+    }
+
+    /**
+     * This method is called via reflection from the database.
+     *
+     * @param x the value
+     * @return the value
+     */
+    public static int countCall(int x) {
+        callCount++;
+        return x;
+    }
+
     private void testOptimizeInJoin() throws SQLException {
         deleteDb("optimizations");
         Connection conn = getConnection("optimizations");
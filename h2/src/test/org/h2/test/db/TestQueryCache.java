@@ -18,6 +18,8 @@ import org.h2.test.TestBase;
  */
 public class TestQueryCache extends TestBase {
 
+    private static int callCount;
+
     /**
      * Run just this test.
      *
@@ -32,6 +34,8 @@ public class TestQueryCache extends TestBase {
         deleteDb("queryCache");
         test1();
         testClearingCacheWithTableStructureChanges();
+        testSharedResultCache();
+        testParameterizeLiterals();
         deleteDb("queryCache");
     }
 
@@ -81,4 +85,143 @@ public class TestQueryCache extends TestBase {
                 prepareStatement("SELECT * FROM TEST");
         conn.close();
     }
+
+    private void testSharedResultCache() throws Exception {
+        deleteDb("queryCache");
+        String url = "queryCache;SHARED_RESULT_CACHE_SIZE=1024";
+        Connection conn = getConnection(url);
+        Connection conn2 = getConnection(url);
+        Statement stat = conn.createStatement();
+        Statement stat2 = conn2.createStatement();
+        stat.execute("create alias count_call deterministic for \"" +
+                getClass().getName() + ".countCall\"");
+        stat.execute("create table test(id int primary key, v int) " +
+                "as select x, x from system_range(1, 10)");
+        String sql = "select sum(count_call(v)) from test";
+        ResultSet rs;
+
+        // the result is computed by the first session only
+        callCount = 0;
+        rs = stat.executeQuery(sql);
+        rs.next();
+        assertEquals(55, rs.getInt(1));
+        assertEquals(10, callCount);
+        rs = stat2.executeQuery(sql);
+        rs.next();
+        assertEquals(55, rs.getInt(1));
+        assertEquals(10, callCount);
+
+        // the parameter values are part of the key
+        PreparedStatement prep = conn.prepareStatement(sql + " where id < ?");
+        PreparedStatement prep2 = conn2.prepareStatement(sql + " where id < ?");
+        prep.setInt(1, 5);
+        rs = prep.executeQuery();
+        rs.next();
+        assertEquals(10, rs.getInt(1));
+        assertEquals(14, callCount);
+        prep2.setInt(1, 5);
+        rs = prep2.executeQuery();
+        rs.next();
+        assertEquals(10, rs.getInt(1));
+        assertEquals(14, callCount);
+        prep2.setInt(1, 6);
+        rs = prep2.executeQuery();
+        rs.next();
+        assertEquals(15, rs.getInt(1));
+        assertEquals(19, callCount);
+
+        // modifying the table invalidates the result
+        stat.execute("update test set v = v + 1 where id = 1");
+        rs = stat2.executeQuery(sql);
+        rs.next();
+        assertEquals(56, rs.getInt(1));
+        assertEquals(29, callCount);
+
+        // uncommitted changes are only visible to the session itself
+        conn2.setAutoCommit(false);
+        stat2.execute("update test set v = v + 1 where id = 1");
+        rs = stat2.executeQuery(sql);
+        rs.next();
+        assertEquals(57, rs.getInt(1));
+        conn2.rollback();
+        rs = stat2.executeQuery(sql);
+        rs.next();
+        assertEquals(56, rs.getInt(1));
+        conn2.setAutoCommit(true);
+        conn2.close();
+
+        // the rows of system tables depend on the user
+        stat.execute("create user test_user password 'x'");
+        conn2 = getConnection(url, "test_user", getPassword("x"));
+        sql = "select count(*) from information_schema.users";
+        rs = stat.executeQuery(sql);
+        rs.next();
+        assertEquals(2, rs.getInt(1));
+        rs = conn2.createStatement().executeQuery(sql);
+        rs.next();
+        assertEquals(1, rs.getInt(1));
+        conn2.close();
+        conn.close();
+    }
+
+    private void testParameterizeLiterals() throws Exception {
+        deleteDb("queryCache");
+        Connection conn = getConnection(
+                "queryCache;QUERY_CACHE_SIZE=10;PARAMETERIZE_LITERALS=TRUE");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, name varchar) " +
+                "as select x, 'n' || x from system_range(1, 10)");
+        ResultSet rs;
+        for (int i = 1; i <= 10; i++) {
+            rs = stat.executeQuery("select name from test where id = " + i);
+            assertTrue(rs.next());
+            assertEquals("n" + i, rs.getString(1));
+            assertFalse(rs.next());
+        }
+        rs = stat.executeQuery("select id from test where name = 'n''3'");
+        assertFalse(rs.next());
+        rs = stat.executeQuery("select id from test where name = 'n3'");
+        assertTrue(rs.next());
+        assertEquals(3, rs.getInt(1));
+
+        // the replaced literals are not visible as parameters
+        PreparedStatement prep = conn.prepareStatement(
+                "select id from test where id > 8");
+        assertEquals(0, prep.getParameterMetaData().getParameterCount());
+        rs = prep.executeQuery();
+        assertTrue(rs.next());
+        assertEquals(9, rs.getInt(1));
+        prep = conn.prepareStatement("select id from test where id > ?");
+        assertEquals(1, prep.getParameterMetaData().getParameterCount());
+        prep.setInt(1, 9);
+        rs = prep.executeQuery();
+        assertTrue(rs.next());
+        assertEquals(10, rs.getInt(1));
+        assertFalse(rs.next());
+
+        // literals in the select list and constant conditions are kept
+        rs = stat.executeQuery("select 1 from test where 1 = 0");
+        assertFalse(rs.next());
+        rs = stat.executeQuery("select 'x' from test where id = 2");
+        assertTrue(rs.next());
+        assertEquals("'x'", rs.getMetaData().getColumnLabel(1));
+        assertEquals(1, stat.executeUpdate("update test set name = 'x' " +
+                "where id = 2"));
+        assertEquals(1, stat.executeUpdate("delete from test where id = 2"));
+        rs = stat.executeQuery("select count(*) from test where id = 2");
+        rs.next();
+        assertEquals(0, rs.getInt(1));
+        conn.close();
+    }
+
+    /**
+     * This method is called via reflection from the database.
+     *
+     * @param x the value
+     * @return the value
+     */
+    public static int countCall(int x) {
+        callCount++;
+        return x;
+    }
 }
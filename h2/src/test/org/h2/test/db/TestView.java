@@ -13,6 +13,7 @@ import java.sql.Statement;
 
 import org.h2.api.ErrorCode;
 import org.h2.test.TestBase;
+import org.h2.util.Task;
 
 /**
  * Test for views.
@@ -31,7 +32,7 @@ public class TestView extends TestBase {
     }
 
     @Override
-    public void test() throws SQLException {
+    public void test() throws Exception {
         deleteDb("view");
 
         testInnerSelectWithRownum();
@@ -48,6 +49,10 @@ public class TestView extends TestBase {
         testReferenceView();
         testViewAlterAndCommandCache();
         testViewConstraintFromColumnExpression();
+        testMaterializedView();
+        testIncrementalMaterializedView();
+        testMaterializedViewRename();
+        testMaterializedViewConcurrentGroups();
         deleteDb("view");
     }
 
@@ -319,4 +324,199 @@ public class TestView extends TestBase {
         conn.close();
         deleteDb("view");
     }
+
+    private void testMaterializedView() throws SQLException {
+        deleteDb("view");
+        Connection conn = getConnection("view");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, name varchar)");
+        stat.execute("create table detail(id int, test_id int)");
+        stat.execute("insert into test values(1, 'a'), (2, 'b')");
+        stat.execute("insert into detail values(1, 1), (2, 1), (3, 2)");
+        stat.execute("create materialized view v as " +
+                "select t.name, d.id from test t join detail d " +
+                "on t.id = d.test_id");
+        assertSingleValue(stat, "select count(*) from v", 3);
+        // rows are only re-computed when refreshing the view
+        stat.execute("insert into detail values(4, 2)");
+        assertSingleValue(stat, "select count(*) from v", 3);
+        stat.execute("refresh materialized view v");
+        assertSingleValue(stat, "select count(*) from v", 4);
+        assertThrows(ErrorCode.FEATURE_NOT_SUPPORTED_1, stat).
+                execute("insert into v values('c', 5)");
+        assertThrows(ErrorCode.FEATURE_NOT_SUPPORTED_1, stat).
+                execute("delete from v");
+        assertThrows(ErrorCode.FEATURE_NOT_SUPPORTED_1, stat).
+                execute("create materialized view v2 incremental as " +
+                "select t.name, count(*) from test t join detail d " +
+                "on t.id = d.test_id group by t.name");
+        assertThrows(ErrorCode.VIEW_NOT_FOUND_1, stat).
+                execute("refresh materialized view test");
+        assertThrows(ErrorCode.CANNOT_DROP_2, stat).
+                execute("drop table detail restrict");
+        stat.execute("create index idx_v_name on v(name)");
+        if (!config.memory) {
+            conn.close();
+            conn = getConnection("view");
+            stat = conn.createStatement();
+            assertSingleValue(stat, "select count(*) from v", 4);
+            stat.execute("insert into detail values(5, 2)");
+            stat.execute("refresh materialized view v");
+            assertSingleValue(stat,
+                    "select count(*) from v where name = 'b'", 3);
+        }
+        stat.execute("drop table detail cascade");
+        assertThrows(ErrorCode.TABLE_OR_VIEW_NOT_FOUND_1, stat).
+                execute("select * from v");
+        stat.execute("drop table test");
+        conn.close();
+    }
+
+    private void testIncrementalMaterializedView() throws SQLException {
+        deleteDb("view");
+        Connection conn = getConnection("view");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, " +
+                "category int, amount decimal)");
+        stat.execute("insert into test select x, mod(x, 5), x / 3 " +
+                "from system_range(1, 100)");
+        String query = "select category, count(*) c, sum(amount) s, " +
+                "count(amount) n from test where amount < 30 " +
+                "group by category";
+        assertThrows(ErrorCode.FEATURE_NOT_SUPPORTED_1, stat).
+                execute("create materialized view v incremental as " +
+                "select category, sum(amount) from test group by category");
+        assertThrows(ErrorCode.FEATURE_NOT_SUPPORTED_1, stat).
+                execute("create materialized view v incremental as " +
+                "select category, max(amount), count(*) from test " +
+                "group by category");
+        stat.execute("create materialized view v incremental as " + query);
+        stat.execute("create index idx_v_category on v(category)");
+        assertMaterializedView(stat, query);
+        stat.execute("insert into test values(101, null, 1), " +
+                "(102, 7, null), (103, 1, null)");
+        assertMaterializedView(stat, query);
+        stat.execute("update test set amount = amount + 5 where id < 50");
+        assertMaterializedView(stat, query);
+        stat.execute("update test set amount = null where mod(id, 7) = 0");
+        assertMaterializedView(stat, query);
+        stat.execute("delete from test where category = 3 or id > 100");
+        assertMaterializedView(stat, query);
+        conn.setAutoCommit(false);
+        stat.execute("delete from test where id < 30");
+        assertMaterializedView(stat, query);
+        conn.rollback();
+        assertMaterializedView(stat, query);
+        conn.setAutoCommit(true);
+        stat.execute("truncate table test");
+        assertMaterializedView(stat, query);
+        stat.execute("insert into test values(1, 1, 1)");
+        assertMaterializedView(stat, query);
+        if (!config.memory) {
+            conn.close();
+            conn = getConnection("view");
+            stat = conn.createStatement();
+            stat.execute("insert into test values(2, 1, 2)");
+            assertMaterializedView(stat, query);
+        }
+        stat.execute("drop table test cascade");
+        conn.close();
+        deleteDb("view");
+    }
+
+    private void testMaterializedViewRename() throws SQLException {
+        deleteDb("view");
+        Connection conn = getConnection("view");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, " +
+                "category int, amount int)");
+        stat.execute("create table detail(id int, test_id int)");
+        stat.execute("insert into test values(1, 1, 10), (2, 2, 20)");
+        stat.execute("insert into detail values(1, 1), (2, 1)");
+        stat.execute("create materialized view v incremental as " +
+                "select category, count(*) c, sum(amount) s from test " +
+                "group by category");
+        stat.execute("create materialized view v2 as " +
+                "select t.category, d.id from test t join detail d " +
+                "on t.id = d.test_id");
+        stat.execute("alter table test rename to test2");
+        stat.execute("alter table test2 alter column amount rename to value");
+        stat.execute("alter table detail alter column test_id rename to t_id");
+        stat.execute("insert into test2 values(3, 1, 30)");
+        String query = "select category, count(*) c, sum(value) s " +
+                "from test2 group by category";
+        assertMaterializedView(stat, query);
+        if (!config.memory) {
+            conn.close();
+            conn = getConnection("view");
+            stat = conn.createStatement();
+            stat.execute("insert into test2 values(4, 2, 40)");
+            assertMaterializedView(stat, query);
+            stat.execute("insert into detail values(3, 3)");
+            stat.execute("refresh materialized view v2");
+            assertSingleValue(stat,
+                    "select count(*) from v2 where category = 1", 3);
+        }
+        stat.execute("drop table test2, detail cascade");
+        conn.close();
+        deleteDb("view");
+    }
+
+    private void testMaterializedViewConcurrentGroups() throws Exception {
+        deleteDb("view");
+        Connection conn = getConnection("view");
+        final Connection conn2 = getConnection("view");
+        // wait until the other transaction is committed
+        conn2.createStatement().execute("set lock_timeout 5000");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, " +
+                "category int, amount int)");
+        stat.execute("create materialized view v incremental as " +
+                "select category, count(*) c, sum(amount) s from test " +
+                "group by category");
+        conn.setAutoCommit(false);
+        stat.execute("insert into test values(1, 1, 10)");
+        // both transactions add the same group
+        Task task = new Task() {
+            @Override
+            public void call() throws Exception {
+                conn2.createStatement().execute(
+                        "insert into test values(2, 1, 20)");
+            }
+        };
+        task.execute();
+        Thread.sleep(100);
+        conn.commit();
+        task.get();
+        conn.setAutoCommit(true);
+        ResultSet rs = stat.executeQuery("select * from v");
+        assertTrue(rs.next());
+        assertEquals(1, rs.getInt(1));
+        assertEquals(2, rs.getInt(2));
+        assertEquals(30, rs.getInt(3));
+        assertFalse(rs.next());
+        stat.execute("drop table test cascade");
+        conn2.close();
+        conn.close();
+        deleteDb("view");
+    }
+
+    private void assertMaterializedView(Statement stat, String query)
+            throws SQLException {
+        assertEquals(getResult(stat, query + " order by category"),
+                getResult(stat, "select * from v order by category"));
+    }
+
+    private static String getResult(Statement stat, String sql)
+            throws SQLException {
+        ResultSet rs = stat.executeQuery(sql);
+        StringBuilder buff = new StringBuilder();
+        while (rs.next()) {
+            for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
+                buff.append(rs.getString(i)).append(' ');
+            }
+            buff.append('\n');
+        }
+        return buff.toString();
+    }
 }
@@ -19,6 +19,8 @@ import org.h2.util.Task;
  */
 public class TestMvccMultiThreaded extends TestBase {
 
+    private static Connection otherConnection;
+
     /**
      * Run just this test.
      *
@@ -33,8 +35,9 @@ public class TestMvccMultiThreaded extends TestBase {
         testMergeWithUniqueKeyViolation();
         testConcurrentMerge();
         testConcurrentUpdate("");
-        // not supported currently
-        // testConcurrentUpdate(";MULTI_THREADED=TRUE");
+        testConcurrentUpdate(";MULTI_THREADED=TRUE");
+        testConcurrentUpdate(";MULTI_THREADED=FALSE");
+        testUpdateAfterConcurrentCommit();
     }
 
     private void testMergeWithUniqueKeyViolation() throws Exception {
@@ -136,4 +139,43 @@ public class TestMvccMultiThreaded extends TestBase {
         deleteDb("mvccMultiThreaded");
     }
 
+    private void testUpdateAfterConcurrentCommit() throws Exception {
+        deleteDb("mvccMultiThreaded");
+        String url = "mvccMultiThreaded;MVCC=TRUE;MULTI_THREADED=TRUE";
+        Connection conn = getConnection(url);
+        otherConnection = getConnection(url);
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, value int)");
+        stat.execute("insert into test values(1, 1)");
+        stat.execute("create alias update_other for \"" +
+                getClass().getName() + ".updateOther\"");
+        // the row is changed and committed by the other connection
+        // after this statement read it, but before it is updated
+        stat.execute("update test set value = update_other(value) " +
+                "where id = 1");
+        ResultSet rs = stat.executeQuery("select value from test");
+        rs.next();
+        assertEquals(101, rs.getInt(1));
+        conn.close();
+        deleteDb("mvccMultiThreaded");
+    }
+
+    /**
+     * This method is called via reflection from the database. The first call
+     * updates the row using the other connection, and then closes it.
+     *
+     * @param value the value read by the calling statement
+     * @return the value plus one
+     */
+    public static int updateOther(int value) throws Exception {
+        Connection conn = otherConnection;
+        otherConnection = null;
+        if (conn != null) {
+            conn.createStatement().execute(
+                    "update test set value = 100 where id = 1");
+            conn.close();
+        }
+        return value + 1;
+    }
+
 }
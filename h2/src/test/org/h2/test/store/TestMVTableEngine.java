@@ -61,6 +61,7 @@ public class TestMVTableEngine extends TestBase {
         testTemporaryTables();
         testUniqueIndex();
         testSecondaryIndex();
+        testParallelIndexCreation();
         testGarbageCollectionForLOB();
         testSpatial();
         testCount();
@@ -402,6 +403,41 @@ public class TestMVTableEngine extends TestBase {
         conn.close();
     }
 
+    private void testParallelIndexCreation() throws SQLException {
+        FileUtils.deleteRecursive(getBaseDir(), true);
+        Connection conn;
+        Statement stat;
+        String url = "mvstore;MV_STORE=TRUE;CREATE_INDEX_THREADS=4";
+        url = getURL(url, true);
+        conn = getConnection(url);
+        stat = conn.createStatement();
+        stat.execute("set max_memory_rows 1000");
+        stat.execute("create table test(id int, data int)");
+        int size = 20000;
+        stat.execute("insert into test select mod(x * 111, " + size + "), " +
+                "mod(x, 1000) from system_range(1, " + size + ")");
+        stat.execute("create unique index idx_id on test(id)");
+        stat.execute("create index idx_data on test(data, id)");
+        assertThrows(ErrorCode.DUPLICATE_KEY_1, stat).
+                execute("create unique index idx_data_unique on test(data)");
+        ResultSet rs = stat.executeQuery(
+                "select count(*) from test inner join " +
+                "system_range(1, " + size + ") where " +
+                "id = mod(x * 111, " + size + ") and data = mod(x, 1000)");
+        rs.next();
+        assertEquals(size, rs.getInt(1));
+        rs = stat.executeQuery("select id from test where data = 7");
+        int count = 0;
+        int last = -1;
+        while (rs.next()) {
+            assertTrue(rs.getInt(1) > last);
+            last = rs.getInt(1);
+            count++;
+        }
+        assertEquals(size / 1000, count);
+        conn.close();
+    }
+
     private void testGarbageCollectionForLOB() throws SQLException {
         FileUtils.deleteRecursive(getBaseDir(), true);
         Connection conn;
@@ -48,6 +48,7 @@ public class TestTransactionStore extends TestBase {
         testConcurrentAddRemove();
         testConcurrentAdd();
         testCountWithOpenTransactions();
+        testCommittedSnapshot();
         testConcurrentUpdate();
         testRepeatedChange();
         testTransactionAge();
@@ -193,6 +194,39 @@ public class TestTransactionStore extends TestBase {
         s.close();
     }
 
+    private void testCommittedSnapshot() {
+        MVStore s = MVStore.open(null);
+        TransactionStore ts = new TransactionStore(s);
+        ts.init();
+
+        Transaction tx1 = ts.begin();
+        TransactionMap<Integer, Integer> map1 = tx1.openMap("data");
+        // there is no version of a map that was not changed yet
+        assertNull(map1.openCommittedSnapshot());
+        map1.put(1, 10);
+        map1.put(3, 30);
+        assertNull(map1.openCommittedSnapshot());
+        tx1.commit();
+
+        Transaction tx2 = ts.begin();
+        TransactionMap<Integer, Integer> map2 = tx2.openMap("data");
+        MVMap<Integer, ?> snapshot = map2.openCommittedSnapshot();
+        assertEquals(2, snapshot.sizeAsLong());
+        Transaction tx3 = ts.begin();
+        TransactionMap<Integer, Integer> map3 = tx3.openMap("data");
+        map3.put(2, 20);
+        map3.remove(3);
+        // the snapshot does not see changes made after it was opened
+        assertEquals(2, snapshot.sizeAsLong());
+        assertEquals(3, snapshot.getKey(1).intValue());
+        assertNull(map2.openCommittedSnapshot());
+        tx3.commit();
+        snapshot = map2.openCommittedSnapshot();
+        assertEquals(2, snapshot.sizeAsLong());
+        assertEquals(2, snapshot.getKey(1).intValue());
+        s.close();
+    }
+
     private void testConcurrentUpdate() {
         MVStore s;
         TransactionStore ts;